@@ -34,9 +34,16 @@ public final class ScriptExecutor {
     private static final SynBinder<Script> BINDER;
     private static final ScannerFactory SCANNER_FACTORY;
 
+    /** Parser tables precompiled by the build. May be missing if the classes are built by other means. */
+    private static final String TABLES_RESOURCE = "Script_grammar.tables";
+
     static {
         try {
-            BINDER = new SynBinder<>(Script.class, Script.class, "Script_grammar.txt");
+            if (Script.class.getResource(TABLES_RESOURCE) != null) {
+                BINDER = SynBinder.loadTables(Script.class, Script.class, "Script_grammar.txt", TABLES_RESOURCE);
+            } else {
+                BINDER = new SynBinder<>(Script.class, Script.class, "Script_grammar.txt");
+            }
         } catch (SynException e) {
             throw new IllegalStateException(e);
         }
@@ -15,10 +15,13 @@
  */
 package org.antkar.syn.sample.script;
 
-import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
+import org.antkar.syn.SynFileResult;
 import org.antkar.syn.binder.SynBinder;
 import org.antkar.syn.sample.script.schema.Script;
 
@@ -30,7 +33,7 @@ public final class ScriptMain {
 
     public static void main(String[] args) throws Exception {
         //Parse command line arguments.
-        List<File> files = new ArrayList<>();
+        List<Path> files = new ArrayList<>();
         List<String> arguments = new ArrayList<>();
         parseArguments(args, files, arguments);
 
@@ -40,13 +43,16 @@ public final class ScriptMain {
             System.exit(1);
         }
 
-        //Parse scripts.
+        //Parse scripts concurrently.
         SynBinder<Script> binder = ScriptExecutor.getSynBinder();
+        List<SynFileResult<Script>> results = binder.parseAll(files, ForkJoinPool.commonPool());
 
         List<Script> scripts = new ArrayList<>();
-        for (File file : files) {
-            Script script = binder.parse(file);
-            scripts.add(script);
+        for (SynFileResult<Script> result : results) {
+            if (!result.isSuccessful()) {
+                throw result.getException();
+            }
+            scripts.add(result.getResult());
         }
 
         //Execute scripts.
@@ -56,11 +62,11 @@ public final class ScriptMain {
     /**
      * Parses command line arguments.
      */
-    private static void parseArguments(String[] args, List<File> files, List<String> arguments) {
+    private static void parseArguments(String[] args, List<Path> files, List<String> arguments) {
         //Parse file names.
         int ofs = 0;
         while (ofs < args.length && !"-args".equals(args[ofs])) {
-            files.add(new File(args[ofs]));
+            files.add(Paths.get(args[ofs]));
             ++ofs;
         }
 
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2013 Anton Karmanov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.antkar.syn.sample.script;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import org.antkar.syn.SynGrammarAnalyzer;
+import org.antkar.syn.SynGrammarReport;
+import org.antkar.syn.sample.script.schema.Script;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the analysis of the Script Language grammar.
+ */
+public final class ScriptGrammarTest extends Assert {
+    @Test
+    public void testUnitChains() throws Exception {
+        String grammar = readGrammar();
+        SynGrammarReport report = SynGrammarAnalyzer.analyze(grammar, "Script", "var x = 1 + 2 * f(3);");
+        Map<String, Integer> depths = report.getUnitChainDepths();
+
+        assertEquals(4, report.getMaxUnitChainDepth());
+        assertEquals(Integer.valueOf(1), depths.get("PrefixExpression"));
+        assertEquals(Integer.valueOf(3), depths.get("ConditionalExpression"));
+
+        //The levels of the left-recursive operator hierarchy shift operators, so they end the chains.
+        String[] operatorLevels = {
+            "OrExpression", "AndExpression", "EqExpression", "RelExpression", "AddExpression", "MulExpression"
+        };
+        for (String nonterminal : operatorLevels) {
+            assertNull(nonterminal, depths.get(nonterminal));
+        }
+    }
+
+    private static String readGrammar() throws Exception {
+        StringBuilder builder = new StringBuilder();
+        try (InputStream in = Script.class.getResourceAsStream("Script_grammar.txt")) {
+            Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8);
+            char[] buffer = new char[4096];
+            for (int n = reader.read(buffer); n != -1; n = reader.read(buffer)) {
+                builder.append(buffer, 0, n);
+            }
+        }
+        return builder.toString();
+    }
+}
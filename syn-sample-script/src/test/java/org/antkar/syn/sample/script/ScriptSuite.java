@@ -26,6 +26,7 @@ import org.junit.runners.Suite.SuiteClasses;
 @SuiteClasses({
     DeclarationScriptTest.class,
     ExpressionScriptTest.class,
+    ScriptGrammarTest.class,
     StatementScriptTest.class
 })
 public final class ScriptSuite {
@@ -16,6 +16,7 @@
 package org.antkar.syn;
 
 import java.io.PrintStream;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
@@ -23,6 +24,7 @@ import java.util.ListIterator;
 
 import org.antkar.syn.internal.Checks;
 import org.antkar.syn.internal.CommonUtil;
+import org.antkar.syn.internal.TextShift;
 
 /**
  * Array node. Represents the result of a repetition element.
@@ -224,6 +226,15 @@ public final class ArrayNode extends SynNode implements List<SynNode> {
         }
     }
 
+    @Override
+    ArrayNode shift(TextShift shift) {
+        List<SynNode> shiftedList = new ArrayList<>(list.size());
+        for (SynNode subNode : list) {
+            shiftedList.add(subNode == null ? null : subNode.shift(shift));
+        }
+        return new ArrayNode(shiftedList);
+    }
+
     //Modifications are not allowed.
 
     @Override
@@ -18,6 +18,7 @@ package org.antkar.syn;
 import java.io.PrintStream;
 import java.lang.reflect.Array;
 import java.util.AbstractCollection;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
@@ -27,6 +28,7 @@ import java.util.Set;
 
 import org.antkar.syn.internal.Checks;
 import org.antkar.syn.internal.CommonUtil;
+import org.antkar.syn.internal.TextShift;
 
 /**
  * Object node. Represents the result of a production with attributes.
@@ -241,6 +243,16 @@ public final class ObjectNode extends SynNode implements Map<String, SynNode> {
         }
     }
 
+    @Override
+    ObjectNode shift(TextShift shift) {
+        List<ObjectEntry> shiftedEntries = new ArrayList<>(entries.size());
+        for (ObjectEntry entry : entries) {
+            SynNode value = entry.value == null ? null : entry.value.shift(shift);
+            shiftedEntries.add(new ObjectEntry(entry.key, value));
+        }
+        return new ObjectNode(shiftedEntries);
+    }
+
     //Modifications are not allowed.
 
     @Override
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2013 Anton Karmanov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.antkar.syn;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.antkar.syn.internal.Checks;
+import org.antkar.syn.internal.CommonUtil;
+import org.antkar.syn.internal.TextShift;
+
+/**
+ * Packed node. Represents an ambiguous part of the input: each alternative is a different interpretation of
+ * the same sequence of tokens. Returned only if the parser is configured to pack ambiguities.
+ * <p>
+ * The first alternative is the one preferred by the automatic ambiguity resolution among the alternatives
+ * of this node. Sub-trees shared by several alternatives are represented by the same node objects.
+ *
+ * @see SynParser#setPackAmbiguities(boolean)
+ */
+public final class PackedNode extends SynNode {
+    private final List<SynNode> alternatives;
+
+    public PackedNode(List<SynNode> alternatives) {
+        Checks.notNull(alternatives);
+        Checks.argument(alternatives.size() >= 2);
+        this.alternatives = Collections.unmodifiableList(new ArrayList<>(alternatives));
+    }
+
+    /**
+     * Returns the alternatives. An alternative is <code>null</code> if the corresponding interpretation
+     * produces no node.
+     *
+     * @return the unmodifiable list of alternatives.
+     */
+    public List<SynNode> getAlternatives() {
+        return alternatives;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder bld = new StringBuilder();
+        bld.append("<");
+
+        String sep = "";
+        for (SynNode alternative : alternatives) {
+            bld.append(sep);
+            bld.append(alternative);
+            sep = " | ";
+        }
+
+        bld.append(">");
+        String result = bld.toString();
+        return result;
+    }
+
+    @Override
+    void print(PrintStream out, int level) {
+        out.println("packed[" + alternatives.size() + "]");
+
+        for (int i = 0, n = alternatives.size(); i < n; ++i) {
+            CommonUtil.printIndent(out, level + 1);
+            out.print("<" + i + "> = ");
+
+            SynNode alternative = alternatives.get(i);
+            if (alternative == null) {
+                out.println(null + "");
+            } else {
+                alternative.print(out, level + 2);
+            }
+        }
+    }
+
+    @Override
+    PackedNode shift(TextShift shift) {
+        List<SynNode> shiftedAlternatives = new ArrayList<>(alternatives.size());
+        for (SynNode alternative : alternatives) {
+            shiftedAlternatives.add(alternative == null ? null : alternative.shift(shift));
+        }
+        return new PackedNode(shiftedAlternatives);
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2013 Anton Karmanov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.antkar.syn;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Allows to stop a parsing operation which is running in another thread. The parser checks the token
+ * periodically, after a number of tokens or reductions, and throws {@link SynCancelledException} if the token
+ * has been cancelled, if the token's deadline has expired or if the parsing thread has been interrupted.</p>
+ *
+ * <p>A token is thread-safe. The same token may be used by several parsers in order to stop all their
+ * operations at once.</p>
+ *
+ * <p>A token is passed once, to {@link SynParser#withCancellationToken(SynCancellationToken)} or to
+ * {@link org.antkar.syn.binder.SynBinder#withCancellationToken(SynCancellationToken) SynBinder}, which return
+ * a parser or a binder checking the token in all their parsing methods. The token is checked while the input is
+ * scanned, so the creation of Java objects by a binder is not stopped.</p>
+ *
+ * @see SynParser#withCancellationToken(SynCancellationToken)
+ */
+public final class SynCancellationToken {
+    private final boolean hasDeadline;
+    private final long deadline;
+    private volatile boolean cancelled = false;
+
+    /**
+     * Constructs a token without a deadline.
+     */
+    public SynCancellationToken() {
+        hasDeadline = false;
+        deadline = 0;
+    }
+
+    /**
+     * Constructs a token with a deadline. The token expires when the specified time passes.
+     *
+     * @param timeout the time before the deadline.
+     * @param unit the unit of the timeout.
+     */
+    public SynCancellationToken(long timeout, TimeUnit unit) {
+        if (unit == null) {
+            throw new NullPointerException("unit");
+        }
+        hasDeadline = true;
+        deadline = System.nanoTime() + unit.toNanos(timeout);
+    }
+
+    /**
+     * Cancels the token. Parsing operations using the token will stop at the next check.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Returns <code>true</code> if the token has been cancelled or its deadline has expired.
+     *
+     * @return <code>true</code> if parsing operations using the token have to stop.
+     */
+    public boolean isCancelled() {
+        return cancelled || isExpired();
+    }
+
+    private boolean isExpired() {
+        return hasDeadline && System.nanoTime() - deadline >= 0;
+    }
+
+    /**
+     * Throws an exception if a parsing operation using the token has to stop.
+     *
+     * @param pos the current position in the input, used in the exception.
+     * @throws SynCancelledException if the token has been cancelled or has expired, or if the current thread
+     * has been interrupted.
+     */
+    public void check(TextPos pos) throws SynCancelledException {
+        if (cancelled) {
+            throw new SynCancelledException(pos, "Parsing has been cancelled");
+        } else if (isExpired()) {
+            throw new SynCancelledException(pos, "Parsing deadline has expired");
+        } else if (Thread.currentThread().isInterrupted()) {
+            throw new SynCancelledException(pos, "Parsing thread has been interrupted");
+        }
+    }
+}
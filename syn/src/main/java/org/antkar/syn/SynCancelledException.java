@@ -0,0 +1,30 @@
+/*
+ * Copyright 2013 Anton Karmanov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.antkar.syn;
+
+/**
+ * Thrown by {@link SynParser} if the parsing has been stopped by a {@link SynCancellationToken}: the token was
+ * cancelled, its deadline has expired, or the parsing thread was interrupted.
+ *
+ * @see SynParser#withCancellationToken(SynCancellationToken)
+ */
+public final class SynCancelledException extends SynTextException {
+    private static final long serialVersionUID = -5063725815427906182L;
+
+    public SynCancelledException(TextPos textPos, String message) {
+        super(textPos, message);
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2013 Anton Karmanov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.antkar.syn;
+
+import org.antkar.syn.internal.Checks;
+import org.antkar.syn.internal.parser.ParserCheckpoint;
+
+/**
+ * <p>A snapshot of the parser state taken at a token boundary. Allows to parse an extended version of a text
+ * without parsing the beginning of the text again: parsing is resumed at the checkpoint's offset. Obtained
+ * from a {@link SynResult} if the {@link SynParser#setCheckpoints(boolean) checkpoints option} is on.</p>
+ *
+ * <p>A checkpoint is immutable and can be used to resume parsing any number of times, also concurrently.</p>
+ *
+ * @see SynResult#getCheckpoint()
+ * @see SynParser#resume(SynCheckpoint, String)
+ */
+public final class SynCheckpoint {
+    private final String startNonterminal;
+    private final SourceDescriptor sourceDescriptor;
+    private final ParserCheckpoint parserCheckpoint;
+
+    SynCheckpoint(String startNonterminal, SourceDescriptor sourceDescriptor, ParserCheckpoint parserCheckpoint) {
+        this.startNonterminal = Checks.notNull(startNonterminal);
+        this.sourceDescriptor = Checks.notNull(sourceDescriptor);
+        this.parserCheckpoint = Checks.notNull(parserCheckpoint);
+    }
+
+    /**
+     * Returns the name of the start nonterminal.
+     *
+     * @return the start nonterminal name.
+     */
+    public String getStartNonterminal() {
+        return startNonterminal;
+    }
+
+    /**
+     * Returns the source descriptor of the parsed text.
+     *
+     * @return the source descriptor.
+     */
+    public SourceDescriptor getSourceDescriptor() {
+        return sourceDescriptor;
+    }
+
+    /**
+     * Returns the offset in the text where parsing is resumed. The text before this offset is not read
+     * again.
+     *
+     * @return the offset.
+     */
+    public int getOffset() {
+        return parserCheckpoint.getOffset();
+    }
+
+    /**
+     * Returns the internal parser checkpoint.
+     */
+    ParserCheckpoint getParserCheckpoint() {
+        return parserCheckpoint;
+    }
+
+    @Override
+    public String toString() {
+        return sourceDescriptor + "(" + parserCheckpoint.getLine() + ":" + parserCheckpoint.getColumn() + ")";
+    }
+}
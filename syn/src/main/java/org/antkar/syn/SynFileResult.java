@@ -0,0 +1,99 @@
+/*
+ * Copyright 2013 Anton Karmanov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.antkar.syn;
+
+import java.nio.file.Path;
+
+import org.antkar.syn.internal.Checks;
+
+/**
+ * The outcome of parsing a single file in a batch: either the result or the exception that caused parsing
+ * of the file to fail.
+ *
+ * @param <T> the type of the result.
+ *
+ * @see SynParser#parseAll(String, java.util.Collection, java.util.concurrent.Executor)
+ */
+public final class SynFileResult<T> {
+    private final Path file;
+    private final T result;
+    private final SynException exception;
+
+    /**
+     * Constructs a successful file result.
+     *
+     * @param file the file.
+     * @param result the result of parsing the file.
+     */
+    public SynFileResult(Path file, T result) {
+        this.file = Checks.notNull(file);
+        this.result = result;
+        this.exception = null;
+    }
+
+    /**
+     * Constructs a failed file result.
+     *
+     * @param file the file.
+     * @param exception the exception thrown when parsing the file.
+     */
+    public SynFileResult(Path file, SynException exception) {
+        this.file = Checks.notNull(file);
+        this.result = null;
+        this.exception = Checks.notNull(exception);
+    }
+
+    /**
+     * Returns the parsed file.
+     *
+     * @return the file.
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Returns <code>true</code> if the file has been parsed successfully.
+     *
+     * @return <code>true</code> if there is a result, <code>false</code> if there is an exception.
+     */
+    public boolean isSuccessful() {
+        return exception == null;
+    }
+
+    /**
+     * Returns the result of parsing the file.
+     *
+     * @return the result, or <code>null</code> if parsing failed.
+     */
+    public T getResult() {
+        return result;
+    }
+
+    /**
+     * Returns the exception thrown when parsing the file.
+     *
+     * @return the exception, or <code>null</code> if parsing succeeded.
+     */
+    public SynException getException() {
+        return exception;
+    }
+
+    @Override
+    public String toString() {
+        return file + (exception == null ? "" : ": " + exception.getMessage());
+    }
+}
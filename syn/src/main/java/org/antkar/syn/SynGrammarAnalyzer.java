@@ -0,0 +1,266 @@
+/*
+ * Copyright 2013 Anton Karmanov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.antkar.syn;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.antkar.syn.SynGrammarReport.Conflict;
+import org.antkar.syn.SynGrammarReport.ConflictKind;
+import org.antkar.syn.internal.CommonUtil;
+import org.antkar.syn.internal.bnf.BnfElement;
+import org.antkar.syn.internal.bnf.BnfGrammar;
+import org.antkar.syn.internal.bnf.BnfNonterminal;
+import org.antkar.syn.internal.bnf.BnfProduction;
+import org.antkar.syn.internal.ebnf.EbnfGrammar;
+import org.antkar.syn.internal.grammar.EbnfToBnfConverter;
+import org.antkar.syn.internal.grammar.SynGrammarParser;
+import org.antkar.syn.internal.lrtables.ParserConfiguration;
+import org.antkar.syn.internal.lrtables.ParserConfigurator;
+import org.antkar.syn.internal.lrtables.ParserProduction;
+import org.antkar.syn.internal.lrtables.ParserShift;
+import org.antkar.syn.internal.lrtables.ParserState;
+import org.antkar.syn.internal.parser.ParserProfile;
+
+/**
+ * <p>Analyzes the performance of a grammar: builds the LR states and reports the conflicts, which make the GLR
+ * parser fork stacks, the chains of unit productions and the size of the tables (see {@link SynGrammarReport}).
+ * Optionally, parses a sample input to find out which conflict states actually fork most often. Usage:</p>
+ * <pre>
+ * java org.antkar.syn.SynGrammarAnalyzer GRAMMAR_FILE [START_NONTERMINAL SAMPLE_FILE]</pre>
+ *
+ * <p>The report is printed to the standard output.</p>
+ */
+public final class SynGrammarAnalyzer {
+    private SynGrammarAnalyzer(){}
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 1 && args.length != 3) {
+            System.err.println("Usage: SynGrammarAnalyzer GRAMMAR_FILE [START_NONTERMINAL SAMPLE_FILE]");
+            System.exit(1);
+            return;
+        }
+
+        File grammarFile = new File(args[0]);
+        String grammar = readFile(grammarFile);
+        SourceDescriptor grammarDescriptor = CommonUtil.getSourceDescriptor(grammarFile, null);
+        String startNonterminal = args.length > 1 ? args[1] : null;
+        String sampleText = args.length > 1 ? readFile(new File(args[2])) : null;
+
+        SynGrammarReport report = analyze(grammar, grammarDescriptor, startNonterminal, sampleText);
+        report.print(System.out);
+    }
+
+    /**
+     * Analyzes a grammar.
+     *
+     * @param grammar the grammar.
+     * @return the report.
+     * @throws SynException if the grammar is invalid.
+     */
+    public static SynGrammarReport analyze(String grammar) throws SynException {
+        if (grammar == null) {
+            throw new NullPointerException("grammar");
+        }
+        return analyze(grammar, CommonUtil.getSourceDescriptor("<grammar>", null), null, null);
+    }
+
+    /**
+     * Analyzes a grammar read from a file.
+     *
+     * @param grammarFile the grammar file.
+     * @return the report.
+     * @throws SynException if the grammar is invalid or cannot be read.
+     */
+    public static SynGrammarReport analyze(File grammarFile) throws SynException {
+        if (grammarFile == null) {
+            throw new NullPointerException("grammarFile");
+        }
+        String grammar = readFile(grammarFile);
+        return analyze(grammar, CommonUtil.getSourceDescriptor(grammarFile, null), null, null);
+    }
+
+    /**
+     * Analyzes a grammar and profiles the parsing of a sample input. The input is parsed by a parser with
+     * the default options, i. e. ambiguities are resolved rather than reported.
+     *
+     * @param grammar the grammar.
+     * @param startNonterminal the start nonterminal to parse the sample with.
+     * @param sampleText the sample input.
+     * @return the report.
+     * @throws SynException if the grammar is invalid or the sample cannot be parsed.
+     */
+    public static SynGrammarReport analyze(String grammar, String startNonterminal, String sampleText)
+            throws SynException
+    {
+        if (grammar == null) {
+            throw new NullPointerException("grammar");
+        }
+        if (startNonterminal == null) {
+            throw new NullPointerException("startNonterminal");
+        }
+        if (sampleText == null) {
+            throw new NullPointerException("sampleText");
+        }
+        return analyze(grammar, CommonUtil.getSourceDescriptor("<grammar>", null), startNonterminal, sampleText);
+    }
+
+    /**
+     * Analyzes a grammar, profiling the sample input if it is specified.
+     */
+    private static SynGrammarReport analyze(
+            String grammar,
+            SourceDescriptor grammarDescriptor,
+            String startNonterminal,
+            String sampleText) throws SynException
+    {
+        EbnfGrammar eGrammar = SynGrammarParser.parseGrammar(new StringReader(grammar), grammarDescriptor);
+        BnfGrammar bGrammar = EbnfToBnfConverter.convert(eGrammar);
+        Map<ParserProduction, BnfProduction> productions = new IdentityHashMap<>();
+        ParserConfiguration parserConfig = ParserConfigurator.makeAnalysisConfiguration(bGrammar, productions);
+        Map<BnfNonterminal, Set<TokenDescriptor>> followTokens = ParserConfigurator.calcFollowTokens(bGrammar);
+
+        List<ParserState> states = parserConfig.getStates();
+        List<Conflict> conflicts = new ArrayList<>();
+        for (ParserState state : states) {
+            addConflicts(parserConfig, state, productions, followTokens, conflicts);
+        }
+
+        long tableMemorySize = states.get(0).getTables().getMemorySize();
+        Map<String, Integer> unitChainDepths = parserConfig.calcUnitChainDepths();
+        if (startNonterminal == null) {
+            return new SynGrammarReport(states.size(), tableMemorySize, conflicts, unitChainDepths, null, 0, 0, 0);
+        }
+
+        //The parser builds the same states in the same order, so the states are identified by indices.
+        SynParser parser = new SynParser(eGrammar);
+        ParserProfile profile = new ParserProfile(states.size());
+        parser.profile(startNonterminal, sampleText, profile);
+
+        int[] forkCounts = new int[states.size()];
+        for (Conflict conflict : conflicts) {
+            int stateIndex = conflict.getStateIndex();
+            forkCounts[stateIndex] = profile.getReduceCount(stateIndex);
+        }
+        return new SynGrammarReport(states.size(), tableMemorySize, conflicts, unitChainDepths, forkCounts,
+                profile.getTokenCount(), profile.getStackCount(), profile.getMaxStackCount());
+    }
+
+    /**
+     * Adds the conflicts of a state to the list. The final states are not reduced by the parser, so they have
+     * no conflicts.
+     */
+    private static void addConflicts(
+            ParserConfiguration parserConfig,
+            ParserState state,
+            Map<ParserProduction, BnfProduction> productions,
+            Map<BnfNonterminal, Set<TokenDescriptor>> followTokens,
+            List<Conflict> conflicts)
+    {
+        List<ParserProduction> reduceProductions = state.getReduceProductions();
+        if (state.isFinal() || reduceProductions.isEmpty()) {
+            return;
+        }
+
+        List<String> descriptions = new ArrayList<>();
+        for (ParserProduction production : reduceProductions) {
+            descriptions.add(describeProduction(productions.get(production)));
+        }
+
+        List<ParserShift> shifts = state.getShifts();
+        if (!shifts.isEmpty()) {
+            List<String> tokens = new ArrayList<>();
+            for (ParserShift shift : shifts) {
+                TokenDescriptor token = shift.getTokenDescriptor();
+                if (countFollowingProductions(state, token, productions, followTokens) > 0) {
+                    tokens.add(token.toString());
+                }
+            }
+            conflicts.add(new Conflict(state.getIndex(), ConflictKind.SHIFT_REDUCE, descriptions, tokens));
+        }
+
+        if (reduceProductions.size() > 1) {
+            //The end of file is not a grammar token, but it can follow the start nonterminals.
+            List<TokenDescriptor> allTokens = new ArrayList<>(parserConfig.getTokenDescriptors());
+            allTokens.add(TokenDescriptor.forType(TokenType.END_OF_FILE));
+
+            List<String> tokens = new ArrayList<>();
+            for (TokenDescriptor token : allTokens) {
+                if (countFollowingProductions(state, token, productions, followTokens) > 1) {
+                    tokens.add(token.toString());
+                }
+            }
+            conflicts.add(new Conflict(state.getIndex(), ConflictKind.REDUCE_REDUCE, descriptions, tokens));
+        }
+    }
+
+    /**
+     * Returns the number of productions reduced in a state whose nonterminals may be followed by the specified
+     * token. The productions for which the token is excluded by precedences are not counted.
+     */
+    private static int countFollowingProductions(
+            ParserState state,
+            TokenDescriptor token,
+            Map<ParserProduction, BnfProduction> productions,
+            Map<BnfNonterminal, Set<TokenDescriptor>> followTokens)
+    {
+        int result = 0;
+        for (ParserProduction production : state.getReduceProductions()) {
+            BnfNonterminal nonterminal = productions.get(production).getNonterminal();
+            Set<TokenDescriptor> excludedTokens = state.getExcludedTokens(production);
+            if (followTokens.get(nonterminal).contains(token)
+                    && (excludedTokens == null || !excludedTokens.contains(token)))
+            {
+                ++result;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the description of a production in the form <code>"Nonterminal : Element ..."</code>.
+     */
+    private static String describeProduction(BnfProduction bProduction) {
+        StringBuilder bld = new StringBuilder();
+        bld.append(bProduction.getNonterminal().getName());
+        bld.append(" :");
+        for (BnfElement element : bProduction.getElements()) {
+            bld.append(' ');
+            bld.append(element);
+        }
+        return bld.toString();
+    }
+
+    /**
+     * Reads the content of a file.
+     */
+    private static String readFile(File file) throws SynException {
+        try {
+            try (Reader reader = CommonUtil.openFileReader(file)) {
+                return CommonUtil.readText(reader);
+            }
+        } catch (IOException e) {
+            throw new SynException(e);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2013 Anton Karmanov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.antkar.syn;
+
+import org.antkar.syn.binder.SynBinder;
+import org.antkar.syn.internal.CompiledGrammarCache;
+
+/**
+ * <p>Process-wide cache of compiled grammars. When the cache is enabled, a {@link SynParser} or
+ * a {@link SynBinder} constructed for a grammar text which has already been compiled reuses the compiled
+ * tables instead of building them again. Grammars are identified by the content of the text, so a grammar
+ * read from a file and the same grammar passed as a string share an entry. Binder entries are additionally
+ * identified by the grammar generated for the bound classes; the binder configuration itself is always created
+ * from the classes, so a changed class is never bound with a stale configuration. Grammars of parsers created
+ * by {@link SynParser#createLazy(String)} have separate entries, since their tables are built lazily.</p>
+ *
+ * <p>Parsers and binders constructed concurrently for the same grammar wait for a single compilation.</p>
+ *
+ * <p>The cache is disabled by default. It is enabled by setting its maximum size:</p>
+ * <pre>
+ * SynGrammarCache.setMaxSize(32);</pre>
+ *
+ * <p>The least recently used grammars are evicted when the cache is full. Parsers created from a cached
+ * grammar share only the immutable tables; their options are independent.</p>
+ */
+public final class SynGrammarCache {
+    private SynGrammarCache(){}
+
+    /**
+     * Returns the maximum number of cached grammars.
+     *
+     * @return the maximum size, or <code>0</code> if the cache is disabled.
+     */
+    public static int getMaxSize() {
+        return CompiledGrammarCache.getMaxSize();
+    }
+
+    /**
+     * Sets the maximum number of cached grammars. If the cache contains more grammars, the least recently used
+     * ones are evicted.
+     *
+     * @param maxSize the maximum size, or <code>0</code> to disable the cache and remove all entries.
+     * @throws IllegalArgumentException if the size is negative.
+     */
+    public static void setMaxSize(int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("maxSize: " + maxSize);
+        }
+        CompiledGrammarCache.setMaxSize(maxSize);
+    }
+
+    /**
+     * Returns the number of cached grammars.
+     */
+    public static int size() {
+        return CompiledGrammarCache.size();
+    }
+
+    /**
+     * Returns the number of times a compiled grammar was found in the cache.
+     */
+    public static long getHitCount() {
+        return CompiledGrammarCache.getHitCount();
+    }
+
+    /**
+     * Returns the number of times a grammar had to be compiled while the cache was enabled.
+     */
+    public static long getMissCount() {
+        return CompiledGrammarCache.getMissCount();
+    }
+
+    /**
+     * Removes all cached grammars and resets the hit and miss counters.
+     */
+    public static void clear() {
+        CompiledGrammarCache.clear();
+    }
+}
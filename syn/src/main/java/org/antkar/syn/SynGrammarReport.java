@@ -0,0 +1,303 @@
+/*
+ * Copyright 2013 Anton Karmanov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.antkar.syn;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.antkar.syn.internal.Checks;
+import org.antkar.syn.internal.CommonUtil;
+
+/**
+ * <p>The result of analyzing a grammar by {@link SynGrammarAnalyzer}: the size of the LR tables, the conflicts
+ * which make the parser fork stacks, and the chains of unit productions. If a sample input has been profiled,
+ * the report also tells how many times each conflict state has actually forked.</p>
+ *
+ * <p>The parser is a GLR parser which does not look ahead when reducing, so every state which has more than one
+ * action forks: each production is reduced in a separate stack, and the stack of the state itself is kept if
+ * the state has shifts. The conflicts are reported per state; a state may have both kinds of conflicts.</p>
+ */
+public final class SynGrammarReport {
+    private final int stateCount;
+    private final long tableMemorySize;
+    private final List<Conflict> conflicts;
+    private final Map<String, Integer> unitChainDepths;
+
+    private final boolean profiled;
+    private final int[] forkCounts;
+    private final int tokenCount;
+    private final long stackCount;
+    private final int maxStackCount;
+
+    SynGrammarReport(
+            int stateCount,
+            long tableMemorySize,
+            List<Conflict> conflicts,
+            Map<String, Integer> unitChainDepths,
+            int[] forkCounts,
+            int tokenCount,
+            long stackCount,
+            int maxStackCount)
+    {
+        this.stateCount = stateCount;
+        this.tableMemorySize = tableMemorySize;
+        this.conflicts = CommonUtil.unmodifiableListCopy(conflicts);
+        this.unitChainDepths = CommonUtil.unmodifiableMapCopy(unitChainDepths);
+        profiled = forkCounts != null;
+        this.forkCounts = profiled ? forkCounts.clone() : new int[stateCount];
+        this.tokenCount = tokenCount;
+        this.stackCount = stackCount;
+        this.maxStackCount = maxStackCount;
+    }
+
+    /**
+     * Returns the number of LR states of all start nonterminals.
+     */
+    public int getStateCount() {
+        return stateCount;
+    }
+
+    /**
+     * Returns the approximate number of bytes occupied by the compressed SHIFT and GOTO tables.
+     */
+    public long getTableMemorySize() {
+        return tableMemorySize;
+    }
+
+    /**
+     * Returns the conflicts, ordered by state index.
+     */
+    public List<Conflict> getConflicts() {
+        return conflicts;
+    }
+
+    /**
+     * Returns the number of conflicts of the specified kind.
+     */
+    public int getConflictCount(ConflictKind kind) {
+        int result = 0;
+        for (Conflict conflict : conflicts) {
+            if (conflict.kind == kind) {
+                ++result;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the indices of the states which fork stacks, i. e. the states having conflicts, in ascending
+     * order.
+     */
+    public List<Integer> getForkingStates() {
+        Set<Integer> result = new LinkedHashSet<>();
+        for (Conflict conflict : conflicts) {
+            result.add(conflict.stateIndex);
+        }
+        return new ArrayList<>(result);
+    }
+
+    /**
+     * Returns the maximum number of unit productions reduced in a chain after each nonterminal which starts
+     * such a chain. The parser reduces a chain without creating a stack for every intermediate state, but each
+     * production in a chain still adds a level to the syntax tree. A chain ends at a state which shifts a token,
+     * so the levels of a left-recursive operator hierarchy are not chained.
+     */
+    public Map<String, Integer> getUnitChainDepths() {
+        return unitChainDepths;
+    }
+
+    /**
+     * Returns the maximum length of a chain of unit productions, or <code>0</code> if there are no unit
+     * productions.
+     */
+    public int getMaxUnitChainDepth() {
+        int result = 0;
+        for (int depth : unitChainDepths.values()) {
+            result = Math.max(result, depth);
+        }
+        return result;
+    }
+
+    /**
+     * Returns <code>true</code> if a sample input has been profiled. Otherwise, the profile statistics are
+     * zero.
+     */
+    public boolean isProfiled() {
+        return profiled;
+    }
+
+    /**
+     * Returns the number of times the specified state has forked stacks when the sample input was parsed.
+     *
+     * @param stateIndex the index of the state.
+     * @return the number of forks, <code>0</code> if the state has no conflicts.
+     */
+    public int getForkCount(int stateIndex) {
+        Checks.argument(stateIndex >= 0 && stateIndex < stateCount);
+        return forkCounts[stateIndex];
+    }
+
+    /**
+     * Returns the indices of the states which have forked stacks when the sample input was parsed, the states
+     * forking most often first.
+     */
+    public List<Integer> getHotStates() {
+        List<Integer> result = new ArrayList<>();
+        for (int stateIndex : getForkingStates()) {
+            if (forkCounts[stateIndex] > 0) {
+                result.add(stateIndex);
+            }
+        }
+
+        Collections.sort(result, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return Integer.compare(forkCounts[o2], forkCounts[o1]);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Returns the number of tokens of the sample input.
+     */
+    public int getProfiledTokenCount() {
+        return tokenCount;
+    }
+
+    /**
+     * Returns the maximum number of stacks which accepted a single token of the sample input.
+     */
+    public int getMaxStackCount() {
+        return maxStackCount;
+    }
+
+    /**
+     * Returns the average number of stacks which accepted a token of the sample input, or <code>0</code> if
+     * the input has no tokens.
+     */
+    public double getAverageStackCount() {
+        return tokenCount == 0 ? 0 : (double) stackCount / tokenCount;
+    }
+
+    /**
+     * Prints the report in a human-readable form.
+     *
+     * @param out the stream to print to.
+     */
+    public void print(PrintStream out) {
+        if (out == null) {
+            throw new NullPointerException("out");
+        }
+
+        out.printf("States: %d%n", stateCount);
+        out.printf("Table memory: ~%d bytes%n", tableMemorySize);
+
+        out.printf("Conflicts: %d shift/reduce, %d reduce/reduce, %d forking states%n",
+                getConflictCount(ConflictKind.SHIFT_REDUCE), getConflictCount(ConflictKind.REDUCE_REDUCE),
+                getForkingStates().size());
+        for (Conflict conflict : conflicts) {
+            out.printf("  %s%n", conflict);
+            for (String production : conflict.productions) {
+                out.printf("    %s%n", production);
+            }
+        }
+
+        out.printf("Unit chains: max depth %d%n", getMaxUnitChainDepth());
+        for (Map.Entry<String, Integer> entry : unitChainDepths.entrySet()) {
+            out.printf("  %s: %d%n", entry.getKey(), entry.getValue());
+        }
+
+        if (profiled) {
+            out.printf("Profile: %d tokens, max %d stacks, average %.2f stacks per token%n",
+                    tokenCount, maxStackCount, getAverageStackCount());
+            for (int stateIndex : getHotStates()) {
+                out.printf("  State %d: %d forks%n", stateIndex, forkCounts[stateIndex]);
+            }
+        }
+    }
+
+    /**
+     * The kind of a conflict.
+     */
+    public enum ConflictKind {
+        /** A state both shifts tokens and reduces one or more productions. */
+        SHIFT_REDUCE,
+
+        /** A state reduces more than one production. */
+        REDUCE_REDUCE
+    }
+
+    /**
+     * A conflict in an LR state.
+     */
+    public static final class Conflict {
+        private final int stateIndex;
+        private final ConflictKind kind;
+        private final List<String> productions;
+        private final List<String> tokens;
+
+        Conflict(int stateIndex, ConflictKind kind, List<String> productions, List<String> tokens) {
+            this.stateIndex = stateIndex;
+            this.kind = Checks.notNull(kind);
+            this.productions = CommonUtil.unmodifiableListCopy(productions);
+            this.tokens = CommonUtil.unmodifiableListCopy(tokens);
+        }
+
+        /**
+         * Returns the index of the state.
+         */
+        public int getStateIndex() {
+            return stateIndex;
+        }
+
+        /**
+         * Returns the kind of the conflict.
+         */
+        public ConflictKind getKind() {
+            return kind;
+        }
+
+        /**
+         * Returns the productions reduced in the state, in the form <code>"Nonterminal : Element ..."</code>.
+         */
+        public List<String> getProductions() {
+            return productions;
+        }
+
+        /**
+         * Returns the tokens for which the conflict persists after the next token is read. For a shift/reduce
+         * conflict, these are the shifted tokens which may follow a reduced nonterminal; for a reduce/reduce
+         * conflict, the tokens which may follow more than one of the reduced nonterminals. If the list is empty,
+         * all but one of the forked stacks are rejected by the next token.
+         */
+        public List<String> getTokens() {
+            return tokens;
+        }
+
+        @Override
+        public String toString() {
+            String kindStr = kind == ConflictKind.SHIFT_REDUCE ? "shift/reduce" : "reduce/reduce";
+            return "State " + stateIndex + ": " + kindStr + (tokens.isEmpty() ? "" : " on " + tokens);
+        }
+    }
+}
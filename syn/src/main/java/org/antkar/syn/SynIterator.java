@@ -0,0 +1,56 @@
+/*
+ * Copyright 2013 Anton Karmanov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.antkar.syn;
+
+import java.util.NoSuchElementException;
+
+/**
+ * <p>Iterates over the elements of the top-level repetition of a start nonterminal, like
+ * <code>(Statement)*</code> in <code>@File : (Statement)* ;</code>. Returned by
+ * {@link SynParser#iterate(String, java.io.Reader, SourceDescriptor)}.</p>
+ *
+ * <p>The input is parsed on demand: each call reads only as much of the input as needed to complete the next
+ * element. An element is returned as soon as it is parsed unambiguously, after that the parser does not
+ * keep any references to it, so an input of any length can be processed in a constant memory.</p>
+ */
+public interface SynIterator {
+    /**
+     * Returns <code>true</code> if there are more elements.
+     *
+     * @return <code>true</code> if there are more elements.
+     * @throws SynException if parsing fails.
+     */
+    boolean hasNext() throws SynException;
+
+    /**
+     * Returns the next element.
+     *
+     * @return the next element.
+     * @throws NoSuchElementException if there are no more elements.
+     * @throws SynException if parsing fails.
+     */
+    SynNode next() throws SynException;
+
+    /**
+     * Returns the result of parsing. The root node of the result is an empty array, since the elements
+     * are returned by the iterator. Must be called after all elements have been returned.
+     *
+     * @return the result.
+     * @throws IllegalStateException if not all elements have been returned.
+     * @throws SynException if parsing fails.
+     */
+    SynResult getResult() throws SynException;
+}
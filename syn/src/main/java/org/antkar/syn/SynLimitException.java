@@ -0,0 +1,31 @@
+/*
+ * Copyright 2013 Anton Karmanov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.antkar.syn;
+
+/**
+ * Thrown by {@link SynParser} if the number of live parser stacks exceeds the limit, but only if the parser
+ * is configured to fail when the limit is exceeded.
+ *
+ * @see SynParser#setMaxStackCount(int)
+ * @see SynParser#setFailOnStackLimit(boolean)
+ */
+public final class SynLimitException extends SynTextException {
+    private static final long serialVersionUID = 3148271902558417093L;
+
+    public SynLimitException(TextPos textPos, String message) {
+        super(textPos, message);
+    }
+}
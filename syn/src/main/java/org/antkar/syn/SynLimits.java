@@ -0,0 +1,206 @@
+/*
+ * Copyright 2013 Anton Karmanov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.antkar.syn;
+
+/**
+ * <p>Resource limits of a single parsing operation. Protect the parser from inputs which would take too much
+ * memory. When a limit is exceeded, {@link SynLimitException} is thrown (or {@link SynLexicalException} for
+ * literal lengths).</p>
+ *
+ * <p>The class is immutable: the <code>with...()</code> methods return a modified copy, so limits are
+ * usually defined starting with {@link #DEFAULT}:</p>
+ *
+ * <pre>
+ * parser.setLimits(SynLimits.DEFAULT.withMaxTokenCount(1000000).withMaxTreeDepth(1000));
+ * </pre>
+ *
+ * <p>A value of <code>0</code> means that the corresponding resource is not limited.</p>
+ *
+ * @see SynParser#setLimits(SynLimits)
+ */
+public final class SynLimits {
+    /** The default limits: only the lengths of identifiers and string literals are limited. */
+    public static final SynLimits DEFAULT = new SynLimits(0, 0, 0, 0, 256, 1 << 16);
+
+    private final int maxInputLength;
+    private final int maxTokenCount;
+    private final int maxTreeDepth;
+    private final int maxNodeCount;
+    private final int maxIdLength;
+    private final int maxStringLength;
+
+    private SynLimits(
+            int maxInputLength,
+            int maxTokenCount,
+            int maxTreeDepth,
+            int maxNodeCount,
+            int maxIdLength,
+            int maxStringLength)
+    {
+        this.maxInputLength = maxInputLength;
+        this.maxTokenCount = maxTokenCount;
+        this.maxTreeDepth = maxTreeDepth;
+        this.maxNodeCount = maxNodeCount;
+        this.maxIdLength = maxIdLength;
+        this.maxStringLength = maxStringLength;
+    }
+
+    /**
+     * Returns the maximum length of the input in characters.
+     *
+     * @return the limit, or <code>0</code> if not limited.
+     */
+    public int getMaxInputLength() {
+        return maxInputLength;
+    }
+
+    /**
+     * Returns the maximum number of tokens in the input.
+     *
+     * @return the limit, or <code>0</code> if not limited.
+     */
+    public int getMaxTokenCount() {
+        return maxTokenCount;
+    }
+
+    /**
+     * Returns the maximum nesting depth of the syntax tree. Tokens, object nodes and array nodes count as
+     * one level each. The depth is estimated when a nonterminal is recognized, so an input may be rejected
+     * because of a token which does not become a part of the tree.
+     *
+     * @return the limit, or <code>0</code> if not limited.
+     */
+    public int getMaxTreeDepth() {
+        return maxTreeDepth;
+    }
+
+    /**
+     * Returns the maximum number of nodes in the syntax tree. Object nodes, array nodes and all tokens,
+     * including keywords and key-characters which do not become parts of the tree, count as one node each.
+     *
+     * @return the limit, or <code>0</code> if not limited.
+     */
+    public int getMaxNodeCount() {
+        return maxNodeCount;
+    }
+
+    /**
+     * Returns the maximum length of an identifier or a keyword.
+     *
+     * @return the limit, or <code>0</code> if not limited.
+     */
+    public int getMaxIdLength() {
+        return maxIdLength;
+    }
+
+    /**
+     * Returns the maximum length of the value of a string literal.
+     *
+     * @return the limit, or <code>0</code> if not limited.
+     */
+    public int getMaxStringLength() {
+        return maxStringLength;
+    }
+
+    /**
+     * Returns a copy of the limits with the specified maximum input length.
+     *
+     * @param value the maximum number of characters, or <code>0</code>.
+     * @return the new limits.
+     * @throws IllegalArgumentException if the value is negative.
+     */
+    public SynLimits withMaxInputLength(int value) {
+        return new SynLimits(check(value), maxTokenCount, maxTreeDepth, maxNodeCount, maxIdLength,
+                maxStringLength);
+    }
+
+    /**
+     * Returns a copy of the limits with the specified maximum token count.
+     *
+     * @param value the maximum number of tokens, or <code>0</code>.
+     * @return the new limits.
+     * @throws IllegalArgumentException if the value is negative.
+     */
+    public SynLimits withMaxTokenCount(int value) {
+        return new SynLimits(maxInputLength, check(value), maxTreeDepth, maxNodeCount, maxIdLength,
+                maxStringLength);
+    }
+
+    /**
+     * Returns a copy of the limits with the specified maximum tree depth.
+     *
+     * @param value the maximum depth, or <code>0</code>.
+     * @return the new limits.
+     * @throws IllegalArgumentException if the value is negative.
+     */
+    public SynLimits withMaxTreeDepth(int value) {
+        return new SynLimits(maxInputLength, maxTokenCount, check(value), maxNodeCount, maxIdLength,
+                maxStringLength);
+    }
+
+    /**
+     * Returns a copy of the limits with the specified maximum node count.
+     *
+     * @param value the maximum number of nodes, or <code>0</code>.
+     * @return the new limits.
+     * @throws IllegalArgumentException if the value is negative.
+     */
+    public SynLimits withMaxNodeCount(int value) {
+        return new SynLimits(maxInputLength, maxTokenCount, maxTreeDepth, check(value), maxIdLength,
+                maxStringLength);
+    }
+
+    /**
+     * Returns a copy of the limits with the specified maximum identifier length.
+     *
+     * @param value the maximum number of characters, or <code>0</code>.
+     * @return the new limits.
+     * @throws IllegalArgumentException if the value is negative.
+     */
+    public SynLimits withMaxIdLength(int value) {
+        return new SynLimits(maxInputLength, maxTokenCount, maxTreeDepth, maxNodeCount, check(value),
+                maxStringLength);
+    }
+
+    /**
+     * Returns a copy of the limits with the specified maximum string literal length.
+     *
+     * @param value the maximum number of characters, or <code>0</code>.
+     * @return the new limits.
+     * @throws IllegalArgumentException if the value is negative.
+     */
+    public SynLimits withMaxStringLength(int value) {
+        return new SynLimits(maxInputLength, maxTokenCount, maxTreeDepth, maxNodeCount, maxIdLength,
+                check(value));
+    }
+
+    private static int check(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative limit: " + value);
+        }
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return "maxInputLength=" + maxInputLength
+                + ", maxTokenCount=" + maxTokenCount
+                + ", maxTreeDepth=" + maxTreeDepth
+                + ", maxNodeCount=" + maxNodeCount
+                + ", maxIdLength=" + maxIdLength
+                + ", maxStringLength=" + maxStringLength;
+    }
+}
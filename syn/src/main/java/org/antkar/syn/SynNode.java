@@ -17,12 +17,15 @@ package org.antkar.syn;
 
 import java.io.PrintStream;
 
+import org.antkar.syn.internal.TextShift;
+
 /**
- * Abstract Syntax Tree (AST) node. Has three subtypes:
+ * Abstract Syntax Tree (AST) node. Has four subtypes:
  * <ul>
  * <li>{@link TerminalNode},</li>
  * <li>{@link ArrayNode},</li>
- * <li>{@link ObjectNode}.</li>
+ * <li>{@link ObjectNode},</li>
+ * <li>{@link PackedNode} - only if ambiguities are packed.</li>
  * </ul>
  */
 public abstract class SynNode {
@@ -48,4 +51,13 @@ public abstract class SynNode {
      * @param level the indentation level; must be equal or greater than 0.
      */
     abstract void print(PrintStream out, int level);
+
+    /**
+     * Returns a copy of the tree (considering this node the root) with the text positions shifted as
+     * specified. Nodes which do not have text positions are not copied.
+     *
+     * @param shift the shift.
+     * @return the shifted tree.
+     */
+    abstract SynNode shift(TextShift shift);
 }
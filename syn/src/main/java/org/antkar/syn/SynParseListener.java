@@ -0,0 +1,54 @@
+/*
+ * Copyright 2013 Anton Karmanov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.antkar.syn;
+
+import java.io.Reader;
+import java.util.List;
+
+/**
+ * <p>Receives parsing events from {@link SynParser#parse(String, Reader, SourceDescriptor, SynParseListener)}.
+ * The parser does not build a syntax tree in this mode, it only reports the tokens and the nonterminals it
+ * recognizes.</p>
+ *
+ * <p>An event is delivered as soon as the corresponding part of the input is parsed unambiguously, so
+ * events may lag behind the input while an ambiguity is being resolved. Since the parser works bottom-up,
+ * a nonterminal is reported after all its sub-elements, i. e. the events form the post-order traversal of
+ * the parse tree. A client can maintain a stack of values: push a value for each token and, for each
+ * nonterminal, pop the values of its elements and push the value of the nonterminal.</p>
+ *
+ * <p>Nested, optional and repetition elements of the grammar are represented by anonymous nonterminals,
+ * which are reported like regular ones. The names of anonymous nonterminals contain the "<code>@</code>"
+ * character.</p>
+ */
+public interface SynParseListener {
+    /**
+     * Called when a token is recognized. Tokens are reported in the order of the input.
+     *
+     * @param token the token.
+     */
+    void token(TerminalNode token);
+
+    /**
+     * Called when a nonterminal is recognized. The elements of the nonterminal's production are the
+     * last <code>keys.size()</code> items (tokens and nonterminals) reported before the nonterminal
+     * and not yet consumed by other nonterminals.
+     *
+     * @param name the name of the nonterminal.
+     * @param keys the attribute keys of the elements of the production, in the order of the elements.
+     * An entry is <code>null</code> if the corresponding element has no attribute.
+     */
+    void nonterminal(String name, List<String> keys);
+}
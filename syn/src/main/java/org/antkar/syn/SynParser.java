@@ -17,22 +17,42 @@ package org.antkar.syn;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.io.StringReader;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 
+import org.antkar.syn.internal.BatchParser;
 import org.antkar.syn.internal.CommonUtil;
-import org.antkar.syn.internal.bnf.BnfGrammar;
+import org.antkar.syn.internal.CompiledGrammar;
+import org.antkar.syn.internal.CompiledGrammarCache;
+import org.antkar.syn.internal.IFileParser;
+import org.antkar.syn.internal.ParserFactory;
+import org.antkar.syn.internal.TextShift;
 import org.antkar.syn.internal.ebnf.EbnfGrammar;
-import org.antkar.syn.internal.grammar.EbnfToBnfConverter;
 import org.antkar.syn.internal.grammar.SynGrammarParser;
 import org.antkar.syn.internal.lrtables.ParserConfiguration;
-import org.antkar.syn.internal.lrtables.ParserConfigurator;
+import org.antkar.syn.internal.lrtables.ParserNonterminal;
 import org.antkar.syn.internal.lrtables.ParserState;
+import org.antkar.syn.internal.parser.ParserCheckpoint;
 import org.antkar.syn.internal.parser.ParserEngine;
+import org.antkar.syn.internal.parser.ParserItemLayout;
+import org.antkar.syn.internal.parser.ParserIterator;
+import org.antkar.syn.internal.parser.ParserLayoutCommitHandler;
+import org.antkar.syn.internal.parser.ParserProfile;
 import org.antkar.syn.internal.scanner.DefaultTokenStream;
 import org.antkar.syn.internal.scanner.ScannerConfiguration;
-import org.antkar.syn.internal.scanner.ScannerConfigurator;
+import org.antkar.syn.internal.scanner.TextSegmenter;
 
 
 /**
@@ -225,12 +245,67 @@ import org.antkar.syn.internal.scanner.ScannerConfigurator;
  * <td>{@link ValueNode} of either the corresponding type or of the object type</td>
  * </tr>
  * </table>
+ *
+ * <h2>Directives</h2>
+ *
+ * <p>Besides nonterminal definitions, a grammar may contain directives, which begin with "<code>%</code>".
+ * The <code>%split</code> directive declares the literals at which the text can be split into segments to be
+ * parsed concurrently, see {@link #parseConcurrently(String, String, SourceDescriptor, Executor, int)}:</p>
+ * <pre>&#64;File : (Declaration)* ;
+ * %split File 'class' 'function' ;</pre>
+ *
+ * <p>The <code>%sync</code> directive declares the literals at which the parser resynchronizes after a syntax
+ * error when the error recovery is turned on, see {@link #setErrorRecovery(boolean)}:</p>
+ * <pre>%sync ';' '}' ;</pre>
+ *
+ * <h2>Precompiled Tables</h2>
+ *
+ * <p>Building the parser tables for a large grammar takes noticeable time. The tables can be built once,
+ * e. g. at build time, written by {@link #writeTables(OutputStream)}, and then loaded by
+ * {@link #loadTables(String, InputStream)}. The tables contain a checksum of the grammar text, so they can only
+ * be loaded for the same grammar. Parsers created in one process for the same grammar text can share the tables
+ * through the {@link SynGrammarCache}. The <code>main()</code> method of {@link SynTablesCompiler} writes
+ * the tables for a grammar file and can be run by a build tool.</p>
+ *
+ * <h2>Thread Safety</h2>
+ *
+ * <p>The parser tables are built once by the constructor and never modified afterwards, so a single parser
+ * instance can be shared by any number of threads, each parsing its own input. The options, such as
+ * {@link #setFailOnAmbiguity(boolean)}, may be changed at any time; operations started afterwards are
+ * guaranteed to see the new values, while operations already running may or may not see them. See
+ * {@link #parseAll(String, Collection, Executor)} for parsing a set of files concurrently.</p>
  */
 public final class SynParser {
+    /** The number of old elements following an edit which the parser tries to resynchronize with. */
+    private static final int MAX_RESYNC_ATTEMPTS = 4;
+
+    /** The minimum length of a segment of a text parsed concurrently with other segments. */
+    private static final int MIN_SEGMENT_LENGTH = 4096;
 
-    private ParserConfiguration parserConfig;
-    private ScannerConfiguration scannerConfig;
-    private boolean failOnAmbiguity = false;
+    static {
+        //Let the binder create parsers for compiled grammars.
+        ParserFactory.setInstance(new ParserFactory() {
+            @Override
+            public SynParser createParser(CompiledGrammar compiledGrammar) {
+                return new SynParser(compiledGrammar);
+            }
+        });
+    }
+
+    private final CompiledGrammar compiledGrammar;
+    private final ParserConfiguration parserConfig;
+    private final ScannerConfiguration scannerConfig;
+    private final Map<String, List<TokenDescriptor>> splitTokens;
+    private final Set<TokenDescriptor> syncTokens;
+    private final SynCancellationToken cancellationToken;
+    private volatile boolean failOnAmbiguity = false;
+    private volatile int maxStackCount = 0;
+    private volatile boolean failOnStackLimit = false;
+    private volatile SynLimits limits = SynLimits.DEFAULT;
+    private volatile boolean errorRecovery = false;
+    private volatile boolean packAmbiguities = false;
+    private volatile boolean checkpoints = false;
+    private volatile boolean incrementalReparsing = false;
 
     /**
      * Constructs a parser, reading the grammar from the specified {@link Reader}.
@@ -253,12 +328,8 @@ public final class SynParser {
      * @throws SynException if grammar processing fails.
      */
     public SynParser(Reader grammarReader, SourceDescriptor grammarDescriptor) throws SynException {
-        if (grammarReader == null) {
-            throw new NullPointerException("grammarReader");
-        }
-
-        grammarDescriptor = CommonUtil.getSourceDescriptor("<grammar>", grammarDescriptor);
-        init(grammarDescriptor, grammarReader);
+        this(compileGrammar(readGrammar(grammarReader),
+                CommonUtil.getSourceDescriptor("<grammar>", grammarDescriptor), false));
     }
 
     /**
@@ -283,18 +354,8 @@ public final class SynParser {
      */
     public SynParser(File grammarFile, SourceDescriptor grammarDescriptor) throws SynException
     {
-        if (grammarFile == null) {
-            throw new NullPointerException("grammarFile");
-        }
-
-        grammarDescriptor = CommonUtil.getSourceDescriptor(grammarFile, grammarDescriptor);
-        try {
-            try (Reader reader = CommonUtil.openFileReader(grammarFile)) {
-                init(grammarDescriptor, reader);
-            }
-        } catch (IOException e) {
-            throw new SynException(e);
-        }
+        this(compileGrammar(readGrammar(grammarFile),
+                CommonUtil.getSourceDescriptor(grammarFile, grammarDescriptor), false));
     }
 
     /**
@@ -324,21 +385,8 @@ public final class SynParser {
             String grammarResourcePath,
             SourceDescriptor grammarDescriptor) throws SynException
     {
-        if (resourceOrigin == null) {
-            throw new NullPointerException("resourceOrigin");
-        }
-        if (grammarResourcePath == null) {
-            throw new NullPointerException("grammarResourcePath");
-        }
-
-        grammarDescriptor = CommonUtil.getSourceDescriptor(grammarResourcePath, grammarDescriptor);
-        try {
-            try (Reader reader = CommonUtil.openResourceReader(resourceOrigin, grammarResourcePath)) {
-                init(grammarDescriptor, reader);
-            }
-        } catch (IOException e) {
-            throw new SynException(e);
-        }
+        this(compileGrammar(readGrammar(resourceOrigin, grammarResourcePath),
+                CommonUtil.getSourceDescriptor(grammarResourcePath, grammarDescriptor), false));
     }
 
     /**
@@ -362,43 +410,230 @@ public final class SynParser {
      * @see #SynParser(Reader, SourceDescriptor)
      */
     public SynParser(String grammar, SourceDescriptor grammarDescriptor) throws SynException {
-        if (grammar == null) {
-            throw new NullPointerException("grammar");
-        }
-
-        grammarDescriptor = CommonUtil.getSourceDescriptor("<grammar>", grammarDescriptor);
-
-        Reader reader = new StringReader(grammar);
-        init(grammarDescriptor, reader);
+        this(compileGrammar(checkGrammar(grammar),
+                CommonUtil.getSourceDescriptor("<grammar>", grammarDescriptor), false));
     }
 
     /**
-     * Constructs a parser for a grammar passed in form of {@link EbnfGrammar}.
+     * Constructs a parser for a grammar passed in form of {@link EbnfGrammar}. The tables of such a parser
+     * cannot be {@link #writeTables(OutputStream) written}, since the text of the grammar is not known.
      *
      * @param eGrammar the EBNF grammar.
      * @throws SynException if grammar processing fails.
      */
     public SynParser(EbnfGrammar eGrammar) throws SynException {
-        initEBNF(eGrammar);
+        this(CompiledGrammar.compile(eGrammar, null));
+    }
+
+    /**
+     * Constructs a parser for a compiled grammar.
+     */
+    private SynParser(CompiledGrammar compiledGrammar) {
+        this.compiledGrammar = compiledGrammar;
+        parserConfig = compiledGrammar.getParserConfig();
+        scannerConfig = compiledGrammar.getScannerConfig();
+        splitTokens = compiledGrammar.getSplitTokens();
+        syncTokens = compiledGrammar.getSyncTokens();
+        cancellationToken = null;
+    }
+
+    /**
+     * Constructs a parser sharing the tables and copying the options of another parser.
+     */
+    private SynParser(SynParser parser, SynCancellationToken cancellationToken) {
+        compiledGrammar = parser.compiledGrammar;
+        parserConfig = parser.parserConfig;
+        scannerConfig = parser.scannerConfig;
+        splitTokens = parser.splitTokens;
+        syncTokens = parser.syncTokens;
+        this.cancellationToken = cancellationToken;
+        failOnAmbiguity = parser.failOnAmbiguity;
+        maxStackCount = parser.maxStackCount;
+        failOnStackLimit = parser.failOnStackLimit;
+        limits = parser.limits;
+        errorRecovery = parser.errorRecovery;
+        packAmbiguities = parser.packAmbiguities;
+        checkpoints = parser.checkpoints;
+        incrementalReparsing = parser.incrementalReparsing;
+    }
+
+    /**
+     * <p>Creates a parser which builds the LR states of each start nonterminal when the nonterminal is parsed
+     * for the first time, rather than in advance. Such a parser is created quickly even for a large grammar,
+     * and uses memory only for the start nonterminals which are actually parsed.</p>
+     *
+     * <p>The parser behaves exactly like a parser constructed by {@link #SynParser(String)}. The states are
+     * built once per start nonterminal and are safely shared by all threads using the parser.</p>
+     *
+     * @param grammar the grammar.
+     * @return the parser.
+     * @throws SynException if grammar processing fails.
+     */
+    public static SynParser createLazy(String grammar) throws SynException {
+        return new SynParser(compileGrammar(checkGrammar(grammar),
+                CommonUtil.getSourceDescriptor("<grammar>", null), true));
+    }
+
+    /**
+     * Creates a parser which builds the LR states on demand, reading the grammar from a class loader resource.
+     *
+     * @param resourceOrigin the class which the specified resource path is relative to.
+     * @param grammarResourcePath the grammar resource path.
+     * @return the parser.
+     * @throws SynException if grammar processing fails.
+     *
+     * @see #createLazy(String)
+     */
+    public static SynParser createLazy(Class<?> resourceOrigin, String grammarResourcePath) throws SynException {
+        return new SynParser(compileGrammar(readGrammar(resourceOrigin, grammarResourcePath),
+                CommonUtil.getSourceDescriptor(grammarResourcePath, null), true));
+    }
+
+    /**
+     * <p>Creates a parser from the tables written by {@link #writeTables(OutputStream)}. The LR tables are not
+     * built, so this is much faster than constructing a parser from the grammar. The text of the grammar
+     * is still needed to verify that the tables have been built for it.</p>
+     *
+     * @param grammar the grammar.
+     * @param tablesStream the stream to read the tables from. The stream is not closed.
+     * @return the parser.
+     * @throws SynException if reading fails, or if the tables have been built for a different grammar or by
+     * an incompatible version of the library.
+     */
+    public static SynParser loadTables(String grammar, InputStream tablesStream) throws SynException {
+        checkGrammar(grammar);
+        if (tablesStream == null) {
+            throw new NullPointerException("tablesStream");
+        }
+
+        byte[] checksum = CompiledGrammar.checksum(grammar, null);
+        return new SynParser(CompiledGrammar.read(tablesStream, checksum));
+    }
+
+    /**
+     * Creates a parser from the tables written by {@link #writeTables(OutputStream)}, reading the grammar and
+     * the tables from class loader resources.
+     *
+     * @param resourceOrigin the class which the specified resource paths are relative to.
+     * @param grammarResourcePath the path to the grammar resource.
+     * @param tablesResourcePath the path to the tables resource.
+     * @return the parser.
+     * @throws SynException if reading fails, or if the tables have been built for a different grammar.
+     *
+     * @see #loadTables(String, InputStream)
+     */
+    public static SynParser loadTables(
+            Class<?> resourceOrigin,
+            String grammarResourcePath,
+            String tablesResourcePath) throws SynException
+    {
+        if (tablesResourcePath == null) {
+            throw new NullPointerException("tablesResourcePath");
+        }
+
+        String grammar = readGrammar(resourceOrigin, grammarResourcePath);
+        try {
+            try (InputStream in = CommonUtil.openResourceStream(resourceOrigin, tablesResourcePath)) {
+                return loadTables(grammar, in);
+            }
+        } catch (IOException e) {
+            throw new SynException(e);
+        }
+    }
+
+    /**
+     * Writes the tables of this parser to a stream, so that a parser for the same grammar can be created
+     * faster by {@link #loadTables(String, InputStream)}. The stream is not closed.
+     *
+     * @param out the stream.
+     * @throws IllegalStateException if the parser has been constructed for an {@link EbnfGrammar}.
+     * @throws SynException if writing fails, or if the grammar contains a constant which is a Java object.
+     */
+    public void writeTables(OutputStream out) throws SynException {
+        if (out == null) {
+            throw new NullPointerException("out");
+        }
+        compiledGrammar.write(out);
+    }
+
+    /**
+     * Parses and compiles the grammar text, or takes the compiled grammar from the {@link SynGrammarCache}.
+     */
+    private static CompiledGrammar compileGrammar(
+            final String grammar,
+            final SourceDescriptor grammarDescriptor,
+            final boolean lazy) throws SynException
+    {
+        final byte[] checksum = CompiledGrammar.checksum(grammar, null);
+        return CompiledGrammarCache.get(checksum, lazy, new Callable<CompiledGrammar>() {
+            @Override
+            public CompiledGrammar call() throws SynException {
+                EbnfGrammar eGrammar = SynGrammarParser.parseGrammar(new StringReader(grammar), grammarDescriptor);
+                return CompiledGrammar.compile(eGrammar, checksum, lazy);
+            }
+        });
+    }
+
+    /**
+     * Reads the grammar from the specified reader.
+     */
+    private static String readGrammar(Reader grammarReader) throws SynException {
+        if (grammarReader == null) {
+            throw new NullPointerException("grammarReader");
+        }
+
+        try {
+            return CommonUtil.readText(grammarReader);
+        } catch (IOException e) {
+            throw new SynException(e);
+        }
     }
 
     /**
-     * Initializes the parser, reading the grammar from the specified reader.
+     * Reads the grammar from the specified file.
      */
-    private void init(SourceDescriptor grammarDescriptor, Reader grammarReader) throws SynException {
-        EbnfGrammar eGrammar = SynGrammarParser.parseGrammar(grammarReader, grammarDescriptor);
-        initEBNF(eGrammar);
+    private static String readGrammar(File grammarFile) throws SynException {
+        if (grammarFile == null) {
+            throw new NullPointerException("grammarFile");
+        }
+
+        try {
+            try (Reader reader = CommonUtil.openFileReader(grammarFile)) {
+                return CommonUtil.readText(reader);
+            }
+        } catch (IOException e) {
+            throw new SynException(e);
+        }
     }
 
     /**
-     * Initializes the parser by the specified EBNF grammar.
+     * Reads the grammar from the specified class loader resource.
      */
-    private void initEBNF(EbnfGrammar eGrammar) throws SynException {
-        BnfGrammar bGrammar = EbnfToBnfConverter.convert(eGrammar);
+    private static String readGrammar(Class<?> resourceOrigin, String grammarResourcePath) throws SynException {
+        if (resourceOrigin == null) {
+            throw new NullPointerException("resourceOrigin");
+        }
+        if (grammarResourcePath == null) {
+            throw new NullPointerException("grammarResourcePath");
+        }
+
+        try {
+            try (Reader reader = CommonUtil.openResourceReader(resourceOrigin, grammarResourcePath)) {
+                return CommonUtil.readText(reader);
+            }
+        } catch (IOException e) {
+            throw new SynException(e);
+        }
+    }
 
-        parserConfig = ParserConfigurator.makeConfiguration(bGrammar);
-        List<TokenDescriptor> tokenDescriptors = parserConfig.getTokenDescriptors();
-        scannerConfig = ScannerConfigurator.makeConfiguration(tokenDescriptors);
+    /**
+     * Checks that the grammar string is not <code>null</code>.
+     */
+    private static String checkGrammar(String grammar) {
+        if (grammar == null) {
+            throw new NullPointerException("grammar");
+        }
+        return grammar;
     }
 
     /**
@@ -406,9 +641,8 @@ public final class SynParser {
      * the specified {@link Reader}.</p>
      *
      * <p>This method is thread-safe, meaning that different inputs can be safely parsed concurrently
-     * by the same parser instance. However, this method should not be called concurrently with
-     * {@link #setFailOnAmbiguity(boolean)}; in such case it is undefined whether the parser will take
-     * the option into account.</p>
+     * by the same parser instance. If {@link #setFailOnAmbiguity(boolean)} is called concurrently with
+     * this method, it is undefined whether the parser will take the new value of the option into account.</p>
      *
      * <p>If an ambiguity is detected and the fail-on-ambiguity option is turned on,
      * {@link SynAmbiguityException} is thrown. Otherwise, the parser chooses one of conflicting syntax trees
@@ -446,22 +680,739 @@ public final class SynParser {
         if (textReader == null) {
             throw new NullPointerException("textReader");
         }
-        if (startNonterminal == null) {
-            throw new NullPointerException("startNonterminal");
+        return parse(startNonterminal, textReader, textDescriptor, incrementalReparsing);
+    }
+
+    /**
+     * Parses a text, remembering the layout of the top-level repetition if it is requested.
+     */
+    private SynResult parse(
+            String startNonterminal,
+            Reader textReader,
+            SourceDescriptor textDescriptor,
+            boolean layout) throws SynException
+    {
+        ParserState startState = getStartState(startNonterminal);
+        DefaultTokenStream tokenStream = createTokenStream(textReader, textDescriptor);
+        tokenStream.setCancellationToken(cancellationToken);
+
+        ParserNonterminal repetition = parserConfig.getTopLevelRepetition(startNonterminal);
+        if (repetition == null || !layout) {
+            ParserEngine parserEngine = new ParserEngine(tokenStream, startState, failOnAmbiguity);
+            configureEngine(parserEngine);
+            configureTreeOptions(parserEngine);
+            SynResult result = parserEngine.parse();
+            return createResult(startNonterminal, result, new ParserItemLayout(startNonterminal), parserEngine);
         }
 
-        ParserState startState = parserConfig.getStartState(startNonterminal);
-        if (startState == null) {
+        //Remember the layout of the top-level repetition, so the result can be reparsed incrementally.
+        ParserLayoutCommitHandler layoutHandler = new ParserLayoutCommitHandler(repetition);
+        ParserEngine parserEngine = new ParserEngine(tokenStream, startState, failOnAmbiguity, layoutHandler);
+        configureEngine(parserEngine);
+        configureTreeOptions(parserEngine);
+        SynResult result = parserEngine.parse();
+        return createResult(startNonterminal, result, layoutHandler.createLayout(startNonterminal), parserEngine);
+    }
+
+    /**
+     * <p>Parses an extended version of a text, resuming from a checkpoint obtained by parsing the original text.
+     * The text before the checkpoint's offset is not parsed again, so the time taken by this method depends on
+     * the length of the appended text, not on the length of the whole text.</p>
+     *
+     * <p>The new text must begin with the original text, i. e. characters may only be appended. The start
+     * nonterminal and the source descriptor are taken from the checkpoint. If the checkpoints option is on,
+     * the returned result has its own checkpoint, so the text can be extended again. The result is not reparsed
+     * incrementally by {@link #reparse(SynResult, String, TextEdit)}: the whole text is parsed instead.</p>
+     *
+     * @param checkpoint the checkpoint.
+     * @param text the whole new text.
+     * @return the Abstract Syntax Tree of the whole new text.
+     * @throws SynException if parsing fails.
+     *
+     * @see SynResult#getCheckpoint()
+     * @see #parse(String, Reader)
+     */
+    public SynResult resume(SynCheckpoint checkpoint, String text) throws SynException {
+        if (checkpoint == null) {
+            throw new NullPointerException("checkpoint");
+        }
+        if (text == null) {
+            throw new NullPointerException("text");
+        }
+
+        int offset = checkpoint.getOffset();
+        if (text.length() < offset) {
+            throw new IllegalArgumentException("The text is shorter than the checkpoint's offset");
+        }
+
+        Reader reader = new StringReader(text);
+        try {
+            reader.skip(offset);
+        } catch (IOException e) {
+            throw new SynException(e);
+        }
+
+        return resume(checkpoint, reader);
+    }
+
+    /**
+     * Parses an extended version of a text, resuming from a checkpoint obtained by parsing the original text.
+     * The text is read from the specified {@link Reader}, which must return the characters of the new text
+     * starting with the {@link SynCheckpoint#getOffset() checkpoint's offset}.
+     *
+     * @param checkpoint the checkpoint.
+     * @param textReader the reader returning the text after the checkpoint's offset.
+     * @return the Abstract Syntax Tree of the whole new text.
+     * @throws SynException if parsing fails.
+     *
+     * @see #resume(SynCheckpoint, String)
+     */
+    public SynResult resume(SynCheckpoint checkpoint, Reader textReader) throws SynException {
+        if (checkpoint == null) {
+            throw new NullPointerException("checkpoint");
+        }
+        if (textReader == null) {
+            throw new NullPointerException("textReader");
+        }
+
+        String startNonterminal = checkpoint.getStartNonterminal();
+        if (parserConfig.getStartState(startNonterminal) == null) {
             throw new SynException("Unknown start nonterminal: " + startNonterminal);
         }
 
+        ParserCheckpoint parserCheckpoint = checkpoint.getParserCheckpoint();
+        DefaultTokenStream tokenStream = new DefaultTokenStream(checkpoint.getSourceDescriptor(), scannerConfig,
+                textReader, parserCheckpoint.getOffset(), parserCheckpoint.getLine(), parserCheckpoint.getColumn(), -1);
+        tokenStream.setCancellationToken(cancellationToken);
+
+        ParserEngine parserEngine = new ParserEngine(tokenStream, parserCheckpoint, failOnAmbiguity);
+        configureEngine(parserEngine);
+        configureTreeOptions(parserEngine);
+        SynResult result = parserEngine.parse();
+        return createResult(startNonterminal, result, new ParserItemLayout(startNonterminal), parserEngine);
+    }
+
+    /**
+     * Creates a result which can be reparsed or resumed. A result with syntax errors cannot be reused, since
+     * it has been built for a repaired input. A result with packed ambiguities can be resumed, but not reparsed.
+     */
+    private static SynResult createResult(
+            String startNonterminal,
+            SynResult result,
+            ParserItemLayout itemLayout,
+            ParserEngine parserEngine)
+    {
+        List<SynSyntaxException> syntaxErrors = parserEngine.getSyntaxErrors();
+        if (!syntaxErrors.isEmpty()) {
+            return new SynResult(result, new ParserItemLayout(startNonterminal), null, syntaxErrors);
+        }
+
+        if (parserEngine.getPackedAlternativeCount() > 0) {
+            //Packed elements are committed in a different order than the input, so the layout is not known.
+            itemLayout = new ParserItemLayout(startNonterminal);
+        }
+
+        SynCheckpoint checkpoint = null;
+        ParserCheckpoint parserCheckpoint = parserEngine.getCheckpoint();
+        if (parserCheckpoint != null) {
+            SourceDescriptor sourceDescriptor = result.getSourceDescriptor();
+            checkpoint = new SynCheckpoint(startNonterminal, sourceDescriptor, parserCheckpoint);
+        }
+        return new SynResult(result, itemLayout, checkpoint);
+    }
+
+    /**
+     * <p>Parses a new version of a text which has already been parsed, reusing the unchanged parts of
+     * the previous result. The previous result must have been returned by this parser; the start nonterminal
+     * and the source descriptor are taken from it.</p>
+     *
+     * <p>Reuse is done at the level of the elements of the start nonterminal's top-level repetition,
+     * e. g. <code>@File : (Statement)* ;</code>. The elements located entirely before the edit are reused
+     * as they are. The text from the end of the last reused element is parsed again until the parser
+     * reaches the beginning of one of the old elements following the edit; that element and the elements
+     * after it are reused with their text positions shifted. Thus only the edited elements are parsed
+     * again; reused elements which follow the edit are copied in order to update their positions.</p>
+     *
+     * <p>The elements are assumed to be delimited independently of the text around them, which is the case
+     * when each element ends with a terminator or a closing bracket. If the elements cannot be reused
+     * (the previous result was obtained with the {@link #setIncrementalReparsing(boolean) incremental reparsing}
+     * option off, the start nonterminal has no top-level repetition, the repetition has a separator, or
+     * the parser fails to resynchronize with the old elements), the whole text is parsed.</p>
+     *
+     * @param previous the result of parsing the old version of the text.
+     * @param text the new version of the text.
+     * @param edit the edit which turns the old version of the text into the new one.
+     * @return the Abstract Syntax Tree of the new text, which can be reparsed in turn.
+     * @throws IllegalArgumentException if the previous result was not returned by a parser, or if the edit
+     * does not match the lengths of the texts.
+     * @throws SynException if parsing fails.
+     *
+     * @see #parse(String, Reader)
+     */
+    public SynResult reparse(SynResult previous, String text, TextEdit edit) throws SynException {
+        if (previous == null) {
+            throw new NullPointerException("previous");
+        }
+        if (text == null) {
+            throw new NullPointerException("text");
+        }
+        if (edit == null) {
+            throw new NullPointerException("edit");
+        }
+
+        ParserItemLayout layout = previous.getItemLayout();
+        if (layout == null) {
+            throw new IllegalArgumentException("The previous result was not returned by a parser");
+        }
+
+        int oldLength = previous.getCharCount();
+        int newLength = oldLength - edit.getRemovedLength() + edit.getInsertedLength();
+        if (edit.getOffset() + edit.getRemovedLength() > oldLength || newLength != text.length()) {
+            throw new IllegalArgumentException("The edit does not match the text: " + edit);
+        }
+
+        String startNonterminal = layout.getStartNonterminal();
+        SourceDescriptor textDescriptor = previous.getSourceDescriptor();
+        if (layout.isReusable()) {
+            SynResult result = reparseElements(previous, layout, text, edit);
+            if (result != null) {
+                return result;
+            }
+        }
+
+        //The result of a reparsing is reparsed incrementally in turn, regardless of the option.
+        return parse(startNonterminal, new StringReader(text), textDescriptor, true);
+    }
+
+    /**
+     * Reparses the elements of the top-level repetition affected by an edit. Returns <code>null</code> if
+     * the parser fails to resynchronize with the old elements.
+     */
+    private SynResult reparseElements(SynResult previous, ParserItemLayout layout, String text, TextEdit edit)
+            throws SynException
+    {
+        String startNonterminal = layout.getStartNonterminal();
+        ParserState startState = getStartState(startNonterminal);
+        ParserNonterminal repetition = parserConfig.getTopLevelRepetition(startNonterminal);
+        SourceDescriptor textDescriptor = previous.getSourceDescriptor();
+
+        int editOffset = edit.getOffset();
+        int oldEditEnd = editOffset + edit.getRemovedLength();
+        int delta = edit.getInsertedLength() - edit.getRemovedLength();
+        int size = layout.size();
+
+        //The elements before the edit are reused, unless the scanner might have looked at the edited characters
+        //when scanning their last tokens.
+        int prefixSize = countElementsEndingBefore(layout, editOffset - DefaultTokenStream.MAX_LOOKAHEAD);
+        int startOffset = 0;
+        int startLine = 1;
+        int startColumn = 1;
+        if (prefixSize > 0) {
+            TextPos lastPos = layout.getEndPos(prefixSize - 1);
+            startOffset = lastPos.getOffset() + lastPos.getLength();
+            startLine = lastPos.getLine();
+            startColumn = lastPos.getColumn();
+
+            //The last token may span several lines.
+            for (int i = lastPos.getOffset(); i < startOffset; ++i) {
+                if (text.charAt(i) == '\n') {
+                    ++startLine;
+                    startColumn = 1;
+                } else {
+                    ++startColumn;
+                }
+            }
+        }
+
+        //Try to resynchronize with one of the first few elements following the edit.
+        int suffixStart = findFirstElementStartingAt(layout, oldEditEnd);
+        int suffixEnd = Math.min(size, suffixStart + MAX_RESYNC_ATTEMPTS - 1);
+        for (int suffixPos = suffixStart; suffixPos <= suffixEnd; ++suffixPos) {
+            int endOffset = suffixPos < size ? layout.getStartOffset(suffixPos) + delta : -1;
+
+            Reader reader = new StringReader(text);
+            try {
+                reader.skip(startOffset);
+            } catch (IOException e) {
+                throw new SynException(e);
+            }
+
+            DefaultTokenStream tokenStream = new DefaultTokenStream(textDescriptor, scannerConfig, reader,
+                    startOffset, startLine, startColumn, endOffset);
+            tokenStream.setCancellationToken(cancellationToken);
+            ParserLayoutCommitHandler layoutHandler = new ParserLayoutCommitHandler(repetition);
+            ParserEngine parserEngine = new ParserEngine(tokenStream, startState, failOnAmbiguity, layoutHandler);
+            configureEngine(parserEngine);
+
+            SynResult regionResult;
+            try {
+                regionResult = parserEngine.parse();
+            } catch (SynCancelledException e) {
+                throw e;
+            } catch (SynException e) {
+                //The region cannot be parsed separately, try a larger one.
+                continue;
+            }
+
+            TextPos endPos = tokenStream.getTokenPos();
+            if (suffixPos < size && endPos.getOffset() != endOffset) {
+                //The last token of the region overlaps the old element.
+                continue;
+            }
+
+            ParserItemLayout regionLayout = layoutHandler.createLayout(startNonterminal);
+            if (!regionLayout.isReusable()) {
+                return null;
+            }
+
+            TextShift shift = suffixPos < size ? new TextShift(layout.getStartPos(suffixPos), endPos) : null;
+            int lineCount = shift != null
+                    ? previous.getLineCount() + shift.getLineDelta()
+                    : regionResult.getLineCount();
+            return joinElements(layout, prefixSize, regionLayout, suffixPos, shift, textDescriptor, lineCount,
+                    text.length(), regionResult.getPrunedStackCount());
+        }
+
+        return null;
+    }
+
+    /**
+     * Creates a result containing the first elements of the old layout, the elements of the reparsed region,
+     * and the last elements of the old layout with the specified shift applied.
+     */
+    private static SynResult joinElements(
+            ParserItemLayout layout,
+            int prefixSize,
+            ParserItemLayout regionLayout,
+            int suffixStart,
+            TextShift shift,
+            SourceDescriptor textDescriptor,
+            int lineCount,
+            int charCount,
+            int prunedStackCount)
+    {
+        int size = prefixSize + regionLayout.size() + layout.size() - suffixStart;
+        List<SynNode> nodes = new ArrayList<>(size);
+        List<TextPos> startPositions = new ArrayList<>(size);
+        List<TextPos> endPositions = new ArrayList<>(size);
+
+        for (int i = 0; i < prefixSize; ++i) {
+            nodes.add(layout.getNode(i));
+            startPositions.add(layout.getStartPos(i));
+            endPositions.add(layout.getEndPos(i));
+        }
+
+        for (int i = 0, n = regionLayout.size(); i < n; ++i) {
+            nodes.add(regionLayout.getNode(i));
+            startPositions.add(regionLayout.getStartPos(i));
+            endPositions.add(regionLayout.getEndPos(i));
+        }
+
+        for (int i = suffixStart, n = layout.size(); i < n; ++i) {
+            SynNode node = layout.getNode(i);
+            nodes.add(node == null ? null : node.shift(shift));
+            startPositions.add(shift.shift(layout.getStartPos(i)));
+            endPositions.add(shift.shift(layout.getEndPos(i)));
+        }
+
+        //Null elements are not added to arrays.
+        List<SynNode> subNodes = new ArrayList<>(size);
+        for (SynNode node : nodes) {
+            if (node != null) {
+                subNodes.add(node);
+            }
+        }
+
+        String startNonterminal = layout.getStartNonterminal();
+        ParserItemLayout itemLayout = new ParserItemLayout(startNonterminal, nodes, startPositions, endPositions);
+        SynResult result = new SynResult(textDescriptor, new ArrayNode(subNodes), lineCount, charCount,
+                prunedStackCount);
+        return new SynResult(result, itemLayout, null);
+    }
+
+    /**
+     * Returns the number of leading elements which end at or before the specified offset.
+     */
+    private static int countElementsEndingBefore(ParserItemLayout layout, int offset) {
+        int low = 0;
+        int high = layout.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (layout.getEndOffset(mid) <= offset) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the index of the first element which starts at or after the specified offset, or the number
+     * of elements if there is no such element.
+     */
+    private static int findFirstElementStartingAt(ParserItemLayout layout, int offset) {
+        int low = 0;
+        int high = layout.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (layout.getStartOffset(mid) < offset) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Parses the text passed as a {@link String}, splitting it into segments which are parsed concurrently.
+     * The number of segments is at most the number of available processors.
+     *
+     * @param startNonterminal the start nonterminal name.
+     * @param text the text.
+     * @param executor the executor to run the parsing tasks.
+     * @return the Abstract Syntax Tree.
+     * @throws SynException if parsing fails.
+     *
+     * @see #parseConcurrently(String, String, SourceDescriptor, Executor, int)
+     */
+    public SynResult parseConcurrently(String startNonterminal, String text, Executor executor)
+            throws SynException
+    {
+        int maxSegments = Runtime.getRuntime().availableProcessors();
+        return parseConcurrently(startNonterminal, text, null, executor, maxSegments);
+    }
+
+    /**
+     * <p>Parses the text passed as a {@link String}, splitting it into segments which are parsed concurrently.
+     * The text is split only at the literals declared for the start nonterminal by a <code>%split</code>
+     * directive in the grammar:</p>
+     * <pre>
+     * &#64;File : (Declaration)* ;
+     * %split File 'class' 'function' ;</pre>
+     *
+     * <p>Each segment begins with one of the literals and is parsed as a sequence of elements of the top-level
+     * repetition; the elements of all segments are then concatenated. The literals must therefore be such
+     * that an element of the repetition can begin with them, and that they cannot occur in the middle of
+     * an element. If a segment cannot be parsed separately, e. g. because a literal occurs in a comment or
+     * in the middle of an element, the whole text is parsed sequentially.</p>
+     *
+     * <p>If the grammar does not declare split literals for the start nonterminal, or if the text is too short
+     * to be split, the text is parsed sequentially in the calling thread. The returned result can be reparsed
+     * by {@link #reparse(SynResult, String, TextEdit)}, but it has no {@link SynResult#getCheckpoint()
+     * checkpoint}.</p>
+     *
+     * @param startNonterminal the start nonterminal name.
+     * @param text the text.
+     * @param textDescriptor the text source descriptor. Can be <code>null</code>.
+     * @param executor the executor to run the parsing tasks.
+     * @param maxSegments the maximum number of segments.
+     * @return the Abstract Syntax Tree.
+     * @throws SynException if parsing fails.
+     *
+     * @see #parse(String, Reader)
+     */
+    public SynResult parseConcurrently(
+            String startNonterminal,
+            String text,
+            SourceDescriptor textDescriptor,
+            Executor executor,
+            int maxSegments) throws SynException
+    {
+        if (text == null) {
+            throw new NullPointerException("text");
+        }
+        if (executor == null) {
+            throw new NullPointerException("executor");
+        }
+        if (maxSegments < 1) {
+            throw new IllegalArgumentException("maxSegments: " + maxSegments);
+        }
+
+        ParserState startState = getStartState(startNonterminal);
+        textDescriptor = CommonUtil.getSourceDescriptor("<text>", textDescriptor);
+
+        List<TokenDescriptor> tokens = splitTokens.get(startNonterminal);
+        int segmentCount = Math.min(maxSegments, text.length() / MIN_SEGMENT_LENGTH);
+        List<TextPos> splitPoints = Collections.emptyList();
+        if (tokens != null && segmentCount > 1) {
+            splitPoints = TextSegmenter.findSplitPoints(textDescriptor, text, tokens, segmentCount);
+        }
+        if (splitPoints.isEmpty()) {
+            return parse(startNonterminal, new StringReader(text), textDescriptor);
+        }
+
+        List<FutureTask<SynResult>> tasks = new ArrayList<>();
+        TextPos startPos = null;
+        for (TextPos endPos : splitPoints) {
+            tasks.add(createSegmentTask(startState, startNonterminal, text, textDescriptor, startPos, endPos));
+            startPos = endPos;
+        }
+        tasks.add(createSegmentTask(startState, startNonterminal, text, textDescriptor, startPos, null));
+
+        for (FutureTask<SynResult> task : tasks) {
+            executor.execute(task);
+        }
+
+        List<SynResult> segmentResults = new ArrayList<>(tasks.size());
+        try {
+            for (FutureTask<SynResult> task : tasks) {
+                SynResult segmentResult = BatchParser.getTaskResult(task);
+                if (segmentResult == null) {
+                    break;
+                }
+                segmentResults.add(segmentResult);
+            }
+        } finally {
+            if (segmentResults.size() < tasks.size()) {
+                for (FutureTask<SynResult> task : tasks) {
+                    task.cancel(false);
+                }
+            }
+        }
+
+        if (segmentResults.size() < tasks.size()) {
+            //A split point is wrong. The sequential parser will also report a syntax error properly, if any.
+            return parse(startNonterminal, new StringReader(text), textDescriptor);
+        }
+
+        return joinSegments(startNonterminal, segmentResults, textDescriptor, text.length());
+    }
+
+    /**
+     * Creates a task which parses a segment of a text. The task returns <code>null</code> if the segment
+     * cannot be parsed separately.
+     */
+    private FutureTask<SynResult> createSegmentTask(
+            final ParserState startState,
+            final String startNonterminal,
+            final String text,
+            final SourceDescriptor textDescriptor,
+            final TextPos startPos,
+            final TextPos endPos)
+    {
+        final boolean segmentFailOnAmbiguity = failOnAmbiguity;
+        final boolean segmentLayout = incrementalReparsing;
+        return new FutureTask<>(new Callable<SynResult>() {
+            @Override
+            public SynResult call() throws SynException {
+                return parseSegment(startState, startNonterminal, text, textDescriptor, startPos, endPos,
+                        segmentFailOnAmbiguity, segmentLayout);
+            }
+        });
+    }
+
+    /**
+     * Parses a segment of a text beginning at the start position and ending before the end position.
+     * Returns <code>null</code> if the segment cannot be parsed separately. The cancellation of the parsing
+     * is not a failure of the segment, so it is propagated.
+     */
+    private SynResult parseSegment(
+            ParserState startState,
+            String startNonterminal,
+            String text,
+            SourceDescriptor textDescriptor,
+            TextPos startPos,
+            TextPos endPos,
+            boolean segmentFailOnAmbiguity,
+            boolean segmentLayout) throws SynException
+    {
+        int startOffset = startPos == null ? 0 : startPos.getOffset();
+        int startLine = startPos == null ? 1 : startPos.getLine();
+        int startColumn = startPos == null ? 1 : startPos.getColumn();
+        int endOffset = endPos == null ? -1 : endPos.getOffset();
+
+        Reader reader = new StringReader(text);
+        try {
+            reader.skip(startOffset);
+        } catch (IOException e) {
+            throw new SynException(e);
+        }
+
+        DefaultTokenStream tokenStream = new DefaultTokenStream(textDescriptor, scannerConfig, reader,
+                startOffset, startLine, startColumn, endOffset);
+        tokenStream.setCancellationToken(cancellationToken);
+        ParserLayoutCommitHandler layoutHandler = null;
+        ParserEngine parserEngine;
+        if (segmentLayout) {
+            ParserNonterminal repetition = parserConfig.getTopLevelRepetition(startNonterminal);
+            layoutHandler = new ParserLayoutCommitHandler(repetition);
+            parserEngine = new ParserEngine(tokenStream, startState, segmentFailOnAmbiguity, layoutHandler);
+        } else {
+            parserEngine = new ParserEngine(tokenStream, startState, segmentFailOnAmbiguity);
+        }
+        configureEngine(parserEngine);
+
+        SynResult result;
+        try {
+            result = parserEngine.parse();
+        } catch (SynCancelledException e) {
+            throw e;
+        } catch (SynException e) {
+            return null;
+        }
+
+        if (endPos != null && tokenStream.getTokenPos().getOffset() != endOffset) {
+            //The last token of the segment spans the split point.
+            return null;
+        }
+
+        ParserItemLayout itemLayout = layoutHandler != null
+                ? layoutHandler.createLayout(startNonterminal)
+                : new ParserItemLayout(startNonterminal);
+        return new SynResult(result, itemLayout, null);
+    }
+
+    /**
+     * Concatenates the elements of the top-level repetition of parsed segments.
+     */
+    private static SynResult joinSegments(
+            String startNonterminal,
+            List<SynResult> segmentResults,
+            SourceDescriptor textDescriptor,
+            int charCount)
+    {
+        List<SynNode> subNodes = new ArrayList<>();
+        List<SynNode> nodes = new ArrayList<>();
+        List<TextPos> startPositions = new ArrayList<>();
+        List<TextPos> endPositions = new ArrayList<>();
+        boolean reusable = true;
+        int prunedStackCount = 0;
+
+        for (SynResult segmentResult : segmentResults) {
+            prunedStackCount += segmentResult.getPrunedStackCount();
+            ArrayNode rootNode = (ArrayNode) segmentResult.getRootNode();
+            for (SynNode node : rootNode) {
+                subNodes.add(node);
+            }
+
+            ParserItemLayout layout = segmentResult.getItemLayout();
+            reusable &= layout.isReusable();
+            for (int i = 0, n = reusable ? layout.size() : 0; i < n; ++i) {
+                nodes.add(layout.getNode(i));
+                startPositions.add(layout.getStartPos(i));
+                endPositions.add(layout.getEndPos(i));
+            }
+        }
+
+        ParserItemLayout itemLayout = reusable
+                ? new ParserItemLayout(startNonterminal, nodes, startPositions, endPositions)
+                : new ParserItemLayout(startNonterminal);
+
+        int lineCount = segmentResults.get(segmentResults.size() - 1).getLineCount();
+        SynResult result = new SynResult(textDescriptor, new ArrayNode(subNodes), lineCount, charCount,
+                prunedStackCount);
+        return new SynResult(result, itemLayout, null);
+    }
+
+    /**
+     * Parses the specified text starting with the specified nonterminal, reporting recognized tokens and
+     * nonterminals to the specified listener instead of building a syntax tree. The text is read from
+     * the specified {@link Reader}.
+     *
+     * @param startNonterminal the name of the start nonterminal.
+     * @param textReader the text reader.
+     * @param textDescriptor the text descriptor. Can be <code>null</code>.
+     * @param listener the listener.
+     * @return the result of parsing. The result has no root node.
+     * @throws SynException if parsing fails.
+     *
+     * @see SynParseListener
+     * @see #parse(String, Reader)
+     */
+    public SynResult parse(
+            String startNonterminal,
+            Reader textReader,
+            SourceDescriptor textDescriptor,
+            SynParseListener listener) throws SynException
+    {
+        if (textReader == null) {
+            throw new NullPointerException("textReader");
+        }
+        if (listener == null) {
+            throw new NullPointerException("listener");
+        }
+
+        ParserState startState = getStartState(startNonterminal);
         DefaultTokenStream tokenStream = createTokenStream(textReader, textDescriptor);
+        tokenStream.setCancellationToken(cancellationToken);
 
-        ParserEngine parserEngine = new ParserEngine(tokenStream, startState, failOnAmbiguity);
+        ParserEngine parserEngine = new ParserEngine(tokenStream, startState, failOnAmbiguity, listener);
+        configureEngine(parserEngine);
         SynResult result = parserEngine.parse();
         return result;
     }
 
+    /**
+     * Parses a text collecting the runtime statistics of the LR states into a profile. Used by
+     * {@link SynGrammarAnalyzer}.
+     */
+    SynResult profile(String startNonterminal, String text, ParserProfile profile) throws SynException {
+        ParserState startState = getStartState(startNonterminal);
+        DefaultTokenStream tokenStream = createTokenStream(new StringReader(text), null);
+
+        ParserEngine parserEngine = new ParserEngine(tokenStream, startState, failOnAmbiguity);
+        configureEngine(parserEngine);
+        configureTreeOptions(parserEngine);
+        parserEngine.setProfile(profile);
+        return parserEngine.parse();
+    }
+
+    /**
+     * <p>Parses the specified text starting with the specified nonterminal, returning the elements of
+     * the nonterminal's top-level repetition one by one. The value of the start nonterminal must be produced
+     * by a repetition element, e. g. <code>@File : (Statement)* ;</code>. The text is read from the specified
+     * {@link Reader} on demand, as the elements are requested.</p>
+     *
+     * @param startNonterminal the name of the start nonterminal.
+     * @param textReader the text reader.
+     * @param textDescriptor the text descriptor. Can be <code>null</code>.
+     * @return the iterator over the elements of the repetition.
+     * @throws SynException if the value of the start nonterminal is not produced by a repetition element,
+     * or if reading the text fails.
+     *
+     * @see SynIterator
+     * @see #parse(String, Reader)
+     */
+    public SynIterator iterate(
+            String startNonterminal,
+            Reader textReader,
+            SourceDescriptor textDescriptor) throws SynException
+    {
+        if (textReader == null) {
+            throw new NullPointerException("textReader");
+        }
+
+        ParserState startState = getStartState(startNonterminal);
+        ParserNonterminal repetition = parserConfig.getTopLevelRepetition(startNonterminal);
+        if (repetition == null) {
+            throw new SynException("The value of the start nonterminal is not a repetition: " + startNonterminal);
+        }
+
+        DefaultTokenStream tokenStream = createTokenStream(textReader, textDescriptor);
+        tokenStream.setCancellationToken(cancellationToken);
+        ParserIterator iterator = new ParserIterator(tokenStream, startState, repetition, failOnAmbiguity);
+        iterator.setStackLimit(maxStackCount, failOnStackLimit);
+        iterator.setLimits(limits);
+        return iterator;
+    }
+
+    /**
+     * Returns the start state for the specified start nonterminal.
+     */
+    private ParserState getStartState(String startNonterminal) throws SynException {
+        if (startNonterminal == null) {
+            throw new NullPointerException("startNonterminal");
+        }
+
+        ParserState startState = parserConfig.getStartState(startNonterminal);
+        if (startState == null) {
+            throw new SynException("Unknown start nonterminal: " + startNonterminal);
+        }
+        return startState;
+    }
+
     /**
      * Parses the text read from the specified class loader resource.
      *
@@ -558,6 +1509,38 @@ public final class SynParser {
         }
     }
 
+    /**
+     * <p>Parses the specified files concurrently. One task per file is submitted to the specified executor,
+     * and the method waits until all files are parsed. All tasks share the configuration of this parser.</p>
+     *
+     * <p>The returned list contains one {@link SynFileResult} per file, in the order of the collection.
+     * If parsing of a file fails, the corresponding result contains the exception, while other files are
+     * parsed as usual.</p>
+     *
+     * @param startNonterminal the start nonterminal name.
+     * @param files the files to parse.
+     * @param executor the executor to run the parsing tasks, for example a
+     * {@link java.util.concurrent.ForkJoinPool}.
+     * @return the list of results.
+     * @throws SynException if the start nonterminal is not valid, or if the calling thread is interrupted.
+     *
+     * @see #parse(String, Reader)
+     */
+    public List<SynFileResult<SynResult>> parseAll(
+            final String startNonterminal,
+            Collection<Path> files,
+            Executor executor) throws SynException
+    {
+        getStartState(startNonterminal);
+
+        return BatchParser.parseAll(files, executor, new IFileParser<SynResult>() {
+            @Override
+            public SynResult parseFile(Path file) throws SynException {
+                return parse(startNonterminal, file.toFile());
+            }
+        });
+    }
+
     /**
      * Parses the text passed as a {@link String}.
      *
@@ -607,6 +1590,187 @@ public final class SynParser {
         this.failOnAmbiguity = failOnAmbiguity;
     }
 
+    /**
+     * <p>Sets the maximum number of live parser stacks. Each stack represents one of the interpretations of
+     * the input considered by the parser at the same time. On highly ambiguous grammars the number of stacks,
+     * and so the memory used by the parser, may grow very fast. When the limit is set, the parser keeps only
+     * the best stacks according to the rules of automatic ambiguity resolution and drops the others. The number
+     * of dropped stacks is reported by {@link SynResult#getPrunedStackCount()}. Dropping stacks may cause
+     * a syntax error or a different syntax tree for an input which is parsed successfully without the limit.
+     * </p>
+     *
+     * <p>The option is <code>0</code> by default, meaning that the number of stacks is not limited.</p>
+     *
+     * @param maxStackCount the maximum number of stacks, or <code>0</code> to remove the limit.
+     * @throws IllegalArgumentException if the value is negative.
+     *
+     * @see #setFailOnStackLimit(boolean)
+     */
+    public void setMaxStackCount(int maxStackCount) {
+        if (maxStackCount < 0) {
+            throw new IllegalArgumentException("maxStackCount: " + maxStackCount);
+        }
+        this.maxStackCount = maxStackCount;
+    }
+
+    /**
+     * Sets the fail-on-stack-limit option. When the value is <code>true</code>, the parser throws
+     * {@link SynLimitException} instead of dropping stacks if the number of live stacks exceeds the limit set
+     * by {@link #setMaxStackCount(int)}. The option is <code>false</code> by default.
+     *
+     * @param failOnStackLimit the value of the option.
+     */
+    public void setFailOnStackLimit(boolean failOnStackLimit) {
+        this.failOnStackLimit = failOnStackLimit;
+    }
+
+    /**
+     * Sets the resource limits applied to each parsing operation. The default value is
+     * {@link SynLimits#DEFAULT}.
+     *
+     * @param limits the limits.
+     *
+     * @see SynLimits
+     */
+    public void setLimits(SynLimits limits) {
+        if (limits == null) {
+            throw new NullPointerException("limits");
+        }
+        this.limits = limits;
+    }
+
+    /**
+     * Returns the resource limits applied to each parsing operation.
+     *
+     * @return the limits.
+     */
+    public SynLimits getLimits() {
+        return limits;
+    }
+
+    /**
+     * <p>Sets the error recovery option. When the value is <code>true</code>, the <code>parse()</code> and
+     * <code>resume()</code> methods do not stop at the first syntax error. Instead, the parser repairs the input
+     * and continues, so that all syntax errors can be found in a single pass. The errors are returned by
+     * {@link SynResult#getSyntaxErrors()}. The option is <code>false</code> by default.</p>
+     *
+     * <p>The input is repaired by inserting a missing keyword or key-character, or by skipping unexpected
+     * tokens. When a literal declared by a <code>%sync</code> directive is reached, the parser also discards
+     * the unfinished constructs at the top of its stack until the literal is accepted. If the parser fails
+     * to recover at the end of the input, the first syntax error is thrown.</p>
+     *
+     * <p>The option is ignored by the methods which parse parts of a text separately, such as
+     * {@link #reparse(SynResult, String, TextEdit)}, {@link #parse(String, Reader, SourceDescriptor, SynParseListener)}
+     * and {@link #iterate(String, Reader, SourceDescriptor)}; if the whole text has to be parsed again, the option
+     * is taken into account.</p>
+     *
+     * @param errorRecovery the value of the option.
+     */
+    public void setErrorRecovery(boolean errorRecovery) {
+        this.errorRecovery = errorRecovery;
+    }
+
+    /**
+     * <p>Sets the pack-ambiguities option. When the value is <code>true</code> and the fail-on-ambiguity option
+     * is off, the parser does not choose one of conflicting syntax trees. Instead, an ambiguous part of the input
+     * is returned as a {@link PackedNode} containing all its interpretations. Sub-trees shared by different
+     * interpretations are built once, so the size of the result grows polynomially with the length of the
+     * input, even if the number of interpretations grows exponentially. The option is <code>false</code> by
+     * default.</p>
+     *
+     * <p>The tree which would be chosen if the option was off is one of the trees represented by the result.
+     * The first alternative of a packed node is the one preferred by the automatic ambiguity resolution when
+     * the alternatives of that node are compared with each other. Usually the first alternatives make up
+     * the tree which would be chosen if the option was off, but this is not guaranteed, since ambiguities are
+     * resolved in a different order. If a nonterminal can derive itself without consuming tokens, the number
+     * of interpretations is infinite, and only the ones which do not repeat such a derivation are kept.</p>
+     *
+     * <p>The option is taken into account by the same methods as {@link #setErrorRecovery(boolean)}. A result
+     * with packed nodes cannot be reparsed incrementally, so it is parsed again as a whole.</p>
+     *
+     * @param packAmbiguities the value of the option.
+     */
+    public void setPackAmbiguities(boolean packAmbiguities) {
+        this.packAmbiguities = packAmbiguities;
+    }
+
+    /**
+     * <p>Sets the checkpoints option. When the value is <code>true</code>, the results returned by
+     * the <code>parse()</code> and <code>resume()</code> methods have a {@link SynResult#getCheckpoint()
+     * checkpoint}, so that parsing of an extended text can be resumed by {@link #resume(SynCheckpoint, String)}.
+     * The option is <code>false</code> by default.</p>
+     *
+     * <p>A checkpoint keeps the parser stacks at one of the last tokens of the text, including the syntax
+     * trees of the unfinished constructs, for as long as the result is referenced. Thus the option should be
+     * turned on only if the text is going to be extended.</p>
+     *
+     * <p>The option is taken into account by the same methods as {@link #setErrorRecovery(boolean)}.</p>
+     *
+     * @param checkpoints the value of the option.
+     */
+    public void setCheckpoints(boolean checkpoints) {
+        this.checkpoints = checkpoints;
+    }
+
+    /**
+     * <p>Sets the incremental reparsing option. When the value is <code>true</code>, the <code>parse()</code>
+     * and {@link #parseConcurrently(String, String, SourceDescriptor, Executor, int) parseConcurrently()} methods
+     * remember the text positions of the elements of the start nonterminal's top-level repetition, so that
+     * the result can be reparsed incrementally by {@link #reparse(SynResult, String, TextEdit)}. The option is
+     * <code>false</code> by default.</p>
+     *
+     * <p>A result obtained with the option off can still be passed to <code>reparse()</code>, but the whole
+     * text is parsed then. The results returned by <code>reparse()</code> can always be reparsed incrementally.</p>
+     *
+     * @param incrementalReparsing the value of the option.
+     */
+    public void setIncrementalReparsing(boolean incrementalReparsing) {
+        this.incrementalReparsing = incrementalReparsing;
+    }
+
+    /**
+     * <p>Returns a parser which checks the specified cancellation token in all its parsing methods, including
+     * the listener, iterator, reparsing, resuming and concurrent ones, so that parsing can be stopped from
+     * another thread. The token is checked periodically, and {@link SynCancelledException} is thrown shortly
+     * after it is cancelled or expires.</p>
+     *
+     * <p>The returned parser shares the tables of this parser, so it can be created cheaply for each parsing
+     * operation. It gets the current options of this parser; afterwards, the options of the two parsers are
+     * changed independently.</p>
+     *
+     * @param cancellationToken the cancellation token, or <code>null</code> if parsing cannot be cancelled.
+     * @return the parser checking the token.
+     *
+     * @see SynCancellationToken
+     */
+    public SynParser withCancellationToken(SynCancellationToken cancellationToken) {
+        return new SynParser(this, cancellationToken);
+    }
+
+    /**
+     * Applies the options which are taken into account only when the whole text is parsed by a single engine:
+     * the error recovery, packing of ambiguities and checkpoints.
+     */
+    private void configureTreeOptions(ParserEngine parserEngine) {
+        if (errorRecovery) {
+            parserEngine.setErrorRecovery(syncTokens);
+        }
+        if (packAmbiguities) {
+            parserEngine.setPackAmbiguities();
+        }
+        if (checkpoints) {
+            parserEngine.setCheckpoints();
+        }
+    }
+
+    /**
+     * Applies the stack limit and the resource limits to a parser engine.
+     */
+    private void configureEngine(ParserEngine parserEngine) {
+        parserEngine.setStackLimit(maxStackCount, failOnStackLimit);
+        parserEngine.setLimits(limits);
+    }
+
     /**
      * Creates a token stream for the specified input. Except syntax analysis, the returned stream may be useful
      * also for such tasks as syntax coloring, since it can recognize keywords and key-characters defined in the
@@ -15,7 +15,13 @@
  */
 package org.antkar.syn;
 
+import java.io.Reader;
+import java.util.Collections;
+import java.util.List;
+
 import org.antkar.syn.internal.Checks;
+import org.antkar.syn.internal.CommonUtil;
+import org.antkar.syn.internal.parser.ParserItemLayout;
 
 /**
  * The result returned by a {@link SynParser}. Contains an Abstract Syntax Tree and some statistics information,
@@ -26,18 +32,73 @@ public final class SynResult {
     private final int lineCount;
     private final int charCount;
     private final SynNode rootNode;
+    private final int prunedStackCount;
+
+    /** The syntax errors the parser has recovered from. */
+    private final List<SynSyntaxException> syntaxErrors;
+
+    /** The layout of the top-level repetition, used for reparsing. <code>null</code> if the result was not
+     * produced by {@link SynParser}. */
+    private final ParserItemLayout itemLayout;
+
+    /** The checkpoint for parsing an extended version of the text, or <code>null</code>. */
+    private final SynCheckpoint checkpoint;
 
     /**
      * Initializing constructor.
      */
     public SynResult(SourceDescriptor sourceDescriptor, SynNode rootNode, int lineCount, int charCount) {
+        this(sourceDescriptor, rootNode, lineCount, charCount, 0);
+    }
+
+    /**
+     * Initializing constructor which specifies the number of parser stacks pruned because of the stack limit.
+     */
+    public SynResult(
+            SourceDescriptor sourceDescriptor,
+            SynNode rootNode,
+            int lineCount,
+            int charCount,
+            int prunedStackCount)
+    {
         Checks.argument(lineCount >= 0);
         Checks.argument(charCount >= 0);
+        Checks.argument(prunedStackCount >= 0);
 
         this.sourceDescriptor = Checks.notNull(sourceDescriptor);
         this.rootNode = rootNode;
         this.lineCount = lineCount;
         this.charCount = charCount;
+        this.prunedStackCount = prunedStackCount;
+        syntaxErrors = Collections.emptyList();
+        itemLayout = null;
+        checkpoint = null;
+    }
+
+    /**
+     * Constructs a copy of a result which can be passed to {@link SynParser#reparse(SynResult, String, TextEdit)}.
+     */
+    SynResult(SynResult result, ParserItemLayout itemLayout, SynCheckpoint checkpoint) {
+        this(result, itemLayout, checkpoint, result.syntaxErrors);
+    }
+
+    /**
+     * Constructs a copy of a result with the specified syntax errors.
+     */
+    SynResult(
+            SynResult result,
+            ParserItemLayout itemLayout,
+            SynCheckpoint checkpoint,
+            List<SynSyntaxException> syntaxErrors)
+    {
+        sourceDescriptor = result.sourceDescriptor;
+        rootNode = result.rootNode;
+        lineCount = result.lineCount;
+        charCount = result.charCount;
+        prunedStackCount = result.prunedStackCount;
+        this.itemLayout = Checks.notNull(itemLayout);
+        this.checkpoint = checkpoint;
+        this.syntaxErrors = CommonUtil.unmodifiableListCopy(syntaxErrors);
     }
 
     /**
@@ -56,6 +117,31 @@ public final class SynResult {
         return lineCount;
     }
 
+    /**
+     * Returns the number of parser stacks dropped because the number of live stacks exceeded the limit.
+     * A non-zero value means that some ambiguous interpretations of the input were not considered, so
+     * the result may differ from the one produced without the limit.
+     *
+     * @return the number of pruned stacks; <code>0</code> if no stacks were pruned.
+     *
+     * @see SynParser#setMaxStackCount(int)
+     */
+    public int getPrunedStackCount() {
+        return prunedStackCount;
+    }
+
+    /**
+     * Returns the syntax errors the parser has recovered from. If the list is not empty, the syntax tree
+     * has been built for a repaired version of the input: some tokens were inserted, and some were skipped.
+     *
+     * @return the list of errors; empty if the input has no errors or the error recovery is turned off.
+     *
+     * @see SynParser#setErrorRecovery(boolean)
+     */
+    public List<SynSyntaxException> getSyntaxErrors() {
+        return syntaxErrors;
+    }
+
     /**
      * Returns the root node of the Abstract Syntax Tree - the node returned by the start nonterminal symbol.
      * @return the root node. Can be <code>null</code> if the start nonterminal returned <code>null</code>.
@@ -72,6 +158,28 @@ public final class SynResult {
         return sourceDescriptor;
     }
 
+    /**
+     * Returns the checkpoint which allows to parse an extended version of the text without parsing the text
+     * from the beginning. The checkpoint is located at the last token boundary which is not affected
+     * by appending characters to the text.
+     *
+     * @return the checkpoint, or <code>null</code> if the result was not produced by
+     * {@link SynParser#parse(String, Reader) parse()} or {@link SynParser#resume(SynCheckpoint, String) resume()}
+     * methods, or if the {@link SynParser#setCheckpoints(boolean) checkpoints option} was off.
+     *
+     * @see SynParser#resume(SynCheckpoint, String)
+     */
+    public SynCheckpoint getCheckpoint() {
+        return checkpoint;
+    }
+
+    /**
+     * Returns the layout of the top-level repetition.
+     */
+    ParserItemLayout getItemLayout() {
+        return itemLayout;
+    }
+
     @Override
     public String toString() {
         return rootNode + "";
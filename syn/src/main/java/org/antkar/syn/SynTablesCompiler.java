@@ -0,0 +1,84 @@
+/*
+ * Copyright 2013 Anton Karmanov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.antkar.syn;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.antkar.syn.binder.SynBinder;
+
+/**
+ * <p>Command line tool which writes the precompiled parser tables for a grammar file. Intended to be run
+ * at build time, e. g. by the <code>exec-maven-plugin</code>. Usage:</p>
+ * <pre>
+ * java org.antkar.syn.SynTablesCompiler GRAMMAR_FILE TABLES_FILE [BOUND_CLASS]</pre>
+ *
+ * <p>If a bound class name is specified, the tables are written for a {@link SynBinder} and must be loaded by
+ * {@link SynBinder#loadTables(Class, Class, String, String)}. Otherwise, they are loaded by
+ * {@link SynParser#loadTables(String, java.io.InputStream)}. The bound class is loaded by the context class
+ * loader of the current thread.</p>
+ */
+public final class SynTablesCompiler {
+    private SynTablesCompiler(){}
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2 || args.length > 3) {
+            System.err.println("Usage: SynTablesCompiler GRAMMAR_FILE TABLES_FILE [BOUND_CLASS]");
+            System.exit(1);
+            return;
+        }
+
+        File grammarFile = new File(args[0]);
+        File tablesFile = new File(args[1]);
+        String boundClassName = args.length > 2 ? args[2] : null;
+        compile(grammarFile, tablesFile, boundClassName);
+    }
+
+    /**
+     * Writes the tables for a grammar file.
+     *
+     * @param grammarFile the grammar file.
+     * @param tablesFile the file to write the tables to.
+     * @param boundClassName the name of the class bound to the start nonterminal, or <code>null</code>.
+     * @throws ClassNotFoundException if the bound class is not found.
+     * @throws SynException if the grammar is invalid.
+     * @throws IOException if writing fails.
+     */
+    public static void compile(File grammarFile, File tablesFile, String boundClassName)
+            throws ClassNotFoundException, SynException, IOException
+    {
+        File dir = tablesFile.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create directory: " + dir);
+        }
+
+        if (boundClassName == null) {
+            SynParser parser = new SynParser(grammarFile);
+            try (OutputStream out = new FileOutputStream(tablesFile)) {
+                parser.writeTables(out);
+            }
+        } else {
+            ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+            Class<?> boundClass = Class.forName(boundClassName, false, classLoader);
+            SynBinder<?> binder = new SynBinder<>(boundClass, grammarFile);
+            try (OutputStream out = new FileOutputStream(tablesFile)) {
+                binder.writeTables(out);
+            }
+        }
+    }
+}
@@ -18,6 +18,7 @@ package org.antkar.syn;
 import java.io.PrintStream;
 
 import org.antkar.syn.internal.PosBuffer;
+import org.antkar.syn.internal.TextShift;
 import org.antkar.syn.internal.TokenNode;
 
 /**
@@ -96,6 +97,25 @@ public abstract class TerminalNode extends SynNode {
         out.println(this);
     }
 
+    @Override
+    final TerminalNode shift(TextShift shift) {
+        if (posSource == null) {
+            return this;
+        }
+
+        PosBuffer pos = new PosBuffer();
+        shift.shift(pos, posSource, posOffset, posLine, posColumn, posLength);
+        return copy(pos);
+    }
+
+    /**
+     * Creates a copy of this node with a different input position.
+     *
+     * @param pos the input position of the copy.
+     * @return the copy.
+     */
+    protected abstract TerminalNode copy(PosBuffer pos);
+
     @Override
     public abstract String toString();
 }
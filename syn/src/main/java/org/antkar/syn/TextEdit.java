@@ -0,0 +1,79 @@
+/*
+ * Copyright 2013 Anton Karmanov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.antkar.syn;
+
+import org.antkar.syn.internal.Checks;
+
+/**
+ * An edit of a text: a replacement of a segment of the text by another string. Used to describe the difference
+ * between an old and a new version of a text when the new version is reparsed.
+ *
+ * @see SynParser#reparse(SynResult, String, TextEdit)
+ */
+public final class TextEdit {
+    private final int offset;
+    private final int removedLength;
+    private final int insertedLength;
+
+    /**
+     * Constructs an edit.
+     *
+     * @param offset the offset of the replaced segment in the old text.
+     * @param removedLength the length of the replaced segment in the old text.
+     * @param insertedLength the length of the inserted string.
+     */
+    public TextEdit(int offset, int removedLength, int insertedLength) {
+        Checks.argument(offset >= 0);
+        Checks.argument(removedLength >= 0);
+        Checks.argument(insertedLength >= 0);
+
+        this.offset = offset;
+        this.removedLength = removedLength;
+        this.insertedLength = insertedLength;
+    }
+
+    /**
+     * Returns the offset of the replaced segment.
+     *
+     * @return the offset.
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * Returns the length of the replaced segment in the old text.
+     *
+     * @return the length.
+     */
+    public int getRemovedLength() {
+        return removedLength;
+    }
+
+    /**
+     * Returns the length of the string which replaces the segment in the new text.
+     *
+     * @return the length.
+     */
+    public int getInsertedLength() {
+        return insertedLength;
+    }
+
+    @Override
+    public String toString() {
+        return offset + ":-" + removedLength + "+" + insertedLength;
+    }
+}
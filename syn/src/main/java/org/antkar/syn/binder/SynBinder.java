@@ -17,17 +17,31 @@ package org.antkar.syn.binder;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.io.StringReader;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
 
 import org.antkar.syn.SourceDescriptor;
 import org.antkar.syn.StringSourceDescriptor;
+import org.antkar.syn.SynCancellationToken;
 import org.antkar.syn.SynException;
+import org.antkar.syn.SynFileResult;
 import org.antkar.syn.SynNode;
 import org.antkar.syn.SynParser;
 import org.antkar.syn.SynResult;
 import org.antkar.syn.TokenStream;
+import org.antkar.syn.internal.BatchParser;
 import org.antkar.syn.internal.CommonUtil;
+import org.antkar.syn.internal.CompiledGrammar;
+import org.antkar.syn.internal.CompiledGrammarCache;
+import org.antkar.syn.internal.IFileParser;
+import org.antkar.syn.internal.ParserFactory;
 import org.antkar.syn.internal.binder.BinderConfiguration;
 import org.antkar.syn.internal.binder.BinderConfigurator;
 import org.antkar.syn.internal.binder.BinderConfiguratorResult;
@@ -62,6 +76,10 @@ import org.antkar.syn.internal.grammar.SynGrammarParser;
  * a tree consisting of client-supplied classes instead of less convenient {@link SynNode}s.
  * </p>
  *
+ * <p>A binder is immutable once constructed, so it can be shared by threads parsing different texts
+ * concurrently (see {@link #parseAll(Collection, Executor)}), provided that the bound classes do not share
+ * mutable state themselves.</p>
+ *
  * @param <T> the class of the start nonterminal.
  *
  * @see SynField
@@ -73,6 +91,12 @@ public final class SynBinder<T> {
     private String startNonterminal;
     private BinderConfiguration<T> binderConfig;
 
+    /**
+     * Constructs a binder which is initialized by a factory method.
+     */
+    private SynBinder() {
+    }
+
     /**
      * Constructs a binder for the specified root class and the grammar provided via a reader.
      *
@@ -227,6 +251,115 @@ public final class SynBinder<T> {
         init(classToBind, grammarReader, grammarDescriptor);
     }
 
+    /**
+     * <p>Creates a binder using the parser tables written by {@link #writeTables(OutputStream)}. The grammar and
+     * the tables are read from class loader resources. The bound classes are inspected as usual, but the LR
+     * tables are not built.</p>
+     *
+     * @param classToBind the class of the start nonterminal.
+     * @param resourceOrigin the class which the specified resource paths are relative to.
+     * @param grammarResourcePath the grammar resource path.
+     * @param tablesResourcePath the tables resource path.
+     * @return the binder.
+     * @throws SynException if reading fails, if the grammar is invalid, or if the tables have been built for
+     * a different grammar or for classes that change the grammar generated by the binder.
+     *
+     * @see SynParser#loadTables(String, InputStream)
+     */
+    public static <T> SynBinder<T> loadTables(
+            Class<T> classToBind,
+            Class<?> resourceOrigin,
+            String grammarResourcePath,
+            String tablesResourcePath) throws SynException
+    {
+        if (classToBind == null) {
+            throw new NullPointerException("classToBind");
+        }
+        if (resourceOrigin == null) {
+            throw new NullPointerException("resourceOrigin");
+        }
+        if (grammarResourcePath == null) {
+            throw new NullPointerException("grammarResourcePath");
+        }
+        if (tablesResourcePath == null) {
+            throw new NullPointerException("tablesResourcePath");
+        }
+
+        SourceDescriptor grammarDescriptor = CommonUtil.getSourceDescriptor(grammarResourcePath, null);
+        SynBinder<T> binder = new SynBinder<>();
+        try {
+            String grammar;
+            try (Reader reader = CommonUtil.openResourceReader(resourceOrigin, grammarResourcePath)) {
+                grammar = CommonUtil.readText(reader);
+            }
+            try (InputStream in = CommonUtil.openResourceStream(resourceOrigin, tablesResourcePath)) {
+                binder.init(classToBind, grammar, grammarDescriptor, in);
+            }
+        } catch (IOException e) {
+            throw new SynException(e);
+        }
+        return binder;
+    }
+
+    /**
+     * <p>Creates a binder using the parser tables written by {@link #writeTables(OutputStream)}. The bound classes
+     * are inspected as usual, but the LR tables are not built.</p>
+     *
+     * @param classToBind the class of the start nonterminal.
+     * @param grammar the grammar.
+     * @param tablesStream the stream to read the tables from. The stream is not closed.
+     * @return the binder.
+     * @throws SynException if reading fails, if the grammar is invalid, or if the tables have been built for
+     * a different grammar or for classes that change the grammar generated by the binder.
+     */
+    public static <T> SynBinder<T> loadTables(Class<T> classToBind, String grammar, InputStream tablesStream)
+            throws SynException
+    {
+        if (classToBind == null) {
+            throw new NullPointerException("classToBind");
+        }
+        if (grammar == null) {
+            throw new NullPointerException("grammar");
+        }
+        if (tablesStream == null) {
+            throw new NullPointerException("tablesStream");
+        }
+
+        SourceDescriptor grammarDescriptor = CommonUtil.getSourceDescriptor("<grammar>", null);
+        SynBinder<T> binder = new SynBinder<>();
+        binder.init(classToBind, grammar, grammarDescriptor, tablesStream);
+        return binder;
+    }
+
+    /**
+     * Writes the parser tables of this binder to a stream, so that a binder for the same grammar and class
+     * can be created faster by {@link #loadTables(Class, Class, String, String)}. The stream is not closed.
+     *
+     * @param out the stream.
+     * @throws SynException if writing fails.
+     */
+    public void writeTables(OutputStream out) throws SynException {
+        synParser.writeTables(out);
+    }
+
+    /**
+     * Returns a binder which checks the specified cancellation token in all its parsing methods, so that parsing
+     * can be stopped from another thread. The returned binder shares the configuration and the parser tables of
+     * this binder, so it can be created cheaply for each parsing operation.
+     *
+     * @param cancellationToken the cancellation token, or <code>null</code> if parsing cannot be cancelled.
+     * @return the binder checking the token.
+     *
+     * @see SynParser#withCancellationToken(SynCancellationToken)
+     */
+    public SynBinder<T> withCancellationToken(SynCancellationToken cancellationToken) {
+        SynBinder<T> binder = new SynBinder<>();
+        binder.synParser = synParser.withCancellationToken(cancellationToken);
+        binder.startNonterminal = startNonterminal;
+        binder.binderConfig = binderConfig;
+        return binder;
+    }
+
     /**
      * Initializes the binder.
      */
@@ -234,20 +367,53 @@ public final class SynBinder<T> {
             Class<T> classToBind,
             Reader grammarReader,
             SourceDescriptor grammarDescriptor) throws SynException
+    {
+        String grammar;
+        try {
+            grammar = CommonUtil.readText(grammarReader);
+        } catch (IOException e) {
+            throw new SynException(e);
+        }
+        init(classToBind, grammar, grammarDescriptor, null);
+    }
+
+    /**
+     * Initializes the binder. If the tables stream is not <code>null</code>, the parser tables are read from it
+     * instead of being built. Otherwise, the tables may be taken from the {@link org.antkar.syn.SynGrammarCache}.
+     */
+    private void init(
+            Class<T> classToBind,
+            String grammar,
+            SourceDescriptor grammarDescriptor,
+            InputStream tablesStream) throws SynException
     {
         //Use the class' name as the start nonterminal name.
         this.startNonterminal = classToBind.getSimpleName();
 
         //First, load the EBNF representation of the passed grammar.
-        EbnfGrammar eGrammar = SynGrammarParser.parseGrammar(grammarReader, grammarDescriptor);
+        EbnfGrammar eGrammar = SynGrammarParser.parseGrammar(new StringReader(grammar), grammarDescriptor);
 
-        //Create a binder configuration.
+        //Create a binder configuration. It is always created from the classes, even if the tables are not built,
+        //since the classes may have changed.
         BinderConfiguratorResult<T> configResult = BinderConfigurator.makeConfiguration(classToBind, eGrammar);
         this.binderConfig = configResult.getConfig();
 
-        //Create a SynParser instance for the modified EBNF grammar.
-        EbnfGrammar genGrammar = configResult.getGenGrammar();
-        this.synParser = new SynParser(genGrammar);
+        //Create a SynParser instance for the modified EBNF grammar. The checksum covers the modified grammar,
+        //so the tables are reused only if they have been built for the same modified grammar.
+        final EbnfGrammar genGrammar = configResult.getGenGrammar();
+        final byte[] checksum = CompiledGrammar.checksum(grammar, genGrammar);
+        CompiledGrammar compiledGrammar;
+        if (tablesStream == null) {
+            compiledGrammar = CompiledGrammarCache.get(checksum, false, new Callable<CompiledGrammar>() {
+                @Override
+                public CompiledGrammar call() throws SynException {
+                    return CompiledGrammar.compile(genGrammar, checksum);
+                }
+            });
+        } else {
+            compiledGrammar = CompiledGrammar.read(tablesStream, checksum);
+        }
+        this.synParser = ParserFactory.getInstance().createParser(compiledGrammar);
     }
 
     /**
@@ -367,6 +533,30 @@ public final class SynBinder<T> {
         }
     }
 
+    /**
+     * Parses the specified files concurrently and maps each of them to Java objects. One task per file is
+     * submitted to the specified executor, and the method waits until all files are processed. The binder
+     * can be shared by any number of threads, so the tasks share its configuration.
+     *
+     * @param files the files to parse.
+     * @param executor the executor to run the tasks, for example a {@link java.util.concurrent.ForkJoinPool}.
+     *
+     * @return the list of results, one per file, in the order of the collection. If a file fails to parse
+     * or to bind, its result contains the exception.
+     *
+     * @throws SynException if the calling thread is interrupted.
+     *
+     * @see SynParser#parseAll(String, Collection, Executor)
+     */
+    public List<SynFileResult<T>> parseAll(Collection<Path> files, Executor executor) throws SynException {
+        return BatchParser.parseAll(files, executor, new IFileParser<T>() {
+            @Override
+            public T parseFile(Path file) throws SynException {
+                return parse(file.toFile());
+            }
+        });
+    }
+
     /**
      * Parses the text passed in the specified {@link String}.
      *
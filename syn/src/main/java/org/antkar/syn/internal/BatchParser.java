@@ -0,0 +1,109 @@
+/*
+ * Copyright 2013 Anton Karmanov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.antkar.syn.internal;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+import org.antkar.syn.SynException;
+import org.antkar.syn.SynFileResult;
+
+/**
+ * Parses a collection of files concurrently, submitting one task per file to an {@link Executor}.
+ */
+public final class BatchParser {
+    private BatchParser() {
+    }
+
+    /**
+     * Parses the specified files and waits for all of them to finish. The returned list has the same order
+     * as the collection of files. A {@link SynException} thrown for a file is stored in that file's result;
+     * other exceptions are propagated to the caller.
+     */
+    public static <T> List<SynFileResult<T>> parseAll(
+            Collection<Path> files,
+            Executor executor,
+            final IFileParser<T> fileParser) throws SynException
+    {
+        Checks.notNull(files);
+        Checks.notNull(executor);
+        Checks.notNull(fileParser);
+
+        List<FutureTask<SynFileResult<T>>> tasks = new ArrayList<>(files.size());
+        for (final Path file : files) {
+            Checks.notNull(file);
+            FutureTask<SynFileResult<T>> task = new FutureTask<>(new Callable<SynFileResult<T>>() {
+                @Override
+                public SynFileResult<T> call() {
+                    try {
+                        return new SynFileResult<>(file, fileParser.parseFile(file));
+                    } catch (SynException e) {
+                        return new SynFileResult<>(file, e);
+                    }
+                }
+            });
+            tasks.add(task);
+        }
+
+        for (FutureTask<SynFileResult<T>> task : tasks) {
+            executor.execute(task);
+        }
+
+        List<SynFileResult<T>> results = new ArrayList<>(tasks.size());
+        try {
+            for (FutureTask<SynFileResult<T>> task : tasks) {
+                results.add(getTaskResult(task));
+            }
+        } finally {
+            if (results.size() < tasks.size()) {
+                //Do not leave orphaned tasks running if the caller gives up.
+                for (FutureTask<SynFileResult<T>> task : tasks) {
+                    task.cancel(false);
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Waits for the specified task to finish and returns its result. Unchecked exceptions and
+     * {@link SynException}s thrown by the task are rethrown.
+     */
+    public static <T> T getTaskResult(FutureTask<T> task) throws SynException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SynException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            } else if (cause instanceof SynException) {
+                throw (SynException) cause;
+            }
+            throw new SynException(cause);
+        }
+    }
+}
@@ -76,10 +76,7 @@ public final class CommonUtil {
      * @throws IOException if the specified resource is not found, or another I/O error occurs.
      */
     public static Reader openResourceReader(Class<?> resourceOrigin, String resourcePath) throws IOException {
-        InputStream in = resourceOrigin.getResourceAsStream(resourcePath);
-        if (in == null) {
-            throw new FileNotFoundException("File not found: " + resourcePath);
-        }
+        InputStream in = openResourceStream(resourceOrigin, resourcePath);
         try {
             Reader reader = new InputStreamReader(in, CHARSET);
             in = null;
@@ -92,6 +89,39 @@ public final class CommonUtil {
         }
     }
 
+    /**
+     * Reads all characters from the specified reader.
+     *
+     * @param reader the reader.
+     * @return the text.
+     * @throws IOException if reading fails.
+     */
+    public static String readText(Reader reader) throws IOException {
+        StringBuilder bld = new StringBuilder();
+        char[] buffer = new char[4096];
+        int count;
+        while ((count = reader.read(buffer)) != -1) {
+            bld.append(buffer, 0, count);
+        }
+        return bld.toString();
+    }
+
+    /**
+     * Opens a stream for reading the specified class loader resource.
+     *
+     * @param resourceOrigin the class which the specified resource path is relative to.
+     * @param resourcePath the resource path, relative to the specified reference class.
+     * @return the stream.
+     * @throws IOException if the specified resource is not found.
+     */
+    public static InputStream openResourceStream(Class<?> resourceOrigin, String resourcePath) throws IOException {
+        InputStream in = resourceOrigin.getResourceAsStream(resourcePath);
+        if (in == null) {
+            throw new FileNotFoundException("File not found: " + resourcePath);
+        }
+        return in;
+    }
+
     /**
      * Returns either the passed source descriptor, or a new one, if the former is <code>null</code>.
      * The new descriptor is created from a {@link File}.
@@ -0,0 +1,394 @@
+/*
+ * Copyright 2013 Anton Karmanov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.antkar.syn.internal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+
+import org.antkar.syn.SynException;
+import org.antkar.syn.TokenDescriptor;
+import org.antkar.syn.internal.bnf.BnfGrammar;
+import org.antkar.syn.internal.ebnf.EbnfElement;
+import org.antkar.syn.internal.ebnf.EbnfElementProcessor;
+import org.antkar.syn.internal.ebnf.EbnfGrammar;
+import org.antkar.syn.internal.ebnf.EbnfNestedElement;
+import org.antkar.syn.internal.ebnf.EbnfNonterminal;
+import org.antkar.syn.internal.ebnf.EbnfNonterminalElement;
+import org.antkar.syn.internal.ebnf.EbnfOptionalElement;
+import org.antkar.syn.internal.ebnf.EbnfProduction;
+import org.antkar.syn.internal.ebnf.EbnfProductions;
+import org.antkar.syn.internal.ebnf.EbnfRepetitionElement;
+import org.antkar.syn.internal.ebnf.EbnfTerminalElement;
+import org.antkar.syn.internal.ebnf.EbnfValueElement;
+import org.antkar.syn.internal.grammar.EbnfToBnfConverter;
+import org.antkar.syn.internal.lrtables.ParserConfiguration;
+import org.antkar.syn.internal.lrtables.ParserConfigurationSerializer;
+import org.antkar.syn.internal.lrtables.ParserConfigurator;
+import org.antkar.syn.internal.scanner.ScannerConfiguration;
+import org.antkar.syn.internal.scanner.ScannerConfigurator;
+
+/**
+ * A grammar compiled into parser and scanner configurations. Can be written to a binary stream and read back,
+ * so that a parser can be created without building the LR tables.
+ *
+ * <p>The binary format contains a checksum of the source grammar text and, for a binder, of the generated
+ * grammar. The checksum is verified when
+ * the tables are read, so stale tables are never used for a changed grammar. The scanner configuration
+ * is not stored: it is fully defined by the tokens of the parser configuration, which are stored.</p>
+ */
+public final class CompiledGrammar {
+    /** The first four bytes of the binary format: "SYNT". */
+    private static final int MAGIC = 0x53594E54;
+
+    /** The version of the binary format. Must be changed whenever the format changes. */
+    private static final int FORMAT_VERSION = 3;
+
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+
+    private final byte[] checksum;
+    private final ParserConfiguration parserConfig;
+    private final ScannerConfiguration scannerConfig;
+    private final Map<String, List<TokenDescriptor>> splitTokens;
+    private final Set<TokenDescriptor> syncTokens;
+
+    private CompiledGrammar(
+            byte[] checksum,
+            ParserConfiguration parserConfig,
+            Map<String, List<TokenDescriptor>> splitTokens,
+            Set<TokenDescriptor> syncTokens)
+    {
+        this.checksum = checksum;
+        this.parserConfig = Checks.notNull(parserConfig);
+        this.splitTokens = Collections.unmodifiableMap(splitTokens);
+        this.syncTokens = Collections.unmodifiableSet(syncTokens);
+        scannerConfig = ScannerConfigurator.makeConfiguration(parserConfig.getTokenDescriptors());
+    }
+
+    /**
+     * Compiles an EBNF grammar. The LR states of a large grammar are built concurrently in the common
+     * fork-join pool.
+     *
+     * @param eGrammar the grammar.
+     * @param checksum the checksum of the grammar, see {@link #checksum(String, EbnfGrammar)}. Can be
+     * <code>null</code> if the text is not known; such a grammar cannot be written.
+     * @return the compiled grammar.
+     * @throws SynException if the grammar is invalid.
+     */
+    public static CompiledGrammar compile(EbnfGrammar eGrammar, byte[] checksum) throws SynException {
+        return compile(eGrammar, checksum, false);
+    }
+
+    /**
+     * Compiles an EBNF grammar, optionally deferring the construction of the LR states of each start
+     * nonterminal until the nonterminal is parsed for the first time.
+     *
+     * @param eGrammar the grammar.
+     * @param checksum the checksum of the grammar text, or <code>null</code>.
+     * @param lazy <code>true</code> to build the LR states lazily.
+     * @return the compiled grammar.
+     * @throws SynException if the grammar is invalid.
+     *
+     * @see ParserConfigurator#makeLazyConfiguration(BnfGrammar)
+     */
+    public static CompiledGrammar compile(EbnfGrammar eGrammar, byte[] checksum, boolean lazy)
+            throws SynException
+    {
+        BnfGrammar bGrammar = EbnfToBnfConverter.convert(eGrammar);
+        ParserConfiguration parserConfig;
+        if (lazy) {
+            parserConfig = ParserConfigurator.makeLazyConfiguration(bGrammar);
+        } else {
+            //The states are built by fork/join tasks, so the common pool can be used even if the grammar is
+            //compiled by a task running in that pool.
+            ForkJoinPool pool = ForkJoinPool.getCommonPoolParallelism() > 1 ? ForkJoinPool.commonPool() : null;
+            parserConfig = ParserConfigurator.makeConfiguration(bGrammar, pool);
+        }
+        return new CompiledGrammar(checksum, parserConfig, eGrammar.getSplitTokens(),
+                new HashSet<>(eGrammar.getSyncTokens()));
+    }
+
+    /**
+     * Calculates the checksum of a grammar.
+     *
+     * @param grammar the text of the grammar.
+     * @param genGrammar the grammar generated by a binder from the text and the bound classes, or
+     * <code>null</code> if the grammar is used as is. The generated grammar is what the tables are built for,
+     * so any change of the bound classes that affects the tables changes the checksum.
+     * @return the checksum.
+     * @throws SynException if the generated grammar cannot be described.
+     */
+    public static byte[] checksum(String grammar, EbnfGrammar genGrammar) throws SynException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            //Every Java platform supports SHA-256.
+            throw new IllegalStateException(e);
+        }
+
+        digest.update(grammar.getBytes(CHARSET));
+        if (genGrammar != null) {
+            digest.update((byte) 0);
+            digest.update(new GrammarDescriber().describe(genGrammar).getBytes(CHARSET));
+        }
+        return digest.digest();
+    }
+
+    public ParserConfiguration getParserConfig() {
+        return parserConfig;
+    }
+
+    public ScannerConfiguration getScannerConfig() {
+        return scannerConfig;
+    }
+
+    /**
+     * Returns the split literals declared by <code>%split</code> directives, by start nonterminal names.
+     */
+    public Map<String, List<TokenDescriptor>> getSplitTokens() {
+        return splitTokens;
+    }
+
+    /**
+     * Returns the literals declared by <code>%sync</code> directives.
+     */
+    public Set<TokenDescriptor> getSyncTokens() {
+        return syncTokens;
+    }
+
+    /**
+     * Writes the compiled grammar to a stream. The stream is not closed.
+     *
+     * @throws IllegalStateException if the checksum of the grammar is not known.
+     * @throws SynException if writing fails, or if the grammar cannot be precompiled.
+     */
+    public void write(OutputStream out) throws SynException {
+        if (checksum == null) {
+            throw new IllegalStateException("The grammar text is not known");
+        }
+
+        try {
+            DataOutputStream dataOut = new DataOutputStream(new BufferedOutputStream(out));
+            dataOut.writeInt(MAGIC);
+            dataOut.writeInt(FORMAT_VERSION);
+            dataOut.writeInt(checksum.length);
+            dataOut.write(checksum);
+
+            ParserConfigurationSerializer.write(dataOut, parserConfig);
+
+            Map<String, List<TokenDescriptor>> sortedSplitTokens = new TreeMap<>(splitTokens);
+            dataOut.writeInt(sortedSplitTokens.size());
+            for (Map.Entry<String, List<TokenDescriptor>> entry : sortedSplitTokens.entrySet()) {
+                dataOut.writeUTF(entry.getKey());
+                writeTokens(dataOut, entry.getValue());
+            }
+            writeTokens(dataOut, sortTokens(syncTokens));
+
+            dataOut.flush();
+        } catch (IOException e) {
+            throw new SynException(e);
+        }
+    }
+
+    /**
+     * Reads a compiled grammar written by {@link #write(OutputStream)}. The stream is not closed.
+     *
+     * @param in the stream.
+     * @param expectedChecksum the checksum of the grammar text the tables must have been built for.
+     * @return the compiled grammar.
+     * @throws SynException if reading fails, if the format is not supported or if the checksum does not match.
+     */
+    public static CompiledGrammar read(InputStream in, byte[] expectedChecksum) throws SynException {
+        Checks.notNull(expectedChecksum);
+
+        try {
+            DataInputStream dataIn = new DataInputStream(new BufferedInputStream(in));
+            if (dataIn.readInt() != MAGIC) {
+                throw new SynException("Not a precompiled grammar");
+            }
+            int version = dataIn.readInt();
+            if (version != FORMAT_VERSION) {
+                throw new SynException("Unsupported version of precompiled grammar: " + version);
+            }
+
+            byte[] checksum = new byte[dataIn.readInt()];
+            dataIn.readFully(checksum);
+            if (!Arrays.equals(checksum, expectedChecksum)) {
+                throw new SynException("The precompiled tables do not match the grammar");
+            }
+
+            ParserConfiguration parserConfig = ParserConfigurationSerializer.read(dataIn);
+
+            Map<String, List<TokenDescriptor>> splitTokens = new LinkedHashMap<>();
+            for (int i = 0, n = dataIn.readInt(); i < n; ++i) {
+                String name = dataIn.readUTF();
+                splitTokens.put(name, Collections.unmodifiableList(readTokens(dataIn)));
+            }
+            Set<TokenDescriptor> syncTokens = new HashSet<>(readTokens(dataIn));
+
+            return new CompiledGrammar(checksum, parserConfig, splitTokens, syncTokens);
+        } catch (IOException e) {
+            throw new SynException(e);
+        }
+    }
+
+    private static void writeTokens(DataOutputStream out, List<TokenDescriptor> tokens) throws IOException {
+        out.writeInt(tokens.size());
+        for (TokenDescriptor token : tokens) {
+            ParserConfigurationSerializer.writeToken(out, token);
+        }
+    }
+
+    /**
+     * Sorts tokens, so that the same grammar is always written to the same bytes.
+     */
+    private static List<TokenDescriptor> sortTokens(Set<TokenDescriptor> tokens) {
+        List<TokenDescriptor> list = new ArrayList<>(tokens);
+        Collections.sort(list, new Comparator<TokenDescriptor>() {
+            @Override
+            public int compare(TokenDescriptor token1, TokenDescriptor token2) {
+                int cmp = token1.getType().compareTo(token2.getType());
+                if (cmp == 0) {
+                    cmp = String.valueOf(token1.getLiteral()).compareTo(String.valueOf(token2.getLiteral()));
+                }
+                return cmp;
+            }
+        });
+        return list;
+    }
+
+    private static List<TokenDescriptor> readTokens(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        List<TokenDescriptor> tokens = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            tokens.add(ParserConfigurationSerializer.readToken(in));
+        }
+        return tokens;
+    }
+
+    /**
+     * Builds a canonical text of a grammar: every nonterminal reachable from the start nonterminals, with all
+     * attributes and values. Unlike the source text, it includes the changes made by a binder.
+     */
+    private static final class GrammarDescriber implements EbnfElementProcessor<Void> {
+        private final StringBuilder bld = new StringBuilder();
+        private final Set<EbnfNonterminal> visited = new HashSet<>();
+        private final Deque<EbnfNonterminal> queue = new ArrayDeque<>();
+
+        String describe(EbnfGrammar grammar) throws SynException {
+            for (EbnfNonterminal nonterminal : grammar.getStartNonterminals()) {
+                addNonterminal(nonterminal);
+                bld.append('@').append(nonterminal.getName()).append('\n');
+            }
+
+            while (!queue.isEmpty()) {
+                EbnfNonterminal nonterminal = queue.remove();
+                bld.append(nonterminal.getName()).append(" :");
+                describeProductions(nonterminal.getProductions());
+                bld.append('\n');
+            }
+
+            return bld.toString();
+        }
+
+        private void addNonterminal(EbnfNonterminal nonterminal) {
+            if (visited.add(nonterminal)) {
+                queue.add(nonterminal);
+            }
+        }
+
+        private void describeProductions(EbnfProductions productions) throws SynException {
+            bld.append('(');
+            String sep = "";
+            for (EbnfProduction production : productions.asList()) {
+                bld.append(sep);
+                for (EbnfElement element : production.getElements()) {
+                    bld.append(' ');
+                    if (element.getAttribute() != null) {
+                        bld.append(element.getAttribute()).append('=');
+                    }
+                    element.invokeProcessor(this);
+                }
+                sep = " |";
+            }
+            bld.append(')');
+        }
+
+        @Override
+        public Void processValueElement(EbnfValueElement element) {
+            bld.append(element);
+            return null;
+        }
+
+        @Override
+        public Void processNonterminalElement(EbnfNonterminalElement element) {
+            addNonterminal(element.getNonterminal());
+            bld.append(element.getNonterminal().getName());
+            return null;
+        }
+
+        @Override
+        public Void processTerminalElement(EbnfTerminalElement element) {
+            bld.append(element.getTokenDescriptor());
+            return null;
+        }
+
+        @Override
+        public Void processOptionalElement(EbnfOptionalElement element) throws SynException {
+            describeProductions(element.getBody());
+            bld.append('?');
+            return null;
+        }
+
+        @Override
+        public Void processNestedElement(EbnfNestedElement element) throws SynException {
+            describeProductions(element.getBody());
+            return null;
+        }
+
+        @Override
+        public Void processRepetitionElement(EbnfRepetitionElement element) throws SynException {
+            describeProductions(element.getBody());
+            if (element.getSeparator() != null) {
+                bld.append(" :");
+                describeProductions(element.getSeparator());
+            }
+            bld.append(element.isNullable() ? '*' : '+');
+            return null;
+        }
+    }
+}
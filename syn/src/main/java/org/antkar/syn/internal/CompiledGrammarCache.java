@@ -0,0 +1,192 @@
+/*
+ * Copyright 2013 Anton Karmanov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.antkar.syn.internal;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+
+import org.antkar.syn.SynException;
+
+/**
+ * Process-wide cache of compiled grammars, keyed by the checksum of the grammar and the lazy flag. For a binder,
+ * the checksum includes the grammar generated for the bound classes, so the key does not need to refer to
+ * the classes. The least recently used entries are evicted when the cache is full. The cache is disabled
+ * (has zero size) by default.
+ *
+ * <p>An entry is a task which compiles the grammar. The task is added to the cache before it is run, so
+ * concurrent requests for the same grammar wait for a single compilation instead of compiling the grammar
+ * each. The cached values are immutable and shared by all parsers and binders created for the same
+ * grammar.</p>
+ */
+public final class CompiledGrammarCache {
+    private static final Object LOCK = new Object();
+
+    private static final Map<Key, FutureTask<CompiledGrammar>> MAP = new LinkedHashMap<>(16, 0.75f, true);
+
+    private static int maxSize = 0;
+    private static long hitCount = 0;
+    private static long missCount = 0;
+
+    private CompiledGrammarCache(){}
+
+    /**
+     * Returns the cached value for a grammar, or compiles the grammar if there is no such value. If another
+     * thread is compiling the same grammar, waits for its result. Updates the hit and miss counters if the
+     * cache is enabled. A failed compilation is not cached.
+     *
+     * @param checksum the checksum of the grammar.
+     * @param lazy <code>true</code> if the LR states are built lazily.
+     * @param compiler compiles the grammar if the value is not cached.
+     * @return the value.
+     * @throws SynException if the compilation fails.
+     */
+    public static CompiledGrammar get(byte[] checksum, boolean lazy, Callable<CompiledGrammar> compiler)
+            throws SynException
+    {
+        Checks.notNull(compiler);
+        Key key = new Key(checksum, lazy);
+
+        FutureTask<CompiledGrammar> task;
+        boolean owner = false;
+        synchronized (LOCK) {
+            task = maxSize == 0 ? null : MAP.get(key);
+            if (task != null) {
+                ++hitCount;
+            } else {
+                task = new FutureTask<>(compiler);
+                owner = true;
+                if (maxSize != 0) {
+                    ++missCount;
+                    MAP.put(key, task);
+                    evict();
+                }
+            }
+        }
+
+        if (owner) {
+            task.run();
+        }
+
+        try {
+            return Checks.notNull(BatchParser.getTaskResult(task));
+        } catch (SynException | RuntimeException | Error e) {
+            if (owner) {
+                remove(key, task);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Removes the entry for the specified key, if the entry is the specified task.
+     */
+    private static void remove(Key key, FutureTask<CompiledGrammar> task) {
+        synchronized (LOCK) {
+            if (MAP.get(key) == task) {
+                MAP.remove(key);
+            }
+        }
+    }
+
+    public static int getMaxSize() {
+        synchronized (LOCK) {
+            return maxSize;
+        }
+    }
+
+    /**
+     * Sets the maximum number of cached grammars. Zero disables the cache and removes all entries.
+     */
+    public static void setMaxSize(int size) {
+        Checks.argument(size >= 0);
+        synchronized (LOCK) {
+            maxSize = size;
+            evict();
+        }
+    }
+
+    public static int size() {
+        synchronized (LOCK) {
+            return MAP.size();
+        }
+    }
+
+    public static long getHitCount() {
+        synchronized (LOCK) {
+            return hitCount;
+        }
+    }
+
+    public static long getMissCount() {
+        synchronized (LOCK) {
+            return missCount;
+        }
+    }
+
+    /**
+     * Removes all entries and resets the counters.
+     */
+    public static void clear() {
+        synchronized (LOCK) {
+            MAP.clear();
+            hitCount = 0;
+            missCount = 0;
+        }
+    }
+
+    /**
+     * Removes the least recently used entries exceeding the maximum size.
+     */
+    private static void evict() {
+        Iterator<Key> iterator = MAP.keySet().iterator();
+        while (MAP.size() > maxSize) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Cache key. Compares checksums by content. Lazy and non-lazy grammars are cached separately, since their
+     * parser configurations are different.
+     */
+    private static final class Key {
+        private final byte[] checksum;
+        private final boolean lazy;
+
+        Key(byte[] checksum, boolean lazy) {
+            this.checksum = Checks.notNull(checksum);
+            this.lazy = lazy;
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(checksum) * 31 + (lazy ? 1 : 0);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) obj;
+            return lazy == key.lazy && Arrays.equals(checksum, key.checksum);
+        }
+    }
+}
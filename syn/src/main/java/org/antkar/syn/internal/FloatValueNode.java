@@ -16,6 +16,7 @@
 package org.antkar.syn.internal;
 
 import org.antkar.syn.SynValueType;
+import org.antkar.syn.TerminalNode;
 import org.antkar.syn.TokenDescriptor;
 import org.antkar.syn.ValueNode;
 
@@ -54,4 +55,9 @@ public final class FloatValueNode extends ValueNode {
     public String toString() {
         return getTokenDescriptor() + "(" + getFloat() + ")";
     }
+
+    @Override
+    protected TerminalNode copy(PosBuffer pos) {
+        return new FloatValueNode(pos, value);
+    }
 }
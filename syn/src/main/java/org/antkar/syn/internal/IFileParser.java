@@ -0,0 +1,32 @@
+/*
+ * Copyright 2013 Anton Karmanov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.antkar.syn.internal;
+
+import java.nio.file.Path;
+
+import org.antkar.syn.SynException;
+
+/**
+ * Parses a single file of a batch.
+ *
+ * @param <T> the type of the result.
+ */
+public interface IFileParser<T> {
+    /**
+     * Parses the specified file. Can be called concurrently for different files.
+     */
+    T parseFile(Path file) throws SynException;
+}
@@ -16,6 +16,7 @@
 package org.antkar.syn.internal;
 
 import org.antkar.syn.SynValueType;
+import org.antkar.syn.TerminalNode;
 import org.antkar.syn.TokenDescriptor;
 import org.antkar.syn.ValueNode;
 
@@ -59,4 +60,9 @@ public final class IntegerValueNode extends ValueNode {
     public String toString() {
         return getTokenDescriptor() + "(" + getInt() + ")";
     }
+
+    @Override
+    protected TerminalNode copy(PosBuffer pos) {
+        return new IntegerValueNode(pos, value);
+    }
 }
@@ -16,6 +16,7 @@
 package org.antkar.syn.internal;
 
 import org.antkar.syn.SynValueType;
+import org.antkar.syn.TerminalNode;
 import org.antkar.syn.TokenDescriptor;
 import org.antkar.syn.ValueNode;
 
@@ -60,4 +61,9 @@ public final class LongValueNode extends ValueNode {
     public String toString() {
         return getTokenDescriptor() + "(" + getLong() + ")";
     }
+
+    @Override
+    protected TerminalNode copy(PosBuffer pos) {
+        return new LongValueNode(pos, value);
+    }
 }
@@ -16,6 +16,7 @@
 package org.antkar.syn.internal;
 
 import org.antkar.syn.SynValueType;
+import org.antkar.syn.TerminalNode;
 import org.antkar.syn.TokenDescriptor;
 import org.antkar.syn.ValueNode;
 
@@ -44,4 +45,10 @@ public final class ObjectValueNode extends ValueNode {
     public TokenDescriptor getTokenDescriptor() {
         return null;
     }
+
+    @Override
+    protected TerminalNode copy(PosBuffer pos) {
+        //Constant nodes are not associated with an input position.
+        throw new UnsupportedOperationException();
+    }
 }
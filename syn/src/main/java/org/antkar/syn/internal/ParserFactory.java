@@ -0,0 +1,59 @@
+/*
+ * Copyright 2013 Anton Karmanov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.antkar.syn.internal;
+
+import org.antkar.syn.SynParser;
+
+/**
+ * Creates {@link SynParser}s for compiled grammars. Allows other packages of the library, such as the binder,
+ * to use a non-public constructor of {@link SynParser}, so that {@link CompiledGrammar} does not become a part
+ * of the public API. The implementation is registered by {@link SynParser} when the class is initialized.
+ */
+public abstract class ParserFactory {
+    private static volatile ParserFactory instance;
+
+    protected ParserFactory(){}
+
+    /**
+     * Creates a parser for the specified compiled grammar.
+     */
+    public abstract SynParser createParser(CompiledGrammar compiledGrammar);
+
+    /**
+     * Registers the implementation. Can be called only once.
+     */
+    public static void setInstance(ParserFactory factory) {
+        Checks.notNull(factory);
+        Checks.state(instance == null);
+        instance = factory;
+    }
+
+    /**
+     * Returns the implementation, initializing {@link SynParser} if necessary.
+     */
+    public static ParserFactory getInstance() {
+        ParserFactory factory = instance;
+        if (factory == null) {
+            try {
+                Class.forName(SynParser.class.getName(), true, SynParser.class.getClassLoader());
+            } catch (ClassNotFoundException e) {
+                throw new IllegalStateException(e);
+            }
+            factory = Checks.notNull(instance);
+        }
+        return factory;
+    }
+}
@@ -15,6 +15,7 @@
  */
 package org.antkar.syn.internal;
 
+import org.antkar.syn.TerminalNode;
 import org.antkar.syn.TokenDescriptor;
 
 /**
@@ -29,4 +30,9 @@ public final class StringValueNode extends BasicStringValueNode {
     public TokenDescriptor getTokenDescriptor() {
         return TokenDescriptor.STRING;
     }
+
+    @Override
+    protected TerminalNode copy(PosBuffer pos) {
+        return new StringValueNode(pos, getString());
+    }
 }
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2013 Anton Karmanov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.antkar.syn.internal;
+
+import org.antkar.syn.SourceDescriptor;
+import org.antkar.syn.TextPos;
+
+/**
+ * Describes how text positions located after an edited region of a text move when the text is edited.
+ * The positions are shifted relative to an anchor - a position which is not affected by the edit. Columns
+ * change only on the line of the anchor, since the lines following it are not affected by the edit.
+ */
+public final class TextShift {
+    private final int anchorLine;
+    private final int offsetDelta;
+    private final int lineDelta;
+    private final int columnDelta;
+
+    /**
+     * Constructs a shift which moves the specified old anchor position to the new one.
+     */
+    public TextShift(TextPos oldAnchor, TextPos newAnchor) {
+        anchorLine = oldAnchor.getLine();
+        offsetDelta = newAnchor.getOffset() - oldAnchor.getOffset();
+        lineDelta = newAnchor.getLine() - oldAnchor.getLine();
+        columnDelta = newAnchor.getColumn() - oldAnchor.getColumn();
+    }
+
+    /**
+     * Returns the difference between the new and the old line numbers.
+     */
+    public int getLineDelta() {
+        return lineDelta;
+    }
+
+    /**
+     * Writes the shifted position into the specified buffer.
+     */
+    public void shift(PosBuffer buffer, SourceDescriptor source, int offset, int line, int column, int length) {
+        int newColumn = line == anchorLine ? column + columnDelta : column;
+        buffer.set(source, offset + offsetDelta, line + lineDelta, newColumn, length);
+    }
+
+    /**
+     * Returns the shifted position.
+     */
+    public TextPos shift(TextPos pos) {
+        int line = pos.getLine();
+        int newColumn = line == anchorLine ? pos.getColumn() + columnDelta : pos.getColumn();
+        return new TextPos(pos.getSource(), pos.getOffset() + offsetDelta, line + lineDelta, newColumn,
+                pos.getLength());
+    }
+}
@@ -47,4 +47,9 @@ public final class TokenNode extends TerminalNode {
         String toString = tokenDescriptor.toString();
         return toString;
     }
+
+    @Override
+    protected TerminalNode copy(PosBuffer pos) {
+        return new TokenNode(pos, tokenDescriptor);
+    }
 }
@@ -27,10 +27,10 @@ import org.antkar.syn.internal.binder.lookup.Lookup;
  */
 public final class BinderConfiguration<T> {
 
-    private Class<T> classToBind;
-    private Map<String, ObjectBinder> prKeyToBinderMap;
-    private Map<Class<?>, Collection<Lookup>> clsToLookupsMap;
-    private Map<Class<?>, Collection<InitMethod>> clsToInitMethodsMap;
+    private final Class<T> classToBind;
+    private final Map<String, ObjectBinder> prKeyToBinderMap;
+    private final Map<Class<?>, Collection<Lookup>> clsToLookupsMap;
+    private final Map<Class<?>, Collection<InitMethod>> clsToInitMethodsMap;
 
     BinderConfiguration(
             Class<T> classToBind,
@@ -23,6 +23,7 @@ import java.util.Map;
 
 import org.antkar.syn.SynException;
 import org.antkar.syn.TextPos;
+import org.antkar.syn.TokenDescriptor;
 import org.antkar.syn.ValueNode;
 import org.antkar.syn.binder.SynBinderException;
 import org.antkar.syn.internal.StringValueNode;
@@ -400,6 +401,7 @@ final class BindingGrammarConverter {
     private static EbnfGrammar createGenGrammar(EbnfGrammar orgGrammar, EbnfNonterminal genStartNt) {
         List<EbnfNonterminal> genStartNts = Collections.singletonList(genStartNt);
         List<EbnfTerminalElement> terminals = orgGrammar.getTerminals();
-        return new EbnfGrammar(genStartNts, terminals);
+        return new EbnfGrammar(genStartNts, terminals, Collections.<String, List<TokenDescriptor>>emptyMap(),
+                Collections.<TokenDescriptor>emptyList(), orgGrammar.getPrecedences());
     }
 }
@@ -22,6 +22,7 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.antkar.syn.TokenDescriptor;
@@ -36,6 +37,7 @@ public final class BnfGrammar {
     private final List<BnfNonterminal> nonterminals;
     private final List<TokenDescriptor> tokens;
     private final List<BnfElement> elements;
+    private final Map<TokenDescriptor, BnfPrecedence> precedences;
 
     /**
      * Constructs a BNF grammar.
@@ -48,9 +50,27 @@ public final class BnfGrammar {
             List<BnfNonterminal> startNonterminals,
             Collection<BnfNonterminal> nonterminalsCol,
             Collection<BnfTerminal> terminalsCol)
+    {
+        this(startNonterminals, nonterminalsCol, terminalsCol, Collections.<TokenDescriptor, BnfPrecedence>emptyMap());
+    }
+
+    /**
+     * Constructs a BNF grammar with token precedences.
+     *
+     * @param startNonterminals the list of start nonterminals. Must contain at least one element.
+     * @param nonterminalsCol the list of all nonterminals used in the grammar.
+     * @param terminalsCol the list of all terminals used in the grammar.
+     * @param precedences the precedences of tokens.
+     */
+    public BnfGrammar(
+            List<BnfNonterminal> startNonterminals,
+            Collection<BnfNonterminal> nonterminalsCol,
+            Collection<BnfTerminal> terminalsCol,
+            Map<TokenDescriptor, BnfPrecedence> precedences)
     {
         Checks.notNull(startNonterminals);
         this.startNonterminals = CommonUtil.unmodifiableListCopy(startNonterminals);
+        this.precedences = CommonUtil.unmodifiableMapCopy(precedences);
         this.elements = calcElementsList(nonterminalsCol, terminalsCol);
 
         verifyElementIndicies();
@@ -80,6 +100,13 @@ public final class BnfGrammar {
         return tokens;
     }
 
+    /**
+     * Returns the precedences of tokens, used to resolve shift/reduce conflicts.
+     */
+    public Map<TokenDescriptor, BnfPrecedence> getPrecedences() {
+        return precedences;
+    }
+
     /**
      * Returns the list of all grammar elements of this grammar.
      */
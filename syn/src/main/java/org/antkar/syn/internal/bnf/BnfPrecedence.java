@@ -0,0 +1,64 @@
+/*
+ * Copyright 2013 Anton Karmanov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.antkar.syn.internal.bnf;
+
+import org.antkar.syn.internal.Checks;
+
+/**
+ * Precedence and associativity of a token, as declared by a <code>%left</code>, <code>%right</code> or
+ * <code>%nonassoc</code> directive. Tokens declared by later directives have higher precedence.
+ */
+public final class BnfPrecedence {
+    /**
+     * Associativity of a token, which decides a conflict between tokens of the same precedence.
+     */
+    public enum Associativity {
+        /** The reduction wins: <code>a - b - c</code> means <code>(a - b) - c</code>. */
+        LEFT,
+        /** The shift wins: <code>a ^ b ^ c</code> means <code>a ^ (b ^ c)</code>. */
+        RIGHT,
+        /** Neither wins: <code>a &lt; b &lt; c</code> is a syntax error. */
+        NONASSOC
+    }
+
+    private final int level;
+    private final Associativity associativity;
+
+    public BnfPrecedence(int level, Associativity associativity) {
+        Checks.argument(level >= 0);
+        this.level = level;
+        this.associativity = Checks.notNull(associativity);
+    }
+
+    /**
+     * Returns the precedence level. A higher level binds tighter.
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * Returns the associativity.
+     */
+    public Associativity getAssociativity() {
+        return associativity;
+    }
+
+    @Override
+    public String toString() {
+        return associativity + " " + level;
+    }
+}
@@ -15,6 +15,7 @@
  */
 package org.antkar.syn.internal.bnf;
 
+import java.util.Collections;
 import java.util.List;
 
 import org.antkar.syn.internal.Checks;
@@ -29,14 +30,21 @@ public final class BnfProduction {
     private BnfNonterminal nonterminal;
     private final List<BnfElement> elements;
     private final IParserAction parserAction;
+    private final List<String> keys;
 
     public BnfProduction(int index, List<BnfElement> elements, IParserAction parserAction) {
+        this(index, elements, parserAction, Collections.<String>nCopies(elements.size(), null));
+    }
+
+    public BnfProduction(int index, List<BnfElement> elements, IParserAction parserAction, List<String> keys) {
         Checks.argument(index >= 0);
         Checks.notNull(elements);
+        Checks.argument(keys.size() == elements.size());
 
         this.index = index;
         this.elements = CommonUtil.unmodifiableListCopy(elements);
         this.parserAction = Checks.notNull(parserAction);
+        this.keys = CommonUtil.unmodifiableListCopy(keys);
 
         nonterminal = null;
     }
@@ -72,6 +80,14 @@ public final class BnfProduction {
         return elements;
     }
 
+    /**
+     * Returns the attribute keys of the elements of the production. The list contains an entry for each
+     * element, the entry is <code>null</code> if no attribute is associated with the element.
+     */
+    public List<String> getKeys() {
+        return keys;
+    }
+
     /**
      * Returns the action associated with the production.
      */
@@ -15,10 +15,14 @@
  */
 package org.antkar.syn.internal.ebnf;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
+import org.antkar.syn.TokenDescriptor;
 import org.antkar.syn.internal.Checks;
 import org.antkar.syn.internal.CommonUtil;
+import org.antkar.syn.internal.bnf.BnfPrecedence;
 
 /**
  * EBNF grammar.
@@ -26,13 +30,30 @@ import org.antkar.syn.internal.CommonUtil;
 public final class EbnfGrammar {
     private final List<EbnfNonterminal> startNonterminals;
     private final List<EbnfTerminalElement> terminals;
+    private final Map<String, List<TokenDescriptor>> splitTokens;
+    private final List<TokenDescriptor> syncTokens;
+    private final Map<TokenDescriptor, BnfPrecedence> precedences;
 
     public EbnfGrammar(List<EbnfNonterminal> startNonterminals, List<EbnfTerminalElement> terminals) {
+        this(startNonterminals, terminals, Collections.<String, List<TokenDescriptor>>emptyMap(),
+                Collections.<TokenDescriptor>emptyList(), Collections.<TokenDescriptor, BnfPrecedence>emptyMap());
+    }
+
+    public EbnfGrammar(
+            List<EbnfNonterminal> startNonterminals,
+            List<EbnfTerminalElement> terminals,
+            Map<String, List<TokenDescriptor>> splitTokens,
+            List<TokenDescriptor> syncTokens,
+            Map<TokenDescriptor, BnfPrecedence> precedences)
+    {
         Checks.notNull(startNonterminals);
         Checks.argument(!startNonterminals.isEmpty());
 
         this.startNonterminals = CommonUtil.unmodifiableListCopy(startNonterminals);
         this.terminals = CommonUtil.unmodifiableListCopy(terminals);
+        this.splitTokens = CommonUtil.unmodifiableMapCopy(splitTokens);
+        this.syncTokens = CommonUtil.unmodifiableListCopy(syncTokens);
+        this.precedences = CommonUtil.unmodifiableMapCopy(precedences);
     }
 
     /**
@@ -48,4 +69,28 @@ public final class EbnfGrammar {
     public List<EbnfTerminalElement> getTerminals() {
         return terminals;
     }
+
+    /**
+     * Returns the tokens at which the top-level repetitions of start nonterminals can be split, as declared
+     * by <code>%split</code> directives. The keys are start nonterminal names.
+     */
+    public Map<String, List<TokenDescriptor>> getSplitTokens() {
+        return splitTokens;
+    }
+
+    /**
+     * Returns the tokens at which the parser resynchronizes after a syntax error, as declared by
+     * <code>%sync</code> directives.
+     */
+    public List<TokenDescriptor> getSyncTokens() {
+        return syncTokens;
+    }
+
+    /**
+     * Returns the precedences of tokens, as declared by <code>%left</code>, <code>%right</code> and
+     * <code>%nonassoc</code> directives.
+     */
+    public Map<TokenDescriptor, BnfPrecedence> getPrecedences() {
+        return precedences;
+    }
 }
@@ -90,7 +90,8 @@ public final class EbnfToBnfConverter {
 
         //Create and return a BNF grammar instance.
         Collection<BnfTerminal> terminals = converter.terminalMap.values();
-        BnfGrammar bGrammar = new BnfGrammar(bStartNonterminals, converter.nonterminals, terminals);
+        BnfGrammar bGrammar = new BnfGrammar(bStartNonterminals, converter.nonterminals, terminals,
+                eGrammar.getPrecedences());
         return bGrammar;
     }
 
@@ -230,7 +231,8 @@ public final class EbnfToBnfConverter {
     {
         ConvertedElements convertedElements = convertElements(currentNt, eProduction.getElements());
         IParserAction parserAction = convertedElements.createParserAction(forceObjectResult);
-        BnfProduction bProduction = new BnfProduction(prCount, convertedElements.bElements, parserAction);
+        BnfProduction bProduction = new BnfProduction(prCount, convertedElements.bElements, parserAction,
+                convertedElements.keys);
         ++prCount;
         return bProduction;
     }
@@ -250,6 +252,7 @@ public final class EbnfToBnfConverter {
 
         //Go through all elements, convert them to BNF and determine the production's result.
         List<BnfElement> bElements = new ArrayList<>();
+        List<String> keys = new ArrayList<>();
         for (int i = 0, n = eElements.size(); i < n; ++i) {
             //The elements are processed in a reverse order, because this allows to track the stack
             //offset of a BNF element related to the end of the list of BNF elements.
@@ -286,11 +289,13 @@ public final class EbnfToBnfConverter {
             if (bElement != null) {
                 //Not all EBNF elements produce a BNF element.
                 bElements.add(bElement);
+                keys.add(attribute);
             }
         }
 
         //Reverse the list of elements, since it was build in a reverse order.
         Collections.reverse(bElements);
+        Collections.reverse(keys);
 
         //Create and return a result object.
         IParserGetter defaultGetter =
@@ -298,6 +303,7 @@ public final class EbnfToBnfConverter {
 
         ConvertedElements result = new ConvertedElements(
                 bElements,
+                keys,
                 defaultGetter,
                 getterMap,
                 embeddedGetters);
@@ -397,6 +403,9 @@ public final class EbnfToBnfConverter {
         /** BNF elements. */
         final List<BnfElement> bElements;
 
+        /** Attribute keys of BNF elements. */
+        final List<String> keys;
+
         /** Default result value getter. */
         final IParserGetter defaultGetter;
 
@@ -408,6 +417,7 @@ public final class EbnfToBnfConverter {
 
         ConvertedElements(
                 List<BnfElement> elements,
+                List<String> keys,
                 IParserGetter defaultGetter,
                 Map<String, Getter> getterMap,
                 Collection<Getter> embeddedGetters)
@@ -416,6 +426,7 @@ public final class EbnfToBnfConverter {
             Checks.notNull(getterMap);
 
             bElements = elements;
+            this.keys = keys;
             this.defaultGetter = defaultGetter;
             this.getterMap = getterMap;
             this.embeddedGetters = embeddedGetters;
@@ -41,6 +41,7 @@ import org.antkar.syn.internal.IntegerValueNode;
 import org.antkar.syn.internal.LongValueNode;
 import org.antkar.syn.internal.ObjectValueNode;
 import org.antkar.syn.internal.StringValueNode;
+import org.antkar.syn.internal.bnf.BnfPrecedence;
 import org.antkar.syn.internal.ebnf.EbnfElement;
 import org.antkar.syn.internal.ebnf.EbnfGrammar;
 import org.antkar.syn.internal.ebnf.EbnfNestedElement;
@@ -81,19 +82,176 @@ final class SynTreeToEbnfGrammarConverter {
      * Converts an AST to a grammar (instance method).
      */
     private EbnfGrammar convertGrammar(SourceDescriptor sourceDescriptor, SynNode grammarNode) throws SynException {
-        //Convert each nonterminal.
+        //Convert each nonterminal. Directives are converted after all nonterminals, since they may refer to
+        //nonterminals and literals defined later.
+        List<ObjectNode> directiveNodes = new ArrayList<>();
         ArrayNode array = (ArrayNode) grammarNode;
-        for (SynNode nonterminalNode : array) {
-            convertNonterminal(nonterminalNode);
+        for (SynNode declarationNode : array) {
+            ObjectNode object = (ObjectNode) declarationNode;
+            if (object.get("directive") != null) {
+                directiveNodes.add(object);
+            } else {
+                convertNonterminal(object);
+            }
         }
 
         //Fail if there are undefined nonterminals referenced from grammar rules.
         checkUndefinedNonterminals(sourceDescriptor);
 
-        EbnfGrammar result = new EbnfGrammar(startNonterminals, terminals);
+        Map<String, List<TokenDescriptor>> splitTokens = new HashMap<>();
+        List<TokenDescriptor> syncTokens = new ArrayList<>();
+        Map<TokenDescriptor, BnfPrecedence> precedences = new HashMap<>();
+        int precedenceLevel = 0;
+        for (ObjectNode directiveNode : directiveNodes) {
+            String directive = directiveNode.getString("directive");
+            BnfPrecedence.Associativity associativity = getAssociativity(directive);
+            if ("split".equals(directive)) {
+                convertSplitDirective(directiveNode, splitTokens);
+            } else if ("sync".equals(directive)) {
+                convertSyncDirective(directiveNode, syncTokens);
+            } else if (associativity != null) {
+                BnfPrecedence precedence = new BnfPrecedence(precedenceLevel++, associativity);
+                convertPrecedenceDirective(directiveNode, precedence, precedences);
+            } else {
+                TextPos directivePos = directiveNode.getPos("directive");
+                throw new SynGrammarException(directivePos, "Unknown directive: %" + directive);
+            }
+        }
+
+        EbnfGrammar result = new EbnfGrammar(startNonterminals, terminals, splitTokens, syncTokens, precedences);
         return result;
     }
 
+    /**
+     * Converts an AST node to a <code>%split Nonterminal 'literal' ... ;</code> directive.
+     */
+    private void convertSplitDirective(ObjectNode directiveNode, Map<String, List<TokenDescriptor>> splitTokens)
+            throws SynException
+    {
+        TextPos directivePos = directiveNode.getPos("directive");
+        ArrayNode args = (ArrayNode) directiveNode.get("args");
+        if (args.size() < 2 || !"identifier".equals(((ObjectNode) args.get(0)).getString("type"))) {
+            throw new SynGrammarException(directivePos,
+                    "Directive %split requires a nonterminal name and one or more literals");
+        }
+
+        //The nonterminal must be a start nonterminal producing a repetition without a separator.
+        ObjectNode ntNode = (ObjectNode) args.get(0);
+        String name = ntNode.getString("value");
+        TextPos namePos = ntNode.getPos("value");
+        EbnfNonterminal nonterminal = definedNonterminalMap.get(name);
+        if (nonterminal == null || !startNonterminals.contains(nonterminal)) {
+            throw new SynGrammarException(namePos, "Not a start nonterminal: " + name);
+        }
+        if (!isSplittable(nonterminal)) {
+            throw new SynGrammarException(namePos, String.format(
+                    "Nonterminal %s must be defined as a single repetition without a separator", name));
+        }
+        if (splitTokens.containsKey(name)) {
+            throw new SynGrammarException(namePos, "Split literals are already defined for " + name);
+        }
+
+        List<TokenDescriptor> tokens = new ArrayList<>();
+        convertLiterals(args, 1, tokens);
+        splitTokens.put(name, tokens);
+    }
+
+    /**
+     * Converts an AST node to a <code>%sync 'literal' ... ;</code> directive.
+     */
+    private void convertSyncDirective(ObjectNode directiveNode, List<TokenDescriptor> syncTokens)
+            throws SynException
+    {
+        ArrayNode args = (ArrayNode) directiveNode.get("args");
+        if (args.size() == 0) {
+            TextPos directivePos = directiveNode.getPos("directive");
+            throw new SynGrammarException(directivePos, "Directive %sync requires one or more literals");
+        }
+        convertLiterals(args, 0, syncTokens);
+    }
+
+    /**
+     * Converts an AST node to a <code>%left 'literal' ... ;</code>, <code>%right 'literal' ... ;</code> or
+     * <code>%nonassoc 'literal' ... ;</code> directive. All literals of a directive get the same precedence.
+     */
+    private void convertPrecedenceDirective(
+            ObjectNode directiveNode,
+            BnfPrecedence precedence,
+            Map<TokenDescriptor, BnfPrecedence> precedences) throws SynException
+    {
+        String directive = directiveNode.getString("directive");
+        ArrayNode args = (ArrayNode) directiveNode.get("args");
+        if (args.size() == 0) {
+            TextPos directivePos = directiveNode.getPos("directive");
+            throw new SynGrammarException(directivePos, "Directive %" + directive + " requires one or more literals");
+        }
+
+        List<TokenDescriptor> tokens = new ArrayList<>();
+        convertLiterals(args, 0, tokens);
+        for (int i = 0, n = tokens.size(); i < n; ++i) {
+            TokenDescriptor tokenDescriptor = tokens.get(i);
+            if (precedences.containsKey(tokenDescriptor)) {
+                ObjectNode argNode = (ObjectNode) args.get(i);
+                throw new SynGrammarException(argNode.getPos("value"),
+                        "Precedence is already declared for " + argNode.getString("value"));
+            }
+            precedences.put(tokenDescriptor, precedence);
+        }
+    }
+
+    /**
+     * Returns the associativity declared by a precedence directive, or <code>null</code> if the directive is
+     * not a precedence one.
+     */
+    private static BnfPrecedence.Associativity getAssociativity(String directive) {
+        switch (directive) {
+        case "left":
+            return BnfPrecedence.Associativity.LEFT;
+        case "right":
+            return BnfPrecedence.Associativity.RIGHT;
+        case "nonassoc":
+            return BnfPrecedence.Associativity.NONASSOC;
+        default:
+            return null;
+        }
+    }
+
+    /**
+     * Converts the arguments of a directive, starting with the specified one, to literal tokens.
+     * The literals must be used in the grammar, otherwise the scanner does not recognize them.
+     */
+    private void convertLiterals(ArrayNode args, int start, List<TokenDescriptor> tokens) throws SynException {
+        for (int i = start, n = args.size(); i < n; ++i) {
+            ObjectNode argNode = (ObjectNode) args.get(i);
+            String literal = argNode.getString("value");
+            TextPos literalPos = argNode.getPos("value");
+            TokenDescriptor tokenDescriptor = literalToTokenDescriptorMap.get(literal);
+            if (!"lex".equals(argNode.getString("type")) || tokenDescriptor == null) {
+                throw new SynGrammarException(literalPos, "Not a literal used in the grammar: " + literal);
+            }
+            tokens.add(tokenDescriptor);
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if the specified nonterminal is defined as a single repetition element without
+     * a separator and an attribute, like <code>@File : (Declaration)* ;</code>.
+     */
+    private static boolean isSplittable(EbnfNonterminal nonterminal) {
+        List<EbnfProduction> productions = nonterminal.getProductions().asList();
+        if (productions.size() != 1) {
+            return false;
+        }
+
+        List<EbnfElement> elements = productions.get(0).getElements();
+        if (elements.size() != 1 || !(elements.get(0) instanceof EbnfRepetitionElement)) {
+            return false;
+        }
+
+        EbnfRepetitionElement element = (EbnfRepetitionElement) elements.get(0);
+        return element.getSeparator() == null && element.getAttribute() == null;
+    }
+
     private void checkUndefinedNonterminals(SourceDescriptor sourceDescriptor) throws SynGrammarException {
         if (!undefinedNonterminalMap.isEmpty()) {
             List<String> list = new ArrayList<>(undefinedNonterminalMap.keySet());
@@ -106,8 +264,7 @@ final class SynTreeToEbnfGrammarConverter {
     /**
      * Converts an AST node to an EBNF nonterminal definition.
      */
-    private void convertNonterminal(SynNode nonterminalNode) throws SynException {
-        ObjectNode object = (ObjectNode) nonterminalNode;
+    private void convertNonterminal(ObjectNode object) throws SynException {
         String name = object.getString("name");
         TextPos namePos = object.getPos("name");
         SynNode start = object.get("start");
@@ -16,45 +16,138 @@
 package org.antkar.syn.internal.lrtables;
 
 import java.io.PrintStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.antkar.syn.TokenDescriptor;
 import org.antkar.syn.internal.Checks;
 import org.antkar.syn.internal.CommonUtil;
+import org.antkar.syn.internal.bnf.BnfGrammar;
+import org.antkar.syn.internal.bnf.BnfNonterminal;
 import org.antkar.syn.internal.parser.ParserEngine;
 
 /**
  * Parser configuration. Defines LR tables and other information used by {@link ParserEngine} to
  * parse a text.
+ *
+ * <p>A lazy configuration builds a separate set of LR states for each start nonterminal when the start state
+ * of that nonterminal is requested for the first time. The methods returning the data of all start nonterminals,
+ * like {@link #getStates()}, build a complete eager configuration and return its data.</p>
  */
 public final class ParserConfiguration {
     private final Map<String, ParserState> startStates;
     private final List<ParserState> states;
+    private final Map<String, ParserNonterminal> repetitions;
     private final List<TokenDescriptor> tokenDescriptors;
 
+    /** The grammar of a lazy configuration, or <code>null</code> if the configuration is eager. */
+    private final BnfGrammar lazyGrammar;
+
+    /** The parts of a lazy configuration, by start nonterminal names. */
+    private final Map<String, LazyPart> lazyParts;
+
+    /** The complete configuration built for a lazy one on demand. */
+    private volatile ParserConfiguration eagerConfig;
+
     ParserConfiguration(
             Map<String, ParserState> startStates,
+            Map<String, ParserNonterminal> repetitions,
             List<ParserState> states,
             List<TokenDescriptor> tokenDescriptors)
     {
         Checks.notNull(startStates);
+        Checks.notNull(repetitions);
         Checks.notNull(states);
         Checks.notNull(tokenDescriptors);
 
         this.startStates = CommonUtil.unmodifiableMapCopy(startStates);
+        this.repetitions = CommonUtil.unmodifiableMapCopy(repetitions);
         this.states = CommonUtil.unmodifiableListCopy(states);
         this.tokenDescriptors = CommonUtil.unmodifiableListCopy(tokenDescriptors);
+        lazyGrammar = null;
+        lazyParts = Collections.emptyMap();
+        eagerConfig = this;
+    }
+
+    /**
+     * Creates a lazy configuration.
+     */
+    ParserConfiguration(BnfGrammar grammar) {
+        Checks.notNull(grammar);
+
+        startStates = Collections.emptyMap();
+        repetitions = Collections.emptyMap();
+        states = Collections.emptyList();
+        tokenDescriptors = CommonUtil.unmodifiableListCopy(grammar.getTokens());
+        lazyGrammar = grammar;
+
+        Map<String, LazyPart> parts = new HashMap<>();
+        for (BnfNonterminal nonterminal : grammar.getStartNonterminals()) {
+            parts.put(nonterminal.getName(), new LazyPart(grammar, nonterminal));
+        }
+        lazyParts = Collections.unmodifiableMap(parts);
+    }
+
+    /**
+     * Returns <code>true</code> if this configuration is lazy.
+     */
+    public boolean isLazy() {
+        return lazyGrammar != null;
     }
 
     /**
      * Returns the start LR state for a given start nonterminal.
      */
     public ParserState getStartState(String name) {
+        if (lazyGrammar != null) {
+            LazyPart part = lazyParts.get(name);
+            return part == null ? null : part.getConfig().getStartState(name);
+        }
+
         ParserState result = startStates.get(name);
         return result;
     }
 
+    /**
+     * Returns the nonterminal of the top-level repetition of a given start nonterminal, i. e. the repetition
+     * which produces the value of the start nonterminal, like <code>(Statement)*</code> in
+     * <code>@File : (Statement)* ;</code>. Returns <code>null</code> if the value of the start nonterminal
+     * is not produced by a repetition.
+     */
+    public ParserNonterminal getTopLevelRepetition(String name) {
+        if (lazyGrammar != null) {
+            LazyPart part = lazyParts.get(name);
+            return part == null ? null : part.getConfig().getTopLevelRepetition(name);
+        }
+
+        ParserNonterminal result = repetitions.get(name);
+        return result;
+    }
+
+    /**
+     * Returns the start states of all start nonterminals.
+     */
+    Map<String, ParserState> getStartStates() {
+        return getEagerConfiguration().startStates;
+    }
+
+    /**
+     * Returns the top-level repetitions of all start nonterminals which have them.
+     */
+    Map<String, ParserNonterminal> getTopLevelRepetitions() {
+        return getEagerConfiguration().repetitions;
+    }
+
+    /**
+     * Returns the list of all LR states.
+     */
+    public List<ParserState> getStates() {
+        return getEagerConfiguration().states;
+    }
+
     /**
      * Returns the list of token descriptors used in the grammar.
      */
@@ -62,12 +155,87 @@ public final class ParserConfiguration {
         return tokenDescriptors;
     }
 
+    /**
+     * Calculates the maximum length of the chains of unit productions (see {@link ParserState#getUnitProduction()})
+     * reduced after a nonterminal. When the parser reduces a nonterminal and the GOTO leads to a unit state,
+     * the unit production is reduced at once, and so on while the next GOTO leads to a unit state as well.
+     *
+     * @return the map from the names of the nonterminals starting at least one chain to the maximum number of
+     * unit productions in a chain, in the order of states.
+     */
+    public Map<String, Integer> calcUnitChainDepths() {
+        Map<String, Integer> result = new LinkedHashMap<>();
+        for (ParserState state : getStates()) {
+            for (ParserGoto pGoto : state.getGotoList()) {
+                int depth = 0;
+                ParserProduction unitProduction = pGoto.state.getUnitProduction();
+                while (unitProduction != null) {
+                    ++depth;
+                    unitProduction = state.getGotoState(unitProduction.getNonterminal()).getUnitProduction();
+                }
+
+                String name = pGoto.nonterminal.getName();
+                Integer maxDepth = result.get(name);
+                if (depth > 0 && (maxDepth == null || depth > maxDepth)) {
+                    result.put(name, depth);
+                }
+            }
+        }
+        return result;
+    }
+
     /**
      * Prints LR states to a stream. For debug purposes.
      */
     void print(PrintStream out) {
-        for (ParserState state : states) {
+        for (ParserState state : getStates()) {
             state.print(out);
         }
     }
+
+    /**
+     * Returns this configuration if it is eager, or builds a complete configuration for a lazy one.
+     */
+    private ParserConfiguration getEagerConfiguration() {
+        ParserConfiguration result = eagerConfig;
+        if (result == null) {
+            synchronized (this) {
+                result = eagerConfig;
+                if (result == null) {
+                    result = ParserConfigurator.makeConfiguration(lazyGrammar);
+                    eagerConfig = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The configuration of a single start nonterminal of a lazy configuration. Built on the first request;
+     * the volatile field publishes the fully built states to other threads.
+     */
+    private static final class LazyPart {
+        private final BnfGrammar grammar;
+        private final BnfNonterminal startNonterminal;
+        private volatile ParserConfiguration config;
+
+        LazyPart(BnfGrammar grammar, BnfNonterminal startNonterminal) {
+            this.grammar = grammar;
+            this.startNonterminal = startNonterminal;
+        }
+
+        ParserConfiguration getConfig() {
+            ParserConfiguration result = config;
+            if (result == null) {
+                synchronized (this) {
+                    result = config;
+                    if (result == null) {
+                        result = ParserConfigurator.makePartConfiguration(grammar, startNonterminal);
+                        config = result;
+                    }
+                }
+            }
+            return result;
+        }
+    }
 }
@@ -0,0 +1,369 @@
+/*
+ * Copyright 2013 Anton Karmanov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.antkar.syn.internal.lrtables;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.antkar.syn.SynException;
+import org.antkar.syn.TokenDescriptor;
+import org.antkar.syn.TokenType;
+import org.antkar.syn.internal.parser.IParserAction;
+import org.antkar.syn.internal.parser.ParserActionSerializer;
+
+/**
+ * Writes a {@link ParserConfiguration} to a binary stream and reads it back. The LR states are stored together
+ * with the compressed SHIFT and GOTO tables, so reading a configuration does not involve LR construction.
+ */
+public final class ParserConfigurationSerializer {
+    private ParserConfigurationSerializer(){}
+
+    /**
+     * Writes a configuration.
+     *
+     * @throws SynException if the configuration cannot be stored, e. g. if the grammar contains a Java object
+     * constant.
+     */
+    public static void write(DataOutput out, ParserConfiguration config) throws IOException, SynException {
+        List<TokenDescriptor> tokenDescriptors = config.getTokenDescriptors();
+        out.writeInt(tokenDescriptors.size());
+        for (TokenDescriptor token : tokenDescriptors) {
+            writeToken(out, token);
+        }
+
+        List<ParserState> states = config.getStates();
+        List<ParserProduction> productions = new ArrayList<>();
+        Map<ParserProduction, Integer> productionIndices = new IdentityHashMap<>();
+        Map<Integer, ParserNonterminal> nonterminals = new TreeMap<>();
+        for (ParserState state : states) {
+            for (ParserProduction production : state.getReduceProductions()) {
+                if (!productionIndices.containsKey(production)) {
+                    productionIndices.put(production, productions.size());
+                    productions.add(production);
+                }
+                addNonterminal(nonterminals, production.getNonterminal());
+            }
+            for (ParserGoto pGoto : state.getGotoList()) {
+                addNonterminal(nonterminals, pGoto.nonterminal);
+            }
+        }
+        for (ParserNonterminal repetition : config.getTopLevelRepetitions().values()) {
+            addNonterminal(nonterminals, repetition);
+        }
+
+        writeNonterminals(out, nonterminals);
+        writeProductions(out, productions);
+
+        ParserTables tables = states.isEmpty() ? null : states.get(0).getTables();
+        out.writeInt(states.size());
+        for (ParserState state : states) {
+            List<ParserProduction> reduceProductions = state.getReduceProductions();
+            out.writeInt(reduceProductions.size());
+            for (ParserProduction production : reduceProductions) {
+                out.writeInt(productionIndices.get(production));
+                writeExcludedTokens(out, tables, state.getExcludedTokens(production));
+            }
+
+            List<ParserShift> shifts = state.getShifts();
+            out.writeInt(shifts.size());
+            for (ParserShift shift : shifts) {
+                out.writeInt(tables.getTokenIndex(shift.tokenDescriptor));
+                out.writeInt(shift.state.getIndex());
+            }
+
+            List<ParserGoto> gotos = state.getGotoList();
+            out.writeInt(gotos.size());
+            for (ParserGoto pGoto : gotos) {
+                out.writeInt(pGoto.nonterminal.getIndex());
+                out.writeInt(pGoto.state.getIndex());
+            }
+        }
+        if (tables != null) {
+            tables.write(out);
+        }
+
+        Map<String, ParserState> startStates = new TreeMap<>(config.getStartStates());
+        out.writeInt(startStates.size());
+        for (Map.Entry<String, ParserState> entry : startStates.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeInt(entry.getValue().getIndex());
+        }
+
+        Map<String, ParserNonterminal> repetitions = new TreeMap<>(config.getTopLevelRepetitions());
+        out.writeInt(repetitions.size());
+        for (Map.Entry<String, ParserNonterminal> entry : repetitions.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeInt(entry.getValue().getIndex());
+        }
+    }
+
+    /**
+     * Reads a configuration written by {@link #write(DataOutput, ParserConfiguration)}.
+     */
+    public static ParserConfiguration read(DataInput in) throws IOException {
+        int tokenCount = in.readInt();
+        List<TokenDescriptor> tokenDescriptors = new ArrayList<>(tokenCount);
+        for (int i = 0; i < tokenCount; ++i) {
+            tokenDescriptors.add(readToken(in));
+        }
+
+        ParserNonterminal[] nonterminals = readNonterminals(in);
+        ParserProduction[] productions = readProductions(in, nonterminals);
+
+        int stateCount = in.readInt();
+        List<ParserState> states = new ArrayList<>(stateCount);
+        int[][] shiftRows = new int[stateCount][];
+        int[][] gotoRows = new int[stateCount][];
+        List<Map<ParserProduction, int[]>> excludedRows = new ArrayList<>(stateCount);
+        for (int i = 0; i < stateCount; ++i) {
+            int reduceCount = in.readInt();
+            List<ParserProduction> reduceProductions = new ArrayList<>(reduceCount);
+            Map<ParserProduction, int[]> excludedRow = new IdentityHashMap<>();
+            for (int j = 0; j < reduceCount; ++j) {
+                ParserProduction production = get(productions, in.readInt());
+                reduceProductions.add(production);
+                int[] excludedTokens = readInts(in);
+                if (excludedTokens.length > 0) {
+                    excludedRow.put(production, excludedTokens);
+                }
+            }
+            excludedRows.add(excludedRow);
+            states.add(new ParserState(i, reduceProductions));
+            shiftRows[i] = readPairs(in);
+            gotoRows[i] = readPairs(in);
+        }
+
+        if (stateCount > 0) {
+            ParserTables tables = ParserTables.read(in, states);
+            TokenDescriptor[] tokens = tables.getTokens();
+            for (int i = 0; i < stateCount; ++i) {
+                List<ParserShift> shifts = new ArrayList<>();
+                for (int j = 0; j < shiftRows[i].length; j += 2) {
+                    shifts.add(new ParserShift(get(tokens, shiftRows[i][j]), get(states, shiftRows[i][j + 1])));
+                }
+                List<ParserGoto> gotos = new ArrayList<>();
+                for (int j = 0; j < gotoRows[i].length; j += 2) {
+                    gotos.add(new ParserGoto(get(nonterminals, gotoRows[i][j]), get(states, gotoRows[i][j + 1])));
+                }
+
+                Map<ParserProduction, Set<TokenDescriptor>> excludedTokens = new IdentityHashMap<>();
+                for (Map.Entry<ParserProduction, int[]> entry : excludedRows.get(i).entrySet()) {
+                    Set<TokenDescriptor> tokenSet = new HashSet<>();
+                    for (int tokenIndex : entry.getValue()) {
+                        tokenSet.add(get(tokens, tokenIndex));
+                    }
+                    excludedTokens.put(entry.getKey(), tokenSet);
+                }
+
+                ParserState state = states.get(i);
+                state.setTransitions(shifts, gotos);
+                state.setExcludedTokens(excludedTokens);
+                state.setTables(tables);
+            }
+        }
+
+        Map<String, ParserState> startStates = new HashMap<>();
+        for (int i = 0, n = in.readInt(); i < n; ++i) {
+            String name = in.readUTF();
+            startStates.put(name, get(states, in.readInt()));
+        }
+
+        Map<String, ParserNonterminal> repetitions = new HashMap<>();
+        for (int i = 0, n = in.readInt(); i < n; ++i) {
+            String name = in.readUTF();
+            repetitions.put(name, get(nonterminals, in.readInt()));
+        }
+
+        return new ParserConfiguration(startStates, repetitions, states, tokenDescriptors);
+    }
+
+    /**
+     * Writes a token descriptor.
+     */
+    public static void writeToken(DataOutput out, TokenDescriptor token) throws IOException {
+        String literal = token.getLiteral();
+        out.writeBoolean(literal != null);
+        if (literal != null) {
+            out.writeUTF(literal);
+        } else {
+            out.writeUTF(token.getType().name());
+        }
+    }
+
+    /**
+     * Reads a token descriptor written by {@link #writeToken(DataOutput, TokenDescriptor)}.
+     */
+    public static TokenDescriptor readToken(DataInput in) throws IOException {
+        boolean custom = in.readBoolean();
+        String value = in.readUTF();
+        try {
+            return custom ? TokenDescriptor.forLiteral(value) : TokenDescriptor.forType(TokenType.valueOf(value));
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid token: " + value, e);
+        }
+    }
+
+    private static void addNonterminal(Map<Integer, ParserNonterminal> nonterminals, ParserNonterminal nonterminal) {
+        nonterminals.put(nonterminal.getIndex(), nonterminal);
+    }
+
+    /**
+     * Writes nonterminals. Nonterminals are stored with their indices, since the indices are columns of
+     * the GOTO table.
+     */
+    private static void writeNonterminals(DataOutput out, Map<Integer, ParserNonterminal> nonterminals)
+            throws IOException
+    {
+        out.writeInt(nonterminals.size());
+        for (ParserNonterminal nonterminal : nonterminals.values()) {
+            out.writeInt(nonterminal.getIndex());
+            out.writeUTF(nonterminal.getName());
+            out.writeBoolean(nonterminal.isExtended());
+        }
+    }
+
+    /**
+     * Reads nonterminals into an array indexed by nonterminal indices.
+     */
+    private static ParserNonterminal[] readNonterminals(DataInput in) throws IOException {
+        int count = in.readInt();
+        List<ParserNonterminal> list = new ArrayList<>(count);
+        int size = 0;
+        for (int i = 0; i < count; ++i) {
+            int index = in.readInt();
+            String name = in.readUTF();
+            boolean extended = in.readBoolean();
+            if (index < 0) {
+                throw new IOException("Invalid nonterminal index: " + index);
+            }
+            list.add(new ParserNonterminal(index, name, extended));
+            size = Math.max(size, index + 1);
+        }
+
+        ParserNonterminal[] result = new ParserNonterminal[size];
+        for (ParserNonterminal nonterminal : list) {
+            result[nonterminal.getIndex()] = nonterminal;
+        }
+        return result;
+    }
+
+    /**
+     * Writes productions.
+     */
+    private static void writeProductions(DataOutput out, List<ParserProduction> productions)
+            throws IOException, SynException
+    {
+        out.writeInt(productions.size());
+        for (ParserProduction production : productions) {
+            out.writeInt(production.getNonterminal().getIndex());
+            out.writeInt(production.getLength());
+            for (String key : production.getKeys()) {
+                out.writeBoolean(key != null);
+                if (key != null) {
+                    out.writeUTF(key);
+                }
+            }
+            ParserActionSerializer.writeAction(out, production.getAction());
+        }
+    }
+
+    /**
+     * Reads productions.
+     */
+    private static ParserProduction[] readProductions(DataInput in, ParserNonterminal[] nonterminals)
+            throws IOException
+    {
+        ParserProduction[] result = new ParserProduction[in.readInt()];
+        for (int i = 0; i < result.length; ++i) {
+            ParserNonterminal nonterminal = get(nonterminals, in.readInt());
+            int length = in.readInt();
+            List<String> keys = new ArrayList<>(length);
+            for (int j = 0; j < length; ++j) {
+                keys.add(in.readBoolean() ? in.readUTF() : null);
+            }
+            IParserAction action = ParserActionSerializer.readAction(in);
+            result[i] = new ParserProduction(nonterminal, length, action, keys);
+        }
+        return result;
+    }
+
+    /**
+     * Reads a list of integer pairs.
+     */
+    /**
+     * Writes the indices of the tokens excluded for a reduction, in ascending order.
+     */
+    private static void writeExcludedTokens(DataOutput out, ParserTables tables, Set<TokenDescriptor> tokens)
+            throws IOException
+    {
+        if (tokens == null) {
+            out.writeInt(0);
+            return;
+        }
+
+        int[] indices = new int[tokens.size()];
+        int pos = 0;
+        for (TokenDescriptor token : tokens) {
+            indices[pos++] = tables.getTokenIndex(token);
+        }
+        Arrays.sort(indices);
+
+        out.writeInt(indices.length);
+        for (int index : indices) {
+            out.writeInt(index);
+        }
+    }
+
+    private static int[] readInts(DataInput in) throws IOException {
+        int[] result = new int[in.readInt()];
+        for (int i = 0; i < result.length; ++i) {
+            result[i] = in.readInt();
+        }
+        return result;
+    }
+
+    private static int[] readPairs(DataInput in) throws IOException {
+        int[] result = new int[in.readInt() * 2];
+        for (int i = 0; i < result.length; ++i) {
+            result[i] = in.readInt();
+        }
+        return result;
+    }
+
+    private static <T> T get(T[] array, int index) throws IOException {
+        if (index < 0 || index >= array.length || array[index] == null) {
+            throw new IOException("Invalid index: " + index);
+        }
+        return array[index];
+    }
+
+    private static <T> T get(List<T> list, int index) throws IOException {
+        if (index < 0 || index >= list.size()) {
+            throw new IOException("Invalid index: " + index);
+        }
+        return list.get(index);
+    }
+}
@@ -16,26 +16,64 @@
 package org.antkar.syn.internal.lrtables;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
 
 import org.antkar.syn.TokenDescriptor;
+import org.antkar.syn.TokenType;
 import org.antkar.syn.internal.Checks;
 import org.antkar.syn.internal.bnf.BnfElement;
 import org.antkar.syn.internal.bnf.BnfGrammar;
 import org.antkar.syn.internal.bnf.BnfNonterminal;
+import org.antkar.syn.internal.bnf.BnfPrecedence;
 import org.antkar.syn.internal.bnf.BnfProduction;
 import org.antkar.syn.internal.bnf.BnfTerminal;
 import org.antkar.syn.internal.parser.IParserAction;
 import org.antkar.syn.internal.parser.IParserGetter;
+import org.antkar.syn.internal.parser.ParserEmptyArrayAction;
+import org.antkar.syn.internal.parser.ParserFirstArrayAction;
+import org.antkar.syn.internal.parser.ParserNextArrayAction;
 import org.antkar.syn.internal.parser.ParserResultAction;
 import org.antkar.syn.internal.parser.ParserStackGetter;
 
 /**
  * LR parser configuration builder.
+ *
+ * <p>States are built breadth-first, level by level. The closures and transitions of the states of a level can
+ * be calculated concurrently by fork/join tasks, while new states are numbered sequentially in the order of
+ * the level, so the result does not depend on whether a pool is used. The tasks never block waiting for each
+ * other, so the configuration can be built by a task running in the same pool.</p>
+ *
+ * <p>The closure of a kernel appends the precalculated indirect items of the nonterminals following the kernel
+ * items, skipping the items already added by means of a bitset, and is cached per kernel, since the same
+ * kernels are reached from many states. The order of the items is a part of the identity of a state (see
+ * {@link ParserItemSet}).</p>
+ *
+ * <p>If the grammar declares token precedences, shift/reduce conflicts between a production and a token which
+ * is its LALR(1) lookahead in the state are resolved the same way as in yacc: the precedence of
+ * a production is the precedence of its last terminal. The conflicts are resolved when all LR(0) states have
+ * been built, so the states reachable only by a removed SHIFT remain in the configuration. If the reduction
+ * wins, the SHIFT is removed from the state. If the shift wins, the token is recorded as excluded for
+ * the reduction (see {@link ParserState#getExcludedTokens(ParserProduction)}), since reductions do not depend
+ * on the next token.</p>
  */
 public final class ParserConfigurator {
+    /** The minimum number of states in a level for which transitions are calculated concurrently. */
+    private static final int MIN_CONCURRENT_LEVEL = 32;
+
+    /** The maximum number of states processed by a single concurrent task without splitting it. */
+    private static final int MAX_TASK_STATES = 8;
 
     private final IndexMap<BnfNonterminal, ParserItem[]> directItemsMap;
     private final IndexMap<BnfNonterminal, ParserItem[]> indirectItemsMap;
@@ -44,18 +82,28 @@ public final class ParserConfigurator {
     private final IndexMap<BnfProduction, ParserProduction> productionMap;
 
     private final IndexSet<ParserItem> tempIndirectItemSet;
-    private final IndexSet<ParserItem> tempClosureItemSet;
     private final IndexSet<BnfNonterminal> tempIndirectNonterminalSet;
-    private final IndexMap<BnfElement, List<ParserItem>> tempTransitionsMap;
+    private final TransitionCalculator calculator;
 
     private final Map<ParserItemSet, ParserState> stateMap = new HashMap<>();
     private final List<ParserTempState> stateList = new ArrayList<>();
     private final Map<String, ParserState> startStateMap = new HashMap<>();
+    private final Map<String, ParserNonterminal> repetitionMap = new HashMap<>();
     private final List<TokenDescriptor> tokenDescriptors;
 
-    private final Counter itemCounter = new Counter();
+    private final BnfGrammar grammar;
+    private final Map<TokenDescriptor, BnfPrecedence> precedences;
+    private final Map<ParserProduction, BnfProduction> precedenceProductionMap = new IdentityHashMap<>();
 
-    private ParserConfigurator(BnfGrammar grammar) {
+    private final List<ParserItem> allItems = new ArrayList<>();
+    private final Map<Kernel, ParserItemSet> closureCache = new ConcurrentHashMap<>();
+    private final Counter nonterminalCounter = new Counter();
+
+    private final int nWords;
+    private final int nElements;
+    private final ForkJoinPool pool;
+
+    private ParserConfigurator(BnfGrammar grammar, ForkJoinPool pool) {
         int nNonterminals = grammar.getNonterminals().size();
         directItemsMap = new IndexMap<>(NONTERMINAL_INDEX_PROVIDER, nNonterminals);
         indirectItemsMap = new IndexMap<>(NONTERMINAL_INDEX_PROVIDER, nNonterminals);
@@ -67,23 +115,101 @@ public final class ParserConfigurator {
 
         int nItems = calcNItems(grammar);
         tempIndirectItemSet = new IndexSet<>(ITEM_INDEX_PROVIDER, nItems);
-        tempClosureItemSet = new IndexSet<>(ITEM_INDEX_PROVIDER, nItems);
+        nWords = (nItems + 63) >>> 6;
 
-        int nElements = grammar.getElements().size();
-        tempTransitionsMap = new IndexMap<>(ELEMENT_INDEX_PROVIDER, nElements);
+        nElements = grammar.getElements().size();
+        calculator = new TransitionCalculator();
 
         tokenDescriptors = grammar.getTokens();
+        this.pool = pool;
+
+        this.grammar = grammar;
+        precedences = grammar.getPrecedences();
     }
 
     /**
      * Creates a parser configuration.
      */
     public static ParserConfiguration makeConfiguration(BnfGrammar grammar) {
-        ParserConfigurator configurator = new ParserConfigurator(grammar);
-        for (BnfNonterminal startNonterminal : grammar.getStartNonterminals()) {
+        return makeConfiguration(grammar, (ForkJoinPool) null);
+    }
+
+    /**
+     * Creates a parser configuration, calculating the transitions of LR states concurrently. The result is
+     * the same as the result of {@link #makeConfiguration(BnfGrammar)}.
+     *
+     * @param grammar the grammar.
+     * @param pool the pool to run the tasks in, or <code>null</code> to build the configuration in the current
+     * thread. The current thread may be a worker of the pool.
+     * @return the configuration.
+     */
+    public static ParserConfiguration makeConfiguration(BnfGrammar grammar, ForkJoinPool pool) {
+        return makeConfiguration(grammar, grammar.getStartNonterminals(), pool, null);
+    }
+
+    /**
+     * Creates a parser configuration for analyzing the grammar. The configuration is the same as the one returned
+     * by {@link #makeConfiguration(BnfGrammar)}; in addition, the BNF production of each parser production is put
+     * into the specified map, so that the productions can be described in terms of the grammar.
+     */
+    public static ParserConfiguration makeAnalysisConfiguration(
+            BnfGrammar grammar,
+            Map<ParserProduction, BnfProduction> productions)
+    {
+        Checks.notNull(productions);
+        return makeConfiguration(grammar, grammar.getStartNonterminals(), null, productions);
+    }
+
+    /**
+     * Creates a lazy parser configuration. The LR states of a start nonterminal are built when the start
+     * state of that nonterminal is requested for the first time, so a grammar with many start nonterminals
+     * is ready immediately and uses memory only for the nonterminals which are actually parsed.
+     */
+    public static ParserConfiguration makeLazyConfiguration(BnfGrammar grammar) {
+        return new ParserConfiguration(grammar);
+    }
+
+    /**
+     * Creates a parser configuration for a single start nonterminal. Used to build the parts of a lazy
+     * configuration.
+     */
+    static ParserConfiguration makePartConfiguration(BnfGrammar grammar, BnfNonterminal startNonterminal) {
+        return makeConfiguration(grammar, Collections.singletonList(startNonterminal), null, null);
+    }
+
+    /**
+     * Creates a parser configuration for the given start nonterminals.
+     *
+     * @param productions the map to put the BNF productions of the parser productions to, or <code>null</code>.
+     */
+    private static ParserConfiguration makeConfiguration(
+            BnfGrammar grammar,
+            List<BnfNonterminal> startNonterminals,
+            ForkJoinPool pool,
+            Map<ParserProduction, BnfProduction> productions)
+    {
+        ParserConfigurator configurator = new ParserConfigurator(grammar, pool);
+
+        //Calculate all items in advance, so that they can be read by concurrent tasks.
+        for (BnfNonterminal nonterminal : grammar.getNonterminals()) {
+            configurator.getIndirectItems(nonterminal);
+        }
+
+        for (BnfNonterminal startNonterminal : startNonterminals) {
             configurator.addStartNonterminal(startNonterminal);
         }
         ParserConfiguration result = configurator.createConfiguration();
+
+        if (productions != null) {
+            for (BnfNonterminal nonterminal : grammar.getNonterminals()) {
+                for (BnfProduction bProduction : nonterminal.getProductions()) {
+                    ParserProduction pProduction = configurator.productionMap.get(bProduction);
+                    if (pProduction != null) {
+                        productions.put(pProduction, bProduction);
+                    }
+                }
+            }
+        }
         return result;
     }
 
@@ -94,58 +220,224 @@ public final class ParserConfigurator {
         Checks.notNull(nonterminal);
         Checks.state(!startStateMap.containsKey(nonterminal.getName()));
 
-        List<ParserItem> itemList = new ArrayList<>();
         ParserItem extendedItem = calcExtendedItem(nonterminal);
-        itemList.add(extendedItem);
-        ParserItem[] startItems = calcClosure(itemList);
+        ParserItemSet startItems = calcClosure(new int[] { extendedItem.getIndex() });
 
         int start = stateList.size();
         ParserState state = addParserState(startItems);
         startStateMap.put(nonterminal.getName(), state);
 
-        for (int pos = start; pos < stateList.size(); ++pos) {
-            ParserTempState tState = stateList.get(pos);
-            processNewState(tState);
+        BnfNonterminal repetition = findTopLevelRepetition(nonterminal);
+        if (repetition != null) {
+            repetitionMap.put(nonterminal.getName(), getParserNonterminal(repetition));
+        }
+
+        int pos = start;
+        while (pos < stateList.size()) {
+            List<ParserTempState> level = new ArrayList<>(stateList.subList(pos, stateList.size()));
+            List<ParserTransition[]> levelTransitions = calcLevelTransitions(level);
+            for (int i = 0, n = level.size(); i < n; ++i) {
+                processNewState(level.get(i), levelTransitions.get(i));
+            }
+            pos += level.size();
         }
     }
 
     /**
-     * Creates all LR states that are directly reachable from the given LR state.
+     * Calculates the transitions of each state of a level, concurrently if the level is large enough.
      */
-    private void processNewState(ParserTempState tState) {
-        fillTransitionsForState(tState);
+    private List<ParserTransition[]> calcLevelTransitions(List<ParserTempState> level) {
+        if (pool == null || level.size() < MIN_CONCURRENT_LEVEL) {
+            return calculator.calcTransitions(level);
+        }
+
+        //A worker of the pool runs the task itself, helping to execute the subtasks while joining them.
+        LevelTask task = new LevelTask(level);
+        return ForkJoinTask.getPool() == pool ? task.invoke() : pool.invoke(task);
+    }
 
+    /**
+     * Creates all LR states that are directly reachable from the given LR state.
+     */
+    private void processNewState(ParserTempState tState, ParserTransition[] transitions) {
         List<ParserGoto> pGotos = new ArrayList<>();
         List<ParserShift> pShifts = new ArrayList<>();
-        processTransitions(pGotos, pShifts);
+        for (ParserTransition transition : transitions) {
+            processTransition(pGotos, pShifts, transition);
+        }
+        tState.setTransitions(pShifts, pGotos);
+    }
+
+    /**
+     * Sets the transitions of the LR state, removing the SHIFTs which lose to reductions by precedences.
+     */
+    private void setStateTransitions(ParserTempState tState, ParserLookaheadCalculator lookaheads) {
+        ParserState state = tState.getState();
+        if (lookaheads == null) {
+            state.setTransitions(tState.getShifts(), tState.getGotos());
+            return;
+        }
+
+        List<ParserShift> pShifts = new ArrayList<>();
+        Map<ParserProduction, Set<TokenDescriptor>> excludedTokens = new IdentityHashMap<>();
+        for (ParserShift shift : tState.getShifts()) {
+            if (resolveConflicts(state, shift.tokenDescriptor, lookaheads, excludedTokens)) {
+                pShifts.add(shift);
+            }
+        }
 
-        tState.getState().setTransitions(pShifts, pGotos);
+        state.setTransitions(pShifts, tState.getGotos());
+        if (!excludedTokens.isEmpty()) {
+            state.setExcludedTokens(excludedTokens);
+        }
     }
 
     /**
-     * Collects transitions for the given LR state.
+     * Resolves the shift/reduce conflicts between the given token and the productions reduced in the given
+     * state by precedences. Adds the token to the excluded tokens of the productions which lose.
+     *
+     * @return <code>false</code> if the SHIFT by the token has to be removed.
      */
-    private void fillTransitionsForState(ParserTempState tState) {
-        tempTransitionsMap.clear();
+    private boolean resolveConflicts(
+            ParserState state,
+            TokenDescriptor token,
+            ParserLookaheadCalculator lookaheads,
+            Map<ParserProduction, Set<TokenDescriptor>> excludedTokens)
+    {
+        BnfPrecedence tokenPrecedence = precedences.get(token);
+        if (tokenPrecedence == null) {
+            return true;
+        }
 
-        for (ParserItem item : tState.getItemSet().getItems()) {
-            BnfElement element = item.getElement();
-            if (element != null) {
-                ParserItem nextItem = item.getNext();
-                addToListMap(tempTransitionsMap, element, nextItem);
+        boolean shift = true;
+        for (ParserProduction production : state.getReduceProductions()) {
+            BnfProduction bProduction = precedenceProductionMap.get(production);
+            if (bProduction == null || !lookaheads.getLookaheads(state, production).contains(token)) {
+                //Not a conflict: the token cannot follow the reduction in this state.
+                continue;
+            }
+
+            BnfPrecedence productionPrecedence = getPrecedence(bProduction);
+            int cmp = Integer.compare(productionPrecedence.getLevel(), tokenPrecedence.getLevel());
+            BnfPrecedence.Associativity associativity = tokenPrecedence.getAssociativity();
+            boolean reduceWins = cmp > 0 || (cmp == 0 && associativity == BnfPrecedence.Associativity.LEFT);
+            boolean shiftWins = cmp < 0 || (cmp == 0 && associativity == BnfPrecedence.Associativity.RIGHT);
+
+            if (!shiftWins) {
+                shift = false;
+            }
+            if (!reduceWins) {
+                Set<TokenDescriptor> tokens = excludedTokens.get(production);
+                if (tokens == null) {
+                    tokens = new HashSet<>();
+                    excludedTokens.put(production, tokens);
+                }
+                tokens.add(token);
+            }
+        }
+        return shift;
+    }
+
+    /**
+     * Returns the precedence of a BNF production, which is the precedence of its last terminal, or
+     * <code>null</code> if the production has no terminals or the last one has no precedence.
+     */
+    private BnfPrecedence getPrecedence(BnfProduction bProduction) {
+        List<BnfElement> elements = bProduction.getElements();
+        for (int i = elements.size() - 1; i >= 0; --i) {
+            BnfElement element = elements.get(i);
+            if (element instanceof BnfTerminal) {
+                return precedences.get(((BnfTerminal) element).getTokenDescriptor());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Calculates the FOLLOW set of each nonterminal of the grammar, i. e. the set of tokens which can follow
+     * the nonterminal in a sentence. The end of file follows the start nonterminals.
+     */
+    public static Map<BnfNonterminal, Set<TokenDescriptor>> calcFollowTokens(BnfGrammar grammar) {
+        List<BnfNonterminal> nonterminals = grammar.getNonterminals();
+        Set<BnfNonterminal> nullable = new HashSet<>();
+        Map<BnfNonterminal, Set<TokenDescriptor>> firstMap = new HashMap<>();
+        Map<BnfNonterminal, Set<TokenDescriptor>> followMap = new HashMap<>();
+        for (BnfNonterminal nonterminal : nonterminals) {
+            firstMap.put(nonterminal, new HashSet<TokenDescriptor>());
+            followMap.put(nonterminal, new HashSet<TokenDescriptor>());
+        }
+
+        //Nullable nonterminals and FIRST sets.
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (BnfNonterminal nonterminal : nonterminals) {
+                Set<TokenDescriptor> first = firstMap.get(nonterminal);
+                for (BnfProduction production : nonterminal.getProductions()) {
+                    int size = first.size();
+                    List<BnfElement> elements = production.getElements();
+                    boolean productionNullable = addFirstTokens(elements, 0, nullable, firstMap, first);
+                    changed |= first.size() != size;
+                    if (productionNullable && nullable.add(nonterminal)) {
+                        changed = true;
+                    }
+                }
             }
         }
+
+        //FOLLOW sets.
+        for (BnfNonterminal nonterminal : grammar.getStartNonterminals()) {
+            followMap.get(nonterminal).add(TokenDescriptor.forType(TokenType.END_OF_FILE));
+        }
+
+        changed = true;
+        while (changed) {
+            changed = false;
+            for (BnfNonterminal nonterminal : nonterminals) {
+                for (BnfProduction production : nonterminal.getProductions()) {
+                    List<BnfElement> elements = production.getElements();
+                    for (int i = 0, n = elements.size(); i < n; ++i) {
+                        BnfElement element = elements.get(i);
+                        if (element instanceof BnfNonterminal) {
+                            Set<TokenDescriptor> follow = followMap.get(element);
+                            int size = follow.size();
+                            if (addFirstTokens(elements, i + 1, nullable, firstMap, follow)) {
+                                follow.addAll(followMap.get(nonterminal));
+                            }
+                            changed |= follow.size() != size;
+                        }
+                    }
+                }
+            }
+        }
+
+        return followMap;
     }
 
     /**
-     * Creates GOTO and SHIFT transitions for an LR state.
+     * Adds the FIRST tokens of a sequence of elements starting at the given position to a set.
+     *
+     * @return <code>true</code> if the sequence is nullable.
      */
-    private void processTransitions(List<ParserGoto> pGotoList, List<ParserShift> pShiftList) {
-        for (int pos = 0, size = tempTransitionsMap.size(); pos < size; ++pos) {
-            BnfElement element = tempTransitionsMap.getKeyAt(pos);
-            List<ParserItem> itemList = tempTransitionsMap.getValueAt(pos);
-            processTransition(pGotoList, pShiftList, element, itemList);
+    private static boolean addFirstTokens(
+            List<BnfElement> elements,
+            int start,
+            Set<BnfNonterminal> nullable,
+            Map<BnfNonterminal, Set<TokenDescriptor>> firstMap,
+            Set<TokenDescriptor> result)
+    {
+        for (int i = start, n = elements.size(); i < n; ++i) {
+            BnfElement element = elements.get(i);
+            if (element instanceof BnfTerminal) {
+                result.add(((BnfTerminal) element).getTokenDescriptor());
+                return false;
+            }
+            result.addAll(firstMap.get(element));
+            if (!nullable.contains(element)) {
+                return false;
+            }
         }
+        return true;
     }
 
     /**
@@ -154,11 +446,10 @@ public final class ParserConfigurator {
     private void processTransition(
             List<ParserGoto> pGotoList,
             List<ParserShift> pShiftList,
-            BnfElement element,
-            List<ParserItem> itemList)
+            ParserTransition transition)
     {
-        ParserItem[] items = calcClosure(itemList);
-        ParserState state = addParserState(items);
+        BnfElement element = transition.element;
+        ParserState state = addParserState(transition.itemSet);
 
         if (element instanceof BnfNonterminal) {
             //The element is nonterminal - GOTO.
@@ -178,12 +469,11 @@ public final class ParserConfigurator {
     /**
      * Finds an existing or creates a new LR state based on the given set of LR items.
      */
-    private ParserState addParserState(ParserItem[] items) {
-        ParserItemSet iSet = new ParserItemSet(items);
+    private ParserState addParserState(ParserItemSet iSet) {
         ParserState state = stateMap.get(iSet);
 
         if (state == null) {
-            state = new ParserState(stateMap.size(), calcReduceProductions(items));
+            state = new ParserState(stateMap.size(), calcReduceProductions(iSet.getItems()));
             ParserTempState tState = new ParserTempState(iSet, state);
             stateMap.put(iSet, state);
             stateList.add(tState);
@@ -196,50 +486,99 @@ public final class ParserConfigurator {
      * Creates a {@link ParserConfiguration} object.
      */
     private ParserConfiguration createConfiguration() {
-        List<ParserState> pStateList = new ArrayList<>();
+        //The lookaheads are needed only to resolve conflicts by precedences.
+        ParserLookaheadCalculator lookaheads = precedences.isEmpty()
+                ? null
+                : new ParserLookaheadCalculator(grammar, stateList, nonterminalMap, productionMap);
 
+        List<ParserState> pStateList = new ArrayList<>();
         for (ParserTempState tState : stateList) {
+            setStateTransitions(tState, lookaheads);
             pStateList.add(tState.getState());
         }
 
-        ParserConfiguration result = new ParserConfiguration(startStateMap, pStateList, tokenDescriptors);
+        ParserTables tables = new ParserTables(pStateList, tokenDescriptors);
+        for (ParserState state : pStateList) {
+            state.setTables(tables);
+        }
+
+        ParserConfiguration result = new ParserConfiguration(startStateMap, repetitionMap, pStateList,
+                tokenDescriptors);
         return result;
     }
 
     /**
-     * Returns direct LR items for the given nonterminal.
+     * Finds the repetition nonterminal which produces the value of the given nonterminal, following
+     * the nonterminals which just pass the value of another nonterminal through. Returns <code>null</code>
+     * if the value of the nonterminal is not produced by a repetition.
      */
-    private ParserItem[] getDirectItems(BnfNonterminal nonterminal) {
-        ParserItem[] result = directItemsMap.get(nonterminal);
+    private static BnfNonterminal findTopLevelRepetition(BnfNonterminal nonterminal) {
+        Set<BnfNonterminal> visited = new HashSet<>();
+        BnfNonterminal current = nonterminal;
+        while (current != null && visited.add(current)) {
+            if (isRepetition(current)) {
+                return current;
+            }
+            current = getPassThroughNonterminal(current);
+        }
+        return null;
+    }
 
-        if (result == null) {
-            result = calcDirectItems(nonterminal);
-            directItemsMap.put(nonterminal, result);
+    /**
+     * Returns <code>true</code> if the given nonterminal was generated for a repetition element.
+     */
+    private static boolean isRepetition(BnfNonterminal nonterminal) {
+        for (BnfProduction production : nonterminal.getProductions()) {
+            IParserAction action = production.getParserAction();
+            if (!(action instanceof ParserFirstArrayAction) && !(action instanceof ParserNextArrayAction)) {
+                return false;
+            }
         }
+        return true;
+    }
+
+    /**
+     * If each non-empty production of the given nonterminal consists of the same single nonterminal and
+     * returns its value, returns that nonterminal. Otherwise, returns <code>null</code>. Empty productions
+     * returning an empty array are allowed, since such productions are generated for a zero-or-more
+     * repetition.
+     */
+    private static BnfNonterminal getPassThroughNonterminal(BnfNonterminal nonterminal) {
+        BnfNonterminal result = null;
+        for (BnfProduction production : nonterminal.getProductions()) {
+            List<BnfElement> elements = production.getElements();
+            IParserAction action = production.getParserAction();
+            if (elements.isEmpty() && action == ParserEmptyArrayAction.INSTANCE) {
+                continue;
+            }
 
+            if (elements.size() != 1 || !(elements.get(0) instanceof BnfNonterminal)) {
+                return null;
+            }
+            if (!(action instanceof ParserResultAction) || !((ParserResultAction) action).isPassThrough()) {
+                return null;
+            }
+
+            BnfNonterminal element = (BnfNonterminal) elements.get(0);
+            if (result != null && result != element) {
+                return null;
+            }
+            result = element;
+        }
         return result;
     }
 
     /**
-     * Calculates a closure of LR items.
+     * Returns direct LR items for the given nonterminal.
      */
-    private ParserItem[] calcClosure(List<ParserItem> sourceItems) {
-        tempClosureItemSet.clear();
+    private ParserItem[] getDirectItems(BnfNonterminal nonterminal) {
+        ParserItem[] result = directItemsMap.get(nonterminal);
 
-        //A closure is a union of indirect items of all nonterminals pointed by source items.
-        for (ParserItem item : sourceItems) {
-            tempClosureItemSet.add(item);
-            BnfElement element = item.getElement();
-            if (element instanceof BnfNonterminal) {
-                BnfNonterminal nonterminal = (BnfNonterminal) element;
-                ParserItem[] indirectItems = getIndirectItems(nonterminal);
-                for (ParserItem indirectItem : indirectItems) {
-                    tempClosureItemSet.add(indirectItem);
-                }
-            }
+        if (result == null) {
+            result = calcDirectItems(nonterminal);
+            directItemsMap.put(nonterminal, result);
         }
 
-        ParserItem[] result = tempClosureItemSet.asArray(ParserItem.class);
         return result;
     }
 
@@ -302,7 +641,7 @@ public final class ParserConfigurator {
      */
     private ParserNonterminal createExtendedNonterminal(BnfNonterminal bNonterminal) {
         String name = "@" + bNonterminal.getName();
-        ParserNonterminal result = new ParserNonterminal(name, true);
+        ParserNonterminal result = new ParserNonterminal(nonterminalCounter.next(), name, true);
         return result;
     }
 
@@ -313,7 +652,7 @@ public final class ParserConfigurator {
         ParserNonterminal result = nonterminalMap.get(bNonterminal);
 
         if (result == null) {
-            result = new ParserNonterminal(bNonterminal.getName(), false);
+            result = new ParserNonterminal(nonterminalCounter.next(), bNonterminal.getName(), false);
             nonterminalMap.put(bNonterminal, result);
         }
 
@@ -329,8 +668,11 @@ public final class ParserConfigurator {
         if (result == null) {
             ParserNonterminal pNonterminal = getParserNonterminal(bProduction.getNonterminal());
             result = new ParserProduction(pNonterminal, bProduction.getElements().size(),
-                    bProduction.getParserAction());
+                    bProduction.getParserAction(), bProduction.getKeys());
             productionMap.put(bProduction, result);
+            if (!precedences.isEmpty() && getPrecedence(bProduction) != null) {
+                precedenceProductionMap.put(result, bProduction);
+            }
         }
 
         return result;
@@ -358,8 +700,8 @@ public final class ParserConfigurator {
         IParserAction action = new ParserResultAction(getter);
 
         ParserProduction production = new ParserProduction(pNonterminal, 1, action);
-        ParserItem endItem = new ParserItem(itemCounter.next(), 1, null, production, null);
-        ParserItem startItem = new ParserItem(itemCounter.next(), 0, endItem, production, bNonterminal);
+        ParserItem endItem = createItem(1, null, production, null);
+        ParserItem startItem = createItem(0, endItem, production, bNonterminal);
 
         return startItem;
     }
@@ -372,31 +714,89 @@ public final class ParserConfigurator {
         ParserProduction pProduction = getParserProduction(bProduction);
 
         for (int n = bProduction.getElements().size(), i = n; i >= 0; --i) {
-            int index = itemCounter.next();
             BnfElement element = null;
             if (i < n) {
                 element = bProduction.getElements().get(i);
             }
-            ParserItem cur = new ParserItem(index, i, next, pProduction, element);
+            ParserItem cur = createItem(i, next, pProduction, element);
             next = cur;
         }
 
         return next;
     }
 
+    /**
+     * Creates an LR item with the next index.
+     */
+    private ParserItem createItem(int pos, ParserItem next, ParserProduction production, BnfElement element) {
+        ParserItem item = new ParserItem(allItems.size(), pos, next, production, element);
+        allItems.add(item);
+        return item;
+    }
+
+    /**
+     * Returns the closure of a kernel, calculating it if it is not in the cache. Can be called concurrently,
+     * since only the items calculated in advance are used.
+     *
+     * @param kernel the indices of the kernel items, in the order of the items of the source state. Must not be
+     * modified afterwards.
+     */
+    private ParserItemSet calcClosure(int[] kernel) {
+        Kernel key = new Kernel(kernel);
+        ParserItemSet result = closureCache.get(key);
+        if (result != null) {
+            return result;
+        }
+
+        //A closure is a union of indirect items of all nonterminals pointed by kernel items.
+        long[] bits = new long[nWords];
+        List<ParserItem> items = new ArrayList<>();
+        for (int index : kernel) {
+            ParserItem item = allItems.get(index);
+            addItem(bits, items, item);
+            BnfElement element = item.getElement();
+            if (element instanceof BnfNonterminal) {
+                for (ParserItem indirectItem : indirectItemsMap.get((BnfNonterminal) element)) {
+                    addItem(bits, items, indirectItem);
+                }
+            }
+        }
+
+        result = new ParserItemSet(items.toArray(new ParserItem[items.size()]));
+        ParserItemSet existing = closureCache.putIfAbsent(key, result);
+        return existing != null ? existing : result;
+    }
+
+    /**
+     * Adds an item to a list, unless the item is already in the bitset of the list.
+     */
+    private static void addItem(long[] bits, List<ParserItem> items, ParserItem item) {
+        int index = item.getIndex();
+        long mask = 1L << (index & 63);
+        if ((bits[index >>> 6] & mask) == 0) {
+            bits[index >>> 6] |= mask;
+            items.add(item);
+        }
+    }
+
     /**
      * Returns the list of parser productions that can be reduced in the given set of
-     * LR items.
+     * LR items. The productions are ordered by the indices of their items, since the order of reductions
+     * determines which of ambiguous syntax trees is chosen.
      */
     private static List<ParserProduction> calcReduceProductions(ParserItem[] items) {
-        List<ParserProduction> list = new ArrayList<>();
-
+        List<ParserItem> reduceItems = new ArrayList<>();
         for (ParserItem item : items) {
             if (item.getNext() == null) {
-                ParserProduction pProduction = item.getProduction();
-                list.add(pProduction);
+                reduceItems.add(item);
             }
         }
+        Collections.sort(reduceItems, ITEM_COMPARATOR);
+
+        List<ParserProduction> list = new ArrayList<>();
+        for (ParserItem item : reduceItems) {
+            list.add(item.getProduction());
+        }
 
         return list;
     }
@@ -434,15 +834,118 @@ public final class ParserConfigurator {
     }
 
     /**
-     * Adds an element to an indexed map of lists.
+     * Fork/join task calculating the transitions of a part of a level. Splits the part in halves until it is
+     * small enough.
+     */
+    private final class LevelTask extends RecursiveTask<List<ParserTransition[]>> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<ParserTempState> tStates;
+
+        LevelTask(List<ParserTempState> tStates) {
+            this.tStates = tStates;
+        }
+
+        @Override
+        protected List<ParserTransition[]> compute() {
+            int size = tStates.size();
+            if (size <= MAX_TASK_STATES) {
+                return new TransitionCalculator().calcTransitions(tStates);
+            }
+
+            LevelTask right = new LevelTask(tStates.subList(size / 2, size));
+            right.fork();
+            List<ParserTransition[]> result = new LevelTask(tStates.subList(0, size / 2)).compute();
+            result.addAll(right.join());
+            return result;
+        }
+    }
+
+    /**
+     * Calculates transitions of LR states. Different instances can be used concurrently.
+     */
+    private final class TransitionCalculator {
+        private final IndexMap<BnfElement, List<ParserItem>> tempKernelsMap =
+                new IndexMap<>(ELEMENT_INDEX_PROVIDER, nElements);
+
+        /**
+         * Calculates the transitions for each of the given LR states.
+         */
+        List<ParserTransition[]> calcTransitions(List<ParserTempState> tStates) {
+            List<ParserTransition[]> result = new ArrayList<>(tStates.size());
+            for (ParserTempState tState : tStates) {
+                result.add(calcTransitions(tState));
+            }
+            return result;
+        }
+
+        /**
+         * Calculates the transitions for the given LR state.
+         */
+        private ParserTransition[] calcTransitions(ParserTempState tState) {
+            tempKernelsMap.clear();
+
+            for (ParserItem item : tState.getItemSet().getItems()) {
+                BnfElement element = item.getElement();
+                if (element != null) {
+                    List<ParserItem> kernelItems = tempKernelsMap.get(element);
+                    if (kernelItems == null) {
+                        kernelItems = new ArrayList<>();
+                        tempKernelsMap.put(element, kernelItems);
+                    }
+                    kernelItems.add(item.getNext());
+                }
+            }
+
+            ParserTransition[] result = new ParserTransition[tempKernelsMap.size()];
+            for (int pos = 0; pos < result.length; ++pos) {
+                BnfElement element = tempKernelsMap.getKeyAt(pos);
+                List<ParserItem> kernelItems = tempKernelsMap.getValueAt(pos);
+                int[] kernel = new int[kernelItems.size()];
+                for (int i = 0; i < kernel.length; ++i) {
+                    kernel[i] = kernelItems.get(i).getIndex();
+                }
+                ParserItemSet itemSet = calcClosure(kernel);
+                result[pos] = new ParserTransition(element, itemSet);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * A transition of an LR state whose target state is not yet known.
      */
-    private static <K, V> void addToListMap(IndexMap<K, List<V>> map, K key, V value) {
-        List<V> list = map.get(key);
-        if (list == null) {
-            list = new ArrayList<>();
-            map.put(key, list);
+    private static final class ParserTransition {
+        final BnfElement element;
+        final ParserItemSet itemSet;
+
+        ParserTransition(BnfElement element, ParserItemSet itemSet) {
+            this.element = element;
+            this.itemSet = itemSet;
+        }
+    }
+
+    /**
+     * The ordered indices of kernel items, used as a hash map key.
+     */
+    private static final class Kernel {
+        private final int[] indices;
+        private final int hashCode;
+
+        Kernel(int[] indices) {
+            this.indices = indices;
+            hashCode = Arrays.hashCode(indices);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Kernel && Arrays.equals(indices, ((Kernel) obj).indices);
         }
-        list.add(value);
     }
 
     /**
@@ -479,6 +982,16 @@ public final class ParserConfigurator {
         }
     };
 
+    /**
+     * Compares LR items by indices.
+     */
+    private static final Comparator<ParserItem> ITEM_COMPARATOR = new Comparator<ParserItem>() {
+        @Override
+        public int compare(ParserItem o1, ParserItem o2) {
+            return Integer.compare(o1.getIndex(), o2.getIndex());
+        }
+    };
+
     /**
      * BNF production index provider.
      */
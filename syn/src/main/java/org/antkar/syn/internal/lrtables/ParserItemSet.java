@@ -16,18 +16,26 @@
 package org.antkar.syn.internal.lrtables;
 
 import java.util.Arrays;
-import java.util.Comparator;
 
 /**
- * Set of LR items.
+ * Set of LR items. The items are kept in the order in which the closure has added them, and the order is
+ * a part of the identity of a set: sets with the same items in different orders become different LR states.
+ * The parser engine detects reduce cycles by a repeated state within a stack, so merging such states would
+ * make it reject valid inputs.
  */
 final class ParserItemSet {
-    /** Sorted array of items. */
+    /** Items in the order of the closure. */
     private final ParserItem[] items;
+    private final int hashCode;
 
     ParserItemSet(ParserItem[] items) {
-        this.items = items.clone();
-        Arrays.sort(items, ITEM_COMPARATOR);
+        this.items = items;
+
+        int hash = 0;
+        for (ParserItem item : items) {
+            hash = hash * 31 + item.getIndex();
+        }
+        hashCode = hash;
     }
 
     ParserItem[] getItems() {
@@ -36,11 +44,7 @@ final class ParserItemSet {
 
     @Override
     public int hashCode() {
-        int result = 0;
-        for (ParserItem item : items) {
-            result = result * 31 + item.getIndex();
-        }
-        return result;
+        return hashCode;
     }
 
     @Override
@@ -64,11 +68,4 @@ final class ParserItemSet {
     public String toString() {
         return Arrays.toString(items);
     }
-
-    private static final Comparator<ParserItem> ITEM_COMPARATOR = new Comparator<ParserItem>() {
-        @Override
-        public int compare(ParserItem o1, ParserItem o2) {
-            return o1.getIndex() - o2.getIndex();
-        }
-    };
 }
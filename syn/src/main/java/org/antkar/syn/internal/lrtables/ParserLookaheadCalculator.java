@@ -0,0 +1,341 @@
+/*
+ * Copyright 2013 Anton Karmanov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.antkar.syn.internal.lrtables;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.antkar.syn.TokenDescriptor;
+import org.antkar.syn.internal.bnf.BnfElement;
+import org.antkar.syn.internal.bnf.BnfGrammar;
+import org.antkar.syn.internal.bnf.BnfNonterminal;
+import org.antkar.syn.internal.bnf.BnfProduction;
+import org.antkar.syn.internal.bnf.BnfTerminal;
+
+/**
+ * Calculates the LALR(1) lookaheads of the reductions of LR(0) states by the method of DeRemer and Pennello.
+ * The lookaheads of a nonterminal transition <code>(p, A)</code> are the tokens shifted after the transition,
+ * directly or after nullable nonterminals (the <i>reads</i> relation), and the lookaheads of the transitions
+ * <code>(p', B)</code> such that <code>B : &beta; A &gamma;</code>, <code>&gamma;</code> is nullable and
+ * <code>&beta;</code> leads from <code>p'</code> to <code>p</code> (the <i>includes</i> relation).
+ * The lookaheads of a reduction are the lookaheads of the transitions from the states where the production
+ * starts.
+ *
+ * <p>The transitions of the states are taken from the {@link ParserTempState}s, so the lookaheads are
+ * calculated before the transitions of {@link ParserState}s are set. The end of input is not included,
+ * since it is never shifted.</p>
+ */
+final class ParserLookaheadCalculator {
+    private final List<ParserTempState> tStates;
+    private final IndexMap<BnfNonterminal, ParserNonterminal> nonterminalMap;
+
+    private final Map<TokenDescriptor, Integer> tokenIndices = new HashMap<>();
+    private final List<TokenDescriptor> tokens = new ArrayList<>();
+
+    /** The nonterminal transitions, i. e. GOTOs, and their source states. */
+    private final List<ParserGoto> transitions = new ArrayList<>();
+    private final List<ParserState> transitionSources = new ArrayList<>();
+
+    /** The indices of the transitions of each state by nonterminals. */
+    private final List<Map<ParserNonterminal, Integer>> transitionIndices = new ArrayList<>();
+
+    /** The lookaheads of the productions reduced in each state. */
+    private final Map<ParserState, Map<ParserProduction, BitSet>> lookaheads = new IdentityHashMap<>();
+
+    ParserLookaheadCalculator(
+            BnfGrammar grammar,
+            List<ParserTempState> tStates,
+            IndexMap<BnfNonterminal, ParserNonterminal> nonterminalMap,
+            IndexMap<BnfProduction, ParserProduction> productionMap)
+    {
+        this.tStates = tStates;
+        this.nonterminalMap = nonterminalMap;
+
+        for (ParserTempState tState : tStates) {
+            Map<ParserNonterminal, Integer> indices = new IdentityHashMap<>();
+            for (ParserGoto pGoto : tState.getGotos()) {
+                indices.put(pGoto.nonterminal, transitions.size());
+                transitions.add(pGoto);
+                transitionSources.add(tState.getState());
+            }
+            transitionIndices.add(indices);
+        }
+
+        Set<BnfNonterminal> nullable = calcNullable(grammar);
+        BitSet[] follow = calcReadTokens(nullable);
+        calcFollowTokens(grammar, nullable, productionMap, follow);
+    }
+
+    /**
+     * Returns the lookahead tokens of a production reduced in a state.
+     */
+    Set<TokenDescriptor> getLookaheads(ParserState state, ParserProduction production) {
+        Map<ParserProduction, BitSet> map = lookaheads.get(state);
+        BitSet bits = map == null ? null : map.get(production);
+        if (bits == null) {
+            return Collections.emptySet();
+        }
+
+        Set<TokenDescriptor> result = new HashSet<>();
+        for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+            result.add(tokens.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Calculates the tokens which can be read after each transition: the tokens shifted in the target state,
+     * and the tokens read after the nullable nonterminal transitions of the target state.
+     */
+    private BitSet[] calcReadTokens(Set<BnfNonterminal> nullable) {
+        Set<ParserNonterminal> nullableNonterminals = Collections.newSetFromMap(
+                new IdentityHashMap<ParserNonterminal, Boolean>());
+        for (BnfNonterminal nonterminal : nullable) {
+            ParserNonterminal pNonterminal = nonterminalMap.get(nonterminal);
+            if (pNonterminal != null) {
+                nullableNonterminals.add(pNonterminal);
+            }
+        }
+
+        int n = transitions.size();
+        BitSet[] result = new BitSet[n];
+        List<List<Integer>> reads = new ArrayList<>(n);
+        for (int i = 0; i < n; ++i) {
+            ParserTempState target = tStates.get(transitions.get(i).state.getIndex());
+            BitSet bits = new BitSet();
+            for (ParserShift shift : target.getShifts()) {
+                bits.set(getTokenIndex(shift.tokenDescriptor));
+            }
+            result[i] = bits;
+
+            List<Integer> edges = new ArrayList<>();
+            for (ParserGoto pGoto : target.getGotos()) {
+                if (nullableNonterminals.contains(pGoto.nonterminal)) {
+                    edges.add(transitionIndices.get(target.getState().getIndex()).get(pGoto.nonterminal));
+                }
+            }
+            reads.add(edges);
+        }
+
+        digraph(reads, result);
+        return result;
+    }
+
+    /**
+     * Calculates the follow tokens of each transition from the read tokens, following the paths of
+     * the productions of the transitions' nonterminals. Sets the lookaheads of the reductions.
+     */
+    private void calcFollowTokens(
+            BnfGrammar grammar,
+            Set<BnfNonterminal> nullable,
+            IndexMap<BnfProduction, ParserProduction> productionMap,
+            BitSet[] follow)
+    {
+        Map<ParserNonterminal, BnfNonterminal> bNonterminals = new IdentityHashMap<>();
+        for (BnfNonterminal nonterminal : grammar.getNonterminals()) {
+            ParserNonterminal pNonterminal = nonterminalMap.get(nonterminal);
+            if (pNonterminal != null) {
+                bNonterminals.put(pNonterminal, nonterminal);
+            }
+        }
+
+        int n = transitions.size();
+        List<List<Integer>> includes = new ArrayList<>(n);
+        for (int i = 0; i < n; ++i) {
+            includes.add(new ArrayList<Integer>());
+        }
+
+        Map<ParserState, Map<ParserProduction, List<Integer>>> lookbacks = new IdentityHashMap<>();
+        for (int i = 0; i < n; ++i) {
+            BnfNonterminal nonterminal = bNonterminals.get(transitions.get(i).nonterminal);
+            if (nonterminal == null) {
+                //The extended start nonterminal.
+                continue;
+            }
+
+            for (BnfProduction production : nonterminal.getProductions()) {
+                ParserState state = walkProduction(production, nullable, transitionSources.get(i), i, includes);
+                ParserProduction pProduction = productionMap.get(production);
+                if (state != null && pProduction != null) {
+                    Map<ParserProduction, List<Integer>> map = lookbacks.get(state);
+                    if (map == null) {
+                        map = new IdentityHashMap<>();
+                        lookbacks.put(state, map);
+                    }
+                    List<Integer> list = map.get(pProduction);
+                    if (list == null) {
+                        list = new ArrayList<>();
+                        map.put(pProduction, list);
+                    }
+                    list.add(i);
+                }
+            }
+        }
+
+        digraph(includes, follow);
+
+        for (Map.Entry<ParserState, Map<ParserProduction, List<Integer>>> entry : lookbacks.entrySet()) {
+            Map<ParserProduction, BitSet> map = new IdentityHashMap<>();
+            for (Map.Entry<ParserProduction, List<Integer>> lookback : entry.getValue().entrySet()) {
+                BitSet bits = new BitSet();
+                for (int transition : lookback.getValue()) {
+                    bits.or(follow[transition]);
+                }
+                map.put(lookback.getKey(), bits);
+            }
+            lookaheads.put(entry.getKey(), map);
+        }
+    }
+
+    /**
+     * Follows the elements of a production from a state, adding the includes edges of the nonterminals
+     * followed by a nullable sequence of elements.
+     *
+     * @return the state where the production is reduced, or <code>null</code> if the path cannot be followed.
+     */
+    private ParserState walkProduction(
+            BnfProduction production,
+            Set<BnfNonterminal> nullable,
+            ParserState start,
+            int transition,
+            List<List<Integer>> includes)
+    {
+        List<BnfElement> elements = production.getElements();
+        int nullableStart = elements.size();
+        while (nullableStart > 0 && nullable.contains(elements.get(nullableStart - 1))) {
+            --nullableStart;
+        }
+
+        ParserState state = start;
+        for (int i = 0, n = elements.size(); i < n && state != null; ++i) {
+            BnfElement element = elements.get(i);
+            if (element instanceof BnfNonterminal) {
+                ParserNonterminal pNonterminal = nonterminalMap.get((BnfNonterminal) element);
+                Integer index = transitionIndices.get(state.getIndex()).get(pNonterminal);
+                if (index == null) {
+                    return null;
+                }
+                if (i + 1 >= nullableStart) {
+                    includes.get(index).add(transition);
+                }
+                state = transitions.get(index).state;
+            } else {
+                state = getShiftState(state, ((BnfTerminal) element).getTokenDescriptor());
+            }
+        }
+        return state;
+    }
+
+    /**
+     * Returns the target state of a SHIFT, or <code>null</code>.
+     */
+    private ParserState getShiftState(ParserState state, TokenDescriptor token) {
+        for (ParserShift shift : tStates.get(state.getIndex()).getShifts()) {
+            if (shift.tokenDescriptor.equals(token)) {
+                return shift.state;
+            }
+        }
+        return null;
+    }
+
+    private int getTokenIndex(TokenDescriptor token) {
+        Integer index = tokenIndices.get(token);
+        if (index == null) {
+            index = tokens.size();
+            tokenIndices.put(token, index);
+            tokens.add(token);
+        }
+        return index;
+    }
+
+    /**
+     * Calculates the nullable nonterminals of a grammar.
+     */
+    private static Set<BnfNonterminal> calcNullable(BnfGrammar grammar) {
+        Set<BnfNonterminal> result = new HashSet<>();
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (BnfNonterminal nonterminal : grammar.getNonterminals()) {
+                if (result.contains(nonterminal)) {
+                    continue;
+                }
+                for (BnfProduction production : nonterminal.getProductions()) {
+                    if (result.containsAll(production.getElements())) {
+                        result.add(nonterminal);
+                        changed = true;
+                        break;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Extends each set with the sets of the elements it is related to, transitively. The strongly connected
+     * components of the relation get equal sets.
+     */
+    private static void digraph(List<List<Integer>> relation, BitSet[] sets) {
+        int[] depths = new int[sets.length];
+        Deque<Integer> stack = new ArrayDeque<>();
+        for (int i = 0; i < sets.length; ++i) {
+            if (depths[i] == 0) {
+                traverse(i, relation, sets, depths, stack);
+            }
+        }
+    }
+
+    private static void traverse(
+            int x,
+            List<List<Integer>> relation,
+            BitSet[] sets,
+            int[] depths,
+            Deque<Integer> stack)
+    {
+        stack.push(x);
+        int depth = stack.size();
+        depths[x] = depth;
+
+        for (int y : relation.get(x)) {
+            if (depths[y] == 0) {
+                traverse(y, relation, sets, depths, stack);
+            }
+            depths[x] = Math.min(depths[x], depths[y]);
+            sets[x].or(sets[y]);
+        }
+
+        if (depths[x] == depth) {
+            int top;
+            do {
+                top = stack.pop();
+                depths[top] = Integer.MAX_VALUE;
+                if (top != x) {
+                    sets[top] = (BitSet) sets[x].clone();
+                }
+            } while (top != x);
+        }
+    }
+}
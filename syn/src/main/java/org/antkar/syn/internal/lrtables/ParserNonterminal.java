@@ -21,14 +21,25 @@ import org.antkar.syn.internal.Checks;
  * Parser nonterminal descriptor.
  */
 public final class ParserNonterminal {
+    private final int index;
     private final String name;
     private final boolean extended;
 
-    ParserNonterminal(String name, boolean extended) {
+    ParserNonterminal(int index, String name, boolean extended) {
+        Checks.argument(index >= 0);
+        this.index = index;
         this.name = Checks.notNull(name);
         this.extended = extended;
     }
 
+    /**
+     * Returns the index of this nonterminal. Nonterminals of a configuration have dense indices starting
+     * from <code>0</code>.
+     */
+    public int getIndex() {
+        return index;
+    }
+
     public String getName() {
         return name;
     }
@@ -15,6 +15,9 @@
  */
 package org.antkar.syn.internal.lrtables;
 
+import java.util.Collections;
+import java.util.List;
+
 import org.antkar.syn.internal.Checks;
 import org.antkar.syn.internal.parser.IParserAction;
 
@@ -25,13 +28,20 @@ public final class ParserProduction {
     private final ParserNonterminal nonterminal;
     private final int length;
     private final IParserAction action;
+    private final List<String> keys;
 
     ParserProduction(ParserNonterminal nonterminal, int length, IParserAction action) {
+        this(nonterminal, length, action, Collections.<String>nCopies(length, null));
+    }
+
+    ParserProduction(ParserNonterminal nonterminal, int length, IParserAction action, List<String> keys) {
         Checks.argument(length >= 0);
+        Checks.argument(keys.size() == length);
 
         this.nonterminal = Checks.notNull(nonterminal);
         this.length = length;
         this.action = Checks.notNull(action);
+        this.keys = keys;
     }
 
     public ParserNonterminal getNonterminal() {
@@ -46,6 +56,14 @@ public final class ParserProduction {
         return action;
     }
 
+    /**
+     * Returns the attribute keys of the elements of the production, <code>null</code> for elements
+     * without an attribute.
+     */
+    public List<String> getKeys() {
+        return keys;
+    }
+
     @Override
     public String toString() {
         return nonterminal + "[" + length + "]{ " + action + " }";
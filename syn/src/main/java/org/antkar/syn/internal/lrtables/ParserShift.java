@@ -34,6 +34,10 @@ public final class ParserShift {
         return tokenDescriptor;
     }
 
+    public ParserState getState() {
+        return state;
+    }
+
     @Override
     public String toString() {
         return tokenDescriptor + " -> " + state.getIndex();
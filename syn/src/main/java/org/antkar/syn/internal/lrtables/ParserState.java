@@ -17,10 +17,16 @@ package org.antkar.syn.internal.lrtables;
 
 import java.io.PrintStream;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.antkar.syn.TokenDescriptor;
 import org.antkar.syn.internal.Checks;
+import org.antkar.syn.internal.parser.IParserAction;
+import org.antkar.syn.internal.parser.ParserResultAction;
 
 /**
  * Parser state. Contains an LR state.
@@ -32,6 +38,9 @@ public final class ParserState {
     private final boolean isFinal;
     private List<ParserShift> shifts = null;
     private List<ParserGoto> gotos = null;
+    private ParserTables tables = null;
+    private ParserProduction unitProduction = null;
+    private Map<ParserProduction, Set<TokenDescriptor>> excludedTokens = Collections.emptyMap();
 
     ParserState(int index, List<ParserProduction> reduceProductions) {
         Checks.argument(index >= 0);
@@ -50,6 +59,20 @@ public final class ParserState {
 
         this.shifts = Collections.unmodifiableList(shifts);
         this.gotos = Collections.unmodifiableList(gotos);
+        unitProduction = calcUnitProduction();
+    }
+
+    void setExcludedTokens(Map<ParserProduction, Set<TokenDescriptor>> excludedTokens) {
+        Map<ParserProduction, Set<TokenDescriptor>> map = new IdentityHashMap<>();
+        for (Map.Entry<ParserProduction, Set<TokenDescriptor>> entry : excludedTokens.entrySet()) {
+            map.put(entry.getKey(), Collections.unmodifiableSet(new HashSet<>(entry.getValue())));
+        }
+        this.excludedTokens = Collections.unmodifiableMap(map);
+    }
+
+    void setTables(ParserTables tables) {
+        Checks.state(this.tables == null);
+        this.tables = Checks.notNull(tables);
     }
 
     /**
@@ -63,8 +86,6 @@ public final class ParserState {
      * Returns the list of productions that can be reduced in this state.
      */
     public List<ParserProduction> getReduceProductions() {
-        Checks.state(shifts != null);
-        Checks.state(gotos != null);
         return reduceProductions;
     }
 
@@ -75,42 +96,57 @@ public final class ParserState {
         return isFinal;
     }
 
+    /**
+     * Returns the tokens which must not follow a reduction of the specified production in this state, or
+     * <code>null</code> if there are no such tokens. The tokens are determined by operator precedences: for
+     * such a token, shifting it is preferred to reducing the production. Reductions do not depend on
+     * the next token, so the parser rejects the stacks obtained by the reduction when the token is shifted.
+     */
+    public Set<TokenDescriptor> getExcludedTokens(ParserProduction production) {
+        return excludedTokens.get(production);
+    }
+
+    /**
+     * Returns the production which is reduced immediately when this state is reached, or <code>null</code>.
+     * Such a state has no transitions, and its only production consists of a single element and returns
+     * the value of that element, so the parser does not need to create a stack for the state.
+     *
+     * <p>A state which also shifts a token needs a stack for the shift, so it has no unit production. Thus
+     * a chain through a left-recursive operator hierarchy, like <code>A : B | A '+' B ; B : C | B '*' C ;</code>,
+     * ends at the first operator level, where the state after <code>B</code> shifts <code>'*'</code>.</p>
+     */
+    public ParserProduction getUnitProduction() {
+        return unitProduction;
+    }
+
+    /**
+     * Returns the tables of the configuration this state belongs to.
+     */
+    public ParserTables getTables() {
+        return tables;
+    }
+
     /**
      * Returns the LR state reachable from this one by a SHIFT transition.
      */
     public ParserState getShiftState(TokenDescriptor tokenDescriptor) {
-        Checks.state(shifts != null);
-        Checks.state(gotos != null);
-
-        ParserState result = null;
-        for (int i = 0, n = shifts.size(); i < n; ++i) {
-            ParserShift shift = shifts.get(i);
-            if (shift.tokenDescriptor == tokenDescriptor) {
-                result = shift.state;
-                break;
-            }
-        }
+        int tokenIndex = tables.getTokenIndex(tokenDescriptor);
+        return tables.getShiftState(index, tokenIndex);
+    }
 
-        return result;
+    /**
+     * Returns the LR state reachable from this one by a SHIFT transition by the token with the specified
+     * index (see {@link ParserTables#getTokenIndex(TokenDescriptor)}).
+     */
+    public ParserState getShiftState(int tokenIndex) {
+        return tables.getShiftState(index, tokenIndex);
     }
 
     /**
      * Returns the LR state reachable from this one by a GOTO transition.
      */
     public ParserState getGotoState(ParserNonterminal nonterminal) {
-        Checks.state(shifts != null);
-        Checks.state(gotos != null);
-
-        ParserState result = null;
-        for (int i = 0, n = gotos.size(); i < n; ++i) {
-            ParserGoto got = gotos.get(i);
-            if (got.nonterminal == nonterminal) {
-                result = got.state;
-                break;
-            }
-        }
-
-        return result;
+        return tables.getGotoState(index, nonterminal.getIndex());
     }
 
     /**
@@ -135,7 +171,9 @@ public final class ParserState {
     void print(PrintStream out) {
         out.println("---" + index + "---");
         for (ParserProduction production : reduceProductions) {
-            out.println("reduce " + production.getNonterminal().getName() + " " + production.getLength());
+            out.print("reduce " + production.getNonterminal().getName() + " " + production.getLength());
+            Set<TokenDescriptor> tokens = excludedTokens.get(production);
+            out.println(tokens == null ? "" : " except " + tokens);
         }
         for (ParserShift shift : shifts) {
             out.println("shift " + shift.tokenDescriptor + " " + shift.state.index);
@@ -150,6 +188,31 @@ public final class ParserState {
         return index + "";
     }
 
+    /**
+     * Determines the unit production of this state (see {@link #getUnitProduction()}).
+     *
+     * <p>A chain of unit states reached from the same state is always finite. A unit state reached by
+     * a GOTO on <code>M</code> has a single kernel item <code>N : M .</code>, so <code>N : . M</code> is
+     * the only item of the source state having <code>M</code> after the dot. If the chain returned
+     * to <code>M</code>, the item which brought the first nonterminal of the chain into the closure
+     * would be another such item.</p>
+     */
+    private ParserProduction calcUnitProduction() {
+        if (isFinal || reduceProductions.size() != 1 || !shifts.isEmpty() || !gotos.isEmpty()) {
+            return null;
+        }
+
+        ParserProduction production = reduceProductions.get(0);
+        IParserAction action = production.getAction();
+        if (production.getLength() != 1
+                || !(action instanceof ParserResultAction)
+                || !((ParserResultAction) action).isPassThrough())
+        {
+            return null;
+        }
+        return production;
+    }
+
     /**
      * Determines whether there is a final production among the passed productions.
      */
@@ -0,0 +1,318 @@
+/*
+ * Copyright 2013 Anton Karmanov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.antkar.syn.internal.lrtables;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.antkar.syn.TokenDescriptor;
+import org.antkar.syn.internal.Checks;
+
+/**
+ * Compressed SHIFT and GOTO tables of a parser configuration. Tokens and nonterminals have dense indices,
+ * so a transition is found by a single array lookup. The rows of a table are packed into one array using
+ * the row displacement method: the entry of a state and a column is located at the offset
+ * <code>base[state] + column</code>, and the check array tells to which state the entry belongs. Missing
+ * entries denote errors.
+ */
+public final class ParserTables {
+    /** The size of an array object header, in bytes. */
+    private static final int ARRAY_HEADER_SIZE = 16;
+
+    /** The size of an object reference, in bytes. */
+    private static final int REFERENCE_SIZE = 4;
+
+    /** The size of an entry of the token index map, in bytes. */
+    private static final int MAP_ENTRY_SIZE = 32 + REFERENCE_SIZE + 16;
+
+    private final ParserState[] states;
+    private final Map<TokenDescriptor, Integer> tokenIndices;
+
+    private final int[] shiftBase;
+    private final int[] shiftCheck;
+    private final int[] shiftNext;
+
+    private final int[] gotoBase;
+    private final int[] gotoCheck;
+    private final int[] gotoNext;
+
+    /**
+     * Builds the tables for the specified states. The transitions of all states must be set.
+     */
+    ParserTables(List<ParserState> states, List<TokenDescriptor> tokenDescriptors) {
+        Checks.notNull(states);
+        Checks.notNull(tokenDescriptors);
+
+        this.states = states.toArray(new ParserState[states.size()]);
+        tokenIndices = calcTokenIndices(states, tokenDescriptors);
+
+        int nStates = states.size();
+        List<int[]> shiftRows = new ArrayList<>(nStates);
+        List<int[]> gotoRows = new ArrayList<>(nStates);
+        for (int i = 0; i < nStates; ++i) {
+            ParserState state = this.states[i];
+            Checks.state(state.getIndex() == i);
+
+            List<ParserShift> shifts = state.getShifts();
+            int[] shiftRow = new int[shifts.size() * 2];
+            for (int j = 0, n = shifts.size(); j < n; ++j) {
+                ParserShift shift = shifts.get(j);
+                shiftRow[j * 2] = tokenIndices.get(shift.tokenDescriptor);
+                shiftRow[j * 2 + 1] = shift.state.getIndex();
+            }
+            shiftRows.add(shiftRow);
+
+            List<ParserGoto> gotos = state.getGotoList();
+            int[] gotoRow = new int[gotos.size() * 2];
+            for (int j = 0, n = gotos.size(); j < n; ++j) {
+                ParserGoto pGoto = gotos.get(j);
+                gotoRow[j * 2] = pGoto.nonterminal.getIndex();
+                gotoRow[j * 2 + 1] = pGoto.state.getIndex();
+            }
+            gotoRows.add(gotoRow);
+        }
+
+        shiftBase = new int[nStates];
+        int[][] shiftComb = compress(shiftRows, shiftBase);
+        shiftCheck = shiftComb[0];
+        shiftNext = shiftComb[1];
+
+        gotoBase = new int[nStates];
+        int[][] gotoComb = compress(gotoRows, gotoBase);
+        gotoCheck = gotoComb[0];
+        gotoNext = gotoComb[1];
+    }
+
+    /**
+     * Creates tables from already compressed arrays.
+     */
+    private ParserTables(
+            List<ParserState> states,
+            Map<TokenDescriptor, Integer> tokenIndices,
+            int[][] arrays)
+    {
+        this.states = states.toArray(new ParserState[states.size()]);
+        this.tokenIndices = tokenIndices;
+        shiftBase = arrays[0];
+        shiftCheck = arrays[1];
+        shiftNext = arrays[2];
+        gotoBase = arrays[3];
+        gotoCheck = arrays[4];
+        gotoNext = arrays[5];
+    }
+
+    /**
+     * Writes the token indices and the compressed arrays to a stream.
+     */
+    void write(DataOutput out) throws IOException {
+        TokenDescriptor[] tokens = getTokens();
+        out.writeInt(tokens.length);
+        for (TokenDescriptor token : tokens) {
+            ParserConfigurationSerializer.writeToken(out, token);
+        }
+
+        int[][] arrays = { shiftBase, shiftCheck, shiftNext, gotoBase, gotoCheck, gotoNext };
+        for (int[] array : arrays) {
+            out.writeInt(array.length);
+            for (int value : array) {
+                out.writeInt(value);
+            }
+        }
+    }
+
+    /**
+     * Reads tables written by {@link #write(DataOutput)}. The tables are not compressed again.
+     */
+    static ParserTables read(DataInput in, List<ParserState> states) throws IOException {
+        int tokenCount = in.readInt();
+        Map<TokenDescriptor, Integer> tokenIndices = new HashMap<>();
+        for (int i = 0; i < tokenCount; ++i) {
+            tokenIndices.put(ParserConfigurationSerializer.readToken(in), i);
+        }
+
+        int[][] arrays = new int[6][];
+        for (int i = 0; i < arrays.length; ++i) {
+            int[] array = new int[in.readInt()];
+            for (int j = 0; j < array.length; ++j) {
+                array[j] = in.readInt();
+            }
+            arrays[i] = array;
+        }
+
+        return new ParserTables(states, Collections.unmodifiableMap(tokenIndices), arrays);
+    }
+
+    /**
+     * Returns the tokens ordered by their indices.
+     */
+    TokenDescriptor[] getTokens() {
+        TokenDescriptor[] tokens = new TokenDescriptor[tokenIndices.size()];
+        for (Map.Entry<TokenDescriptor, Integer> entry : tokenIndices.entrySet()) {
+            tokens[entry.getValue()] = entry.getKey();
+        }
+        return tokens;
+    }
+
+    /**
+     * Returns the index of the specified token, or <code>-1</code> if the token is not used in the grammar.
+     */
+    public int getTokenIndex(TokenDescriptor tokenDescriptor) {
+        Integer index = tokenIndices.get(tokenDescriptor);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Returns the approximate number of bytes occupied by the tables: the compressed arrays, the array of states
+     * and the token index map. Assumes a 64-bit virtual machine with compressed references. The states
+     * themselves are not included.
+     */
+    public long getMemorySize() {
+        long result = ARRAY_HEADER_SIZE + REFERENCE_SIZE * (long) states.length;
+        int[][] arrays = { shiftBase, shiftCheck, shiftNext, gotoBase, gotoCheck, gotoNext };
+        for (int[] array : arrays) {
+            result += ARRAY_HEADER_SIZE + 4L * array.length;
+        }
+
+        //A hash map entry, its table slot and a boxed index.
+        result += MAP_ENTRY_SIZE * (long) tokenIndices.size();
+        return result;
+    }
+
+    /**
+     * Returns the state reachable from a state by a SHIFT transition, or <code>null</code>.
+     *
+     * @param stateIndex the index of the source state.
+     * @param tokenIndex the index of the token, as returned by {@link #getTokenIndex(TokenDescriptor)}.
+     */
+    ParserState getShiftState(int stateIndex, int tokenIndex) {
+        int offset = shiftBase[stateIndex] + tokenIndex;
+        if (tokenIndex < 0 || offset >= shiftCheck.length || shiftCheck[offset] != stateIndex) {
+            return null;
+        }
+        return states[shiftNext[offset]];
+    }
+
+    /**
+     * Returns the state reachable from a state by a GOTO transition, or <code>null</code>.
+     *
+     * @param stateIndex the index of the source state.
+     * @param nonterminalIndex the index of the nonterminal.
+     */
+    ParserState getGotoState(int stateIndex, int nonterminalIndex) {
+        int offset = gotoBase[stateIndex] + nonterminalIndex;
+        if (offset >= gotoCheck.length || gotoCheck[offset] != stateIndex) {
+            return null;
+        }
+        return states[gotoNext[offset]];
+    }
+
+    /**
+     * Assigns dense indices to the tokens of the grammar, and to the tokens used in the transitions of
+     * the states, if they are not in the list of the grammar's tokens.
+     */
+    private static Map<TokenDescriptor, Integer> calcTokenIndices(
+            List<ParserState> states,
+            List<TokenDescriptor> tokenDescriptors)
+    {
+        Map<TokenDescriptor, Integer> result = new HashMap<>();
+        for (TokenDescriptor tokenDescriptor : tokenDescriptors) {
+            if (!result.containsKey(tokenDescriptor)) {
+                result.put(tokenDescriptor, result.size());
+            }
+        }
+        for (ParserState state : states) {
+            for (ParserShift shift : state.getShifts()) {
+                if (!result.containsKey(shift.tokenDescriptor)) {
+                    result.put(shift.tokenDescriptor, result.size());
+                }
+            }
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Packs table rows into a check array and a next array. Each row is a sequence of column and value pairs.
+     * The rows with more entries are placed first, each one at the first offset where its entries do not
+     * collide with already placed ones.
+     *
+     * @param rows the rows of the table.
+     * @param base the array to receive the offsets of the rows.
+     * @return the check array and the next array.
+     */
+    private static int[][] compress(final List<int[]> rows, int[] base) {
+        Integer[] order = new Integer[rows.size()];
+        for (int i = 0; i < order.length; ++i) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return Integer.compare(rows.get(o2).length, rows.get(o1).length);
+            }
+        });
+
+        int[] check = new int[16];
+        int[] next = new int[16];
+        Arrays.fill(check, -1);
+        int length = 0;
+
+        for (int row : order) {
+            int[] entries = rows.get(row);
+            int offset = findOffset(entries, check);
+            base[row] = offset;
+
+            for (int i = 0; i < entries.length; i += 2) {
+                int pos = offset + entries[i];
+                if (pos >= check.length) {
+                    int newLength = Math.max(check.length * 2, pos + 1);
+                    int oldLength = check.length;
+                    check = Arrays.copyOf(check, newLength);
+                    next = Arrays.copyOf(next, newLength);
+                    Arrays.fill(check, oldLength, newLength, -1);
+                }
+                check[pos] = row;
+                next[pos] = entries[i + 1];
+                length = Math.max(length, pos + 1);
+            }
+        }
+
+        return new int[][]{ Arrays.copyOf(check, length), Arrays.copyOf(next, length) };
+    }
+
+    /**
+     * Finds the first offset at which the entries of a row do not collide with already placed entries.
+     */
+    private static int findOffset(int[] entries, int[] check) {
+        for (int offset = 0;; ++offset) {
+            boolean free = true;
+            for (int i = 0; i < entries.length && free; i += 2) {
+                int pos = offset + entries[i];
+                free = pos >= check.length || check[pos] == -1;
+            }
+            if (free) {
+                return offset;
+            }
+        }
+    }
+}
@@ -15,6 +15,8 @@
  */
 package org.antkar.syn.internal.lrtables;
 
+import java.util.List;
+
 import org.antkar.syn.internal.Checks;
 
 /**
@@ -23,6 +25,8 @@ import org.antkar.syn.internal.Checks;
 final class ParserTempState {
     private final ParserItemSet itemSet;
     private final ParserState state;
+    private List<ParserShift> shifts = null;
+    private List<ParserGoto> gotos = null;
 
     ParserTempState(ParserItemSet itemSet, ParserState state) {
         this.itemSet = Checks.notNull(itemSet);
@@ -37,6 +41,24 @@ final class ParserTempState {
         return state;
     }
 
+    /**
+     * Sets the transitions of the state. They are passed to the {@link ParserState} when all states have
+     * been built, since conflicts resolution may remove some SHIFTs.
+     */
+    void setTransitions(List<ParserShift> shifts, List<ParserGoto> gotos) {
+        Checks.state(this.shifts == null);
+        this.shifts = Checks.notNull(shifts);
+        this.gotos = Checks.notNull(gotos);
+    }
+
+    List<ParserShift> getShifts() {
+        return Checks.notNull(shifts);
+    }
+
+    List<ParserGoto> getGotos() {
+        return Checks.notNull(gotos);
+    }
+
     @Override
     public String toString() {
         return state + " " + itemSet;
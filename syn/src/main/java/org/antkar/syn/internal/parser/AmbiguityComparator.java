@@ -15,9 +15,7 @@
  */
 package org.antkar.syn.internal.parser;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.Comparator;
 
 import org.antkar.syn.SynParser;
 
@@ -30,8 +28,25 @@ final class AmbiguityComparator {
     private AmbiguityComparator(){}
 
     /**
-     * Compare two conflicting stacks. The stacks must be of the same length. (Otherwise they cannot conflict,
-     * because parser state chains must be equal).
+     * Orders stacks from the worst to the best one, i. e. the stack which has to be kept is the greater one.
+     * Used to choose the stacks to keep when the number of live stacks exceeds the limit.
+     */
+    static final Comparator<ParserStack> STACKS_ORDER = new Comparator<ParserStack>() {
+        @Override
+        public int compare(ParserStack o1, ParserStack o2) {
+            return AmbiguityComparator.compare(o1, o2);
+        }
+    };
+
+    /**
+     * Compare two stacks which have consumed the same input. Conflicting stacks are of the same length, since
+     * their parser state chains are equal. Stacks of different lengths are compared as if the elements of
+     * the longer stack which have no counterparts in the shorter one were equal to nothing, so that the stack
+     * with less differing elements is preferred.
+     *
+     * <p>The result is the same as if an {@link AmbiguityNode} tree was built for the differing elements of
+     * each stack and the trees were compared. However, the elements are compared directly, using the token
+     * counts cached in them, so no trees are built and shared sub-elements are not compared at all.</p>
      *
      * @param o1 the first stack.
      * @param o2 the second stack.
@@ -40,38 +55,141 @@ final class AmbiguityComparator {
      * kept, the second stack has to be kept or if the "winner" is undefined.
      */
     static int compare(ParserStack o1, ParserStack o2) {
-        //Create ambiguity tree for each stack.
-
-        List<AmbiguityNode> list1 = new ArrayList<>();
-        List<AmbiguityNode> list2 = new ArrayList<>();
-
-        //Add differing stack elements to lists.
+        //Go through the stacks until the branching point is reached. Prefer the stack whose differing elements
+        //cover more tokens.
+        int tokenCount1 = 0;
+        int tokenCount2 = 0;
+        int length1 = 0;
+        int length2 = 0;
         ParserStackElement top1 = o1.getTop();
         ParserStackElement top2 = o2.getTop();
+        while (top1.getDepth() > top2.getDepth()) {
+            tokenCount1 += top1.getTokenCount();
+            ++length1;
+            top1 = top1.getPrev();
+        }
+        while (top2.getDepth() > top1.getDepth()) {
+            tokenCount2 += top2.getTokenCount();
+            ++length2;
+            top2 = top2.getPrev();
+        }
         while (top1 != top2) {
-            //Go through the stacks until the branching point is reached.
-            list1.add(top1.createAmbiguityNode());
-            list2.add(top2.createAmbiguityNode());
+            tokenCount1 += top1.getTokenCount();
+            tokenCount2 += top2.getTokenCount();
+            ++length1;
+            ++length2;
             top1 = top1.getPrev();
             top2 = top2.getPrev();
         }
 
-        //Create trees from nodes.
-        AmbiguityNode tree1 = reversedListToNode(list1);
-        AmbiguityNode tree2 = reversedListToNode(list2);
+        int result = Integer.compare(tokenCount1, tokenCount2);
+        if (result != 0) {
+            return result;
+        }
 
-        //Compare ambiguity trees.
-        int result = AmbiguityNode.compare(tree1, tree2);
+        //Compare the differing elements from left to right. Since the stacks are traversed from the top,
+        //the last non-zero result is the one of the leftmost elements. The top elements of the longer
+        //stack have no counterparts, so they are skipped.
+        top1 = o1.getTop();
+        top2 = o2.getTop();
+        for (int i = length1; i > length2; --i) {
+            top1 = top1.getPrev();
+        }
+        for (int i = length2; i > length1; --i) {
+            top2 = top2.getPrev();
+        }
+        while (top1 != top2) {
+            int elementResult = compareElements(top1, top2);
+            if (elementResult != 0) {
+                result = elementResult;
+            }
+            top1 = top1.getPrev();
+            top2 = top2.getPrev();
+        }
+
+        //No difference between the common elements. Prefer the stack with less differing elements.
+        if (result == 0) {
+            result = Integer.compare(length2, length1);
+        }
         return result;
     }
 
     /**
-     * Creates an ambiguity node from the specified sub-nodes.
+     * Compares two stack elements the same way as {@link AmbiguityNode#compare(AmbiguityNode, AmbiguityNode)}
+     * compares their ambiguity nodes.
      */
-    private static AmbiguityNode reversedListToNode(List<AmbiguityNode> list) {
-        Collections.reverse(list);
-        AmbiguityNode[] nodes = list.toArray(new AmbiguityNode[list.size()]);
-        AmbiguityNode result = new AmbiguityNode(nodes);
+    static int compareElements(ParserStackElement el1, ParserStackElement el2) {
+        el1 = el1.unwrap();
+        el2 = el2.unwrap();
+
+        int result = Integer.compare(el1.getTokenCount(), el2.getTokenCount());
+        if (result != 0 || el1 == el2) {
+            return result;
+        }
+
+        AmbiguityNode node1 = el1.getAmbiguityNode();
+        AmbiguityNode node2 = el2.getAmbiguityNode();
+        if (node1 != null && node2 != null) {
+            return AmbiguityNode.compare(node1, node2);
+        } else if (node1 != null) {
+            return -compareElementWithNode((NonterminalParserStackElement) el2, node1);
+        } else if (node2 != null) {
+            return compareElementWithNode((NonterminalParserStackElement) el1, node2);
+        }
+
+        NonterminalParserStackElement nt1 = (NonterminalParserStackElement) el1;
+        NonterminalParserStackElement nt2 = (NonterminalParserStackElement) el2;
+        int count1 = nt1.getSubElementCount();
+        int count2 = nt2.getSubElementCount();
+
+        //Sub-elements are compared in the same order as the sub-nodes of an ambiguity node.
+        ParserStackElement sub1 = nt1.getSubElements();
+        ParserStackElement sub2 = nt2.getSubElements();
+        for (int i = 0, n = Math.min(count1, count2); i < n; ++i) {
+            result = compareElements(sub1, sub2);
+            if (result != 0) {
+                return result;
+            }
+            sub1 = sub1.getPrev();
+            sub2 = sub2.getPrev();
+        }
+
+        //No difference between sub-elements. Prefer the element with less sub-elements.
+        result = Integer.compare(count2, count1);
+        return result;
+    }
+
+    /**
+     * Compares a stack element with an ambiguity node. Used when one of two compared elements has been
+     * committed, so its sub-elements are not available.
+     */
+    private static int compareElementWithNode(ParserStackElement el, AmbiguityNode node) {
+        el = el.unwrap();
+
+        int result = Integer.compare(el.getTokenCount(), node.getTokenCount());
+        if (result != 0) {
+            return result;
+        }
+
+        AmbiguityNode elNode = el.getAmbiguityNode();
+        if (elNode != null) {
+            return AmbiguityNode.compare(elNode, node);
+        }
+
+        NonterminalParserStackElement nt = (NonterminalParserStackElement) el;
+        int count1 = nt.getSubElementCount();
+        int count2 = node.getSubNodeCount();
+
+        ParserStackElement sub = nt.getSubElements();
+        for (int i = 0, n = Math.min(count1, count2); i < n; ++i) {
+            result = compareElementWithNode(sub, node.getSubNode(i));
+            if (result != 0) {
+                return result;
+            }
+            sub = sub.getPrev();
+        }
+
+        result = Integer.compare(count2, count1);
         return result;
     }
 }
@@ -41,6 +41,37 @@ final class AmbiguityNode {
         this.subNodes = subNodes;
     }
 
+    /**
+     * Returns the number of tokens covered by this node.
+     */
+    int getTokenCount() {
+        return tokenCount;
+    }
+
+    /**
+     * Returns the number of sub-nodes.
+     */
+    int getSubNodeCount() {
+        return subNodes.length;
+    }
+
+    /**
+     * Returns the sub-node with the specified index.
+     */
+    AmbiguityNode getSubNode(int index) {
+        return subNodes[index];
+    }
+
+    /**
+     * Returns a node which covers the same number of tokens as this one, but has no sub-nodes.
+     */
+    AmbiguityNode truncate() {
+        if (subNodes.length == 0) {
+            return this;
+        }
+        return new AmbiguityNode(tokenCount, EMPTY_ARRAY);
+    }
+
     @Override
     public String toString() {
         String result = "(" + tokenCount;
@@ -26,4 +26,20 @@ public interface IParserAction {
      * @return the tree node.
      */
     IParserNode execute(ParserStackElement stack);
+
+    /**
+     * Returns <code>true</code> if the action creates a new syntax tree node, rather than returning an existing
+     * node or extending an array. Used to calculate the size and the depth of the tree.
+     */
+    boolean isNodeCreated();
+
+    /**
+     * Returns the depth of the syntax tree produced by the action, i. e. the maximum number of nested nodes.
+     * The result may be an upper bound of the actual depth.
+     *
+     * @param stack the parser stack.
+     * @param maxSubDepth the maximum depth of the elements of the production.
+     * @return the depth.
+     */
+    int getTreeDepth(ParserStackElement stack, int maxSubDepth);
 }
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2013 Anton Karmanov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.antkar.syn.internal.parser;
+
+import org.antkar.syn.TerminalNode;
+import org.antkar.syn.internal.lrtables.ParserProduction;
+
+/**
+ * Defines what the parser does with stack elements when they are committed, i. e. when they are known to
+ * be a part of the result tree.
+ */
+interface IParserCommitHandler {
+    /**
+     * Called when a terminal element is committed.
+     */
+    void commitTerminal(TerminalNode token);
+
+    /**
+     * Called when a nonterminal element is committed. All sub-elements have been committed before.
+     *
+     * @param production the production of the element.
+     * @param subElements the top of the stack of sub-elements.
+     * @return the parser node of the element.
+     */
+    IParserNode commitNonterminal(ParserProduction production, ParserStackElement subElements);
+
+    /**
+     * Returns <code>true</code> if a committed element of the specified production must keep its complete
+     * ambiguity tree. Otherwise, only the number of covered tokens is kept, so the memory used by committed
+     * elements does not grow with the input. This may only affect the choice between ambiguous trees when
+     * empty productions are involved.
+     */
+    boolean isAmbiguityTreeRetained(ParserProduction production);
+}
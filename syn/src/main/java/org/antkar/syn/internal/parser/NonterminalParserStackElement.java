@@ -16,6 +16,8 @@
 package org.antkar.syn.internal.parser;
 
 import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.antkar.syn.internal.Checks;
 import org.antkar.syn.internal.CommonUtil;
@@ -26,10 +28,32 @@ import org.antkar.syn.internal.lrtables.ParserState;
  * Nonterminal stack element. Contains sub-elements.
  */
 final class NonterminalParserStackElement extends ParserStackElement {
-    private final ParserProduction production;
+    /** The production. Changes if a preferred alternative is added. */
+    private ParserProduction production;
 
-    /** The top of the stack of sub-elements. */
-    private final ParserStackElement subElements;
+    /** The number of tokens covered by the sub-elements, calculated when the element is created. */
+    private final int tokenCount;
+
+    /** The depth of the syntax tree, calculated when the element is created. */
+    private int treeDepth;
+
+    /** The number of syntax tree nodes, calculated when the element is created. */
+    private int nodeCount;
+
+    /** The top of the stack of sub-elements. Set to <code>null</code> when the element is committed. */
+    private ParserStackElement subElements;
+
+    /**
+     * Other interpretations of the same tokens, if ambiguities are packed, or <code>null</code>. Each one is
+     * represented by an element with the same previous element and state as this one.
+     */
+    private List<NonterminalParserStackElement> alternatives;
+
+    /** The parser node, calculated when the element is committed. */
+    private IParserNode committedNode;
+
+    /** The ambiguity node, calculated when the element is committed. */
+    private AmbiguityNode committedAmbiguityNode;
 
     NonterminalParserStackElement(
             ParserStackElement prev,
@@ -40,17 +64,188 @@ final class NonterminalParserStackElement extends ParserStackElement {
         super(prev, state);
         this.production = Checks.notNull(production);
         this.subElements = Checks.notNull(subElements);
+
+        int count = 0;
+        int depth = 0;
+        int nodes = 0;
+        ParserStackElement element = subElements;
+        for (int i = production.getLength(); i > 0; --i) {
+            count += element.getTokenCount();
+            depth = Math.max(depth, element.getTreeDepth());
+            nodes += element.getNodeCount();
+            element = element.getPrev();
+        }
+
+        IParserAction action = production.getAction();
+        tokenCount = count;
+        treeDepth = action.getTreeDepth(subElements, depth);
+        nodeCount = action.isNodeCreated() ? nodes + 1 : nodes;
+    }
+
+    /**
+     * Adds an alternative interpretation of the tokens covered by this element.
+     *
+     * @param alternative the element representing the alternative.
+     * @param primary <code>true</code> if the alternative is preferred to the current primary interpretation.
+     */
+    void addAlternative(NonterminalParserStackElement alternative, boolean primary) {
+        Checks.argument(alternative.getPrev() == getPrev());
+        Checks.argument(alternative.getState() == getState());
+        Checks.state(subElements != null);
+
+        if (alternatives == null) {
+            alternatives = new ArrayList<>();
+        }
+
+        if (primary) {
+            alternatives.add(new NonterminalParserStackElement(getPrev(), getState(), production, subElements));
+            production = alternative.production;
+            subElements = alternative.subElements;
+        } else {
+            alternatives.add(alternative);
+        }
+
+        treeDepth = Math.max(treeDepth, alternative.treeDepth);
+        nodeCount = Math.max(nodeCount, alternative.nodeCount);
+    }
+
+    /**
+     * Returns <code>true</code> if the specified element is this element, or a sub-element of this element or
+     * of one of its alternatives at any level. Only the sub-elements covering the same tokens as this element
+     * are examined, since the others cannot contain an element covering these tokens.
+     */
+    boolean containsElement(NonterminalParserStackElement element) {
+        if (this == element) {
+            return true;
+        }
+        if (subElements == null) {
+            return false;
+        }
+
+        ParserStackElement subElement = subElements;
+        for (int i = production.getLength(); i > 0; --i) {
+            ParserStackElement unwrapped = subElement.unwrap();
+            if (unwrapped.getTokenCount() == tokenCount && unwrapped instanceof NonterminalParserStackElement) {
+                if (((NonterminalParserStackElement) unwrapped).containsElement(element)) {
+                    return true;
+                }
+            }
+            subElement = subElement.getPrev();
+        }
+
+        if (alternatives != null) {
+            for (NonterminalParserStackElement alternative : alternatives) {
+                if (alternative.containsElement(element)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    void release(IParserCommitHandler handler) {
+        //Commit the sub-elements first, so that all elements are committed in the order of the input.
+        for (ParserStackElement element : getSubElementsArray()) {
+            element.commit(handler);
+        }
+
+        committedNode = handler.commitNonterminal(production, subElements);
+        if (alternatives != null) {
+            committedNode = createPackedNode(committedNode, handler);
+            alternatives = null;
+        }
+
+        AmbiguityNode ambiguityNode = createAmbiguityNode();
+        if (!handler.isAmbiguityTreeRetained(production)) {
+            ambiguityNode = ambiguityNode.truncate();
+        }
+        committedAmbiguityNode = ambiguityNode;
+
+        subElements = null;
     }
 
     @Override
     IParserNode createParserNode() {
+        if (subElements == null) {
+            return committedNode;
+        }
+
         IParserAction action = production.getAction();
         IParserNode result = action.execute(subElements);
+        if (alternatives != null) {
+            List<IParserNode> nodes = new ArrayList<>(alternatives.size() + 1);
+            nodes.add(result);
+            for (NonterminalParserStackElement alternative : alternatives) {
+                nodes.add(alternative.createParserNode());
+            }
+            result = ParserPackedNode.create(nodes);
+        }
         return result;
     }
 
+    /**
+     * Commits the sub-elements of the alternatives and creates a packed node from the node of the primary
+     * interpretation and the nodes of the alternatives. Shared sub-elements are committed once, so their nodes
+     * are shared too.
+     */
+    private IParserNode createPackedNode(IParserNode primaryNode, IParserCommitHandler handler) {
+        List<IParserNode> nodes = new ArrayList<>(alternatives.size() + 1);
+        nodes.add(primaryNode);
+        for (NonterminalParserStackElement alternative : alternatives) {
+            for (ParserStackElement element : alternative.getSubElementsArray()) {
+                element.commit(handler);
+            }
+            nodes.add(alternative.createParserNode());
+        }
+        return ParserPackedNode.create(nodes);
+    }
+
+    @Override
+    int getTokenCount() {
+        return tokenCount;
+    }
+
     @Override
-    AmbiguityNode createAmbiguityNode() {
+    int getTreeDepth() {
+        return treeDepth;
+    }
+
+    @Override
+    int getNodeCount() {
+        return nodeCount;
+    }
+
+    @Override
+    AmbiguityNode getAmbiguityNode() {
+        if (subElements == null) {
+            return committedAmbiguityNode;
+        } else if (production.getLength() == 0) {
+            return AmbiguityNode.NULL;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the top of the stack of sub-elements, i. e. the last sub-element. Returns <code>null</code> if
+     * the element has been committed.
+     */
+    ParserStackElement getSubElements() {
+        return subElements;
+    }
+
+    /**
+     * Returns the number of sub-elements.
+     */
+    int getSubElementCount() {
+        return production.getLength();
+    }
+
+    /**
+     * Creates the ambiguity node of this element from the nodes of the sub-elements, which must have been
+     * committed. The sub-nodes go in reverse order, starting with the last sub-element.
+     */
+    private AmbiguityNode createAmbiguityNode() {
         int length = production.getLength();
         if (length == 0) {
             return AmbiguityNode.NULL;
@@ -59,7 +254,7 @@ final class NonterminalParserStackElement extends ParserStackElement {
         AmbiguityNode[] subAmbiguityNodes = new AmbiguityNode[length];
         ParserStackElement element = subElements;
         for (int i = 0; i < subAmbiguityNodes.length; ++i) {
-            subAmbiguityNodes[i] = element.createAmbiguityNode();
+            subAmbiguityNodes[i] = element.getAmbiguityNode();
             element = element.getPrev();
         }
 
@@ -71,6 +266,13 @@ final class NonterminalParserStackElement extends ParserStackElement {
         CommonUtil.printIndent(out, level);
         out.println(production.getNonterminal().getName());
 
+        if (subElements == null) {
+            //Sub-elements have been released, print the node instead.
+            CommonUtil.printIndent(out, level + 1);
+            out.println(committedNode);
+            return;
+        }
+
         ParserStackElement[] array = getSubElementsArray();
         for (ParserStackElement element : array) {
             element.print(out, level + 1);
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2013 Anton Karmanov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.antkar.syn.internal.parser;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.antkar.syn.SynException;
+import org.antkar.syn.ValueNode;
+import org.antkar.syn.internal.BooleanValueNode;
+import org.antkar.syn.internal.FloatValueNode;
+import org.antkar.syn.internal.IntegerValueNode;
+import org.antkar.syn.internal.LongValueNode;
+import org.antkar.syn.internal.StringValueNode;
+
+/**
+ * Writes parser actions to a binary stream and reads them back. Used to store precompiled parser tables.
+ */
+public final class ParserActionSerializer {
+    private static final int ACTION_NULL = 0;
+    private static final int ACTION_EMPTY_ARRAY = 1;
+    private static final int ACTION_FIRST_ARRAY = 2;
+    private static final int ACTION_NEXT_ARRAY = 3;
+    private static final int ACTION_RESULT = 4;
+    private static final int ACTION_OBJECT = 5;
+
+    private static final int GETTER_STACK = 0;
+    private static final int GETTER_CONST = 1;
+
+    private static final int VALUE_NULL = 0;
+    private static final int VALUE_BOOLEAN = 1;
+    private static final int VALUE_INTEGER = 2;
+    private static final int VALUE_LONG = 3;
+    private static final int VALUE_FLOAT = 4;
+    private static final int VALUE_STRING = 5;
+
+    private ParserActionSerializer(){}
+
+    /**
+     * Writes an action.
+     *
+     * @throws SynException if the action cannot be stored, e. g. if it returns a Java object constant.
+     */
+    public static void writeAction(DataOutput out, IParserAction action) throws IOException, SynException {
+        if (action == ParserNullAction.INSTANCE) {
+            out.writeByte(ACTION_NULL);
+        } else if (action == ParserEmptyArrayAction.INSTANCE) {
+            out.writeByte(ACTION_EMPTY_ARRAY);
+        } else if (action == ParserFirstArrayAction.INSTANCE) {
+            out.writeByte(ACTION_FIRST_ARRAY);
+        } else if (action instanceof ParserNextArrayAction) {
+            out.writeByte(ACTION_NEXT_ARRAY);
+            out.writeBoolean(((ParserNextArrayAction) action).hasSeparator());
+        } else if (action instanceof ParserResultAction) {
+            out.writeByte(ACTION_RESULT);
+            writeGetter(out, ((ParserResultAction) action).getGetter());
+        } else if (action instanceof ParserObjectAction) {
+            ParserObjectAction objectAction = (ParserObjectAction) action;
+            List<String> keys = objectAction.getKeys();
+            List<IParserGetter> getters = objectAction.getGetters();
+            out.writeByte(ACTION_OBJECT);
+            out.writeInt(keys.size());
+            for (int i = 0, n = keys.size(); i < n; ++i) {
+                String key = keys.get(i);
+                out.writeBoolean(key != null);
+                if (key != null) {
+                    out.writeUTF(key);
+                }
+                writeGetter(out, getters.get(i));
+            }
+        } else {
+            throw new SynException("Unsupported parser action: " + action);
+        }
+    }
+
+    /**
+     * Reads an action written by {@link #writeAction(DataOutput, IParserAction)}.
+     */
+    public static IParserAction readAction(DataInput in) throws IOException {
+        int tag = in.readByte();
+        switch (tag) {
+        case ACTION_NULL:
+            return ParserNullAction.INSTANCE;
+        case ACTION_EMPTY_ARRAY:
+            return ParserEmptyArrayAction.INSTANCE;
+        case ACTION_FIRST_ARRAY:
+            return ParserFirstArrayAction.INSTANCE;
+        case ACTION_NEXT_ARRAY:
+            return in.readBoolean() ? ParserNextArrayAction.WITH_SEPARATOR : ParserNextArrayAction.WITHOUT_SEPARATOR;
+        case ACTION_RESULT:
+            return new ParserResultAction(readGetter(in));
+        case ACTION_OBJECT:
+            int count = in.readInt();
+            List<String> keys = new ArrayList<>(count);
+            List<IParserGetter> getters = new ArrayList<>(count);
+            for (int i = 0; i < count; ++i) {
+                keys.add(in.readBoolean() ? in.readUTF() : null);
+                getters.add(readGetter(in));
+            }
+            return new ParserObjectAction(keys, getters);
+        default:
+            throw new IOException("Invalid action tag: " + tag);
+        }
+    }
+
+    /**
+     * Writes a getter.
+     */
+    private static void writeGetter(DataOutput out, IParserGetter getter) throws IOException, SynException {
+        if (getter instanceof ParserStackGetter) {
+            out.writeByte(GETTER_STACK);
+            out.writeInt(getter.offset());
+        } else if (getter instanceof ParserConstGetter) {
+            out.writeByte(GETTER_CONST);
+            writeValue(out, ((ParserConstGetter) getter).getUserNode());
+        } else {
+            throw new SynException("Unsupported parser getter: " + getter);
+        }
+    }
+
+    /**
+     * Reads a getter.
+     */
+    private static IParserGetter readGetter(DataInput in) throws IOException {
+        int tag = in.readByte();
+        switch (tag) {
+        case GETTER_STACK:
+            return new ParserStackGetter(in.readInt());
+        case GETTER_CONST:
+            return new ParserConstGetter(readValue(in));
+        default:
+            throw new IOException("Invalid getter tag: " + tag);
+        }
+    }
+
+    /**
+     * Writes a constant value. Java object constants cannot be written, since they are obtained from static
+     * fields when the grammar is loaded.
+     */
+    private static void writeValue(DataOutput out, ValueNode value) throws IOException, SynException {
+        if (value == null) {
+            out.writeByte(VALUE_NULL);
+        } else if (value instanceof BooleanValueNode) {
+            out.writeByte(VALUE_BOOLEAN);
+            out.writeBoolean(value.getBoolean());
+        } else if (value instanceof IntegerValueNode) {
+            out.writeByte(VALUE_INTEGER);
+            out.writeInt(value.getInt());
+        } else if (value instanceof LongValueNode) {
+            out.writeByte(VALUE_LONG);
+            out.writeLong(value.getLong());
+        } else if (value instanceof FloatValueNode) {
+            out.writeByte(VALUE_FLOAT);
+            out.writeDouble(value.getFloat());
+        } else if (value instanceof StringValueNode) {
+            out.writeByte(VALUE_STRING);
+            out.writeUTF(value.getString());
+        } else {
+            throw new SynException("Constant cannot be precompiled: " + value);
+        }
+    }
+
+    /**
+     * Reads a constant value.
+     */
+    private static ValueNode readValue(DataInput in) throws IOException {
+        int tag = in.readByte();
+        switch (tag) {
+        case VALUE_NULL:
+            return null;
+        case VALUE_BOOLEAN:
+            return BooleanValueNode.getInstance(in.readBoolean());
+        case VALUE_INTEGER:
+            return new IntegerValueNode(null, in.readInt());
+        case VALUE_LONG:
+            return new LongValueNode(null, in.readLong());
+        case VALUE_FLOAT:
+            return new FloatValueNode(null, in.readDouble());
+        case VALUE_STRING:
+            return new StringValueNode(null, in.readUTF());
+        default:
+            throw new IOException("Invalid value tag: " + tag);
+        }
+    }
+}
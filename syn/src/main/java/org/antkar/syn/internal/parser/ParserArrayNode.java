@@ -15,37 +15,59 @@
  */
 package org.antkar.syn.internal.parser;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 import org.antkar.syn.ArrayNode;
 import org.antkar.syn.SynNode;
 
 /**
- * Array Parser Tree node. Produced by repetition elements.
+ * Array Parser Tree node. Produced by repetition elements. The node is immutable: adding a sub-node creates
+ * a new node sharing the sub-nodes of the original one, so a stack element's node stays valid when parsing
+ * is resumed from a checkpoint and the element is extended in a different way.
  */
 final class ParserArrayNode implements IParserNode {
-    private final List<SynNode> subNodes;
+    static final ParserArrayNode EMPTY = new ParserArrayNode(null, null, 0);
 
-    ParserArrayNode() {
-        subNodes = new ArrayList<>();
+    /** The node containing all sub-nodes except the last one. */
+    private final ParserArrayNode prev;
+    private final SynNode lastSubNode;
+    private final int size;
+
+    private ParserArrayNode(ParserArrayNode prev, SynNode lastSubNode, int size) {
+        this.prev = prev;
+        this.lastSubNode = lastSubNode;
+        this.size = size;
+    }
+
+    /**
+     * Returns an array consisting of the sub-nodes of this array and the specified sub-node.
+     */
+    ParserArrayNode add(SynNode subNode) {
+        return new ParserArrayNode(this, subNode, size + 1);
     }
 
     /**
-     * Adds a sub-node to this array.
+     * Returns the last sub-node of this array.
      */
-    void addSubNode(SynNode subNode) {
-        subNodes.add(subNode);
+    SynNode getLastSubNode() {
+        return lastSubNode;
     }
 
     @Override
     public SynNode createUserNode() {
-        SynNode result = new ArrayNode(subNodes);
+        SynNode[] subNodes = new SynNode[size];
+        ParserArrayNode node = this;
+        for (int i = size - 1; i >= 0; --i) {
+            subNodes[i] = node.lastSubNode;
+            node = node.prev;
+        }
+
+        SynNode result = new ArrayNode(Arrays.asList(subNodes));
         return result;
     }
 
     @Override
     public String toString() {
-        return subNodes + "";
+        return createUserNode() + "";
     }
 }
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2013 Anton Karmanov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.antkar.syn.internal.parser;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.antkar.syn.internal.Checks;
+
+/**
+ * A snapshot of the state of a {@link ParserEngine} taken at a token boundary: the tops of the live stacks
+ * and the position of the scanner. Parsing can be resumed from a checkpoint with an input which is equal
+ * to the original one before the checkpoint's offset.
+ *
+ * <p>A checkpoint is immutable, so parsing can be resumed from it any number of times, also concurrently.
+ * The elements of its stacks are committed when the checkpoint is created, so that their nodes are built
+ * once, and an engine works with copies of the elements, since it changes their flags.</p>
+ */
+public final class ParserCheckpoint {
+    private final ParserStackElement[] tops;
+    private final int offset;
+    private final int line;
+    private final int column;
+    private final int tokenCount;
+
+    ParserCheckpoint(ParserStackElement[] tops, int offset, int line, int column, int tokenCount) {
+        Checks.argument(tops.length > 0);
+        Checks.argument(tokenCount >= 0);
+
+        freeze(tops);
+        this.tops = tops;
+        this.offset = offset;
+        this.line = line;
+        this.column = column;
+        this.tokenCount = tokenCount;
+    }
+
+    /**
+     * Returns copies of the tops of the live stacks. Each call returns new copies.
+     */
+    ParserStackElement[] copyTops() {
+        Map<ParserStackElement, ParserStackElement> copies = new IdentityHashMap<>();
+        ParserStackElement[] result = new ParserStackElement[tops.length];
+        for (int i = 0; i < tops.length; ++i) {
+            result[i] = copyElement(tops[i], copies);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the offset of the character where parsing is resumed.
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * Returns the line number of the character where parsing is resumed, starting with <code>1</code>.
+     */
+    public int getLine() {
+        return line;
+    }
+
+    /**
+     * Returns the column number of the character where parsing is resumed, starting with <code>1</code>.
+     */
+    public int getColumn() {
+        return column;
+    }
+
+    /**
+     * Returns the number of tokens preceding the checkpoint's offset.
+     */
+    public int getTokenCount() {
+        return tokenCount;
+    }
+
+    /**
+     * Commits all elements of the stacks, so that the elements are not changed when they are committed by
+     * engines resumed from the checkpoint. The stacks do not have to be a part of the result, so the elements
+     * are committed by the tree handler, and they keep their ambiguity trees, since the stacks have not been
+     * compared with each other yet.
+     */
+    private static void freeze(ParserStackElement[] tops) {
+        Set<ParserStackElement> visited = Collections.newSetFromMap(new IdentityHashMap<ParserStackElement, Boolean>());
+        Deque<ParserStackElement> queue = new ArrayDeque<>(Arrays.asList(tops));
+        while (!queue.isEmpty()) {
+            ParserStackElement element = queue.remove();
+            if (visited.add(element)) {
+                element.commit(ParserTreeCommitHandler.RETAINING);
+                if (element.getPrev() != null) {
+                    queue.add(element.getPrev());
+                }
+                queue.addAll(element.getEqualElements());
+            }
+        }
+    }
+
+    /**
+     * Copies an element together with its previous elements and the elements merged with it. The copies
+     * represent the same committed elements, but have their own flags.
+     */
+    private static ParserStackElement copyElement(
+            ParserStackElement element,
+            Map<ParserStackElement, ParserStackElement> copies)
+    {
+        //Find the deepest element which has not been copied yet, so that the stack is copied without recursion.
+        List<ParserStackElement> chain = new ArrayList<>();
+        for (ParserStackElement el = element; el != null && !copies.containsKey(el); el = el.getPrev()) {
+            chain.add(el);
+        }
+
+        for (int i = chain.size() - 1; i >= 0; --i) {
+            ParserStackElement el = chain.get(i);
+            ParserStackElement prev = el.getPrev();
+            ParserStackElement copy;
+            if (prev == null) {
+                copy = new StartParserStackElement(el.getState());
+            } else {
+                copy = new ViewParserStackElement(copies.get(prev), el);
+            }
+            copy.setRejected(el.isRejected());
+            copies.put(el, copy);
+
+            for (ParserStackElement equalElement : el.getEqualElements()) {
+                copy.addEqualElement(copyElement(equalElement, copies));
+            }
+        }
+
+        return copies.get(element);
+    }
+}
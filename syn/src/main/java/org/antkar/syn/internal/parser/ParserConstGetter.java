@@ -29,6 +29,13 @@ public final class ParserConstGetter implements IParserGetter {
         this.parserNode = new ParserUserNode(userNode);
     }
 
+    /**
+     * Returns the constant.
+     */
+    ValueNode getUserNode() {
+        return userNode;
+    }
+
     @Override
     public IParserNode get(ParserStackElement element) {
         return parserNode;
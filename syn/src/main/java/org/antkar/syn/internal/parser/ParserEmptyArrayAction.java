@@ -26,7 +26,17 @@ public final class ParserEmptyArrayAction implements IParserAction {
 
     @Override
     public IParserNode execute(ParserStackElement stack) {
-        return new ParserArrayNode();
+        return ParserArrayNode.EMPTY;
+    }
+
+    @Override
+    public boolean isNodeCreated() {
+        return true;
+    }
+
+    @Override
+    public int getTreeDepth(ParserStackElement stack, int maxSubDepth) {
+        return 1;
     }
 
     @Override
@@ -15,13 +15,21 @@
  */
 package org.antkar.syn.internal.parser;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
 
 import org.antkar.syn.SourceDescriptor;
 import org.antkar.syn.SynAmbiguityException;
 import org.antkar.syn.SynException;
+import org.antkar.syn.SynLimitException;
+import org.antkar.syn.SynLimits;
 import org.antkar.syn.SynNode;
+import org.antkar.syn.SynParseListener;
 import org.antkar.syn.SynParser;
 import org.antkar.syn.SynResult;
 import org.antkar.syn.SynSyntaxException;
@@ -30,8 +38,11 @@ import org.antkar.syn.TextPos;
 import org.antkar.syn.TokenDescriptor;
 import org.antkar.syn.TokenType;
 import org.antkar.syn.internal.Checks;
+import org.antkar.syn.internal.PosBuffer;
+import org.antkar.syn.internal.TokenNode;
 import org.antkar.syn.internal.lrtables.ParserProduction;
 import org.antkar.syn.internal.lrtables.ParserState;
+import org.antkar.syn.internal.lrtables.ParserTables;
 import org.antkar.syn.internal.scanner.DefaultTokenStream;
 
 /**
@@ -39,65 +50,300 @@ import org.antkar.syn.internal.scanner.DefaultTokenStream;
  * new instance of {@link ParserEngine} to do the job.
  */
 public final class ParserEngine {
+    /**
+     * The number of the last token boundaries remembered in order to create a checkpoint. The tokens
+     * preceding the end of the input by less than {@link DefaultTokenStream#MAX_LOOKAHEAD} characters
+     * can change when the input is extended, so a checkpoint is created at an earlier boundary.
+     */
+    private static final int BOUNDARY_COUNT = DefaultTokenStream.MAX_LOOKAHEAD + 1;
+
+    /** The number of tokens which must be shifted after an error recovery before a new error is reported.
+     * Errors detected earlier are likely to be caused by the recovery. */
+    private static final int MIN_TOKENS_BETWEEN_ERRORS = 3;
+
     private final DefaultTokenStream tokenStream;
-    private final ParserState startState;
     private final boolean failOnAmbiguity;
+    private final IParserCommitHandler commitHandler;
     private final StacksList stacksList;
 
+    /** The element produced by the last reduction of the start nonterminal, if any. */
+    private ParserStackElement resultElement;
+
+    /** Temporary list used to commit stack elements. */
+    private final List<ParserStackElement> commitList = new ArrayList<>();
+
+    /** The checkpoint which the parsing starts from. */
+    private final ParserCheckpoint initialCheckpoint;
+
+    /** <code>true</code> if a checkpoint is created when the parsing is complete. */
+    private boolean checkpoints;
+
+    /** The last token boundaries, used as a cyclic buffer. Filled only if checkpoints are created. */
+    private final TokenBoundary[] boundaries = new TokenBoundary[BOUNDARY_COUNT];
+    private int boundaryCount;
+
+    /** The checkpoint created when the parsing is complete. */
+    private ParserCheckpoint checkpoint;
+
+    /** The maximum number of live stacks after a token is shifted, or <code>0</code> if unlimited. */
+    private int maxStackCount;
+
+    /** <code>true</code> if exceeding the stack limit is an error, <code>false</code> if extra stacks
+     * are pruned. */
+    private boolean failOnStackLimit;
+
+    /** The total number of stacks pruned because of the stack limit. */
+    private int prunedStackCount;
+
+    /** The maximum depth of the syntax tree, or <code>0</code>. */
+    private int maxTreeDepth;
+
+    /** The maximum number of syntax tree nodes, or <code>0</code>. */
+    private int maxNodeCount;
+
+    /** <code>true</code> if the engine recovers from syntax errors instead of throwing an exception. */
+    private boolean errorRecovery;
+
+    /** The tokens at which the parser resynchronizes after a syntax error. */
+    private Set<TokenDescriptor> syncTokens = Collections.emptySet();
+
+    /** The syntax errors the engine has recovered from. */
+    private final List<SynSyntaxException> syntaxErrors = new ArrayList<>();
+
+    /** The number of tokens shifted since the last error recovery. */
+    private int tokensSinceError;
+
+    /** <code>true</code> if all interpretations of an ambiguous input are kept in packed elements. */
+    private boolean packAmbiguities;
+
+    /** The number of packed or merged alternative elements. */
+    private int packedAlternativeCount;
+
+    /** The runtime statistics, or <code>null</code> if they are not collected. */
+    private ParserProfile profile;
+
     public ParserEngine(
             DefaultTokenStream tokenStream,
             ParserState startState,
             boolean failOnAmbiguity)
+    {
+        this(tokenStream, startState, failOnAmbiguity, ParserTreeCommitHandler.INSTANCE);
+    }
+
+    /**
+     * Constructs an engine which reports parsing events to the specified listener instead of building
+     * a syntax tree.
+     */
+    public ParserEngine(
+            DefaultTokenStream tokenStream,
+            ParserState startState,
+            boolean failOnAmbiguity,
+            SynParseListener listener)
+    {
+        this(tokenStream, startState, failOnAmbiguity, new ParserListenerCommitHandler(listener));
+    }
+
+    /**
+     * Constructs an engine which builds a syntax tree and collects the layout of the top-level repetition
+     * with the specified handler.
+     */
+    public ParserEngine(
+            DefaultTokenStream tokenStream,
+            ParserState startState,
+            boolean failOnAmbiguity,
+            ParserLayoutCommitHandler layoutHandler)
+    {
+        this(tokenStream, startState, failOnAmbiguity, (IParserCommitHandler) layoutHandler);
+    }
+
+    ParserEngine(
+            DefaultTokenStream tokenStream,
+            ParserState startState,
+            boolean failOnAmbiguity,
+            IParserCommitHandler commitHandler)
+    {
+        this(tokenStream, createStartCheckpoint(tokenStream, startState), failOnAmbiguity, commitHandler);
+    }
+
+    /**
+     * Constructs an engine which resumes parsing from the specified checkpoint. The token stream must start
+     * at the checkpoint's position. The tokens preceding the checkpoint are counted by the stream, so the
+     * token count limit applies to the whole input.
+     */
+    public ParserEngine(DefaultTokenStream tokenStream, ParserCheckpoint checkpoint, boolean failOnAmbiguity) {
+        this(tokenStream, checkpoint, failOnAmbiguity, ParserTreeCommitHandler.INSTANCE);
+        Checks.argument(tokenStream.getCurrentOffset() == checkpoint.getOffset());
+        tokenStream.setTokenCount(checkpoint.getTokenCount());
+    }
+
+    private ParserEngine(
+            DefaultTokenStream tokenStream,
+            ParserCheckpoint initialCheckpoint,
+            boolean failOnAmbiguity,
+            IParserCommitHandler commitHandler)
     {
         this.tokenStream = Checks.notNull(tokenStream);
-        this.startState = Checks.notNull(startState);
+        this.initialCheckpoint = Checks.notNull(initialCheckpoint);
         this.failOnAmbiguity = failOnAmbiguity;
+        this.commitHandler = Checks.notNull(commitHandler);
 
         stacksList = new StacksList();
+
+        //Add the initial stacks into the set of stacks.
+        for (ParserStackElement top : initialCheckpoint.copyTops()) {
+            ParserStack stack = new ParserStack(null, top, top.getDepth());
+            stacksList.add(stack);
+        }
+
+        for (int i = 0; i < boundaries.length; ++i) {
+            boundaries[i] = new TokenBoundary();
+        }
+    }
+
+    /**
+     * Sets the maximum number of live stacks. When more stacks accept a token, either the worst stacks
+     * according to {@link AmbiguityComparator} are pruned, or {@link SynLimitException} is thrown.
+     *
+     * @param maxStackCount the maximum number of stacks, or <code>0</code> if the number is not limited.
+     * @param failOnStackLimit <code>true</code> to throw an exception instead of pruning stacks.
+     */
+    public void setStackLimit(int maxStackCount, boolean failOnStackLimit) {
+        Checks.argument(maxStackCount >= 0);
+        this.maxStackCount = maxStackCount;
+        this.failOnStackLimit = failOnStackLimit;
+    }
+
+    /**
+     * Sets the resource limits. The limits of the syntax tree are checked by the engine whenever a nonterminal
+     * is reduced, the other limits are passed to the token stream.
+     */
+    public void setLimits(SynLimits limits) {
+        maxTreeDepth = limits.getMaxTreeDepth();
+        maxNodeCount = limits.getMaxNodeCount();
+        tokenStream.setLimits(limits);
+    }
+
+    /**
+     * Turns on checkpoints. A checkpoint keeps the stacks of the last token boundaries, so the boundaries are
+     * remembered only if a checkpoint is needed.
+     *
+     * @see #getCheckpoint()
+     */
+    public void setCheckpoints() {
+        checkpoints = true;
+    }
+
+    /**
+     * Turns on the error recovery mode. In this mode, a syntax error does not stop the parsing. Instead,
+     * the engine tries to repair the input by inserting a literal token, deleting tokens or, when a sync token
+     * is reached, discarding the top elements of the stacks until the sync token can be shifted. The errors are
+     * collected and can be obtained with {@link #getSyntaxErrors()}.
+     *
+     * @param syncTokens the tokens at which the parser resynchronizes.
+     */
+    public void setErrorRecovery(Set<TokenDescriptor> syncTokens) {
+        errorRecovery = true;
+        this.syncTokens = Checks.notNull(syncTokens);
+    }
+
+    /**
+     * Turns on packing of ambiguities. In this mode, the engine works with a graph-structured stack: equal stacks
+     * are merged, so that the top element of the kept stack represents the tops of the other ones, and reductions
+     * follow all paths through the merged elements. Conflicting elements which cover the same tokens are packed:
+     * one of them gets the others as alternatives, and its parser node becomes a packed node. Takes no effect
+     * if the engine fails on ambiguities.
+     */
+    public void setPackAmbiguities() {
+        packAmbiguities = true;
+    }
+
+    /**
+     * Turns on collecting the runtime statistics of LR states into the specified profile.
+     */
+    public void setProfile(ParserProfile profile) {
+        this.profile = Checks.notNull(profile);
+    }
+
+    /**
+     * Returns the number of packed or merged alternative elements, i. e. <code>0</code> if the input has not
+     * been ambiguous.
+     */
+    public int getPackedAlternativeCount() {
+        return packedAlternativeCount;
+    }
+
+    /**
+     * Returns the syntax errors the engine has recovered from.
+     */
+    public List<SynSyntaxException> getSyntaxErrors() {
+        return syntaxErrors;
     }
 
     /**
      * Parses the input, returns the parser result.
      */
     public SynResult parse() throws SynException {
-        ParserStackElement resultElement;
+        //Parse input tokens.
+        while (parseNextToken()) {
+            //Continue.
+        }
 
-        //Add the start stack into the set of stacks.
-        addStartStack();
+        SynResult result = makeResult();
+        return result;
+    }
 
-        //Parse input tokens.
-        for (;;) {
-            //Reduce all stacks.
-            resultElement = reduceCurrentStacks();
+    /**
+     * Parses the next token of the input.
+     *
+     * @return <code>false</code> if the end of the input has been reached and the parsing is complete.
+     */
+    boolean parseNextToken() throws SynException {
+        //Reduce all stacks.
+        resultElement = reduceCurrentStacks();
 
-            //Read the next token.
-            tokenStream.nextToken();
-            TokenDescriptor token = tokenStream.getTokenDescriptor();
-            TokenType tokenType = token.getType();
+        //Read the next token.
+        tokenStream.nextToken();
+        TokenDescriptor token = tokenStream.getTokenDescriptor();
+        TokenType tokenType = token.getType();
 
-            if (tokenType == TokenType.END_OF_FILE && resultElement != null) {
-                //End-of-file which was expected by the grammar. Successful completion.
-                break;
-            }
+        if (tokenType == TokenType.END_OF_FILE && resultElement != null) {
+            //End-of-file which was expected by the grammar. Successful completion.
+            return false;
+        }
 
-            //Shift by the current token. If the token is end-of-file and it is unexpected at this
-            //point, the shifting will fail and throw an appropriate exception.
-            TerminalNode node = tokenStream.getTokenNode();
-            shiftToNextState(token, node);
+        //Shift by the current token. If the token is end-of-file and it is unexpected at this
+        //point, the shifting will fail and throw an appropriate exception.
+        TerminalNode node = tokenStream.getTokenNode();
+        shiftToNextState(token, node);
+        if (tokenStream.getTokenDescriptor().getType() == TokenType.END_OF_FILE) {
+            //The parsing has been completed by an error recovery, which may have deleted the tokens up to
+            //the end of the input.
+            return false;
+        }
+        ++tokensSinceError;
+        if (profile != null) {
+            profile.recordToken(stacksList.size());
         }
 
-        Checks.notNull(resultElement);
-        SynResult result = makeResult(resultElement);
+        //Release the history which cannot be affected by the rest of the input.
+        commitSharedElements();
 
-        return result;
+        //Remember the state, so that a checkpoint can be created later.
+        if (checkpoints) {
+            boundaries[boundaryCount++ % boundaries.length].set(stacksList, tokenStream);
+        }
+        return true;
     }
 
     /**
-     * Creates a parser result from a parser stack.
+     * Creates a parser result from the result stack. Must be called when the parsing is complete.
      */
-    private SynResult makeResult(ParserStackElement resultElement) {
+    SynResult makeResult() {
         Checks.notNull(resultElement);
 
+        //The parsing is complete, so the result stack is the final one.
+        commitElements(resultElement);
+
         //Create the root SynNode.
         IParserNode resultNode = resultElement.createParserNode();
         SynNode rootNode = resultNode == null ? null : resultNode.createUserNode();
@@ -109,34 +355,65 @@ public final class ParserEngine {
         SourceDescriptor sourceDescriptor = textPos.getSource();
 
         //Create a result object.
-        SynResult result = new SynResult(sourceDescriptor, rootNode, nLines, nChars);
+        SynResult result = new SynResult(sourceDescriptor, rootNode, nLines, nChars, prunedStackCount);
+        if (checkpoints) {
+            checkpoint = createCheckpoint(nChars);
+        }
         return result;
     }
 
     /**
-     * Adds the start stack to the set of stacks.
+     * Returns the last checkpoint which remains valid if the input is extended, or <code>null</code> if
+     * checkpoints are not turned on. Must be called when the parsing is complete.
+     */
+    public ParserCheckpoint getCheckpoint() {
+        Checks.state(checkpoint != null || !checkpoints);
+        return checkpoint;
+    }
+
+    /**
+     * Creates a checkpoint at the last token boundary which is far enough from the end of the input.
      */
-    private void addStartStack() {
-        ParserStackElement stackElement = new StartParserStackElement(startState);
-        ParserStack stack = new ParserStack(null, stackElement, stackElement.getDepth());
-        stacksList.add(stack);
+    private ParserCheckpoint createCheckpoint(int endOffset) {
+        int count = Math.min(boundaryCount, boundaries.length);
+        for (int i = 1; i <= count; ++i) {
+            TokenBoundary boundary = boundaries[(boundaryCount - i) % boundaries.length];
+            if (boundary.offset + DefaultTokenStream.MAX_LOOKAHEAD <= endOffset) {
+                return boundary.createCheckpoint();
+            }
+        }
+        return initialCheckpoint;
+    }
+
+    /**
+     * Creates the checkpoint for the beginning of the input.
+     */
+    private static ParserCheckpoint createStartCheckpoint(DefaultTokenStream tokenStream, ParserState startState) {
+        ParserStackElement[] tops = { new StartParserStackElement(startState) };
+        int offset = tokenStream.getCurrentOffset();
+        int line = tokenStream.getCurrentLine();
+        int column = tokenStream.getCurrentColumn();
+        return new ParserCheckpoint(tops, offset, line, column, tokenStream.getTokenCount());
     }
 
     /**
      * Reduces all the stacks in the current stacks set, adding new stacks to the set until new reductions
      * are possible.
      */
-    private ParserStackElement reduceCurrentStacks() throws SynAmbiguityException {
+    private ParserStackElement reduceCurrentStacks() throws SynException {
         for (int pos = 0; pos < stacksList.size(); ++pos) {
             ParserStack stack = stacksList.getByPos(pos);
             ParserState state = stack.getTop().getState();
             if (!state.isFinal() && !stack.isDeleted()) {
                 reduceStack(stack);
+                if (maxStackCount > 0 && stacksList.size() - pos - 1 > maxStackCount) {
+                    prunePendingStacks(pos + 1);
+                }
             }
         }
 
-        ParserStackElement resultElement = getResultElement();
-        return resultElement;
+        ParserStackElement element = getResultElement();
+        return element;
     }
 
     /**
@@ -151,35 +428,286 @@ public final class ParserEngine {
     /**
      * Reduces the specified stack using all possible productions, adding new stacks to the stacks list.
      */
-    private void reduceStack(ParserStack stack) throws SynAmbiguityException {
+    private void reduceStack(ParserStack stack) throws SynException {
+        stack.setReduced();
         ParserStackElement stackTop = stack.getTop();
         ParserState state = stackTop.getState();
+        if (profile != null) {
+            profile.recordReduce(state);
+        }
         for (ParserProduction production : state.getReduceProductions()) {
-            reduceProduction(stack, production);
+            if (packAmbiguities) {
+                reducePaths(stack, production);
+            } else {
+                reduceProduction(stack, production);
+            }
         }
     }
 
     /**
      * Reduces the specified stack using the specified production.
      */
-    private void reduceProduction(ParserStack stack, ParserProduction production) throws SynAmbiguityException {
+    private void reduceProduction(ParserStack stack, ParserProduction production) throws SynException {
+        tokenStream.checkCancellation();
         ParserStackElement nextElement = getReducedStack(stack, production);
 
+        //Reduce the chain of unit productions at once, without adding a stack for each intermediate state.
+        //The elements are still created, so the syntax tree is the same, and the states are profiled as if
+        //they were reduced by separate stacks.
+        ParserProduction unitProduction = nextElement.getState().getUnitProduction();
+        while (unitProduction != null) {
+            if (profile != null) {
+                profile.recordReduce(nextElement.getState());
+            }
+            nextElement = nextElement.getPrev().nextNt(unitProduction, nextElement);
+            unitProduction = nextElement.getState().getUnitProduction();
+        }
+        checkTreeLimits(nextElement);
+
         int reduceDepth = Math.min(nextElement.getDepth(), stack.getReduceDepth());
-        ParserStack nextStack = new ParserStack(stack, nextElement, reduceDepth);
+        Set<TokenDescriptor> excludedTokens = stack.getTop().getState().getExcludedTokens(production);
+        ParserStack nextStack = new ParserStack(stack, nextElement, reduceDepth, excludedTokens);
 
         //Add the new stack to the list of stacks.
         ParserStack existingStack = stacksList.getByTop(nextElement);
         if (existingStack != null) {
             if (toReplaceExistingStack(existingStack, nextStack)) {
                 existingStack.delete();
-                stacksList.replace(nextStack);
+                stacksList.replace(existingStack, nextStack);
             }
         } else if (!isCycledStack(nextStack)) {
             stacksList.add(nextStack);
         }
     }
 
+    /**
+     * Reduces the specified stack using the specified production when ambiguities are packed. The elements of
+     * the stack may be merged with equal ones, so the production is reduced along each path of sub-elements.
+     */
+    private void reducePaths(ParserStack stack, ParserProduction production) throws SynException {
+        tokenStream.checkCancellation();
+        ParserStackElement stackTop = stack.getTop();
+        int length = production.getLength();
+        if (length == 0) {
+            addPackedStack(stack, production, stackTop.nextNt(production, stackTop));
+        } else {
+            reducePaths(stack, production, stackTop, new ParserStackElement[length], 0);
+        }
+    }
+
+    /**
+     * Enumerates the paths of sub-elements going down from the specified element, reducing each complete path.
+     *
+     * @param element the element at the current level, i. e. the previous element of the path's element at
+     * the upper level.
+     * @param path the elements of the path, from the top to the bottom.
+     * @param level the current level.
+     */
+    private void reducePaths(
+            ParserStack stack,
+            ParserProduction production,
+            ParserStackElement element,
+            ParserStackElement[] path,
+            int level) throws SynException
+    {
+        if (level < path.length) {
+            path[level] = element;
+            reducePaths(stack, production, element.getPrev(), path, level + 1);
+            for (ParserStackElement equalElement : element.getEqualElements()) {
+                path[level] = equalElement;
+                reducePaths(stack, production, equalElement.getPrev(), path, level + 1);
+            }
+            return;
+        }
+
+        //Link the sub-elements in the order of the path. Elements which have different previous elements
+        //are represented by views.
+        boolean rejected = element.isRejected();
+        ParserStackElement subElements = path[path.length - 1];
+        for (int i = path.length - 2; i >= 0; --i) {
+            ParserStackElement pathElement = path[i];
+            rejected |= pathElement.isRejected();
+            if (pathElement.getPrev() == subElements) {
+                subElements = pathElement;
+            } else {
+                subElements = new ViewParserStackElement(subElements, pathElement);
+            }
+        }
+        rejected |= path[path.length - 1].isRejected();
+
+        ParserStackElement nextElement = element.nextNt(production, subElements);
+        nextElement.setRejected(rejected);
+        addPackedStack(stack, production, nextElement);
+    }
+
+    /**
+     * Adds a stack produced by a reduction when ambiguities are packed. If there is an equal stack, the new top
+     * element is either packed with the top element of that stack, if both cover the same tokens, or merged with
+     * it. If the equal stack has already been reduced, so the elements cannot be merged, the new stack is kept
+     * separately.
+     */
+    private void addPackedStack(ParserStack stack, ParserProduction production, ParserStackElement nextElement)
+            throws SynException
+    {
+        Checks.notNull(nextElement);
+        checkTreeLimits(nextElement);
+
+        int reduceDepth = Math.min(nextElement.getDepth(), stack.getReduceDepth());
+        Set<TokenDescriptor> excludedTokens = stack.getTop().getState().getExcludedTokens(production);
+        ParserStack nextStack = new ParserStack(stack, nextElement, reduceDepth, excludedTokens);
+        addPackedStack(nextStack);
+    }
+
+    /**
+     * Adds a new stack to the stacks list when ambiguities are packed.
+     */
+    private void addPackedStack(ParserStack newStack) throws SynAmbiguityException {
+        ParserStack existingStack = stacksList.getByTop(newStack.getTop());
+        while (existingStack != null && existingStack.isDeleted()) {
+            existingStack = existingStack.getEqualStack();
+        }
+
+        if (existingStack == null) {
+            if (!isCycledStack(newStack)) {
+                stacksList.add(newStack);
+            }
+            return;
+        }
+
+        if (isRecursiveStack(newStack)) {
+            //New stack is recursive - reject.
+            return;
+        }
+        if (failOnAmbiguity) {
+            throw ParserEngineHelper.createAmbiguityException(tokenStream.getTokenPos(), existingStack, newStack);
+        }
+
+        //Pack the new element with an element which covers the same tokens.
+        ParserStackElement newTop = newStack.getTop();
+        for (ParserStack stack = existingStack; stack != null; stack = stack.getEqualStack()) {
+            if (!stack.isDeleted() && packElement(stack, newTop)) {
+                return;
+            }
+        }
+
+        //Merge the new element with the top element of a stack which has not been reduced yet.
+        for (ParserStack stack = existingStack; stack != null; stack = stack.getEqualStack()) {
+            if (!stack.isDeleted() && !stack.isReduced()) {
+                mergeStack(stack, newStack);
+                return;
+            }
+        }
+
+        //Keep the new stack. Resolve the ambiguity the same way as if the ambiguities were not packed, so that
+        //the preferred interpretation can be determined later.
+        if (!newStack.isRejected()) {
+            for (ParserStack stack = existingStack; stack != null; stack = stack.getEqualStack()) {
+                if (!stack.isDeleted() && !stack.isRejected()) {
+                    if (AmbiguityComparator.compare(newStack, stack) > 0) {
+                        stack.setRejected(true);
+                    } else {
+                        newStack.setRejected(true);
+                    }
+                    break;
+                }
+            }
+        }
+
+        if (!isCycledStack(newStack)) {
+            stacksList.add(newStack);
+        }
+    }
+
+    /**
+     * Packs a new element with the top element of a stack, or with an element merged with it, if the elements
+     * have the same previous element, i. e. they cover the same tokens. The preferred element becomes
+     * the primary one.
+     *
+     * @return <code>true</code> if the element has been packed.
+     */
+    private boolean packElement(ParserStack stack, ParserStackElement newTop) {
+        ParserStackElement top = stack.getTop();
+        ParserStackElement packedElement = null;
+        if (top.getPrev() == newTop.getPrev()) {
+            packedElement = top;
+        } else {
+            for (ParserStackElement equalElement : top.getEqualElements()) {
+                if (equalElement.getPrev() == newTop.getPrev()) {
+                    packedElement = equalElement;
+                }
+            }
+        }
+        if (packedElement == null) {
+            return false;
+        }
+
+        NonterminalParserStackElement nonterminal = (NonterminalParserStackElement) packedElement;
+        NonterminalParserStackElement newNonterminal = (NonterminalParserStackElement) newTop;
+        if (newNonterminal.containsElement(nonterminal)) {
+            //The new element is derived from the packed one without consuming tokens, like a recursive stack.
+            return true;
+        }
+
+        boolean primary;
+        if (newTop.isRejected() == packedElement.isRejected()) {
+            primary = AmbiguityComparator.compareElements(newTop, packedElement) > 0;
+        } else {
+            primary = !newTop.isRejected();
+        }
+
+        nonterminal.addAlternative(newNonterminal, primary);
+        if (primary && packedElement == top) {
+            stack.setRejected(newTop.isRejected());
+        } else if (primary) {
+            packedElement.setRejected(newTop.isRejected());
+        }
+
+        ++packedAlternativeCount;
+        return true;
+    }
+
+    /**
+     * Merges the top element of a new stack with the top element of an equal stack which has not been reduced
+     * yet. The preferred element becomes the primary one, representing the merged elements.
+     */
+    private void mergeStack(ParserStack stack, ParserStack newStack) {
+        ParserStackElement top = stack.getTop();
+        ParserStackElement newTop = newStack.getTop();
+
+        boolean preferred;
+        if (newTop.isRejected() == top.isRejected()) {
+            preferred = AmbiguityComparator.compare(newStack, stack) > 0;
+        } else {
+            preferred = !newTop.isRejected();
+        }
+
+        if (preferred) {
+            top.setRejected(true);
+            newTop.addEqualElement(top);
+            stack.delete();
+            stacksList.replace(stack, newStack);
+        } else {
+            newTop.setRejected(true);
+            top.addEqualElement(newTop);
+        }
+
+        ++packedAlternativeCount;
+    }
+
+    /**
+     * Throws an exception if the syntax tree of a new element exceeds the limits.
+     */
+    private void checkTreeLimits(ParserStackElement element) throws SynLimitException {
+        if (maxTreeDepth > 0 && element.getTreeDepth() > maxTreeDepth) {
+            throw new SynLimitException(tokenStream.getTokenPos(),
+                    String.format("The depth of the syntax tree exceeds the limit (%d)", maxTreeDepth));
+        }
+        if (maxNodeCount > 0 && element.getNodeCount() > maxNodeCount) {
+            throw new SynLimitException(tokenStream.getTokenPos(),
+                    String.format("The number of syntax tree nodes exceeds the limit (%d)", maxNodeCount));
+        }
+    }
+
     /**
      * Decides whether an existing stack has to be replaced by a new equal stack, or the new stack has to
      * be rejected.
@@ -224,32 +752,447 @@ public final class ParserEngine {
      */
     private void shiftToNextState(TokenDescriptor token, TerminalNode node) throws SynException {
         List<ParserStack> prevStacks = stacksList.copyAndClear();
+        shiftStacks(prevStacks, token, node);
+
+        //Check a syntax error.
+        if (stacksList.size() == 0) {
+            TextPos pos = node.getPos();
+            Collection<TokenDescriptor> expectedTokens = ParserEngineHelper.getExpectedTokens(prevStacks);
+            SynSyntaxException error = new SynSyntaxException(pos, node, expectedTokens);
+            if (!errorRecovery) {
+                throw error;
+            }
+
+            //The list of previous stacks is reused by the stacks list, so it has to be copied.
+            recover(new ArrayList<>(prevStacks), token, node, error);
+        }
 
-        //Shift all stacks.
-        for (ParserStack currentStack : prevStacks) {
-            if (!currentStack.isDeleted()) {
+        if (maxStackCount > 0 && stacksList.size() > maxStackCount) {
+            pruneStacks(node.getPos());
+        }
+    }
+
+    /**
+     * Shifts the specified stacks by a token, adding the new stacks to the current stacks list.
+     */
+    private void shiftStacks(List<ParserStack> stacks, TokenDescriptor token, TerminalNode node) {
+        if (stacks.isEmpty()) {
+            return;
+        }
+
+        //All states share the same tables, so the token index is looked up once per token.
+        ParserTables tables = stacks.get(0).getTop().getState().getTables();
+        int tokenIndex = tables.getTokenIndex(token);
+
+        //An index is used instead of an iterator to avoid allocating an object per token.
+        for (int i = 0, n = stacks.size(); i < n; ++i) {
+            ParserStack currentStack = stacks.get(i);
+            if (!currentStack.isDeleted() && !currentStack.isExcludedToken(token)) {
                 ParserStackElement currentTop = currentStack.getTop();
-                ParserStackElement nextTop = currentTop.nextTk(token, node);
+                ParserStackElement nextTop = currentTop.nextTk(tokenIndex, node);
                 if (nextTop != null) {
                     ParserStack nextStack = new ParserStack(null, nextTop, nextTop.getDepth());
-                    stacksList.add(nextStack);
+                    if (packAmbiguities) {
+                        addShiftedStack(nextStack);
+                    } else {
+                        stacksList.add(nextStack);
+                    }
                 }
             }
         }
+    }
 
-        //Check a syntax error.
-        if (stacksList.size() == 0) {
-            TextPos pos = node.getPos();
-            Collection<TokenDescriptor> expectedTokens = ParserEngineHelper.getExpectedTokens(prevStacks);
-            throw new SynSyntaxException(pos, node, expectedTokens);
+    /**
+     * Adds a shifted stack to the stacks list when ambiguities are packed, merging it with an equal stack,
+     * if there is one.
+     */
+    private void addShiftedStack(ParserStack newStack) {
+        for (ParserStack stack = stacksList.getByTop(newStack.getTop()); stack != null; stack = stack.getEqualStack()) {
+            if (!stack.isDeleted()) {
+                mergeStack(stack, newStack);
+                return;
+            }
+        }
+        stacksList.add(newStack);
+    }
+
+    /**
+     * Recovers from a syntax error. The specified stacks are the ones which did not accept the token.
+     * When the method returns, either the stacks list contains the stacks which accepted the current token,
+     * or the token is end-of-file and the result element has been found.
+     *
+     * @throws SynSyntaxException the first syntax error, if the engine fails to recover at the end of
+     * the input.
+     */
+    private void recover(List<ParserStack> stacks, TokenDescriptor token, TerminalNode node, SynSyntaxException error)
+            throws SynException
+    {
+        if (syntaxErrors.isEmpty() || tokensSinceError >= MIN_TOKENS_BETWEEN_ERRORS) {
+            syntaxErrors.add(error);
+        }
+        tokensSinceError = 0;
+
+        List<TokenDescriptor> insertedTokens = getInsertedTokens(error.getExpectedTokens());
+        TokenDescriptor currentToken = token;
+        TerminalNode currentNode = node;
+        boolean synced = false;
+        for (;;) {
+            //After a sync token, the unfinished constructs preceding it are discarded.
+            if (synced && popStacks(stacks, currentToken, currentNode)) {
+                return;
+            }
+            if (insertToken(stacks, insertedTokens, currentToken, currentNode)) {
+                return;
+            }
+
+            boolean endOfFile = currentToken.getType() == TokenType.END_OF_FILE;
+            boolean sync = syncTokens.contains(currentToken);
+            if ((endOfFile || sync) && !synced && popStacks(stacks, currentToken, currentNode)) {
+                return;
+            }
+            if (endOfFile) {
+                throw syntaxErrors.get(0);
+            }
+
+            //Delete the token.
+            synced = sync;
+            tokenStream.nextToken();
+            currentToken = tokenStream.getTokenDescriptor();
+            currentNode = tokenStream.getTokenNode();
+            if (!synced && acceptToken(stacks, currentToken, currentNode)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the expected tokens which can be inserted in order to repair the input: keywords and
+     * key-characters, sync tokens first.
+     */
+    private List<TokenDescriptor> getInsertedTokens(List<TokenDescriptor> expectedTokens) {
+        List<TokenDescriptor> result = new ArrayList<>();
+        for (TokenDescriptor expectedToken : expectedTokens) {
+            if (syncTokens.contains(expectedToken)) {
+                result.add(expectedToken);
+            }
+        }
+
+        //Other tokens have values, so they cannot be inserted.
+        for (TokenDescriptor expectedToken : expectedTokens) {
+            if (expectedToken.getLiteral() != null && !syncTokens.contains(expectedToken)) {
+                result.add(expectedToken);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Tries to insert one of the specified tokens before the current token, so that the current token
+     * can be accepted.
+     *
+     * @return <code>true</code> if a token has been inserted.
+     */
+    private boolean insertToken(
+            List<ParserStack> stacks,
+            List<TokenDescriptor> insertedTokens,
+            TokenDescriptor token,
+            TerminalNode node) throws SynException
+    {
+        TextPos pos = node.getPos();
+        PosBuffer posBuffer = new PosBuffer();
+        posBuffer.set(pos.getSource(), pos.getOffset(), pos.getLine(), pos.getColumn(), 0);
+
+        for (TokenDescriptor expectedToken : insertedTokens) {
+            stacksList.copyAndClear();
+            shiftStacks(stacks, expectedToken, new TokenNode(posBuffer, expectedToken));
+            reduceCurrentStacks();
+
+            List<ParserStack> insertedStacks = new ArrayList<>(stacksList.copyAndClear());
+            if (acceptToken(insertedStacks, token, node)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Discards the top elements of the specified stacks, one at a time, until the resulting stacks can accept
+     * the current token.
+     *
+     * @return <code>true</code> if the token has been accepted.
+     */
+    private boolean popStacks(List<ParserStack> stacks, TokenDescriptor token, TerminalNode node)
+            throws SynException
+    {
+        List<ParserStackElement> tops = new ArrayList<>();
+        for (ParserStack stack : stacks) {
+            if (!stack.isDeleted()) {
+                tops.add(stack.getTop());
+            }
+        }
+
+        for (;;) {
+            List<ParserStackElement> prevTops = new ArrayList<>();
+            for (ParserStackElement top : tops) {
+                ParserStackElement prev = top.getPrev();
+                if (prev != null && !prevTops.contains(prev)) {
+                    prevTops.add(prev);
+                }
+            }
+            if (prevTops.isEmpty()) {
+                return false;
+            }
+            tops = prevTops;
+
+            stacksList.copyAndClear();
+            for (ParserStackElement top : tops) {
+                if (stacksList.getByTop(top) == null) {
+                    stacksList.add(new ParserStack(null, top, top.getDepth()));
+                }
+            }
+            reduceCurrentStacks();
+
+            List<ParserStack> poppedStacks = new ArrayList<>(stacksList.copyAndClear());
+            if (acceptToken(poppedStacks, token, node)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Shifts the specified stacks by the current token. If the token is end-of-file, looks for the result
+     * element among the stacks instead.
+     *
+     * @return <code>true</code> if the token has been accepted.
+     */
+    private boolean acceptToken(List<ParserStack> stacks, TokenDescriptor token, TerminalNode node) {
+        if (token.getType() == TokenType.END_OF_FILE) {
+            for (ParserStack stack : stacks) {
+                ParserStackElement top = stack.getTop();
+                if (!stack.isDeleted() && top.getState().isFinal()) {
+                    resultElement = top;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        stacksList.copyAndClear();
+        shiftStacks(stacks, token, node);
+        return stacksList.size() > 0;
+    }
+
+    /**
+     * Keeps the best {@link #maxStackCount} stacks of the current stacks list and drops the others, or throws
+     * an exception if the engine is configured to fail when the limit is exceeded. Must be called right after
+     * shifting, when the stacks have no derived stacks.
+     */
+    private void pruneStacks(TextPos pos) throws SynLimitException {
+        int stackCount = stacksList.size();
+        checkStackLimit(pos, stackCount);
+
+        List<ParserStack> stacks = stacksList.copyAndClear();
+        deleteWorstStacks(stacks);
+
+        //Keep the original order of the remaining stacks.
+        for (int i = 0; i < stackCount; ++i) {
+            ParserStack stack = stacks.get(i);
+            if (!stack.isDeleted()) {
+                stacksList.add(stack);
+            }
+        }
+
+        prunedStackCount += stackCount - maxStackCount;
+    }
+
+    /**
+     * Applies the stack limit to the stacks which are waiting to be reduced, i. e. the ones following
+     * the specified position in the current stacks list. The stacks which have been reduced already may have
+     * derived stacks, so they are not dropped; the number of pending stacks is limited instead, so that the list
+     * does not grow without bound while the stacks are reduced.
+     */
+    private void prunePendingStacks(int start) throws SynLimitException {
+        List<ParserStack> stacks = new ArrayList<>();
+        for (int pos = start, n = stacksList.size(); pos < n; ++pos) {
+            ParserStack stack = stacksList.getByPos(pos);
+            if (!stack.isDeleted() && !stack.getTop().getState().isFinal()) {
+                stacks.add(stack);
+            }
+        }
+
+        int stackCount = stacks.size();
+        if (stackCount > maxStackCount) {
+            checkStackLimit(tokenStream.getTokenPos(), stackCount);
+            deleteWorstStacks(stacks);
+            prunedStackCount += stackCount - maxStackCount;
+        }
+    }
+
+    /**
+     * Throws an exception if the engine is configured to fail when the stack limit is exceeded.
+     */
+    private void checkStackLimit(TextPos pos, int stackCount) throws SynLimitException {
+        if (failOnStackLimit) {
+            throw new SynLimitException(pos, String.format(
+                    "The number of parser stacks (%d) exceeds the limit (%d)", stackCount, maxStackCount));
+        }
+    }
+
+    /**
+     * Deletes all the specified stacks except the best {@link #maxStackCount} ones.
+     */
+    private void deleteWorstStacks(List<ParserStack> stacks) {
+        //The head of the queue is the worst of the stacks chosen so far.
+        PriorityQueue<ParserStack> bestStacks = new PriorityQueue<>(maxStackCount, AmbiguityComparator.STACKS_ORDER);
+        for (ParserStack stack : stacks) {
+            if (bestStacks.size() < maxStackCount) {
+                bestStacks.add(stack);
+            } else if (AmbiguityComparator.compare(stack, bestStacks.peek()) > 0) {
+                bestStacks.poll().delete();
+                bestStacks.add(stack);
+            } else {
+                stack.delete();
+            }
+        }
+    }
+
+    /**
+     * Commits the stack elements shared by all live stacks. Such elements will be a part of the result tree
+     * regardless of how the remaining ambiguities are resolved, so their parser nodes can be built right
+     * away. This keeps the memory used by the parser proportional to the depth of the unresolved part of
+     * the input, not to the length of the whole input.
+     */
+    private void commitSharedElements() {
+        if (packAmbiguities) {
+            commitSharedPackedElements();
+            return;
+        }
+
+        ParserStackElement shared = stacksList.getByPos(0).getTop();
+        for (int pos = 1, n = stacksList.size(); pos < n; ++pos) {
+            ParserStackElement top = stacksList.getByPos(pos).getTop();
+            shared = getSharedElement(shared, top);
+        }
+
+        commitElements(shared);
+    }
+
+    /**
+     * Commits the stack elements shared by all live stacks when ambiguities are packed. An element merged with
+     * equal ones has several paths beneath it, and the interpretations along the paths are still compared
+     * with each other, so the stacks are walked down level by level, following all paths. An element is
+     * committed only if it is the single element of its level and each level beneath it has a single element
+     * too.
+     */
+    private void commitSharedPackedElements() {
+        int depth = 0;
+        for (int pos = 0, n = stacksList.size(); pos < n; ++pos) {
+            depth = Math.max(depth, stacksList.getByPos(pos).getTop().getDepth());
+        }
+
+        List<ParserStackElement> level = new ArrayList<>();
+        List<ParserStackElement> nextLevel = new ArrayList<>();
+        ParserStackElement shared = null;
+        for (; depth > 0; --depth) {
+            for (int pos = 0, n = stacksList.size(); pos < n; ++pos) {
+                ParserStackElement top = stacksList.getByPos(pos).getTop();
+                if (top.getDepth() == depth) {
+                    addPathElements(level, top);
+                }
+            }
+
+            if (level.size() > 1) {
+                shared = null;
+            } else if (level.get(0).isCommitted()) {
+                break;
+            } else if (shared == null) {
+                shared = level.get(0);
+            }
+
+            nextLevel.clear();
+            for (ParserStackElement element : level) {
+                if (element.getPrev() != null) {
+                    addPathElements(nextLevel, element.getPrev());
+                }
+            }
+
+            List<ParserStackElement> temp = level;
+            level = nextLevel;
+            nextLevel = temp;
+        }
+
+        if (shared != null) {
+            commitElements(shared);
+        }
+    }
+
+    /**
+     * Adds an element and the elements merged with it to a level of paths, unless they are already there.
+     * Elements are compared by identity, since different elements of a level are equal.
+     */
+    private static void addPathElements(List<ParserStackElement> level, ParserStackElement element) {
+        addPathElement(level, element);
+        for (ParserStackElement equalElement : element.getEqualElements()) {
+            addPathElement(level, equalElement);
+        }
+    }
+
+    private static void addPathElement(List<ParserStackElement> level, ParserStackElement element) {
+        for (ParserStackElement element0 : level) {
+            if (element0 == element) {
+                return;
+            }
+        }
+        level.add(element);
+    }
+
+    /**
+     * Commits the specified element and all uncommitted elements beneath it.
+     */
+    private void commitElements(ParserStackElement top) {
+        //Committed elements are shared by all stacks, so the elements beneath a committed one have already
+        //been committed.
+        ParserStackElement element = top;
+        while (element != null && !element.isCommitted()) {
+            commitList.add(element);
+            element = element.getPrev();
+        }
+
+        //Commit the elements in the order of the input.
+        for (int i = commitList.size() - 1; i >= 0; --i) {
+            commitList.get(i).commit(commitHandler);
         }
+        commitList.clear();
+    }
+
+    /**
+     * Returns the branching point of two stacks, i. e. the top-most element which belongs to both stacks.
+     */
+    private static ParserStackElement getSharedElement(ParserStackElement top1, ParserStackElement top2) {
+        while (top1.getDepth() > top2.getDepth()) {
+            top1 = top1.getPrev();
+        }
+        while (top2.getDepth() > top1.getDepth()) {
+            top2 = top2.getPrev();
+        }
+        while (top1 != top2) {
+            top1 = top1.getPrev();
+            top2 = top2.getPrev();
+        }
+        return top1;
     }
 
     /**
      * Checks if the specified stack is cycled. A stack is cycled if the same state was added twice to the
      * stack's state chain during one {@link #reduceCurrentStacks()} call. Such stack has to be rejected.
+     * The chain is walked only if the stack's Bloom filter of added states contains the top state.
      */
     private static boolean isCycledStack(ParserStack stack) {
+        if (!stack.mayBeCycled()) {
+            return false;
+        }
+
         int reduceStartDepth = stack.getReduceDepth();
         ParserStackElement top = stack.getTop();
         ParserState topState = top.getState();
@@ -267,9 +1210,14 @@ public final class ParserEngine {
 
     /**
      * Returns <code>true</code> if the stack is recursive, i. e. it was produced by a sequence of
-     * reductions of an equal stack.
+     * reductions of an equal stack. The source stacks are compared only if the stack's Bloom filter of
+     * source tops contains the top's hash code.
      */
     private static boolean isRecursiveStack(ParserStack stack) {
+        if (!stack.mayBeRecursive()) {
+            return false;
+        }
+
         ParserStackElement top = stack.getTop();
 
         ParserStack sourceStack = stack.getSourceStack();
@@ -282,4 +1230,39 @@ public final class ParserEngine {
 
         return false;
     }
+
+    /**
+     * The tops of the live stacks and the scanner position after a token. Reused for different tokens
+     * in order to avoid creating objects for each token.
+     */
+    private static final class TokenBoundary {
+        private ParserStackElement[] tops = ParserStackElement.EMPTY_ARRAY;
+        private int topCount;
+        private int offset;
+        private int line;
+        private int column;
+        private int tokenCount;
+
+        TokenBoundary(){}
+
+        void set(StacksList stacksList, DefaultTokenStream tokenStream) {
+            topCount = stacksList.size();
+            if (tops.length < topCount) {
+                tops = new ParserStackElement[topCount];
+            }
+            for (int i = 0; i < topCount; ++i) {
+                tops[i] = stacksList.getByPos(i).getTop();
+            }
+
+            offset = tokenStream.getCurrentOffset();
+            line = tokenStream.getCurrentLine();
+            column = tokenStream.getCurrentColumn();
+            tokenCount = tokenStream.getTokenCount();
+        }
+
+        ParserCheckpoint createCheckpoint() {
+            ParserStackElement[] checkpointTops = Arrays.copyOf(tops, topCount);
+            return new ParserCheckpoint(checkpointTops, offset, line, column, tokenCount);
+        }
+    }
 }
@@ -48,7 +48,9 @@ final class ParserEngineHelper {
             ParserState state = stack.getTop().getState();
             for (ParserShift shift : state.getShifts()) {
                 TokenDescriptor descriptor = shift.getTokenDescriptor();
-                result.add(descriptor);
+                if (!stack.isExcludedToken(descriptor)) {
+                    result.add(descriptor);
+                }
             }
         }
         return result;
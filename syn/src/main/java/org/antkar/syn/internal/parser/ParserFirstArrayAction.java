@@ -28,16 +28,26 @@ public final class ParserFirstArrayAction implements IParserAction {
 
     @Override
     public IParserNode execute(ParserStackElement stack) {
-        ParserArrayNode result = new ParserArrayNode();
+        ParserArrayNode result = ParserArrayNode.EMPTY;
         IParserNode node = stack.createParserNode();
         if (node != null) {
             //Null elements are not added.
             SynNode userNode = node.createUserNode();
-            result.addSubNode(userNode);
+            result = result.add(userNode);
         }
         return result;
     }
 
+    @Override
+    public boolean isNodeCreated() {
+        return true;
+    }
+
+    @Override
+    public int getTreeDepth(ParserStackElement stack, int maxSubDepth) {
+        return stack.getTreeDepth() + 1;
+    }
+
     @Override
     public String toString() {
         return "$$ = [$0]";
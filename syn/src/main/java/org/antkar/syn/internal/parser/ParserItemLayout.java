@@ -0,0 +1,126 @@
+/*
+ * Copyright 2013 Anton Karmanov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.antkar.syn.internal.parser;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.antkar.syn.SynNode;
+import org.antkar.syn.TextPos;
+import org.antkar.syn.internal.Checks;
+
+/**
+ * Describes the elements of the top-level repetition of a parsed text: their nodes and the positions
+ * of their first and last tokens. Used to reparse only a part of a text after the text has been edited.
+ */
+public final class ParserItemLayout {
+    private final String startNonterminal;
+    private final List<SynNode> nodes;
+    private final List<TextPos> startPositions;
+    private final List<TextPos> endPositions;
+
+    /**
+     * Constructs a layout.
+     *
+     * @param startNonterminal the name of the start nonterminal.
+     * @param nodes the nodes of the elements. A node can be <code>null</code>.
+     * @param startPositions the positions of the first tokens of the elements.
+     * @param endPositions the positions of the last tokens of the elements.
+     */
+    public ParserItemLayout(
+            String startNonterminal,
+            List<SynNode> nodes,
+            List<TextPos> startPositions,
+            List<TextPos> endPositions)
+    {
+        Checks.argument(nodes.size() == startPositions.size());
+        Checks.argument(nodes.size() == endPositions.size());
+
+        this.startNonterminal = Checks.notNull(startNonterminal);
+        this.nodes = Collections.unmodifiableList(nodes);
+        this.startPositions = Collections.unmodifiableList(startPositions);
+        this.endPositions = Collections.unmodifiableList(endPositions);
+    }
+
+    /**
+     * Constructs a layout for a text whose elements cannot be reused.
+     */
+    public ParserItemLayout(String startNonterminal) {
+        this.startNonterminal = Checks.notNull(startNonterminal);
+        nodes = null;
+        startPositions = null;
+        endPositions = null;
+    }
+
+    /**
+     * Returns the name of the start nonterminal.
+     */
+    public String getStartNonterminal() {
+        return startNonterminal;
+    }
+
+    /**
+     * Returns <code>true</code> if the elements can be reused. This is not the case if the start nonterminal
+     * does not have a top-level repetition, if the repetition has a separator, or if some elements
+     * do not contain tokens.
+     */
+    public boolean isReusable() {
+        return nodes != null;
+    }
+
+    /**
+     * Returns the number of elements.
+     */
+    public int size() {
+        return nodes.size();
+    }
+
+    /**
+     * Returns the node of an element. Can be <code>null</code>.
+     */
+    public SynNode getNode(int index) {
+        return nodes.get(index);
+    }
+
+    /**
+     * Returns the position of the first token of an element.
+     */
+    public TextPos getStartPos(int index) {
+        return startPositions.get(index);
+    }
+
+    /**
+     * Returns the position of the last token of an element.
+     */
+    public TextPos getEndPos(int index) {
+        return endPositions.get(index);
+    }
+
+    /**
+     * Returns the offset of the first character of an element.
+     */
+    public int getStartOffset(int index) {
+        return startPositions.get(index).getOffset();
+    }
+
+    /**
+     * Returns the offset of the character following the last character of an element.
+     */
+    public int getEndOffset(int index) {
+        TextPos pos = endPositions.get(index);
+        return pos.getOffset() + pos.getLength();
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2013 Anton Karmanov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.antkar.syn.internal.parser;
+
+import java.util.ArrayDeque;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+
+import org.antkar.syn.SynException;
+import org.antkar.syn.SynIterator;
+import org.antkar.syn.SynLimits;
+import org.antkar.syn.SynNode;
+import org.antkar.syn.SynResult;
+import org.antkar.syn.TerminalNode;
+import org.antkar.syn.internal.Checks;
+import org.antkar.syn.internal.lrtables.ParserNonterminal;
+import org.antkar.syn.internal.lrtables.ParserProduction;
+import org.antkar.syn.internal.lrtables.ParserState;
+import org.antkar.syn.internal.scanner.DefaultTokenStream;
+
+/**
+ * Implementation of {@link SynIterator}. Runs a {@link ParserEngine} step by step, taking the elements of
+ * the top-level repetition out of the tree as soon as they are committed.
+ */
+public final class ParserIterator implements SynIterator {
+    private final ParserEngine engine;
+    private final Queue<SynNode> elements = new ArrayDeque<>();
+    private SynResult result;
+
+    /**
+     * Constructs an iterator.
+     *
+     * @param tokenStream the token stream.
+     * @param startState the start state.
+     * @param repetition the top-level repetition nonterminal of the start nonterminal.
+     * @param failOnAmbiguity the fail-on-ambiguity option.
+     */
+    public ParserIterator(
+            DefaultTokenStream tokenStream,
+            ParserState startState,
+            ParserNonterminal repetition,
+            boolean failOnAmbiguity)
+    {
+        IParserCommitHandler handler = new IteratorCommitHandler(Checks.notNull(repetition));
+        engine = new ParserEngine(tokenStream, startState, failOnAmbiguity, handler);
+    }
+
+    /**
+     * Sets the maximum number of live parser stacks.
+     *
+     * @see ParserEngine#setStackLimit(int, boolean)
+     */
+    public void setStackLimit(int maxStackCount, boolean failOnStackLimit) {
+        engine.setStackLimit(maxStackCount, failOnStackLimit);
+    }
+
+    /**
+     * Sets the resource limits.
+     *
+     * @see ParserEngine#setLimits(SynLimits)
+     */
+    public void setLimits(SynLimits limits) {
+        engine.setLimits(limits);
+    }
+
+    @Override
+    public boolean hasNext() throws SynException {
+        while (elements.isEmpty() && result == null) {
+            if (!engine.parseNextToken()) {
+                result = engine.makeResult();
+            }
+        }
+        return !elements.isEmpty();
+    }
+
+    @Override
+    public SynNode next() throws SynException {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return elements.remove();
+    }
+
+    @Override
+    public SynResult getResult() throws SynException {
+        Checks.state(!hasNext());
+        return result;
+    }
+
+    /**
+     * Commit handler which builds the syntax tree, but takes the elements of the top-level repetition
+     * out of it.
+     */
+    private final class IteratorCommitHandler implements IParserCommitHandler {
+        private final ParserNonterminal repetition;
+
+        IteratorCommitHandler(ParserNonterminal repetition) {
+            this.repetition = repetition;
+        }
+
+        @Override
+        public void commitTerminal(TerminalNode token) {
+            //Nothing to do.
+        }
+
+        @Override
+        public IParserNode commitNonterminal(ParserProduction production, ParserStackElement subElements) {
+            if (production.getNonterminal() != repetition) {
+                return ParserTreeCommitHandler.INSTANCE.commitNonterminal(production, subElements);
+            }
+
+            //The last sub-element is the repetition's element, the previous ones are the array and the separator.
+            IParserNode node = subElements.createParserNode();
+            if (node != null) {
+                elements.add(node.createUserNode());
+            }
+            return ParserArrayNode.EMPTY;
+        }
+
+        @Override
+        public boolean isAmbiguityTreeRetained(ParserProduction production) {
+            return false;
+        }
+    }
+}
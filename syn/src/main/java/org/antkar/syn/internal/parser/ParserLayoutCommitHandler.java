@@ -0,0 +1,108 @@
+/*
+ * Copyright 2013 Anton Karmanov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.antkar.syn.internal.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.antkar.syn.SynNode;
+import org.antkar.syn.TerminalNode;
+import org.antkar.syn.TextPos;
+import org.antkar.syn.internal.Checks;
+import org.antkar.syn.internal.lrtables.ParserNonterminal;
+import org.antkar.syn.internal.lrtables.ParserProduction;
+
+/**
+ * Commit handler which builds the syntax tree and collects the {@link ParserItemLayout layout} of
+ * the elements of the top-level repetition. Since elements are committed in the order of the input,
+ * the tokens of a repetition element are the ones committed after the previous element.
+ */
+public final class ParserLayoutCommitHandler implements IParserCommitHandler {
+    private final ParserNonterminal repetition;
+
+    private final List<SynNode> nodes = new ArrayList<>();
+    private final List<TextPos> startPositions = new ArrayList<>();
+    private final List<TextPos> endPositions = new ArrayList<>();
+    private boolean reusable = true;
+
+    /** The first and the last tokens committed after the last element of the repetition. */
+    private TerminalNode firstToken;
+    private TerminalNode lastToken;
+
+    /**
+     * Constructs a handler.
+     *
+     * @param repetition the top-level repetition nonterminal of the start nonterminal.
+     */
+    public ParserLayoutCommitHandler(ParserNonterminal repetition) {
+        this.repetition = Checks.notNull(repetition);
+    }
+
+    @Override
+    public void commitTerminal(TerminalNode token) {
+        if (firstToken == null) {
+            firstToken = token;
+        }
+        lastToken = token;
+    }
+
+    @Override
+    public IParserNode commitNonterminal(ParserProduction production, ParserStackElement subElements) {
+        IParserNode result = ParserTreeCommitHandler.INSTANCE.commitNonterminal(production, subElements);
+        if (production.getNonterminal() != repetition || !reusable) {
+            return result;
+        }
+
+        if (production.getAction() == ParserNextArrayAction.WITH_SEPARATOR || firstToken == null) {
+            //Separators and empty elements prevent the elements from being parsed separately.
+            reusable = false;
+            return result;
+        }
+
+        if (!(result instanceof ParserArrayNode)) {
+            //An ambiguous array has no single last element.
+            reusable = false;
+            return result;
+        }
+
+        //The last sub-element is the repetition's element. Its user node has already been added to the array.
+        IParserNode node = subElements.createParserNode();
+        nodes.add(node == null ? null : ((ParserArrayNode) result).getLastSubNode());
+        startPositions.add(firstToken.getPos());
+        endPositions.add(lastToken.getPos());
+        firstToken = null;
+        lastToken = null;
+        return result;
+    }
+
+    @Override
+    public boolean isAmbiguityTreeRetained(ParserProduction production) {
+        return false;
+    }
+
+    /**
+     * Creates the layout of the elements committed so far.
+     *
+     * @param startNonterminal the name of the start nonterminal.
+     * @return the layout.
+     */
+    public ParserItemLayout createLayout(String startNonterminal) {
+        if (!reusable) {
+            return new ParserItemLayout(startNonterminal);
+        }
+        return new ParserItemLayout(startNonterminal, nodes, startPositions, endPositions);
+    }
+}
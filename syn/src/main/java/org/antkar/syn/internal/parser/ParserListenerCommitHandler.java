@@ -0,0 +1,50 @@
+/*
+ * Copyright 2013 Anton Karmanov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.antkar.syn.internal.parser;
+
+import org.antkar.syn.SynParseListener;
+import org.antkar.syn.TerminalNode;
+import org.antkar.syn.internal.Checks;
+import org.antkar.syn.internal.lrtables.ParserProduction;
+
+/**
+ * Commit handler which reports committed elements to a {@link SynParseListener} instead of building
+ * the syntax tree.
+ */
+final class ParserListenerCommitHandler implements IParserCommitHandler {
+    private final SynParseListener listener;
+
+    ParserListenerCommitHandler(SynParseListener listener) {
+        this.listener = Checks.notNull(listener);
+    }
+
+    @Override
+    public void commitTerminal(TerminalNode token) {
+        listener.token(token);
+    }
+
+    @Override
+    public IParserNode commitNonterminal(ParserProduction production, ParserStackElement subElements) {
+        String name = production.getNonterminal().getName();
+        listener.nonterminal(name, production.getKeys());
+        return null;
+    }
+
+    @Override
+    public boolean isAmbiguityTreeRetained(ParserProduction production) {
+        return false;
+    }
+}
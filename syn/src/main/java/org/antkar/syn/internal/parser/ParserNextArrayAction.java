@@ -15,6 +15,9 @@
  */
 package org.antkar.syn.internal.parser;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.antkar.syn.SynNode;
 
 /**
@@ -31,6 +34,13 @@ public final class ParserNextArrayAction implements IParserAction {
         this.separator = separator;
     }
 
+    /**
+     * Returns <code>true</code> if the repetition has a separator.
+     */
+    boolean hasSeparator() {
+        return separator;
+    }
+
     @Override
     public IParserNode execute(ParserStackElement stack) {
         //Getting an element node.
@@ -48,13 +58,43 @@ public final class ParserNextArrayAction implements IParserAction {
         IParserNode iArrayNode = stack.createParserNode();
 
         //Adding the element to the array.
-        ParserArrayNode parserArrayNode = (ParserArrayNode) iArrayNode;
-        if (itemNode != null) {
-            SynNode userItemNode = itemNode.createUserNode();
-            parserArrayNode.addSubNode(userItemNode);
+        if (itemNode == null) {
+            return iArrayNode;
         }
+        SynNode userItemNode = itemNode.createUserNode();
+        return addItem(iArrayNode, userItemNode);
+    }
+
+    /**
+     * Adds an item to an array node. If the array is ambiguous, the item is added to each alternative.
+     */
+    private static IParserNode addItem(IParserNode iArrayNode, SynNode userItemNode) {
+        if (iArrayNode instanceof ParserPackedNode) {
+            List<IParserNode> alternatives = ((ParserPackedNode) iArrayNode).getAlternatives();
+            List<IParserNode> newAlternatives = new ArrayList<>(alternatives.size());
+            for (IParserNode alternative : alternatives) {
+                newAlternatives.add(addItem(alternative, userItemNode));
+            }
+            return ParserPackedNode.create(newAlternatives);
+        }
+
+        ParserArrayNode parserArrayNode = (ParserArrayNode) iArrayNode;
+        return parserArrayNode.add(userItemNode);
+    }
+
+    @Override
+    public boolean isNodeCreated() {
+        return false;
+    }
 
-        return parserArrayNode;
+    @Override
+    public int getTreeDepth(ParserStackElement stack, int maxSubDepth) {
+        //The array node is already counted in the depth of the array, but not in the depth of the element.
+        ParserStackElement arrayElement = stack.getPrev();
+        if (separator) {
+            arrayElement = arrayElement.getPrev();
+        }
+        return Math.max(arrayElement.getTreeDepth(), stack.getTreeDepth() + 1);
     }
 
     @Override
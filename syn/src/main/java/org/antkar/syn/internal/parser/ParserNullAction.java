@@ -29,6 +29,16 @@ public final class ParserNullAction implements IParserAction {
         return null;
     }
 
+    @Override
+    public boolean isNodeCreated() {
+        return false;
+    }
+
+    @Override
+    public int getTreeDepth(ParserStackElement stack, int maxSubDepth) {
+        return 0;
+    }
+
     @Override
     public String toString() {
         return "$$ = null";
@@ -25,6 +25,7 @@ import java.util.Map;
 
 import org.antkar.syn.ObjectNode;
 import org.antkar.syn.ObjectNode.ObjectEntry;
+import org.antkar.syn.PackedNode;
 import org.antkar.syn.SynNode;
 import org.antkar.syn.internal.Checks;
 
@@ -59,6 +60,20 @@ public final class ParserObjectAction implements IParserAction {
         fields = createFields(getterMap, embeddedGetters);
     }
 
+    /**
+     * Constructs an object action with the fields in the specified order. The keys of embedded objects
+     * are <code>null</code>.
+     */
+    ParserObjectAction(List<String> keys, List<IParserGetter> getters) {
+        Checks.argument(keys.size() == getters.size());
+
+        List<ObjectField> list = new ArrayList<>(keys.size());
+        for (int i = 0, n = keys.size(); i < n; ++i) {
+            list.add(new ObjectField(keys.get(i), getters.get(i)));
+        }
+        fields = Collections.unmodifiableList(list);
+    }
+
     /**
      * Creates the list of object fields.
      */
@@ -87,9 +102,32 @@ public final class ParserObjectAction implements IParserAction {
         return fields;
     }
 
+    /**
+     * Returns the attribute keys of the fields, in the order of the fields. The keys of embedded objects
+     * are <code>null</code>.
+     */
+    List<String> getKeys() {
+        List<String> keys = new ArrayList<>(fields.size());
+        for (ObjectField field : fields) {
+            keys.add(field.key);
+        }
+        return keys;
+    }
+
+    /**
+     * Returns the getters of the fields, in the order of the fields.
+     */
+    List<IParserGetter> getGetters() {
+        List<IParserGetter> getters = new ArrayList<>(fields.size());
+        for (ObjectField field : fields) {
+            getters.add(field.getter);
+        }
+        return getters;
+    }
+
     @Override
     public IParserNode execute(ParserStackElement stack) {
-        List<ObjectEntry> entries = new ArrayList<>();
+        SynNode[] values = new SynNode[fields.size()];
 
         //Go through all fields and corresponding stack elements.
         int currentOfs = 0;
@@ -103,22 +141,45 @@ public final class ParserObjectAction implements IParserAction {
                 ++currentOfs;
             }
 
-            //Initialize the field.
-            getField(field, stack, entries);
+            //Get the field value.
+            IParserNode value = field.getter.get(stack);
+            values[i] = value == null ? null : value.createUserNode();
         }
 
-        SynNode userResult = new ObjectNode(entries);
+        SynNode userResult = createObject(values);
         IParserNode result = new ParserUserNode(userResult);
         return result;
     }
 
     /**
-     * Gets the field value from a stack and adds to an entry list.
+     * Creates an object node from the values of the fields. If an embedded object is ambiguous, an object is
+     * created for each of its alternatives, and a packed node is returned.
      */
-    private void getField(ObjectField field, ParserStackElement element, List<ObjectEntry> entries) {
-        IParserNode value0 = field.getter.get(element);
-        SynNode value = value0 == null ? null : value0.createUserNode();
+    private SynNode createObject(SynNode[] values) {
+        for (int i = 0; i < values.length; ++i) {
+            if (fields.get(i).key == null && values[i] instanceof PackedNode) {
+                List<SynNode> alternatives = ((PackedNode) values[i]).getAlternatives();
+                List<SynNode> objects = new ArrayList<>(alternatives.size());
+                for (SynNode alternative : alternatives) {
+                    SynNode[] alternativeValues = values.clone();
+                    alternativeValues[i] = alternative;
+                    objects.add(createObject(alternativeValues));
+                }
+                return new PackedNode(objects);
+            }
+        }
+
+        List<ObjectEntry> entries = new ArrayList<>();
+        for (int i = 0; i < values.length; ++i) {
+            addField(fields.get(i), values[i], entries);
+        }
+        return new ObjectNode(entries);
+    }
 
+    /**
+     * Adds the field value to an entry list.
+     */
+    private void addField(ObjectField field, SynNode value, List<ObjectEntry> entries) {
         if (field.key != null) {
             //A key is specified - a direct attribute.
             entries.add(new ObjectEntry(field.key, value));
@@ -154,6 +215,16 @@ public final class ParserObjectAction implements IParserAction {
         return false;
     }
 
+    @Override
+    public boolean isNodeCreated() {
+        return true;
+    }
+
+    @Override
+    public int getTreeDepth(ParserStackElement stack, int maxSubDepth) {
+        return maxSubDepth + 1;
+    }
+
     @Override
     public String toString() {
         StringBuilder bld = new StringBuilder();
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2013 Anton Karmanov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.antkar.syn.internal.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.antkar.syn.PackedNode;
+import org.antkar.syn.SynNode;
+import org.antkar.syn.internal.Checks;
+
+/**
+ * Parser node of an ambiguous stack element. Contains the parser nodes of all interpretations of the element.
+ */
+final class ParserPackedNode implements IParserNode {
+    private final List<IParserNode> alternatives;
+
+    /** The user node, created on demand. The same node is returned every time, so it can be shared. */
+    private SynNode userNode;
+
+    private ParserPackedNode(List<IParserNode> alternatives) {
+        this.alternatives = Checks.notNull(alternatives);
+    }
+
+    /**
+     * Returns a node for the specified alternatives. Nested packed nodes are flattened and identical
+     * alternatives are merged. If only one alternative remains, it is returned as is.
+     */
+    static IParserNode create(List<IParserNode> alternatives) {
+        List<IParserNode> distinct = new ArrayList<>(alternatives.size());
+        for (IParserNode alternative : alternatives) {
+            if (alternative instanceof ParserPackedNode) {
+                for (IParserNode subAlternative : ((ParserPackedNode) alternative).alternatives) {
+                    addDistinct(distinct, subAlternative);
+                }
+            } else {
+                addDistinct(distinct, alternative);
+            }
+        }
+
+        if (distinct.size() == 1) {
+            return distinct.get(0);
+        }
+        return new ParserPackedNode(distinct);
+    }
+
+    private static void addDistinct(List<IParserNode> nodes, IParserNode node) {
+        for (IParserNode node0 : nodes) {
+            if (node0 == node) {
+                return;
+            }
+        }
+        nodes.add(node);
+    }
+
+    /**
+     * Returns the parser nodes of the alternatives.
+     */
+    List<IParserNode> getAlternatives() {
+        return alternatives;
+    }
+
+    @Override
+    public SynNode createUserNode() {
+        if (userNode == null) {
+            List<SynNode> userAlternatives = new ArrayList<>(alternatives.size());
+            for (IParserNode alternative : alternatives) {
+                userAlternatives.add(alternative == null ? null : alternative.createUserNode());
+            }
+            userNode = new PackedNode(userAlternatives);
+        }
+        return userNode;
+    }
+
+    @Override
+    public String toString() {
+        return createUserNode() + "";
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2013 Anton Karmanov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.antkar.syn.internal.parser;
+
+import org.antkar.syn.internal.Checks;
+import org.antkar.syn.internal.lrtables.ParserState;
+
+/**
+ * Runtime statistics of a parser engine: how many times the stacks were reduced in each LR state, and how many
+ * stacks were alive after each token. A state which has more than one action forks a stack every time it is
+ * reduced, so the counts show which conflicts are actually hot for a particular input.
+ */
+public final class ParserProfile {
+    private final int[] reduceCounts;
+    private int tokenCount;
+    private long stackCount;
+    private int maxStackCount;
+
+    /**
+     * Constructs a profile for a configuration with the specified number of states.
+     */
+    public ParserProfile(int stateCount) {
+        Checks.argument(stateCount >= 0);
+        reduceCounts = new int[stateCount];
+    }
+
+    /**
+     * Records a stack reduced in the specified state.
+     */
+    void recordReduce(ParserState state) {
+        ++reduceCounts[state.getIndex()];
+    }
+
+    /**
+     * Records a shifted token and the number of stacks which accepted it.
+     */
+    void recordToken(int stacks) {
+        ++tokenCount;
+        stackCount += stacks;
+        maxStackCount = Math.max(maxStackCount, stacks);
+    }
+
+    /**
+     * Returns the number of times a stack was reduced in the state with the specified index.
+     */
+    public int getReduceCount(int stateIndex) {
+        return reduceCounts[stateIndex];
+    }
+
+    /**
+     * Returns the number of shifted tokens.
+     */
+    public int getTokenCount() {
+        return tokenCount;
+    }
+
+    /**
+     * Returns the total number of stacks which accepted the tokens, i. e. the sum over all tokens.
+     */
+    public long getStackCount() {
+        return stackCount;
+    }
+
+    /**
+     * Returns the maximum number of stacks which accepted a single token.
+     */
+    public int getMaxStackCount() {
+        return maxStackCount;
+    }
+}
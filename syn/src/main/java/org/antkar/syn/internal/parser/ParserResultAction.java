@@ -37,6 +37,31 @@ public final class ParserResultAction implements IParserAction {
         return result;
     }
 
+    /**
+     * Returns the getter of the value returned by the action.
+     */
+    IParserGetter getGetter() {
+        return getter;
+    }
+
+    /**
+     * Returns <code>true</code> if the action returns the value of the top stack element, i. e. of the last
+     * element of the production.
+     */
+    public boolean isPassThrough() {
+        return getter instanceof ParserStackGetter && getter.offset() == 0;
+    }
+
+    @Override
+    public boolean isNodeCreated() {
+        return false;
+    }
+
+    @Override
+    public int getTreeDepth(ParserStackElement stack, int maxSubDepth) {
+        return maxSubDepth;
+    }
+
     @Override
     public String toString() {
         return "$$ = " + getter;
@@ -15,6 +15,10 @@
  */
 package org.antkar.syn.internal.parser;
 
+import java.util.HashSet;
+import java.util.Set;
+
+import org.antkar.syn.TokenDescriptor;
 import org.antkar.syn.internal.Checks;
 
 /**
@@ -36,17 +40,53 @@ final class ParserStack {
      * (<code>null</code>, if this is not a reduction stack). */
     private final ParserStack sourceStack;
 
+    /**
+     * Bloom filter of the states of the elements deeper than {@link #reduceDepth}, i. e. the ones added during
+     * the current reduction operation. May contain states of elements which are not in the stack anymore.
+     */
+    private final long reducedStatesMask;
+
+    /** Bloom filter of the hash codes of the tops of all source stacks of this stack. */
+    private final long sourceTopsMask;
+
+    /**
+     * The tokens which must not be shifted by this stack, because the stack was obtained by a reduction which
+     * loses to shifting such a token according to operator precedences. <code>null</code> if there are no
+     * such tokens.
+     */
+    private final Set<TokenDescriptor> excludedTokens;
+
     /** First element of the linked list of derived stacks - the stacks obtained by reducing this one. */
     private ParserStack derivedStack;
 
     /** Next element of the linked list of derived stacks that have the same source stack as this one. */
     private ParserStack derivedStackLink;
 
+    /**
+     * Next element of the linked list of live stacks equal to this one. Equal stacks are kept only if
+     * ambiguities are packed and the stack could not be merged with an equal one, since that one had already
+     * been reduced.
+     */
+    private ParserStack equalStack;
+
+    /** <code>true</code> if this stack has been reduced. */
+    private boolean reduced;
+
     /** <code>true</code> if this stack was deleted because of an ambiguity. Deleted stacks are not removed
      * from the stacks list for efficiency reasons. */
     private boolean deleted;
 
     ParserStack(ParserStack sourceStack, ParserStackElement top, int reduceDepth) {
+        this(sourceStack, top, reduceDepth, null);
+    }
+
+    /**
+     * Creates a stack.
+     *
+     * @param excludedTokens the tokens excluded by the reduction which produced this stack, or
+     * <code>null</code>. The tokens excluded for the source stack are excluded as well.
+     */
+    ParserStack(ParserStack sourceStack, ParserStackElement top, int reduceDepth, Set<TokenDescriptor> excludedTokens) {
         this.sourceStack = sourceStack;
         this.top = Checks.notNull(top);
         this.reduceDepth = reduceDepth;
@@ -55,9 +95,69 @@ final class ParserStack {
             //The source stack is specified - add this stack to the source's stack list of derived stacks.
             this.derivedStackLink = sourceStack.derivedStack;
             sourceStack.derivedStack = this;
+
+            //The elements of the source stack deeper than the reduction depth are either in this stack or
+            //have been removed by the reduction, so the source's filter covers them.
+            reducedStatesMask = top.getDepth() > reduceDepth
+                    ? sourceStack.reducedStatesMask | maskBit(top.getState().getIndex())
+                    : 0;
+            sourceTopsMask = sourceStack.sourceTopsMask | maskBit(sourceStack.top.hashCode());
+            this.excludedTokens = unionTokens(sourceStack.excludedTokens, excludedTokens);
+        } else {
+            reducedStatesMask = 0;
+            sourceTopsMask = 0;
+            this.excludedTokens = excludedTokens;
         }
     }
 
+    /**
+     * Returns the union of two sets of tokens, either of which may be <code>null</code>.
+     */
+    private static Set<TokenDescriptor> unionTokens(Set<TokenDescriptor> tokens1, Set<TokenDescriptor> tokens2) {
+        if (tokens1 == null || tokens1 == tokens2) {
+            return tokens2;
+        } else if (tokens2 == null) {
+            return tokens1;
+        }
+
+        Set<TokenDescriptor> result = new HashSet<>(tokens1);
+        result.addAll(tokens2);
+        return result;
+    }
+
+    /**
+     * Returns <code>true</code> if this stack must not be shifted by the specified token.
+     */
+    boolean isExcludedToken(TokenDescriptor token) {
+        return excludedTokens != null && excludedTokens.contains(token);
+    }
+
+    /**
+     * Returns <code>false</code> if the state of the top element definitely was not added to the stack
+     * beneath the top during the current reduction operation. Otherwise, the stack may be cycled.
+     * See {@link ParserEngine#isCycledStack(ParserStack)}.
+     */
+    boolean mayBeCycled() {
+        return sourceStack != null
+                && top.getDepth() > reduceDepth
+                && (sourceStack.reducedStatesMask & maskBit(top.getState().getIndex())) != 0;
+    }
+
+    /**
+     * Returns <code>false</code> if none of the source stacks definitely is equal to this stack. Otherwise,
+     * the stack may be recursive. See {@link ParserEngine#isRecursiveStack(ParserStack)}.
+     */
+    boolean mayBeRecursive() {
+        return (sourceTopsMask & maskBit(top.hashCode())) != 0;
+    }
+
+    /**
+     * Returns the bit of a Bloom filter corresponding to the specified value.
+     */
+    private static long maskBit(int value) {
+        return 1L << ((value * 0x9E3779B9) >>> 26);
+    }
+
     /**
      * Returns the source stack.
      */
@@ -79,6 +179,20 @@ final class ParserStack {
         return reduceDepth;
     }
 
+    /**
+     * Returns the next stack equal to this one, or <code>null</code>.
+     */
+    ParserStack getEqualStack() {
+        return equalStack;
+    }
+
+    /**
+     * Sets the next stack equal to this one.
+     */
+    void setEqualStack(ParserStack equalStack) {
+        this.equalStack = equalStack;
+    }
+
     /**
      * Marks this stack and all derived stacks as deleted.
      */
@@ -91,6 +205,39 @@ final class ParserStack {
         }
     }
 
+    /**
+     * Returns <code>true</code> if the stack has been reduced.
+     */
+    boolean isReduced() {
+        return reduced;
+    }
+
+    /**
+     * Marks the stack as reduced.
+     */
+    void setReduced() {
+        reduced = true;
+    }
+
+    /**
+     * Returns <code>true</code> if the top element of the stack would not exist if ambiguities were not packed.
+     */
+    boolean isRejected() {
+        return top.isRejected();
+    }
+
+    /**
+     * Sets the rejected flag of the top element of this stack and of all derived stacks.
+     */
+    void setRejected(boolean rejected) {
+        if (top.isRejected() != rejected) {
+            top.setRejected(rejected);
+            for (ParserStack stack = derivedStack; stack != null; stack = stack.derivedStackLink) {
+                stack.setRejected(rejected);
+            }
+        }
+    }
+
     /**
      * Returns <code>true</code> if the stack was deleted.
      */
@@ -16,9 +16,11 @@
 package org.antkar.syn.internal.parser;
 
 import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 import org.antkar.syn.TerminalNode;
-import org.antkar.syn.TokenDescriptor;
 import org.antkar.syn.internal.Checks;
 import org.antkar.syn.internal.lrtables.ParserProduction;
 import org.antkar.syn.internal.lrtables.ParserState;
@@ -40,6 +42,24 @@ abstract class ParserStackElement {
 
     private final int hashCode;
 
+    /** <code>true</code> if this element has been committed, i. e. it is known to be a part of the result
+     * tree. */
+    private boolean committed;
+
+    /**
+     * Elements equal to this one, which cover the tokens up to the same position, but start at different
+     * positions. Used only if ambiguities are packed: such elements are merged into a single node of a
+     * graph-structured stack, represented by this element, so the elements above it have multiple paths to
+     * the bottom of the stack.
+     */
+    private List<ParserStackElement> equalElements;
+
+    /**
+     * <code>true</code> if the element would not exist if ambiguities were not packed, since it would be
+     * rejected by the automatic ambiguity resolution. Used only if ambiguities are packed.
+     */
+    private boolean rejected;
+
     ParserStackElement(ParserStackElement prev, ParserState state) {
         this.prev = prev;
         this.state = Checks.notNull(state);
@@ -47,6 +67,7 @@ abstract class ParserStackElement {
         if (prev != null) {
             hashCode = prev.hashCode * 31 + state.getIndex();
             depth = prev.depth + 1;
+            rejected = prev.rejected;
         } else {
             hashCode = state.getIndex();
             depth = 1;
@@ -92,11 +113,11 @@ abstract class ParserStackElement {
 
     /**
      * Goes to the next state by a token, returns a new stack.
+     *
+     * @param tokenIndex the index of the token in the parser tables.
      */
-    final ParserStackElement nextTk(TokenDescriptor token, TerminalNode node) {
-        Checks.notNull(token);
-
-        ParserState nextState = state.getShiftState(token);
+    final ParserStackElement nextTk(int tokenIndex, TerminalNode node) {
+        ParserState nextState = state.getShiftState(tokenIndex);
         ParserStackElement result = null;
         if (nextState != null) {
             result = new TerminalParserStackElement(this, nextState, node);
@@ -129,6 +150,73 @@ abstract class ParserStackElement {
         return prev;
     }
 
+    /**
+     * Returns <code>true</code> if this element has been committed.
+     */
+    final boolean isCommitted() {
+        return committed;
+    }
+
+    /**
+     * Commits this element. Must be called only when the element is shared by all live stacks, so it is
+     * guaranteed to become a part of the result tree. A committed element builds its parser node
+     * immediately and releases the references to its sub-elements, allowing the parser history beneath it
+     * to be garbage-collected.
+     */
+    final void commit(IParserCommitHandler handler) {
+        if (!committed) {
+            release(handler);
+            committed = true;
+        }
+    }
+
+    /**
+     * Returns the elements merged with this one, or an empty list.
+     */
+    final List<ParserStackElement> getEqualElements() {
+        if (equalElements == null) {
+            return Collections.emptyList();
+        }
+        return equalElements;
+    }
+
+    /**
+     * Merges an equal element with this one, together with the elements merged with it before.
+     */
+    final void addEqualElement(ParserStackElement element) {
+        Checks.argument(element.equals(this));
+
+        if (equalElements == null) {
+            equalElements = new ArrayList<>();
+        }
+        equalElements.add(element);
+        if (element.equalElements != null) {
+            equalElements.addAll(element.equalElements);
+            element.equalElements = null;
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if the element would be rejected by the automatic ambiguity resolution.
+     */
+    final boolean isRejected() {
+        return rejected;
+    }
+
+    /**
+     * Sets the rejected flag.
+     */
+    final void setRejected(boolean rejected) {
+        this.rejected = rejected;
+    }
+
+    /**
+     * Returns the element whose contents this element represents. Differs from this element only for a view.
+     */
+    ParserStackElement unwrap() {
+        return this;
+    }
+
     /**
      * Two stacks are equal if their chains of LR states are equal.
      */
@@ -176,15 +264,39 @@ abstract class ParserStackElement {
         return bld.toString();
     }
 
+    /**
+     * Passes this element to the commit handler and releases the sub-elements. Called once, when the
+     * element is committed.
+     */
+    abstract void release(IParserCommitHandler handler);
+
     /**
      * Creates a parser node for this stack element and its sub-elements.
      */
     abstract IParserNode createParserNode();
 
     /**
-     * Creates an ambiguity node for this stack element and its sub-elements.
+     * Returns the number of tokens covered by this element.
+     */
+    abstract int getTokenCount();
+
+    /**
+     * Returns the depth of the syntax tree of this element, i. e. the maximum number of nested nodes.
+     * The value is an upper bound, since sub-elements not used by the element's action are also taken into
+     * account.
+     */
+    abstract int getTreeDepth();
+
+    /**
+     * Returns the number of syntax tree nodes created for this element and all its sub-elements.
+     */
+    abstract int getNodeCount();
+
+    /**
+     * Returns the ambiguity node of this element, if it is known without looking at sub-elements. Returns
+     * <code>null</code> if the element has sub-elements which have to be compared one by one.
      */
-    abstract AmbiguityNode createAmbiguityNode();
+    abstract AmbiguityNode getAmbiguityNode();
 
     /**
      * Prints this stack element and its sub-elements. Used for debug purposes.
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2013 Anton Karmanov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.antkar.syn.internal.parser;
+
+import org.antkar.syn.TerminalNode;
+import org.antkar.syn.internal.lrtables.ParserProduction;
+
+/**
+ * Commit handler which builds the syntax tree.
+ */
+final class ParserTreeCommitHandler implements IParserCommitHandler {
+    /**
+     * The handler used for the elements shared by all live stacks. Such elements are never compared with other
+     * ones, so their ambiguity trees are dropped.
+     */
+    static final ParserTreeCommitHandler INSTANCE = new ParserTreeCommitHandler(false);
+
+    /**
+     * The handler used for the elements which may still be compared with other ones, such as the elements
+     * of a checkpoint's stacks.
+     */
+    static final ParserTreeCommitHandler RETAINING = new ParserTreeCommitHandler(true);
+
+    private final boolean ambiguityTreeRetained;
+
+    private ParserTreeCommitHandler(boolean ambiguityTreeRetained) {
+        this.ambiguityTreeRetained = ambiguityTreeRetained;
+    }
+
+    @Override
+    public void commitTerminal(TerminalNode token) {
+        //Nothing to do.
+    }
+
+    @Override
+    public IParserNode commitNonterminal(ParserProduction production, ParserStackElement subElements) {
+        IParserAction action = production.getAction();
+        IParserNode result = action.execute(subElements);
+        return result;
+    }
+
+    @Override
+    public boolean isAmbiguityTreeRetained(ParserProduction production) {
+        return ambiguityTreeRetained;
+    }
+}
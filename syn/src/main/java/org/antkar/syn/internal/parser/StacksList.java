@@ -16,9 +16,8 @@
 package org.antkar.syn.internal.parser;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 
 import org.antkar.syn.internal.Checks;
 import org.antkar.syn.internal.lrtables.ParserState;
@@ -34,8 +33,18 @@ final class StacksList {
     /** Back, or secondary list of stacks. */
     private List<ParserStack> backList;
 
-    /** Map of stacks. Used to detect conflicting stacks. */
-    private final Map<ParserStackElement, ParserStack> map;
+    /** Initial capacity of the hash table. Must be a power of two. */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Open-addressing hash table of stacks, keyed by stack tops. Used to detect conflicting stacks. Reused for
+     * all tokens, so it does not allocate memory unless it has to grow.
+     */
+    private ParserStack[] table;
+
+    /** Indices of the occupied slots of the table, allowing to clear the table in O(number of stacks). */
+    private int[] occupiedSlots;
+    private int occupiedCount;
 
     /** Result stack - a stack which associated LR state is final. */
     private ParserStack resultStack;
@@ -43,7 +52,8 @@ final class StacksList {
     StacksList() {
         list = new ArrayList<>();
         backList = new ArrayList<>();
-        map = new HashMap<>();
+        table = new ParserStack[INITIAL_CAPACITY];
+        occupiedSlots = new int[INITIAL_CAPACITY];
     }
 
     /**
@@ -57,7 +67,10 @@ final class StacksList {
      * Returns current list of stacks and switches to a new empty one, which becomes current.
      */
     List<ParserStack> copyAndClear() {
-        map.clear();
+        for (int i = 0; i < occupiedCount; ++i) {
+            table[occupiedSlots[i]] = null;
+        }
+        occupiedCount = 0;
 
         List<ParserStack> temp = list;
         list = backList;
@@ -76,35 +89,108 @@ final class StacksList {
     }
 
     /**
-     * Returns a stack equal to the specified one.
+     * Returns a stack equal to the specified one. Other equal stacks, if any, are linked to the returned one
+     * via {@link ParserStack#getEqualStack()}.
      */
     ParserStack getByTop(ParserStackElement top) {
-        return map.get(top);
+        ParserStack result = table[findSlot(table, top)];
+        return result;
     }
 
     /**
-     * Adds a stack to the list.
+     * Adds a stack to the list. If there is an equal stack in the list, the new stack is linked to it.
      */
     void add(ParserStack stack) {
         list.add(stack);
         ParserStackElement top = stack.getTop();
-        map.put(stack.getTop(), stack);
+        put(stack);
 
         updateResultStack(stack, top);
     }
 
     /**
-     * Replaces an existing stack by the specified one.
+     * Replaces an existing stack by the specified equal one.
      */
-    void replace(ParserStack stack) {
+    void replace(ParserStack existingStack, ParserStack stack) {
         list.add(stack);
 
         ParserStackElement top = stack.getTop();
-        map.put(top, stack);
+        int slot = findSlot(table, top);
+        stack.setEqualStack(existingStack.getEqualStack());
+        if (table[slot] == existingStack) {
+            table[slot] = stack;
+        } else {
+            ParserStack prevStack = table[slot];
+            while (prevStack.getEqualStack() != existingStack) {
+                prevStack = prevStack.getEqualStack();
+            }
+            prevStack.setEqualStack(stack);
+        }
 
         updateResultStack(stack, top);
     }
 
+    /**
+     * Puts a stack into the hash table. If there is an equal stack, the new one is linked to it.
+     */
+    private void put(ParserStack stack) {
+        int slot = findSlot(table, stack.getTop());
+        ParserStack existingStack = table[slot];
+        if (existingStack != null) {
+            stack.setEqualStack(existingStack.getEqualStack());
+            existingStack.setEqualStack(stack);
+            return;
+        }
+        stack.setEqualStack(null);
+
+        //Keep the load factor not greater than 1/2.
+        if ((occupiedCount + 1) * 2 > table.length) {
+            grow();
+            slot = findSlot(table, stack.getTop());
+        }
+
+        table[slot] = stack;
+        occupiedSlots[occupiedCount++] = slot;
+    }
+
+    /**
+     * Doubles the capacity of the hash table.
+     */
+    private void grow() {
+        ParserStack[] newTable = new ParserStack[table.length * 2];
+        for (int i = 0; i < occupiedCount; ++i) {
+            ParserStack stack = table[occupiedSlots[i]];
+            int slot = findSlot(newTable, stack.getTop());
+            newTable[slot] = stack;
+            occupiedSlots[i] = slot;
+        }
+
+        table = newTable;
+        occupiedSlots = Arrays.copyOf(occupiedSlots, newTable.length);
+    }
+
+    /**
+     * Returns the slot of the stack equal to the specified top, or the empty slot where such stack has to be
+     * put. Uses linear probing.
+     */
+    private static int findSlot(ParserStack[] table, ParserStackElement top) {
+        int mask = table.length - 1;
+        int hashCode = top.hashCode();
+        int slot = (hashCode ^ (hashCode >>> 16)) & mask;
+        for (;;) {
+            ParserStack stack = table[slot];
+            if (stack == null) {
+                return slot;
+            }
+
+            ParserStackElement stackTop = stack.getTop();
+            if (stackTop == top || (stackTop.hashCode() == hashCode && stackTop.equals(top))) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
     /**
      * If the specified stack is a result stack, it is remembered.
      */
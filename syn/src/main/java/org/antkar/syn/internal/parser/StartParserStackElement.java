@@ -28,13 +28,33 @@ final class StartParserStackElement extends ParserStackElement {
         super(null, state);
     }
 
+    @Override
+    void release(IParserCommitHandler handler) {
+        //Nothing to release.
+    }
+
     @Override
     IParserNode createParserNode() {
         throw new UnsupportedOperationException();
     }
 
     @Override
-    AmbiguityNode createAmbiguityNode() {
+    int getTokenCount() {
+        return 0;
+    }
+
+    @Override
+    int getTreeDepth() {
+        return 0;
+    }
+
+    @Override
+    int getNodeCount() {
+        return 0;
+    }
+
+    @Override
+    AmbiguityNode getAmbiguityNode() {
         throw new UnsupportedOperationException();
     }
 
@@ -33,6 +33,11 @@ final class TerminalParserStackElement extends ParserStackElement {
         this.token = Checks.notNull(node);
     }
 
+    @Override
+    void release(IParserCommitHandler handler) {
+        handler.commitTerminal(token);
+    }
+
     @Override
     IParserNode createParserNode() {
         ParserUserNode result = new ParserUserNode(token);
@@ -40,7 +45,22 @@ final class TerminalParserStackElement extends ParserStackElement {
     }
 
     @Override
-    AmbiguityNode createAmbiguityNode() {
+    int getTokenCount() {
+        return 1;
+    }
+
+    @Override
+    int getTreeDepth() {
+        return 1;
+    }
+
+    @Override
+    int getNodeCount() {
+        return 1;
+    }
+
+    @Override
+    AmbiguityNode getAmbiguityNode() {
         return AmbiguityNode.TERMINAL;
     }
 
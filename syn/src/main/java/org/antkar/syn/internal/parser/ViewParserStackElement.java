@@ -0,0 +1,76 @@
+/*
+ * Copyright 2013 Anton Karmanov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.antkar.syn.internal.parser;
+
+import java.io.PrintStream;
+
+import org.antkar.syn.internal.Checks;
+
+/**
+ * Stack element which represents another element placed on top of a different, but equal, previous element.
+ * Used when ambiguities are packed: a path of sub-elements of a reduction may go through an element merged
+ * with an equal one, and the sub-elements must be linked in the order of the path. Also used to copy
+ * the committed elements of a {@link ParserCheckpoint} for an engine resumed from it.
+ */
+final class ViewParserStackElement extends ParserStackElement {
+    private final ParserStackElement element;
+
+    ViewParserStackElement(ParserStackElement prev, ParserStackElement element) {
+        super(prev, element.getState());
+        this.element = Checks.notNull(element);
+        Checks.argument(prev.equals(element.getPrev()));
+    }
+
+    @Override
+    ParserStackElement unwrap() {
+        return element.unwrap();
+    }
+
+    @Override
+    void release(IParserCommitHandler handler) {
+        element.commit(handler);
+    }
+
+    @Override
+    IParserNode createParserNode() {
+        return element.createParserNode();
+    }
+
+    @Override
+    int getTokenCount() {
+        return element.getTokenCount();
+    }
+
+    @Override
+    int getTreeDepth() {
+        return element.getTreeDepth();
+    }
+
+    @Override
+    int getNodeCount() {
+        return element.getNodeCount();
+    }
+
+    @Override
+    AmbiguityNode getAmbiguityNode() {
+        return element.getAmbiguityNode();
+    }
+
+    @Override
+    void print(PrintStream out, int level) {
+        element.print(out, level);
+    }
+}
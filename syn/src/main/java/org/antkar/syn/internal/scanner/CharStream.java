@@ -36,6 +36,21 @@ final class CharStream {
         this.reader = Checks.notNull(reader);
     }
 
+    /**
+     * Constructs a stream whose first character is located at the specified position of a larger input.
+     * Line and column numbers start with <code>0</code>.
+     */
+    CharStream(Reader reader, int line, int column, int offset) {
+        this(reader);
+        Checks.argument(line >= 0);
+        Checks.argument(column >= 0);
+        Checks.argument(offset >= 0);
+
+        this.line = line;
+        this.column = column;
+        this.offset = offset;
+    }
+
     /**
      * Reads the next character from the input. Returns the character itself and its position.
      *
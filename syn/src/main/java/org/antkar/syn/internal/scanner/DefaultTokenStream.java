@@ -19,12 +19,17 @@ import java.io.IOException;
 import java.io.Reader;
 
 import org.antkar.syn.SourceDescriptor;
+import org.antkar.syn.SynCancellationToken;
+import org.antkar.syn.SynCancelledException;
 import org.antkar.syn.SynException;
 import org.antkar.syn.SynLexicalException;
+import org.antkar.syn.SynLimitException;
+import org.antkar.syn.SynLimits;
 import org.antkar.syn.TerminalNode;
 import org.antkar.syn.TextPos;
 import org.antkar.syn.TokenDescriptor;
 import org.antkar.syn.TokenStream;
+import org.antkar.syn.TokenType;
 import org.antkar.syn.internal.Checks;
 import org.antkar.syn.internal.PosBuffer;
 
@@ -33,6 +38,18 @@ import org.antkar.syn.internal.PosBuffer;
  * of tokens.
  */
 public final class DefaultTokenStream implements TokenStream {
+    /**
+     * The number of characters following a token which may be examined when the token is scanned. A token
+     * is not affected by a change of the input made at least that many characters after the token's end.
+     */
+    public static final int MAX_LOOKAHEAD = 2;
+
+    /** Cancellation is checked once per this number of operations. Must be a power of two. */
+    private static final int CANCELLATION_CHECK_INTERVAL = 256;
+
+    private static final IPrimitiveResult END_OF_FILE_RESULT =
+            new TokenNodePrimitiveResult(TokenDescriptor.END_OF_FILE);
+
     /** The compound primitive scanner. */
     private final IPrimitiveScanner primitiveScanner;
 
@@ -47,14 +64,60 @@ public final class DefaultTokenStream implements TokenStream {
     /** Current token node. */
     private TerminalNode token;
 
+    /** The offset where the stream ends, or <code>-1</code> if the stream ends with the input. */
+    private final int endOffset;
+
+    /** The cancellation token, or <code>null</code>. */
+    private SynCancellationToken cancellationToken;
+
+    /** The number of operations since the stream was created, used to check cancellation periodically. */
+    private int operationCount;
+
+    /** The maximum number of tokens, or <code>0</code>. */
+    private int maxTokenCount;
+
+    /** The number of tokens returned by the stream. */
+    private int tokenCount;
+
     public DefaultTokenStream(SourceDescriptor sourceDescriptor, ScannerConfiguration config, Reader reader)
             throws SynException
+    {
+        this(sourceDescriptor, config, new CharStream(Checks.notNull(reader)), -1);
+    }
+
+    /**
+     * Constructs a stream over a part of a larger input. The reader has to be positioned at the specified
+     * offset. The stream returns end-of-file instead of the first token which starts at or after the end
+     * offset, so the parts of the input before and after the end offset are split exactly as if the whole
+     * input was scanned.
+     *
+     * @param offset the offset of the first character.
+     * @param line the line number of the first character, starting with <code>1</code>.
+     * @param column the column number of the first character, starting with <code>1</code>.
+     * @param endOffset the end offset, or <code>-1</code> to read the input till the end.
+     */
+    public DefaultTokenStream(
+            SourceDescriptor sourceDescriptor,
+            ScannerConfiguration config,
+            Reader reader,
+            int offset,
+            int line,
+            int column,
+            int endOffset) throws SynException
+    {
+        this(sourceDescriptor, config, new CharStream(reader, line - 1, column - 1, offset), endOffset);
+        Checks.argument(endOffset == -1 || endOffset >= offset);
+    }
+
+    private DefaultTokenStream(
+            SourceDescriptor sourceDescriptor,
+            ScannerConfiguration config,
+            CharStream charStream,
+            int endOffset) throws SynException
     {
         Checks.notNull(config);
         Checks.notNull(sourceDescriptor);
-        Checks.notNull(reader);
-
-        CharStream charStream = new CharStream(reader);
+        this.endOffset = endOffset;
 
         LookaheadCharStream dblCharStream;
         try {
@@ -67,8 +130,41 @@ public final class DefaultTokenStream implements TokenStream {
         primitiveContext = new PrimitiveContext(sourceDescriptor, dblCharStream);
     }
 
+    /**
+     * Sets the cancellation token checked by this stream.
+     *
+     * @param cancellationToken the token, or <code>null</code> if the stream cannot be cancelled.
+     */
+    public void setCancellationToken(SynCancellationToken cancellationToken) {
+        this.cancellationToken = cancellationToken;
+    }
+
+    /**
+     * Sets the resource limits enforced by this stream: the input length, the number of tokens and the lengths
+     * of literals. Limits of the syntax tree are ignored.
+     */
+    public void setLimits(SynLimits limits) {
+        maxTokenCount = limits.getMaxTokenCount();
+        primitiveContext.setLimits(limits);
+    }
+
+    /**
+     * Counts an operation, such as reading a token or a reduction done by the parser, and checks the cancellation
+     * token once per {@link #CANCELLATION_CHECK_INTERVAL} operations.
+     *
+     * @throws SynCancelledException if the cancellation token requires to stop.
+     */
+    public void checkCancellation() throws SynCancelledException {
+        if (cancellationToken != null && (++operationCount & (CANCELLATION_CHECK_INTERVAL - 1)) == 0) {
+            cancellationToken.check(primitiveContext.getCurrentCharPos());
+        }
+    }
+
     @Override
     public void nextToken() throws SynException {
+        checkCancellation();
+        //The first character is read before the limits are set, so it is checked here.
+        primitiveContext.checkInputLength();
         primitiveContext.startToken();
 
         try {
@@ -88,10 +184,48 @@ public final class DefaultTokenStream implements TokenStream {
             throw e;
         }
 
+        if (endOffset != -1 && primitiveContext.getStartOffset() >= endOffset) {
+            //The token belongs to the rest of the input.
+            tokenResult = END_OF_FILE_RESULT;
+        }
+
         //Scan successful.
         tokenDescriptor = tokenResult.getTokenDescriptor();
         Checks.notNull(tokenDescriptor);
         token = null;
+
+        if (tokenDescriptor.getType() != TokenType.END_OF_FILE) {
+            ++tokenCount;
+            checkTokenCount();
+        }
+    }
+
+    /**
+     * Throws an exception if the current token exceeds the token count limit. The input length is checked
+     * by {@link PrimitiveContext} whenever a character is read, so a long token or comment cannot exceed it.
+     */
+    private void checkTokenCount() throws SynLimitException {
+        if (maxTokenCount > 0 && tokenCount > maxTokenCount) {
+            throw new SynLimitException(getTokenPos(),
+                    String.format("The number of tokens exceeds the limit (%d)", maxTokenCount));
+        }
+    }
+
+    /**
+     * Returns the number of tokens returned by the stream, including the tokens counted before the stream
+     * was created, if a parser is resumed.
+     */
+    public int getTokenCount() {
+        return tokenCount;
+    }
+
+    /**
+     * Sets the number of tokens preceding the start of the stream, so that the token count limit applies
+     * to the whole input when a parser is resumed.
+     */
+    public void setTokenCount(int tokenCount) {
+        Checks.argument(tokenCount >= 0);
+        this.tokenCount = tokenCount;
     }
 
     @Override
@@ -137,6 +271,20 @@ public final class DefaultTokenStream implements TokenStream {
         return primitiveContext.getCurrentOffset();
     }
 
+    /**
+     * Returns the line number of the first unprocessed character, starting with <code>1</code>.
+     */
+    public int getCurrentLine() {
+        return primitiveContext.getCurrentLine();
+    }
+
+    /**
+     * Returns the column number of the first unprocessed character, starting with <code>1</code>.
+     */
+    public int getCurrentColumn() {
+        return primitiveContext.getCurrentColumn();
+    }
+
     /**
      * Creates the compound primitive scanner able to scan all supported types of tokens.
      */
@@ -26,8 +26,6 @@ import org.antkar.syn.internal.PosBuffer;
  * Identifier scanner.
  */
 abstract class IdScanner implements IPrimitiveScanner {
-    private static final int MAX_ID_LENGTH = 256;
-
     private final IPrimitiveResult primitiveResult;
     private String value;
 
@@ -42,7 +40,7 @@ abstract class IdScanner implements IPrimitiveScanner {
             return null;
         }
 
-        context.setMaxBufferLength(MAX_ID_LENGTH);
+        context.setMaxBufferLength(context.getMaxIdLength());
 
         //Append the first character to the buffer and read the next one.
         context.append();
@@ -20,6 +20,8 @@ import java.io.IOException;
 import org.antkar.syn.SourceDescriptor;
 import org.antkar.syn.SynException;
 import org.antkar.syn.SynLexicalException;
+import org.antkar.syn.SynLimitException;
+import org.antkar.syn.SynLimits;
 import org.antkar.syn.SynTextException;
 import org.antkar.syn.TextPos;
 import org.antkar.syn.internal.Checks;
@@ -41,6 +43,12 @@ final class PrimitiveContext {
 
     private int maxBufferLength;
 
+    /** The limits of literal lengths. */
+    private SynLimits limits = SynLimits.DEFAULT;
+
+    /** The maximum length of the input, or <code>0</code>. */
+    private int maxInputLength;
+
     /**
      * The code of the current character, or <code>-1</code> if end of the input is reached.
      */
@@ -79,6 +87,18 @@ final class PrimitiveContext {
         } catch (IOException e) {
             throw new SynTextException(getCurrentCharPos(), "I/O error: " + e.getMessage(), e);
         }
+        checkInputLength();
+    }
+
+    /**
+     * Throws an exception if the current character is beyond the maximum length of the input. The offset is
+     * absolute, so the characters preceding the start offset of a resumed stream are counted as well.
+     */
+    void checkInputLength() throws SynLimitException {
+        if (maxInputLength > 0 && current != -1 && currentPos.offset() >= maxInputLength) {
+            throw new SynLimitException(getCurrentCharPos(),
+                    String.format("The length of the input exceeds the limit (%d)", maxInputLength));
+        }
     }
 
     /**
@@ -89,6 +109,32 @@ final class PrimitiveContext {
         return k;
     }
 
+    /**
+     * Sets the limits of the lengths of literals and of the input.
+     */
+    void setLimits(SynLimits limits) {
+        this.limits = Checks.notNull(limits);
+        maxInputLength = limits.getMaxInputLength();
+    }
+
+    /**
+     * Returns the maximum length of an identifier.
+     */
+    int getMaxIdLength() {
+        return toBufferLength(limits.getMaxIdLength());
+    }
+
+    /**
+     * Returns the maximum length of the value of a string literal.
+     */
+    int getMaxStringLength() {
+        return toBufferLength(limits.getMaxStringLength());
+    }
+
+    private static int toBufferLength(int limit) {
+        return limit == 0 ? Integer.MAX_VALUE : limit;
+    }
+
     /**
      * Sets the helper string buffer size limit.
      */
@@ -171,6 +217,20 @@ final class PrimitiveContext {
         return currentPos.offset();
     }
 
+    /**
+     * Returns the line number of the current character's position, starting with <code>1</code>.
+     */
+    int getCurrentLine() {
+        return currentPos.line() + 1;
+    }
+
+    /**
+     * Returns the column number of the current character's position, starting with <code>1</code>.
+     */
+    int getCurrentColumn() {
+        return currentPos.column() + 1;
+    }
+
     /**
      * Returns the current character's position. A new instance of {@link TextPos} is created every time.
      */
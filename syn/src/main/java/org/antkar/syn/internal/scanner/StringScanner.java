@@ -28,11 +28,6 @@ import org.antkar.syn.internal.StringValueNode;
  * Allows the same escape sequences as Java 6 string literals.
  */
 final class StringScanner implements IPrimitiveScanner {
-    /**
-     * The supported maximum length of a string literal. Used to avoid out of memory errors.
-     */
-    private static final int MAX_STRING_LENGTH = 1 << 16;
-
     private final IPrimitiveResult primitiveResult;
     private String value;
 
@@ -48,7 +43,7 @@ final class StringScanner implements IPrimitiveScanner {
         }
 
         //Out of memory error protection.
-        context.setMaxBufferLength(MAX_STRING_LENGTH);
+        context.setMaxBufferLength(context.getMaxStringLength());
 
         //Scan quoted characters.
         int quote = context.current;
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2013 Anton Karmanov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.antkar.syn.internal.scanner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.antkar.syn.SourceDescriptor;
+import org.antkar.syn.TextPos;
+import org.antkar.syn.TokenDescriptor;
+import org.antkar.syn.TokenType;
+import org.antkar.syn.internal.Checks;
+
+/**
+ * Finds the points where a text can be cut into segments which are scanned and parsed separately.
+ * A split point is an occurrence of one of the given literals. Only the text is searched, tokens are not
+ * scanned, so a literal inside of a comment or a string literal may be taken for a split point; the parser
+ * detects such cases by checking that the last token of a segment does not span the split point.
+ */
+public final class TextSegmenter {
+    private TextSegmenter() {
+    }
+
+    /**
+     * Cuts the text into at most the specified number of segments of approximately equal length.
+     * Returns the positions of the split tokens the segments (except the first one) start with. The list
+     * is empty if the text cannot be split.
+     */
+    public static List<TextPos> findSplitPoints(
+            SourceDescriptor sourceDescriptor,
+            String text,
+            List<TokenDescriptor> splitTokens,
+            int segmentCount)
+    {
+        Checks.notNull(sourceDescriptor);
+        Checks.notNull(text);
+        Checks.argument(!splitTokens.isEmpty());
+
+        List<TextPos> result = new ArrayList<>();
+        int length = text.length();
+        int line = 1;
+        int lineStart = 0;
+        int lineCountOffset = 0;
+        int offset = 0;
+
+        for (int i = 1; i < segmentCount; ++i) {
+            int target = (int) ((long) length * i / segmentCount);
+            offset = findSplitToken(text, splitTokens, Math.max(target, offset + 1));
+            if (offset == -1) {
+                break;
+            }
+
+            //Count lines incrementally, since split points go in ascending order.
+            for (; lineCountOffset < offset; ++lineCountOffset) {
+                if (text.charAt(lineCountOffset) == '\n') {
+                    ++line;
+                    lineStart = lineCountOffset + 1;
+                }
+            }
+
+            int tokenLength = getTokenLength(text, splitTokens, offset);
+            result.add(new TextPos(sourceDescriptor, offset, line, offset - lineStart + 1, tokenLength));
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the offset of the first split token at or after the specified offset, or <code>-1</code>.
+     */
+    private static int findSplitToken(String text, List<TokenDescriptor> splitTokens, int fromOffset) {
+        int result = -1;
+        for (TokenDescriptor token : splitTokens) {
+            int limit = result == -1 ? text.length() : result;
+            int offset = findLiteral(text, token, fromOffset, limit);
+            if (offset != -1) {
+                result = offset;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the offset of the first occurrence of a literal which starts before the limit, or
+     * <code>-1</code>. A keyword must not be a part of a longer identifier.
+     */
+    private static int findLiteral(String text, TokenDescriptor token, int fromOffset, int limit) {
+        String literal = token.getLiteral();
+        boolean keyword = token.getType() == TokenType.KEYWORD;
+
+        int offset = fromOffset;
+        while (offset < limit) {
+            offset = text.indexOf(literal, offset);
+            if (offset == -1 || offset >= limit) {
+                return -1;
+            }
+
+            int end = offset + literal.length();
+            if (!keyword || (!isIdentifierPartAt(text, offset - 1) && !isIdentifierPartAt(text, end))) {
+                return offset;
+            }
+            ++offset;
+        }
+        return -1;
+    }
+
+    private static boolean isIdentifierPartAt(String text, int offset) {
+        return offset >= 0 && offset < text.length() && Character.isJavaIdentifierPart(text.charAt(offset));
+    }
+
+    private static int getTokenLength(String text, List<TokenDescriptor> splitTokens, int offset) {
+        int result = 0;
+        for (TokenDescriptor token : splitTokens) {
+            String literal = token.getLiteral();
+            if (literal.length() > result && text.startsWith(literal, offset)) {
+                result = literal.length();
+            }
+        }
+        return result;
+    }
+}
@@ -17,6 +17,7 @@ package org.antkar.syn;
 
 import org.antkar.syn.binder.SynBinder;
 import org.antkar.syn.internal.grammar.XmlGrammarParserTest;
+import org.antkar.syn.internal.parser.ParserTreeCommitHandlerTest;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
@@ -31,6 +32,7 @@ import org.junit.runners.Suite.SuiteClasses;
     EbnfToBnfConverterTest.class,
     ParserConfiguratorTest.class,
     ParserEngineTest.class,
+    ParserTreeCommitHandlerTest.class,
     SynParserSimpleTest.class,
     SynParserJavaTest.class,
     TokenStreamNumberTest.class,
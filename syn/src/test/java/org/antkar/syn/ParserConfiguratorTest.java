@@ -15,12 +15,30 @@
  */
 package org.antkar.syn;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.antkar.syn.internal.CommonUtil;
 import org.antkar.syn.internal.bnf.BnfGrammar;
 import org.antkar.syn.internal.ebnf.EbnfGrammar;
 import org.antkar.syn.internal.grammar.EbnfToBnfConverter;
+import org.antkar.syn.internal.grammar.SynGrammarParser;
 import org.antkar.syn.internal.grammar.XmlGrammarParserTest;
 import org.antkar.syn.internal.lrtables.ParserConfiguration;
+import org.antkar.syn.internal.lrtables.ParserConfigurationSerializer;
 import org.antkar.syn.internal.lrtables.ParserConfigurator;
+import org.antkar.syn.internal.lrtables.ParserShift;
+import org.antkar.syn.internal.lrtables.ParserState;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -36,4 +54,153 @@ public final class ParserConfiguratorTest extends Assert {
         ParserConfiguration config = ParserConfigurator.makeConfiguration(bGrammar);
         assertNotNull(config);
     }
+
+    @Test
+    public void testShiftTables() throws Exception {
+        EbnfGrammar eGrammar = XmlGrammarParserTest.loadXmlGrammar();
+        BnfGrammar bGrammar = EbnfToBnfConverter.convert(eGrammar);
+        ParserConfiguration config = ParserConfigurator.makeConfiguration(bGrammar);
+
+        for (ParserState state : config.getStates()) {
+            int shiftCount = 0;
+            for (TokenDescriptor token : config.getTokenDescriptors()) {
+                ParserState nextState = state.getShiftState(token);
+                if (nextState != null) {
+                    ++shiftCount;
+                }
+            }
+            for (ParserShift shift : state.getShifts()) {
+                assertSame(shift.getState(), state.getShiftState(shift.getTokenDescriptor()));
+            }
+            assertEquals(state.getShifts().size(), shiftCount);
+        }
+    }
+
+    @Test
+    public void testConcurrentConstruction() throws Exception {
+        EbnfGrammar eGrammar;
+        try (Reader reader = CommonUtil.openResourceReader(getClass(), "SynParserJavaTest_grammar.txt")) {
+            eGrammar = SynGrammarParser.parseGrammar(reader, new StringSourceDescriptor("<grammar>"));
+        }
+        BnfGrammar bGrammar = EbnfToBnfConverter.convert(eGrammar);
+
+        ParserConfiguration config = ParserConfigurator.makeConfiguration(bGrammar);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int i = 0; i < 3; ++i) {
+                ParserConfiguration concurrentConfig = ParserConfigurator.makeConfiguration(bGrammar, pool);
+                assertArrayEquals(serialize(config), serialize(concurrentConfig));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testConcurrentConfigurationInPoolTasks() throws Exception {
+        EbnfGrammar eGrammar;
+        try (Reader reader = CommonUtil.openResourceReader(getClass(), "SynParserJavaTest_grammar.txt")) {
+            eGrammar = SynGrammarParser.parseGrammar(reader, new StringSourceDescriptor("<grammar>"));
+        }
+        final BnfGrammar bGrammar = EbnfToBnfConverter.convert(eGrammar);
+        byte[] expected = serialize(ParserConfigurator.makeConfiguration(bGrammar));
+
+        //Every worker of the pool builds a configuration in the same pool, so no worker is free to run the tasks
+        //of the levels unless the workers help each other.
+        final ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            List<Future<ParserConfiguration>> futures = new ArrayList<>();
+            for (int i = 0; i < 4; ++i) {
+                futures.add(pool.submit(new Callable<ParserConfiguration>() {
+                    @Override
+                    public ParserConfiguration call() {
+                        return ParserConfigurator.makeConfiguration(bGrammar, pool);
+                    }
+                }));
+            }
+            for (Future<ParserConfiguration> future : futures) {
+                assertArrayEquals(expected, serialize(future.get(60, TimeUnit.SECONDS)));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testLazyConfiguration() throws Exception {
+        EbnfGrammar eGrammar;
+        try (Reader reader = CommonUtil.openResourceReader(getClass(), "SynParserJavaTest_grammar.txt")) {
+            eGrammar = SynGrammarParser.parseGrammar(reader, new StringSourceDescriptor("<grammar>"));
+        }
+        final BnfGrammar bGrammar = EbnfToBnfConverter.convert(eGrammar);
+        final ParserConfiguration config = ParserConfigurator.makeLazyConfiguration(bGrammar);
+        assertTrue(config.isLazy());
+        assertNull(config.getStartState("unknown"));
+
+        //Concurrent requests get the same state.
+        List<Callable<ParserState>> tasks = new ArrayList<>();
+        for (int i = 0; i < 8; ++i) {
+            tasks.add(new Callable<ParserState>() {
+                @Override
+                public ParserState call() {
+                    return config.getStartState("goal");
+                }
+            });
+        }
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            ParserState state = config.getStartState("goal");
+            assertNotNull(state);
+            for (Future<ParserState> future : pool.invokeAll(tasks)) {
+                assertSame(state, future.get());
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        //The complete configuration is the same as an eager one.
+        assertArrayEquals(serialize(ParserConfigurator.makeConfiguration(bGrammar)), serialize(config));
+    }
+
+    @Test
+    public void testUnitProductions() throws Exception {
+        ParserConfiguration config = makeConfiguration(
+                "@S : (E ';')* ; E : A ; A : B | A '+' B ; B : C ; C : ID | '(' E ')' ;");
+        assertEquals(4, countUnitStates(config));
+
+        ByteArrayInputStream in = new ByteArrayInputStream(serialize(config));
+        assertEquals(4, countUnitStates(ParserConfigurationSerializer.read(new DataInputStream(in))));
+
+
+        //A cycle of unit productions: the state after A has two productions, so the chains end there.
+        config = makeConfiguration("@file : A ; A : B | 'a' ; B : C | 'b' ; C : A | 'c' ;");
+        assertEquals(5, countUnitStates(config));
+        for (ParserState state : config.getStates()) {
+            if (state.getReduceProductions().size() > 1) {
+                assertNull(state.getUnitProduction());
+            }
+        }
+    }
+
+    private static ParserConfiguration makeConfiguration(String grammar) throws Exception {
+        EbnfGrammar eGrammar = SynGrammarParser.parseGrammar(
+                new StringReader(grammar), new StringSourceDescriptor("<grammar>"));
+        return ParserConfigurator.makeConfiguration(EbnfToBnfConverter.convert(eGrammar));
+    }
+
+    private static int countUnitStates(ParserConfiguration config) {
+        int count = 0;
+        for (ParserState state : config.getStates()) {
+            if (state.getUnitProduction() != null) {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    private static byte[] serialize(ParserConfiguration config) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ParserConfigurationSerializer.write(new DataOutputStream(out), config);
+        return out.toByteArray();
+    }
 }
@@ -15,17 +15,42 @@
  */
 package org.antkar.syn;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.PrintStream;
 import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.antkar.syn.internal.CommonUtil;
+import org.antkar.syn.internal.parser.ParserProfile;
 import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 /**
  * Unit tests for {@link SynParser}.
  */
 public final class SynParserSimpleTest extends Assert {
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
 
     @Test
     public void testConstructSuccess() throws Exception {
@@ -195,6 +220,459 @@ public final class SynParserSimpleTest extends Assert {
         checkResolveDanglingElseAmbiguity(grammar);
     }
 
+    @Test
+    public void testParseLongUnitChain() throws Exception {
+        //A chain of unit productions with a cycle, and an epsilon production at each level.
+        StringBuilder bld = new StringBuilder("@S : (A0 ';')* ;");
+        int n = 200;
+        for (int i = 0; i < n; ++i) {
+            bld.append("A" + i + " : A" + (i + 1) + " | A0 '+' A" + (i + 1) + " | ;");
+        }
+        bld.append("A" + n + " : value=ID | A0 ;");
+        SynParser parser = createParserStr(bld.toString());
+
+        SynNode node = parseStr(parser, "a; ; b;", "S");
+        assertEquals("[{value=ID(a)}, {value=ID(b)}]", node.toString());
+    }
+
+    @Test
+    public void testParseUnitProductionChain() throws Exception {
+        //Each operand goes through a chain of unit productions which is reduced at once.
+        SynParser parser = createParserStr("@S : (E ';')* ; E : A ; A : B | l=A op='||' r=B ;"
+                + "B : C | l=B op='&&' r=C ; C : D | l=C op='+' r=D ; D : F | op='-' r=F ;"
+                + "F : v=ID | v=INTEGER | '(' p=E ')' ;");
+        SynNode node = parseStr(parser, "a; a || 1 + b && -c; (a);", "S");
+        assertEquals("[{v=ID(a)}, {r={r={r={v=ID(c)}, op=\"-\"}, op=\"&&\", l={r={v=ID(b)}, op=\"+\", "
+                + "l={v=INTEGER(1)}}}, op=\"||\", l={v=ID(a)}}, {p={v=ID(a)}}]", node.toString());
+    }
+
+    @Test
+    public void testParseResolveOperatorAmbiguity() throws Exception {
+        SynParser parser = createParserStr("@S : (E ';')* ;"
+                + "E : l=E op='+' r=E | l=E op='*' r=E | op='-' r=E | v=INTEGER | '(' p=E ')' ;");
+        SynNode node = parseStr(parser, "1 + 2 * 3 + 4; - 1 + 2 * - 3 * 4; (1 + 2) * 3 + 4 * 5 + 6;", "S");
+
+        ArrayNode array = (ArrayNode) node;
+        assertEquals("{r={r={v=INTEGER(4)}, op=\"+\", l={v=INTEGER(3)}}, op=\"*\", "
+                + "l={r={v=INTEGER(2)}, op=\"+\", l={v=INTEGER(1)}}}", array.get(0).toString());
+        assertEquals("{r={r={r={v=INTEGER(4)}, op=\"*\", l={r={r={v=INTEGER(3)}, op=\"-\"}, op=\"*\", "
+                + "l={v=INTEGER(2)}}}, op=\"+\", l={v=INTEGER(1)}}, op=\"-\"}", array.get(1).toString());
+        assertEquals("{r={r={v=INTEGER(6)}, op=\"+\", l={v=INTEGER(5)}}, op=\"*\", "
+                + "l={r={r={v=INTEGER(4)}, op=\"+\", l={v=INTEGER(3)}}, op=\"*\", "
+                + "l={p={r={v=INTEGER(2)}, op=\"+\", l={v=INTEGER(1)}}}}}", array.get(2).toString());
+    }
+
+    @Test
+    public void testParseStackLimit() throws Exception {
+        SynParser parser = createParserStr("@S : (E ';')* ; E : l=E op='+' r=E | l=E op='*' r=E | v=INTEGER ;");
+        String text = "1 + 2 * 3 + 4 * 5 + 6; 7 * 8;";
+
+        SynResult result = parser.parse("S", text);
+        assertEquals(0, result.getPrunedStackCount());
+        String expected = result.toString();
+
+        //The best stacks are kept, so the ambiguities are resolved the same way.
+        parser.setMaxStackCount(2);
+        result = parser.parse("S", text);
+        assertEquals(6, result.getPrunedStackCount());
+        assertEquals(expected, result.toString());
+
+        parser.setFailOnStackLimit(true);
+        try {
+            parser.parse("S", text);
+            fail();
+        } catch (SynLimitException e) {
+            assertEquals("The number of parser stacks (4) exceeds the limit (2)", e.getOriginalMessage());
+        }
+
+        parser.setMaxStackCount(0);
+        assertEquals(expected, parser.parse("S", text).toString());
+    }
+
+    @Test
+    public void testParseStackLimitOnReductions() throws Exception {
+        //Each identifier is reduced in five ways, but only one stack shifts the next token.
+        SynParser parser = createParserStr("@S : (T ';')* ; T : a=A | b=B | c=C | d=D | e=E ;"
+                + "A : v=ID ; B : v=ID ; C : v=ID ; D : v=ID ; E : v=ID ;");
+        String text = "x; y; z;";
+        assertEquals(0, parser.parse("S", text).getPrunedStackCount());
+
+        parser.setMaxStackCount(2);
+        SynResult result = parser.parse("S", text);
+        assertEquals(9, result.getPrunedStackCount());
+        assertEquals(3, ((ArrayNode) result.getRootNode()).size());
+
+        parser.setFailOnStackLimit(true);
+        try {
+            parser.parse("S", text);
+            fail();
+        } catch (SynLimitException e) {
+            assertEquals("The number of parser stacks (5) exceeds the limit (2)", e.getOriginalMessage());
+        }
+    }
+
+    @Test
+    public void testParseCancellation() throws Exception {
+        SynParser parser = createParserStr("@S : (E ';')* ; E : l=E op='+' r=E | v=INTEGER ;");
+        StringBuilder bld = new StringBuilder();
+        for (int i = 0; i < 1000; ++i) {
+            bld.append("1 + 2 + 3;");
+        }
+        String text = bld.toString();
+
+        SynCancellationToken token = new SynCancellationToken();
+        SynResult result = parser.withCancellationToken(token).parse("S", text);
+        assertEquals(1000, ((ArrayNode) result.getRootNode()).size());
+
+        token.cancel();
+        assertTrue(token.isCancelled());
+        checkParseCancelled(parser, text, token, "Parsing has been cancelled");
+
+        token = new SynCancellationToken(0, TimeUnit.MILLISECONDS);
+        assertTrue(token.isCancelled());
+        checkParseCancelled(parser, text, token, "Parsing deadline has expired");
+    }
+
+    @Test
+    public void testCancellationOfAllEntryPoints() throws Exception {
+        SynParser parser = createParserStr("@S : (St)* ; %split S 'let' ; St : 'let' v=INTEGER ';' ;");
+        parser.setCheckpoints(true);
+        parser.setIncrementalReparsing(true);
+        StringBuilder bld = new StringBuilder();
+        for (int i = 0; i < 2000; ++i) {
+            bld.append("let " + i + ";\n");
+        }
+        String text = bld.toString();
+        SynResult result = parser.parse("S", "let 0;");
+
+        SynCancellationToken token = new SynCancellationToken();
+        token.cancel();
+        SynParser cancelledParser = parser.withCancellationToken(token);
+
+        try {
+            SynParseListener listener = new SynParseListener() {
+                @Override
+                public void token(TerminalNode node) {
+                    //Nothing to do.
+                }
+
+                @Override
+                public void nonterminal(String name, List<String> keys) {
+                    //Nothing to do.
+                }
+            };
+            cancelledParser.parse("S", new StringReader(text), null, listener);
+            fail();
+        } catch (SynCancelledException e) {
+            //Expected.
+        }
+
+        try {
+            SynIterator iterator = cancelledParser.iterate("S", new StringReader(text), null);
+            while (iterator.hasNext()) {
+                iterator.next();
+            }
+            fail();
+        } catch (SynCancelledException e) {
+            //Expected.
+        }
+
+        try {
+            cancelledParser.reparse(result, "let 0;" + text, new TextEdit(6, 0, text.length()));
+            fail();
+        } catch (SynCancelledException e) {
+            //Expected.
+        }
+
+        try {
+            cancelledParser.resume(result.getCheckpoint(), "let 0;" + text);
+            fail();
+        } catch (SynCancelledException e) {
+            //Expected.
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            try {
+                cancelledParser.parseConcurrently("S", text, null, pool, 4);
+                fail();
+            } catch (SynCancelledException e) {
+                //Expected.
+            }
+
+            File file = tempFolder.newFile("cancelled.txt");
+            Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+            List<SynFileResult<SynResult>> results =
+                    cancelledParser.parseAll("S", Collections.singletonList(file.toPath()), pool);
+            assertTrue(results.get(0).getException() instanceof SynCancelledException);
+        } finally {
+            pool.shutdown();
+        }
+
+        //The original parser is not affected by the token.
+        assertEquals(2000, ((ArrayNode) parser.parse("S", text).getRootNode()).size());
+    }
+
+    private static void checkParseCancelled(
+            SynParser parser,
+            String text,
+            SynCancellationToken token,
+            String expectedMessage) throws SynException
+    {
+        try {
+            parser.withCancellationToken(token).parse("S", text);
+            fail();
+        } catch (SynCancelledException e) {
+            assertEquals(expectedMessage, e.getOriginalMessage());
+        }
+    }
+
+    @Test
+    public void testParseLimits() throws Exception {
+        SynParser parser = createParserStr("@S : (E ';')* ; E : '(' e=E ')' | v=ID ;");
+        String text = "a; (b); ((c));";
+        assertEquals("[{v=ID(a)}, {e={v=ID(b)}}, {e={e={v=ID(c)}}}]", parser.parse("S", text).toString());
+
+        parser.setLimits(SynLimits.DEFAULT.withMaxInputLength(10));
+        checkLimitExceeded(parser, text, "The length of the input exceeds the limit (10)");
+        parser.setLimits(SynLimits.DEFAULT.withMaxTokenCount(10));
+        checkLimitExceeded(parser, text, "The number of tokens exceeds the limit (10)");
+        parser.setLimits(SynLimits.DEFAULT.withMaxTreeDepth(4));
+        checkLimitExceeded(parser, text, "The depth of the syntax tree exceeds the limit (4)");
+        parser.setLimits(SynLimits.DEFAULT.withMaxNodeCount(10));
+        checkLimitExceeded(parser, text, "The number of syntax tree nodes exceeds the limit (10)");
+
+        //Exact limits.
+        parser.setLimits(SynLimits.DEFAULT.withMaxInputLength(text.length()).withMaxTokenCount(12)
+                .withMaxTreeDepth(5).withMaxNodeCount(19));
+        assertEquals(3, ((ArrayNode) parser.parse("S", text).getRootNode()).size());
+
+        //The input length is checked while a token or a comment is being scanned.
+        parser.setLimits(SynLimits.DEFAULT.withMaxInputLength(10));
+        try {
+            parser.parse("S", "a; /* " + new String(new char[1000]).replace('\0', 'x') + " */");
+            fail();
+        } catch (SynLimitException e) {
+            assertEquals("The length of the input exceeds the limit (10)", e.getOriginalMessage());
+            assertEquals(10, e.getTextPos().getOffset());
+        }
+
+        parser.setLimits(SynLimits.DEFAULT.withMaxIdLength(3));
+        parser.parse("S", "abc;");
+        try {
+            parser.parse("S", "abcd;");
+            fail();
+        } catch (SynLexicalException e) {
+            assertEquals("Literal is too long", e.getOriginalMessage());
+        }
+    }
+
+    @Test
+    public void testParseErrorRecovery() throws SynException {
+        SynParser parser = createParserStr("@S : (St)* ; St : n=ID '=' e=E ';' | '{' b=(St)* '}' ; "
+                + "E : l=E '+' r=E | v=INTEGER | v=ID | '(' p=E ')' ; %sync ';' '}' ;");
+        try {
+            parser.parse("S", "a = 1 b = 2;");
+            fail();
+        } catch (SynSyntaxException e) {
+            assertEquals("Syntax error on token ID(b)", e.getOriginalMessage());
+        }
+
+        parser.setErrorRecovery(true);
+        SynResult result = parser.parse("S", "a = 1; b = 2;");
+        assertEquals(0, result.getSyntaxErrors().size());
+
+        //Missing token.
+        result = parser.parse("S", "a = 1 b = 2;");
+        assertEquals("[{e={v=INTEGER(1)}, n=ID(a)}, {e={v=INTEGER(2)}, n=ID(b)}]", result.toString());
+        checkSyntaxErrors(result, "1:7");
+
+        //Extra tokens and panic mode.
+        result = parser.parse("S", "a = ) ) ); b = 2; c = 3 + ; d = 4;");
+        assertEquals("[{e={v=INTEGER(2)}, n=ID(b)}, {e={v=INTEGER(3)}, n=ID(c)}, {e={v=INTEGER(4)}, n=ID(d)}]",
+                result.toString());
+        checkSyntaxErrors(result, "1:5", "1:27");
+
+        result = parser.parse("S", "{ a = 1; b = + ; } c = 5;");
+        assertEquals("[{b=[{e={v=INTEGER(1)}, n=ID(a)}]}, {e={v=INTEGER(5)}, n=ID(c)}]", result.toString());
+        checkSyntaxErrors(result, "1:14");
+
+        //Unexpected end of file.
+        result = parser.parse("S", "a = 1; { b = 2;");
+        assertEquals("[{e={v=INTEGER(1)}, n=ID(a)}, {b=[{e={v=INTEGER(2)}, n=ID(b)}]}]", result.toString());
+        checkSyntaxErrors(result, "1:16");
+
+        //Garbage up to the end of file.
+        for (String text : Arrays.asList("a = 1; )", "a = 1; ) )", "a = 1; ) ) )", "a = 1 = ) )")) {
+            result = parser.parse("S", text);
+            assertEquals(text, "[{e={v=INTEGER(1)}, n=ID(a)}]", result.toString());
+            assertEquals(text, 1, result.getSyntaxErrors().size());
+        }
+    }
+
+    @Test
+    public void testSyncDirectiveErrors() {
+        checkGrammarError("@S : ID ';' ; %sync ;", "Directive %sync requires one or more literals");
+        checkGrammarError("@S : ID ';' ; %sync ',' ;", "Not a literal used in the grammar: ,");
+    }
+
+    @Test
+    public void testParsePackAmbiguities() throws SynException {
+        SynParser parser = createParserStr("@S : e=E ; E : l=E '+' r=E | v=ID ;");
+        String defaultTree = parser.parse("S", "a + b + c").toString();
+        assertEquals("{e={r={v=ID(c)}, l={r={v=ID(b)}, l={v=ID(a)}}}}", defaultTree);
+
+        parser.setPackAmbiguities(true);
+        SynResult result = parser.parse("S", "a + b + c");
+        assertEquals("{e=<{r={v=ID(c)}, l={r={v=ID(b)}, l={v=ID(a)}}} | {r={r={v=ID(c)}, l={v=ID(b)}}, "
+                + "l={v=ID(a)}}>}", result.toString());
+
+        //The first alternative is the interpretation chosen if ambiguities are not packed.
+        PackedNode packed = (PackedNode) ((ObjectNode) result.getRootNode()).get("e");
+        assertEquals(2, packed.getAlternatives().size());
+        assertEquals(defaultTree, "{e=" + packed.getAlternatives().get(0) + "}");
+
+        //Subtrees are shared by the alternatives.
+        ObjectNode left = (ObjectNode) packed.getAlternatives().get(0);
+        ObjectNode right = (ObjectNode) packed.getAlternatives().get(1);
+        assertSame(((ObjectNode) left.get("l")).get("l"), right.get("l"));
+
+        //The number of nodes grows polynomially, while the number of trees is a Catalan number.
+        assertEquals(5, countTrees(parser.parse("S", "a + b + c + d").getRootNode()));
+        assertEquals(42, countTrees(parser.parse("S", "a + b + c + d + e + f").getRootNode()));
+
+        //Unambiguous input produces no packed nodes.
+        assertEquals("{e={r={v=ID(b)}, l={v=ID(a)}}}", parser.parse("S", "a + b").toString());
+
+        parser = createParserStr("@S : (St)* ; St : 'if' c=ID t=St | 'if' c=ID t=St 'else' f=St | v=ID ;");
+        parser.setPackAmbiguities(true);
+        result = parser.parse("S", "if a if b x else y");
+        assertEquals("[<{t={f={v=ID(y)}, t={v=ID(x)}, c=ID(b)}, c=ID(a)} | "
+                + "{f={v=ID(y)}, t={t={v=ID(x)}, c=ID(b)}, c=ID(a)}>]", result.toString());
+    }
+
+    @Test
+    public void testParsePackAmbiguitiesDifferential() throws SynException {
+        //The tree chosen when ambiguities are not packed is one of the trees of the packed result.
+        checkPackedTrees("@S : r=N0 ; N0 : p0=N2 p1=N2 p2=N2 k=<0> ; N1 : p0=N3 k=<0> | p0=N3 k=<1>"
+                + " | p0='b' p1=N1 k=<2> ; N2 : p0=N0 p1='b' p2=N1 k=<0> | p0='a' p1=N2 p2=N1 k=<1> | k=<2> ;"
+                + " N3 : p0='a' p1=N0 p2='b' k=<0> | k=<1> ;", "a b a b", "a b", "b a b b");
+        checkPackedTrees("@S : r=N0 ; N0 : k=<0> | p0='b' k=<1> | p0=N1 p1=N1 k=<2> ;"
+                + " N1 : p0='a' p1=N0 p2=N1 k=<0> | p0='b' p1='a' k=<1> | k=<2> ;", "a a", "a a b", "a b a");
+        checkPackedTrees("@S : r=N0 ; N0 : p0=N2 p1=N3 k=<0> | p0=N1 p1='a' k=<1> ; N1 : p0=N3 k=<0> | k=<1> ;"
+                + " N2 : p0='a' p1=N3 k=<0> | k=<1> ;"
+                + " N3 : k=<0> | p0='a' p1=N1 k=<1> | p0='b' p1=N2 k=<2> ;", "a b a a", "a a");
+
+        //A nonterminal derives itself without consuming tokens, so an element must not become an alternative
+        //of itself.
+        SynParser parser = createParserStr("@S : r=N0 ; N0 : p0='a' p1=N0 k=<0> | p0=N2 k=<1> | p0=N1 k=<2> ;"
+                + " N1 : k=<0> | p0=N0 p1=N2 k=<1> ; N2 : k=<0> | p0='a' p1='b' k=<1> ;");
+        parser.setPackAmbiguities(true);
+        assertFalse(expandTrees(parser.parse("S", "a b a b").getRootNode()).isEmpty());
+    }
+
+    private static void checkPackedTrees(String grammar, String... texts) throws SynException {
+        SynParser parser = createParserStr(grammar);
+        SynParser packedParser = createParserStr(grammar);
+        packedParser.setPackAmbiguities(true);
+
+        for (String text : texts) {
+            List<String> trees = expandTrees(parser.parse("S", text).getRootNode());
+            assertEquals(1, trees.size());
+            List<String> packedTrees = expandTrees(packedParser.parse("S", text).getRootNode());
+            assertTrue(text, packedTrees.contains(trees.get(0)));
+        }
+    }
+
+    private static List<String> expandTrees(SynNode node) {
+        if (node instanceof PackedNode) {
+            List<String> result = new ArrayList<>();
+            for (SynNode alternative : ((PackedNode) node).getAlternatives()) {
+                result.addAll(expandTrees(alternative));
+            }
+            return result;
+        }
+
+        List<SynNode> subNodes = new ArrayList<>();
+        List<String> prefixes = new ArrayList<>();
+        String end;
+        if (node instanceof ObjectNode) {
+            for (ObjectNode.ObjectEntry entry : ((ObjectNode) node).entryList()) {
+                subNodes.add(entry.getValue());
+                prefixes.add(entry.getKey() + "=");
+            }
+            prefixes.add("{");
+            end = "}";
+        } else if (node instanceof ArrayNode) {
+            ArrayNode arrayNode = (ArrayNode) node;
+            for (int i = 0; i < arrayNode.size(); ++i) {
+                subNodes.add(arrayNode.get(i));
+                prefixes.add("");
+            }
+            prefixes.add("[");
+            end = "]";
+        } else {
+            return Collections.singletonList(String.valueOf(node));
+        }
+
+        List<String> result = Collections.singletonList(prefixes.get(subNodes.size()));
+        for (int i = 0; i < subNodes.size(); ++i) {
+            List<String> next = new ArrayList<>();
+            for (String prefix : result) {
+                for (String subTree : expandTrees(subNodes.get(i))) {
+                    next.add(prefix + prefixes.get(i) + subTree + ",");
+                }
+            }
+            result = next;
+        }
+
+        List<String> trees = new ArrayList<>();
+        for (String tree : result) {
+            trees.add(tree + end);
+        }
+        return trees;
+    }
+
+    private static long countTrees(SynNode node) {
+        long count = 1;
+        if (node instanceof PackedNode) {
+            count = 0;
+            for (SynNode alternative : ((PackedNode) node).getAlternatives()) {
+                count += countTrees(alternative);
+            }
+        } else if (node instanceof ObjectNode) {
+            for (SynNode value : ((ObjectNode) node).values()) {
+                count *= countTrees(value);
+            }
+        } else if (node instanceof ArrayNode) {
+            ArrayNode arrayNode = (ArrayNode) node;
+            for (int i = 0; i < arrayNode.size(); ++i) {
+                count *= countTrees(arrayNode.get(i));
+            }
+        }
+        return count;
+    }
+
+    private static void checkSyntaxErrors(SynResult result, String... expectedPositions) {
+        List<SynSyntaxException> errors = result.getSyntaxErrors();
+        assertEquals(expectedPositions.length, errors.size());
+        for (int i = 0; i < expectedPositions.length; ++i) {
+            TextPos pos = errors.get(i).getTextPos();
+            assertEquals(expectedPositions[i], pos.getLine() + ":" + pos.getColumn());
+        }
+    }
+
+    private static void checkLimitExceeded(SynParser parser, String text, String expectedMessage)
+            throws SynException
+    {
+        try {
+            parser.parse("S", text);
+            fail();
+        } catch (SynLimitException e) {
+            assertEquals(expectedMessage, e.getOriginalMessage());
+        }
+    }
+
     private void checkResolveDanglingElseAmbiguity(String grammar) throws SynException {
         SynParser synParser = createParserStr(grammar);
         SynNode tree = parseStr(synParser, "if a if b func1 else func2", "file");
@@ -248,6 +726,27 @@ public final class SynParserSimpleTest extends Assert {
         parseStr(synParser, "l n", "file");
     }
 
+    @Test
+    public void testParseReduceCycleInEquivalentStates() throws Exception {
+        //The same items are reached in different orders, which gives different LR states. The input is rejected
+        //if such states are merged, since the cycle check treats a repeated state as a cycle.
+        SynParser synParser = createParserStr("@S : N0 ; N0 : N1 'a' | N0 N0 N1 | ; N1 : N0 'b' | ;");
+        synParser.setFailOnAmbiguity(false);
+        assertNotNull(synParser.parse("S", "b"));
+    }
+
+    @Test
+    public void testParseAmbiguityChoiceByReduceOrder() throws Exception {
+        //Both empty productions are reduced in the state after 'b'; the one whose items come first wins.
+        SynParser synParser = createParserStr("@S : r=N0 ; N0 : p0=N1 k=<0> ;"
+                + " N1 : p0='b' p1=N2 k=<0> | k=<1> | p0='b' p1=N1 k=<2> ;"
+                + " N2 : p0='a' k=<0> | k=<1> | p0=N1 p1=N1 k=<2> ;");
+        synParser.setFailOnAmbiguity(false);
+        SynResult result = synParser.parse("S", "b");
+        assertEquals("{r={p0={p1={k=INTEGER(1)}, k=INTEGER(2), p0=\"b\"}, k=INTEGER(0)}}",
+                String.valueOf(result.getRootNode()));
+    }
+
     public enum Colors {
         RED,
         GREEN,
@@ -581,6 +1080,805 @@ public final class SynParserSimpleTest extends Assert {
         parseStr(parser, "a | b | c", "A");
     }
 
+    @Test
+    public void testParseLongRepetition() throws SynException {
+        SynParser parser = createParserStr("@A : result=(B)* ; B : name=ID ';' ;");
+
+        final int n = 200000;
+        StringBuilder bld = new StringBuilder();
+        for (int i = 0; i < n; ++i) {
+            bld.append("a").append(i).append(";\n");
+        }
+
+        ArrayNode arrayNode = (ArrayNode) parseStr(parser, bld.toString(), "A");
+        assertEquals(n, arrayNode.size());
+        assertEquals("a0", ((ObjectNode) arrayNode.get(0)).getString("name"));
+        assertEquals("a" + (n - 1), ((ObjectNode) arrayNode.get(n - 1)).getString("name"));
+    }
+
+    @Test
+    public void testParseListener() throws SynException {
+        SynParser parser = createParserStr("@A : (B)* ; B : 'import' name=ID ';' ;");
+
+        final List<String> events = new ArrayList<>();
+        SynParseListener listener = new SynParseListener() {
+            @Override
+            public void token(TerminalNode token) {
+                TokenDescriptor descriptor = token.getTokenDescriptor();
+                events.add(descriptor.getType() == TokenType.ID
+                        ? ((ValueNode) token).getString() : descriptor.getLiteral());
+            }
+
+            @Override
+            public void nonterminal(String name, List<String> keys) {
+                if (name.indexOf('@') < 0) {
+                    events.add(name + keys);
+                }
+            }
+        };
+
+        SynResult result = parser.parse("A", new StringReader("import a; import b;"), null, listener);
+        assertNull(result.getRootNode());
+        assertEquals(Arrays.asList(
+                "import", "a", ";", "B[null, name, null]",
+                "import", "b", ";", "B[null, name, null]",
+                "A[null]"), events);
+    }
+
+    @Test
+    public void testIterate() throws SynException {
+        SynParser parser = createParserStr("@A : (B : ',')* ; B : name=ID ;");
+
+        SynIterator iterator = parser.iterate("A", new StringReader("a, b, c"), null);
+        List<String> names = new ArrayList<>();
+        while (iterator.hasNext()) {
+            names.add(((ObjectNode) iterator.next()).getString("name"));
+        }
+
+        assertEquals(Arrays.asList("a", "b", "c"), names);
+        assertEquals(0, ((ArrayNode) iterator.getResult().getRootNode()).size());
+    }
+
+    @Test
+    public void testIterateUnboundedInput() throws SynException {
+        SynParser parser = createParserStr("@A : result=(B)* ; B : name=ID ';' ;");
+
+        //An endless input: the iterator must not try to read it to the end.
+        Reader reader = new Reader() {
+            private final String item = "abc;";
+            private long pos;
+
+            @Override
+            public int read(char[] cbuf, int off, int len) {
+                for (int i = 0; i < len; ++i) {
+                    cbuf[off + i] = item.charAt((int) (pos++ % item.length()));
+                }
+                return len;
+            }
+
+            @Override
+            public void close() {
+                //Nothing to close.
+            }
+        };
+
+        SynIterator iterator = parser.iterate("A", reader, null);
+        for (int i = 0; i < 1000; ++i) {
+            assertTrue(iterator.hasNext());
+            assertEquals("abc", ((ObjectNode) iterator.next()).getString("name"));
+        }
+    }
+
+    @Test
+    public void testIterateNotRepetition() throws SynException {
+        SynParser parser = createParserStr("@A : name=ID ;");
+        try {
+            parser.iterate("A", new StringReader("a"), null);
+            fail();
+        } catch (SynException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("not a repetition"));
+        }
+    }
+
+    @Test
+    public void testReparse() throws SynException {
+        SynParser parser = createParserStr("@File : (Stmt)* ;"
+                + "Stmt : 'var' name=ID '=' value=INTEGER ';' | 'print' name=ID ';' ;");
+        parser.setIncrementalReparsing(true);
+
+        StringBuilder bld = new StringBuilder();
+        for (int i = 0; i < 20; ++i) {
+            if (i == 12) {
+                bld.append("// */\n");
+            }
+            bld.append("var a" + i + " = " + i + ";\n");
+            bld.append("  print a" + i + ";  ");
+        }
+        String text = bld.toString();
+        SynResult result = parser.parse("File", text);
+
+        //Change a name.
+        int ofs = text.indexOf("a10 =");
+        SynResult result1 = checkReparse(parser, result, text, ofs, 3, "bbb");
+        assertSame(((ArrayNode) result.getRootNode()).get(0), ((ArrayNode) result1.getRootNode()).get(0));
+
+        //Insert statements spanning several lines.
+        ofs = text.indexOf("var a5");
+        checkReparse(parser, result, text, ofs, 0, "var x = 1;\n\nprint x;\n");
+
+        //Delete statements.
+        ofs = text.indexOf("var a7");
+        checkReparse(parser, result, text, ofs, text.indexOf("var a9") - ofs, "");
+
+        //Edit the first and the last statement.
+        checkReparse(parser, result, text, 4, 2, "first");
+        checkReparse(parser, result, text, text.lastIndexOf("a19"), 3, "z");
+
+        //Open a comment which hides several statements.
+        checkReparse(parser, result, text, ofs, 0, "/*");
+
+        //Reparse a reparsed result.
+        String text1 = text.substring(0, text.indexOf("a10 =")) + "bbb" + text.substring(text.indexOf("a10 =") + 3);
+        ofs = text1.indexOf("print a15");
+        checkReparse(parser, result1, text1, ofs + 6, 3, "ccc\n");
+    }
+
+    @Test
+    public void testReparseWithoutLayout() throws SynException {
+        SynParser parser = createParserStr("@A : (B)* ; B : name=ID ';' ;");
+
+        //The layout is not remembered by default, so the whole text is parsed.
+        String text = "a; b; c;";
+        SynResult result = parser.parse("A", text);
+        assertFalse(result.getItemLayout().isReusable());
+        SynResult result1 = checkReparse(parser, result, text, 6, 1, "d");
+        assertNotSame(((ArrayNode) result.getRootNode()).get(0), ((ArrayNode) result1.getRootNode()).get(0));
+
+        //The result of reparsing can be reparsed incrementally.
+        assertTrue(result1.getItemLayout().isReusable());
+        String text1 = "a; b; d;";
+        SynResult result2 = checkReparse(parser, result1, text1, 6, 1, "e");
+        assertSame(((ArrayNode) result1.getRootNode()).get(0), ((ArrayNode) result2.getRootNode()).get(0));
+    }
+
+    @Test
+    public void testReparseAfterEscapedString() throws SynException {
+        SynParser parser = createParserStr("@File : (Stmt)* ; Stmt : 'print' value=STRING ';' | 'let' name=ID ';' ;");
+        parser.setIncrementalReparsing(true);
+
+        //The start position of the reparsed region is calculated from the text of the last reused token.
+        String text = "print 'a\\tb\\n';\nlet x; print \"c\\u0041\\n\\\"\";    \n\n  let y;\nlet z;\n";
+        SynResult result = parser.parse("File", text);
+        checkReparse(parser, result, text, text.indexOf("y;"), 1, "yy");
+        checkReparse(parser, result, text, text.indexOf("let z"), 0, "let w;\n\n");
+    }
+
+    @Test
+    public void testReparseWithSeparator() throws SynException {
+        SynParser parser = createParserStr("@A : (B : ',')* ; B : name=ID ;");
+
+        String text = "a, b, c, d";
+        SynResult result = parser.parse("A", text);
+        checkReparse(parser, result, text, 3, 1, "x, y");
+    }
+
+    @Test
+    public void testReparseSyntaxError() throws SynException {
+        SynParser parser = createParserStr("@A : (B)* ; B : name=ID ';' ;");
+
+        String text = "a; b; c;";
+        SynResult result = parser.parse("A", text);
+        try {
+            parser.reparse(result, "a; b c;", new TextEdit(4, 1, 0));
+            fail();
+        } catch (SynSyntaxException e) {
+            assertEquals(5, e.getTextPos().getOffset());
+        }
+    }
+
+    @Test
+    public void testResume() throws SynException {
+        SynParser parser = createParserStr("@File : (Stmt)* ; Stmt : 'print' names=(ID)+ ';' ;");
+
+        String text = "print a b;\nprint c";
+        //Checkpoints are off by default.
+        assertNull(parser.parse("File", text + ";").getCheckpoint());
+
+        parser.setCheckpoints(true);
+        SynResult result = parser.parse("File", text + ";");
+        String expected = describeNode(result.getRootNode());
+
+        SynCheckpoint checkpoint = result.getCheckpoint();
+        //The last tokens can be changed by appended characters, so the checkpoint must precede them.
+        assertTrue(checkpoint.getOffset() > 0);
+        assertTrue(checkpoint.getOffset() <= text.length() - 1);
+
+        //Resume twice from the same checkpoint with different continuations.
+        checkResume(parser, checkpoint, text + " d;");
+        checkResume(parser, checkpoint, text + ";\nprint e f;");
+        assertEquals(expected, describeNode(result.getRootNode()));
+        checkResume(parser, checkpoint, text + " d;");
+
+        //Extend the text step by step.
+        SynResult stepResult = parser.parse("File", "");
+        StringBuilder bld = new StringBuilder();
+        for (int i = 0; i < 50; ++i) {
+            bld.append("print x" + i + " y" + i + ";\n");
+            stepResult = checkResume(parser, stepResult.getCheckpoint(), bld.toString());
+        }
+    }
+
+    @Test
+    public void testResumeLimits() throws SynException {
+        SynParser parser = createParserStr("@File : (Stmt)* ; Stmt : 'print' names=(ID)+ ';' ;");
+        parser.setCheckpoints(true);
+        String text = "print a b;\nprint c d;\nprint e";
+        SynCheckpoint checkpoint = parser.parse("File", text + ";").getCheckpoint();
+        assertTrue(checkpoint.getOffset() > 0);
+
+        //The tokens and the characters preceding the checkpoint are counted.
+        parser.setLimits(SynLimits.DEFAULT.withMaxTokenCount(11));
+        parser.resume(checkpoint, text + ";");
+        try {
+            parser.resume(checkpoint, text + " f;");
+            fail();
+        } catch (SynLimitException e) {
+            assertEquals("The number of tokens exceeds the limit (11)", e.getOriginalMessage());
+        }
+
+        parser.setLimits(SynLimits.DEFAULT.withMaxInputLength(text.length() + 1));
+        parser.resume(checkpoint, text + ";");
+        try {
+            parser.resume(checkpoint, text + " f;");
+            fail();
+        } catch (SynLimitException e) {
+            assertEquals("The length of the input exceeds the limit (" + (text.length() + 1) + ")",
+                    e.getOriginalMessage());
+        }
+    }
+
+    @Test
+    public void testResumeConcurrently() throws Exception {
+        final SynParser parser = createParserStr("@File : (Stmt)* ; Stmt : a=A ';' | b=B ';' ;"
+                + "A : L1 'x' ; L1 : ID | L1 ID ; B : L2 'y' ; L2 : ID | L2 ID ;");
+        parser.setCheckpoints(true);
+
+        //The checkpoint is taken inside a long list, which can belong to both A and B, so its stacks have not
+        //been committed yet. The threads resume from a new checkpoint at the same time.
+        StringBuilder bld = new StringBuilder("a x;\n");
+        for (int i = 0; i < 200; ++i) {
+            bld.append(" v").append(i);
+        }
+        final String text = bld.toString();
+
+        final int threadCount = 4;
+        final CyclicBarrier barrier = new CyclicBarrier(threadCount);
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            for (int k = 0; k < 20; ++k) {
+                final SynCheckpoint checkpoint = parser.parse("File", text + " x;").getCheckpoint();
+                assertTrue(checkpoint.getOffset() > 10);
+
+                List<Future<Void>> futures = new ArrayList<>();
+                for (int i = 0; i < threadCount; ++i) {
+                    final String extendedText = text + " w" + i + (i % 2 == 0 ? " x;" : " y;");
+                    futures.add(executor.submit(new Callable<Void>() {
+                        @Override
+                        public Void call() throws Exception {
+                            barrier.await();
+                            checkResume(parser, checkpoint, extendedText);
+                            return null;
+                        }
+                    }));
+                }
+                for (Future<Void> future : futures) {
+                    future.get(60, TimeUnit.SECONDS);
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testParseAllConcurrently() throws Exception {
+        SynParser parser = createParserStr("@File : (Stmt)* ; Stmt : name=ID '=' value=E ';' ;"
+                + "E : E '+' T | T ; T : T '*' F | F ; F : INTEGER | ID | '(' E ')' ;");
+
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < 64; ++i) {
+            StringBuilder bld = new StringBuilder();
+            for (int j = 0; j < 50 + i; ++j) {
+                bld.append("v" + j + " = (" + i + " + v" + j + ") * " + j + " + 1;\n");
+            }
+            if (i % 10 == 3) {
+                bld.append("bad = 1 + ;\n");
+            }
+            File file = tempFolder.newFile("file" + i + ".txt");
+            Files.write(file.toPath(), bld.toString().getBytes(StandardCharsets.UTF_8));
+            files.add(file.toPath());
+        }
+
+        List<String> expected = new ArrayList<>();
+        for (Path file : files) {
+            try {
+                expected.add(describeNode(parser.parse("File", file.toFile()).getRootNode()));
+            } catch (SynException e) {
+                expected.add(e.getMessage());
+            }
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(8);
+        try {
+            for (int round = 0; round < 5; ++round) {
+                List<SynFileResult<SynResult>> results = parser.parseAll("File", files, pool);
+                assertEquals(files.size(), results.size());
+                for (int i = 0; i < files.size(); ++i) {
+                    SynFileResult<SynResult> result = results.get(i);
+                    assertEquals(files.get(i), result.getFile());
+                    assertEquals(i % 10 != 3, result.isSuccessful());
+                    String actual = result.isSuccessful()
+                            ? describeNode(result.getResult().getRootNode())
+                            : result.getException().getMessage();
+                    assertEquals(expected.get(i), actual);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        try {
+            parser.parseAll("Unknown", files, pool);
+            fail();
+        } catch (SynException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("Unknown start nonterminal"));
+        }
+    }
+
+    @Test
+    public void testCreateParserInCommonPool() throws Exception {
+        final String grammar;
+        try (Reader reader = openResource("SynParserJavaTest_grammar.txt")) {
+            grammar = CommonUtil.readText(reader);
+        }
+
+        //The grammar is compiled in the common pool, so the tasks must not block the workers.
+        List<ForkJoinTask<SynParser>> tasks = new ArrayList<>();
+        for (int i = 0, n = Math.max(2, ForkJoinPool.getCommonPoolParallelism() * 2); i < n; ++i) {
+            tasks.add(ForkJoinPool.commonPool().submit(new Callable<SynParser>() {
+                @Override
+                public SynParser call() throws SynException {
+                    return new SynParser(grammar);
+                }
+            }));
+        }
+        for (ForkJoinTask<SynParser> task : tasks) {
+            SynParser parser = task.get(60, TimeUnit.SECONDS);
+            assertNotNull(parser.parse("goal", "class A { }"));
+        }
+    }
+
+    @Test
+    public void testParseConcurrently() throws Exception {
+        SynParser parser = createParserStr("@File : (Decl)* ; %split File 'func' 'var' ;"
+                + "Decl : 'func' name=ID '(' ')' '{' (Stmt)* '}' | 'var' name=ID ';' ;"
+                + "Stmt : 'print' value=INTEGER ';' | 'let' name=ID ';' ;");
+        parser.setIncrementalReparsing(true);
+
+        StringBuilder bld = new StringBuilder();
+        for (int i = 0; i < 2000; ++i) {
+            if (i % 3 == 0) {
+                bld.append("var v" + i + ";\n");
+            } else {
+                bld.append("func f" + i + "() {\n    print " + i + ";\n    let l" + i + ";\n}\n");
+            }
+        }
+        String text = bld.toString();
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            //Valid split points.
+            SynResult result = checkParseConcurrently(parser, text, pool);
+            assertNull(result.getCheckpoint());
+            checkReparse(parser, result, text, text.indexOf("f1000"), 5, "g");
+
+            //Split literals in comments.
+            String comment = "/* var x; func f() { } var y; func g() { } var z; func h() { } */";
+            String commented = text.replace("    print", "    " + comment + " print")
+                    .replace("var v1500;", "// var v1500;");
+            checkParseConcurrently(parser, commented, pool);
+
+            //A syntax error.
+            String invalid = text.replace("print 1201;", "print ;");
+            try {
+                parser.parseConcurrently("File", invalid, null, pool, 4);
+                fail();
+            } catch (SynSyntaxException e) {
+                assertEquals(invalid.indexOf("print ;") + 6, e.getTextPos().getOffset());
+            }
+
+            //Too short to be split.
+            checkParseConcurrently(parser, "var a; func f() { print 1; }", pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testParsePrecedence() throws Exception {
+        String grammar = "%left '+' '-' ; %left '*' ; %right '^' ; %nonassoc '<' ;"
+                + "@S : (E ';')* ; E : l=E op='+' r=E | l=E op='-' r=E | l=E op='*' r=E | l=E op='^' r=E"
+                + " | l=E op='<' r=E | v=INTEGER | '(' p=E ')' ;";
+        SynParser parser = createParserStr(grammar);
+
+        //The conflicts are resolved by the tables, so there are no ambiguities.
+        parser.setFailOnAmbiguity(true);
+        String text = "1 + 2 * 3; 1 * 2 + 3; 1 - 2 - 3; 1 ^ 2 ^ 3; (1 + 2) * 3 < 4;";
+        SynNode node = parseStr(parser, text, "S");
+        assertEquals("[{r={r={v=INTEGER(3)}, op=\"*\", l={v=INTEGER(2)}}, op=\"+\", l={v=INTEGER(1)}}, "
+                + "{r={v=INTEGER(3)}, op=\"+\", l={r={v=INTEGER(2)}, op=\"*\", l={v=INTEGER(1)}}}, "
+                + "{r={v=INTEGER(3)}, op=\"-\", l={r={v=INTEGER(2)}, op=\"-\", l={v=INTEGER(1)}}}, "
+                + "{r={r={v=INTEGER(3)}, op=\"^\", l={v=INTEGER(2)}}, op=\"^\", l={v=INTEGER(1)}}, "
+                + "{r={r={v=INTEGER(4)}, op=\"<\", l={v=INTEGER(3)}}, op=\"*\", "
+                + "l={p={r={v=INTEGER(2)}, op=\"+\", l={v=INTEGER(1)}}}}]", node.toString());
+
+        //A non-associative operator cannot be chained.
+        try {
+            parser.parse("S", "1 < 2 < 3;");
+            fail();
+        } catch (SynSyntaxException e) {
+            assertFalse(e.getExpectedTokens().contains(TokenDescriptor.forLiteral("<")));
+        }
+
+        //The resolved tables are precompiled.
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        parser.writeTables(out);
+        SynParser loadedParser = SynParser.loadTables(grammar, new ByteArrayInputStream(out.toByteArray()));
+        loadedParser.setFailOnAmbiguity(true);
+        assertEquals(node.toString(), parseStr(loadedParser, text, "S").toString());
+
+        //A SHIFT is removed only if the token can follow the reduction in the state: after "a ID '-'", the token
+        //'+' can follow E only in another context.
+        String contextGrammar = "@S : 'a' e=E ';' | 'a' x=ID '-' '+' y=ID ';' | 'c' e=E '+' z=ID ';' ;"
+                + "E : v=ID '-' ;";
+        String contextText = "a x - + y ;";
+        String expected = parseStr(createParserStr(contextGrammar), contextText, "S").toString();
+        assertEquals("{y=ID(y), x=ID(x)}", expected);
+        SynParser contextParser = createParserStr(contextGrammar + "%left '+' '-' ;");
+        assertEquals(expected, parseStr(contextParser, contextText, "S").toString());
+        assertEquals("{z=ID(z), e={v=ID(x)}}", parseStr(contextParser, "c x - + z ;", "S").toString());
+    }
+
+    @Test
+    public void testGrammarAnalyzer() throws Exception {
+        String grammar = "@S : (E ';')* ; E : l=E op='+' r=E | l=E op='*' r=E | v=INTEGER | A ;"
+                + "A : B ; B : C ; C : '#' ID ; @T : X | Y ; X : ID ; Y : ID ;";
+        SynGrammarReport report = SynGrammarAnalyzer.analyze(grammar);
+        assertEquals(23, report.getStateCount());
+        assertTrue(report.getTableMemorySize() > 0);
+        assertFalse(report.isProfiled());
+
+        //The operators are ambiguous, the nonterminals X and Y are reduced by the same token.
+        List<String> conflicts = new ArrayList<>();
+        for (SynGrammarReport.Conflict conflict : report.getConflicts()) {
+            conflicts.add(conflict.getKind() + " " + conflict.getProductions() + " " + conflict.getTokens());
+        }
+
+        //The conflicts of the repetition are resolved by the next token, so no token causes them. X and Y
+        //are reduced at the end of file.
+        assertEquals("[SHIFT_REDUCE [S@2 :] [], SHIFT_REDUCE [S@2 : S@0] [], "
+                + "SHIFT_REDUCE [E : E \"+\" E] [\"+\", \"*\"], SHIFT_REDUCE [E : E \"*\" E] [\"+\", \"*\"], "
+                + "REDUCE_REDUCE [X : ID, Y : ID] [END_OF_FILE]]", conflicts.toString());
+
+        //C is passed through B, A and E.
+        assertEquals(3, report.getMaxUnitChainDepth());
+        assertEquals(Integer.valueOf(3), report.getUnitChainDepths().get("C"));
+
+        //Precedences remove the conflicting tokens of the operators, but not of X and Y.
+        report = SynGrammarAnalyzer.analyze("%left '+' ; %left '*' ;" + grammar);
+        for (SynGrammarReport.Conflict conflict : report.getConflicts()) {
+            List<String> expectedTokens = conflict.getKind() == SynGrammarReport.ConflictKind.REDUCE_REDUCE
+                    ? Collections.singletonList("END_OF_FILE")
+                    : Collections.<String>emptyList();
+            assertEquals(conflict.toString(), expectedTokens, conflict.getTokens());
+        }
+
+        //The profile shows which states fork.
+        report = SynGrammarAnalyzer.analyze(grammar, "S", "1 + 2 * 3; 1 + 2 + 3 + 4; # x;");
+        assertTrue(report.isProfiled());
+        assertEquals(17, report.getProfiledTokenCount());
+        assertEquals(3, report.getMaxStackCount());
+        int hotState = report.getHotStates().get(0);
+        assertTrue(report.getForkingStates().contains(hotState));
+        assertTrue(report.getForkCount(hotState) >= 5);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        report.print(new PrintStream(out, true, "UTF-8"));
+        String text = new String(out.toByteArray(), StandardCharsets.UTF_8);
+        assertTrue(text, text.contains("State " + hotState + ": " + report.getForkCount(hotState) + " forks"));
+    }
+
+    @Test
+    public void testProfileUnitProductionChain() throws Exception {
+        //The states of a chain of unit productions are profiled as if they were reduced by separate stacks,
+        //which is what happens when ambiguities are packed.
+        String grammar = "@S : (E ';')* ; E : A ; A : B | l=A op='+' r=B ; B : C ; C : D ; D : v=ID ;";
+        int stateCount = SynGrammarAnalyzer.analyze(grammar).getStateCount();
+        SynParser parser = createParserStr(grammar);
+        ParserProfile profile = new ParserProfile(stateCount);
+        parser.profile("S", "a; b + c;", profile);
+
+        parser.setPackAmbiguities(true);
+        ParserProfile packedProfile = new ParserProfile(stateCount);
+        parser.profile("S", "a; b + c;", packedProfile);
+
+        for (int i = 0; i < stateCount; ++i) {
+            assertEquals(packedProfile.getReduceCount(i), profile.getReduceCount(i));
+        }
+    }
+
+    @Test
+    public void testPrecedenceDirectiveErrors() {
+        checkGrammarError("@S : ID '+' ID ; %left ;", "Directive %left requires one or more literals");
+        checkGrammarError("@S : ID '+' ID ; %right '-' ;", "Not a literal used in the grammar: -");
+        checkGrammarError("@S : ID '+' ID ; %left '+' ; %nonassoc '+' ;", "Precedence is already declared for +");
+    }
+
+    @Test
+    public void testSplitDirectiveErrors() {
+        checkGrammarError("@A : (B)* ; B : 'b' ; %unknown A ;", "Unknown directive: %unknown");
+        checkGrammarError("@A : (B)* ; B : 'b' ; %split A ;", "requires a nonterminal name");
+        checkGrammarError("@A : (B)* ; B : 'b' ; %split B 'b' ;", "Not a start nonterminal: B");
+        checkGrammarError("@A : (B : ',')* ; B : 'b' ; %split A 'b' ;", "must be defined as a single repetition");
+        checkGrammarError("@A : (B)* ; B : 'b' ; %split A 'c' ;", "Not a literal used in the grammar: c");
+    }
+
+    @Test
+    public void testPrecompiledTables() throws Exception {
+        String grammar = "@File : (Decl)* ; %split File 'var' ; %sync ';' ;"
+                + "Decl : 'var' name=ID (':' type=ID)? ('=' value=E)? flag=<true> ';' | 'list' items=(E : ',')+ ';' ;"
+                + "E : E '+' T | T ; T : INTEGER | FLOAT | STRING | '(' result=E ')' | ID <0x7fffffffff> ;";
+        SynParser parser = createParserStr(grammar);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        parser.writeTables(out);
+        SynParser loadedParser = SynParser.loadTables(grammar, new ByteArrayInputStream(out.toByteArray()));
+
+        String text = "var a : int = 1 + (2.5 + 'x'); list 1, b, 3; var c;";
+        assertEquals(describeNode(parser.parse("File", text).getRootNode()),
+                describeNode(loadedParser.parse("File", text).getRootNode()));
+
+        //The sync tokens are restored.
+        loadedParser.setErrorRecovery(true);
+        SynResult result = loadedParser.parse("File", "var a = 1 +; var b;");
+        assertEquals(1, result.getSyntaxErrors().size());
+
+        //The tables cannot be loaded for a different grammar.
+        try {
+            SynParser.loadTables(grammar + " ", new ByteArrayInputStream(out.toByteArray()));
+            fail();
+        } catch (SynException e) {
+            assertEquals("The precompiled tables do not match the grammar", e.getMessage());
+        }
+
+        //A constant object cannot be precompiled.
+        SynParser objectParser = createParserStr("@A : 'a' value=<java.util.Collections.EMPTY_LIST> ;");
+        try {
+            objectParser.writeTables(new ByteArrayOutputStream());
+            fail();
+        } catch (SynException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Constant cannot be precompiled"));
+        }
+    }
+
+    @Test
+    public void testGrammarCache() throws Exception {
+        String grammar = "@S : (E ';')* ; E : E '+' T | T ; T : INTEGER | '(' E ')' ;";
+        SynGrammarCache.clear();
+        try {
+            //Disabled by default.
+            createParserStr(grammar);
+            assertEquals(0, SynGrammarCache.getMissCount());
+
+            SynGrammarCache.setMaxSize(2);
+            SynParser parser1 = createParserStr(grammar);
+            SynParser parser2 = new SynParser(new StringReader(grammar));
+            assertEquals(1, SynGrammarCache.getMissCount());
+            assertEquals(1, SynGrammarCache.getHitCount());
+
+            //The options of parsers sharing a grammar are independent.
+            parser2.setLimits(SynLimits.DEFAULT.withMaxTokenCount(100));
+            assertSame(SynLimits.DEFAULT, parser1.getLimits());
+            assertEquals(describeNode(parser1.parse("S", "1 + (2 + 3);").getRootNode()),
+                    describeNode(parser2.parse("S", "1 + (2 + 3);").getRootNode()));
+
+            //The least recently used grammar is evicted.
+            createParserStr(grammar + " ");
+            createParserStr(grammar + "  ");
+            assertEquals(2, SynGrammarCache.size());
+            createParserStr(grammar);
+            assertEquals(4, SynGrammarCache.getMissCount());
+
+            SynGrammarCache.setMaxSize(0);
+            assertEquals(0, SynGrammarCache.size());
+        } finally {
+            SynGrammarCache.setMaxSize(0);
+            SynGrammarCache.clear();
+        }
+    }
+
+    @Test
+    public void testGrammarCacheLazyAndConcurrent() throws Exception {
+        final String grammar = "@S : (E ';')* ; E : '(' e=E ')' | v=ID ;";
+        SynGrammarCache.clear();
+        SynGrammarCache.setMaxSize(4);
+        try {
+            //Lazy and non-lazy grammars are cached separately.
+            new SynParser(grammar);
+            SynParser lazyParser = SynParser.createLazy(grammar);
+            assertEquals(2, SynGrammarCache.getMissCount());
+            SynParser.createLazy(grammar);
+            assertEquals(1, SynGrammarCache.getHitCount());
+            assertEquals(2, SynGrammarCache.size());
+            assertEquals("[{v=ID(a)}, {e={v=ID(b)}}]", lazyParser.parse("S", "a; (b);").toString());
+
+            //Concurrent misses compile the grammar once.
+            SynGrammarCache.clear();
+            final int threadCount = 4;
+            final CyclicBarrier barrier = new CyclicBarrier(threadCount);
+            ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+            try {
+                List<Future<SynParser>> futures = new ArrayList<>();
+                for (int i = 0; i < threadCount; ++i) {
+                    futures.add(executor.submit(new Callable<SynParser>() {
+                        @Override
+                        public SynParser call() throws Exception {
+                            barrier.await();
+                            return new SynParser(grammar);
+                        }
+                    }));
+                }
+                for (Future<SynParser> future : futures) {
+                    assertNotNull(future.get(60, TimeUnit.SECONDS));
+                }
+            } finally {
+                executor.shutdown();
+            }
+            assertEquals(1, SynGrammarCache.getMissCount());
+            assertEquals(threadCount - 1, SynGrammarCache.getHitCount());
+
+            //A failed compilation is not cached.
+            SynGrammarCache.clear();
+            for (int i = 0; i < 2; ++i) {
+                try {
+                    new SynParser("@S : X ;");
+                    fail();
+                } catch (SynException e) {
+                    //ok
+                }
+            }
+            assertEquals(0, SynGrammarCache.size());
+            assertEquals(2, SynGrammarCache.getMissCount());
+        } finally {
+            SynGrammarCache.setMaxSize(0);
+            SynGrammarCache.clear();
+        }
+    }
+
+    @Test
+    public void testLazyParser() throws Exception {
+        String grammar = "@File : (Decl)* ; @Decl : 'var' name=ID '=' value=E ';' ; @E : E '+' T | T ;"
+                + "T : INTEGER | ID | '(' result=E ')' ;";
+        SynParser parser = createParserStr(grammar);
+        SynParser lazyParser = SynParser.createLazy(grammar);
+
+        assertEquals(describeNode(parser.parse("E", "1 + (a + 2)").getRootNode()),
+                describeNode(lazyParser.parse("E", "1 + (a + 2)").getRootNode()));
+        assertEquals(describeNode(parser.parse("File", "var a = 1; var b = a + 1;").getRootNode()),
+                describeNode(lazyParser.parse("File", "var a = 1; var b = a + 1;").getRootNode()));
+
+        try {
+            lazyParser.parse("T", "1");
+            fail();
+        } catch (SynException e) {
+            assertEquals("Unknown start nonterminal: T", e.getMessage());
+        }
+
+        //The complete tables are built for writing.
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        parser.writeTables(out);
+        ByteArrayOutputStream lazyOut = new ByteArrayOutputStream();
+        lazyParser.writeTables(lazyOut);
+        assertArrayEquals(out.toByteArray(), lazyOut.toByteArray());
+    }
+
+    private static void checkGrammarError(String grammar, String expectedMessage) {
+        try {
+            createParserStr(grammar);
+            fail();
+        } catch (SynException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(expectedMessage));
+        }
+    }
+
+    /**
+     * Parses a text concurrently and checks that the result is the same as the result of parsing the text
+     * sequentially.
+     */
+    private static SynResult checkParseConcurrently(SynParser parser, String text, ForkJoinPool pool)
+            throws SynException
+    {
+        SynResult result = parser.parseConcurrently("File", text, null, pool, 4);
+        SynResult expectedResult = parser.parse("File", text);
+        assertEquals(describeNode(expectedResult.getRootNode()), describeNode(result.getRootNode()));
+        assertEquals(expectedResult.getLineCount(), result.getLineCount());
+        assertEquals(expectedResult.getCharCount(), result.getCharCount());
+        return result;
+    }
+
+    /**
+     * Resumes parsing from a checkpoint and checks that the result is the same as the result of parsing
+     * the text from scratch.
+     */
+    private static SynResult checkResume(SynParser parser, SynCheckpoint checkpoint, String text)
+            throws SynException
+    {
+        SynResult result = parser.resume(checkpoint, text);
+        SynResult expectedResult = parser.parse(checkpoint.getStartNonterminal(), text);
+        assertEquals(describeNode(expectedResult.getRootNode()), describeNode(result.getRootNode()));
+        assertEquals(expectedResult.getLineCount(), result.getLineCount());
+        assertEquals(expectedResult.getCharCount(), result.getCharCount());
+        return result;
+    }
+
+    /**
+     * Replaces a segment of a text and checks that reparsing the text gives the same result as parsing it
+     * from scratch.
+     */
+    private static SynResult checkReparse(
+            SynParser parser,
+            SynResult result,
+            String text,
+            int offset,
+            int length,
+            String insertion) throws SynException
+    {
+        String newText = text.substring(0, offset) + insertion + text.substring(offset + length);
+        SynResult newResult = parser.reparse(result, newText, new TextEdit(offset, length, insertion.length()));
+
+        String startNonterminal = result.getItemLayout().getStartNonterminal();
+        SynResult expectedResult = parser.parse(startNonterminal, newText);
+        assertEquals(describeNode(expectedResult.getRootNode()), describeNode(newResult.getRootNode()));
+        assertEquals(expectedResult.getLineCount(), newResult.getLineCount());
+        assertEquals(expectedResult.getCharCount(), newResult.getCharCount());
+        return newResult;
+    }
+
+    /**
+     * Returns a string representation of a syntax tree including text positions.
+     */
+    private static String describeNode(SynNode node) {
+        if (node instanceof TerminalNode) {
+            TextPos pos = ((TerminalNode) node).getPos();
+            String posStr = pos == null ? "" : "@" + pos.getOffset() + ":" + pos.getLine() + ":" + pos.getColumn()
+                    + ":" + pos.getLength();
+            return node + posStr;
+        } else if (node instanceof ArrayNode) {
+            List<String> list = new ArrayList<>();
+            for (SynNode subNode : (ArrayNode) node) {
+                list.add(describeNode(subNode));
+            }
+            return list.toString();
+        } else if (node instanceof ObjectNode) {
+            List<String> list = new ArrayList<>();
+            for (ObjectNode.ObjectEntry entry : ((ObjectNode) node).entryList()) {
+                list.add(entry.getKey() + "=" + describeNode(entry.getValue()));
+            }
+            return "{" + list + "}";
+        }
+        return node + "";
+    }
+
     static SynParser createParser(String grammarPath) throws SynException {
         return new SynParser(SynParserSimpleTest.class, grammarPath);
     }
@@ -15,6 +15,8 @@
  */
 package org.antkar.syn.binder;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -24,7 +26,10 @@ import java.util.Arrays;
 
 import org.antkar.syn.SourceDescriptor;
 import org.antkar.syn.StringSourceDescriptor;
+import org.antkar.syn.SynCancellationToken;
+import org.antkar.syn.SynCancelledException;
 import org.antkar.syn.SynException;
+import org.antkar.syn.SynGrammarCache;
 import org.antkar.syn.binder.schema.bug001.Bug001Foo;
 import org.antkar.syn.binder.schema.bug001.Bug001Schema;
 import org.antkar.syn.binder.schema.bug002.Bug002Foo;
@@ -130,6 +135,88 @@ public final class SynBinderTest extends Assert {
         assertEquals("[1, 2, 3, 4, 5]", Arrays.toString(number));
     }
 
+    @Test
+    public void testGrammarCache() throws SynException, IOException {
+        SynGrammarCache.clear();
+        SynGrammarCache.setMaxSize(4);
+        try {
+            createBinder(Bug003Schema.class, "bug003_grammar.txt");
+            SynBinder<Bug003Schema> binder = createBinder(Bug003Schema.class, "bug003_grammar.txt");
+            assertEquals(1, SynGrammarCache.getMissCount());
+            assertEquals(1, SynGrammarCache.getHitCount());
+
+            Bug003Schema schema = parseStr(binder, "Foo 1,2,3");
+            assertEquals("[1, 2, 3]", Arrays.toString(schema.getNumber()));
+
+            createBinder(Bug001Schema.class, "bug001_grammar.txt");
+            assertEquals(2, SynGrammarCache.getMissCount());
+            assertEquals(2, SynGrammarCache.size());
+        } finally {
+            SynGrammarCache.setMaxSize(0);
+            SynGrammarCache.clear();
+        }
+    }
+
+    @Test
+    public void testPrecompiledTablesForChangedClass() throws SynException {
+        String grammar = "@Foo : name=ID value=(INTEGER)? ; @Bar : name=ID ;";
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        createBinderStr(OldVersion.Foo.class, grammar).writeTables(out);
+        byte[] tables = out.toByteArray();
+
+        //A changed class with the same name: the tables are valid, but the changed field must be bound.
+        SynBinder<NewVersion.Foo> binder =
+                SynBinder.loadTables(NewVersion.Foo.class, grammar, new ByteArrayInputStream(tables));
+        NewVersion.Foo foo = parseStr(binder, "abc 123");
+        assertEquals("abc", foo.name);
+        assertEquals(123, foo.value);
+
+        //A class bound to another nonterminal: the generated grammar is different.
+        try {
+            SynBinder.loadTables(Bar.class, grammar, new ByteArrayInputStream(tables));
+            fail();
+        } catch (SynException e) {
+            assertEquals("The precompiled tables do not match the grammar", e.getMessage());
+        }
+
+        //The same applies to the grammar cache.
+        SynGrammarCache.clear();
+        SynGrammarCache.setMaxSize(4);
+        try {
+            createBinderStr(OldVersion.Foo.class, grammar);
+            foo = parseStr(createBinderStr(NewVersion.Foo.class, grammar), "abc 123");
+            assertEquals(1, SynGrammarCache.getHitCount());
+            assertEquals(123, foo.value);
+
+            createBinderStr(Bar.class, grammar);
+            assertEquals(2, SynGrammarCache.getMissCount());
+        } finally {
+            SynGrammarCache.setMaxSize(0);
+            SynGrammarCache.clear();
+        }
+    }
+
+    @Test
+    public void testParseCancellation() throws SynException {
+        SynBinder<Names> binder = createBinderStr(Names.class, "@Names : names=(ID)* ;");
+        StringBuilder bld = new StringBuilder();
+        for (int i = 0; i < 1000; ++i) {
+            bld.append("a" + i + " ");
+        }
+        String text = bld.toString();
+
+        SynCancellationToken token = new SynCancellationToken();
+        assertEquals(1000, binder.withCancellationToken(token).parse(text).names.length);
+
+        token.cancel();
+        try {
+            binder.withCancellationToken(token).parse(text);
+            fail();
+        } catch (SynCancelledException e) {
+            assertEquals("Parsing has been cancelled", e.getOriginalMessage());
+        }
+    }
+
     static <T> T parse(Class<T> cls, String grammarFile, String text)
             throws SynException, IOException
     {
@@ -163,4 +250,34 @@ public final class SynBinderTest extends Assert {
         Reader reader = new StringReader(textStr);
         return binder.parse(reader);
     }
+
+    public static final class OldVersion {
+        public static final class Foo {
+            @SynField
+            String name;
+
+            @SynField
+            IntToken value;
+        }
+    }
+
+    public static final class NewVersion {
+        public static final class Foo {
+            @SynField
+            String name;
+
+            @SynField
+            int value;
+        }
+    }
+
+    public static final class Bar {
+        @SynField
+        String name;
+    }
+
+    public static final class Names {
+        @SynField
+        String[] names;
+    }
 }
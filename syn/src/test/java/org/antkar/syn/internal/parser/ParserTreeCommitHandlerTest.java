@@ -0,0 +1,110 @@
+/*
+ * Copyright 2013 Anton Karmanov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.antkar.syn.internal.parser;
+
+import java.io.StringReader;
+
+import org.antkar.syn.StringSourceDescriptor;
+import org.antkar.syn.SynException;
+import org.antkar.syn.TerminalNode;
+import org.antkar.syn.internal.bnf.BnfGrammar;
+import org.antkar.syn.internal.ebnf.EbnfGrammar;
+import org.antkar.syn.internal.grammar.EbnfToBnfConverter;
+import org.antkar.syn.internal.grammar.XmlGrammarParserTest;
+import org.antkar.syn.internal.lrtables.ParserConfiguration;
+import org.antkar.syn.internal.lrtables.ParserConfigurator;
+import org.antkar.syn.internal.lrtables.ParserProduction;
+import org.antkar.syn.internal.scanner.DefaultTokenStream;
+import org.antkar.syn.internal.scanner.ScannerConfiguration;
+import org.antkar.syn.internal.scanner.ScannerConfigurator;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link ParserTreeCommitHandler}.
+ */
+public final class ParserTreeCommitHandlerTest extends Assert {
+    @Test
+    public void testAmbiguityTreesDoNotGrow() throws Exception {
+        EbnfGrammar eGrammar = XmlGrammarParserTest.loadXmlGrammar();
+        BnfGrammar bGrammar = EbnfToBnfConverter.convert(eGrammar);
+        ParserConfiguration parserConfig = ParserConfigurator.makeConfiguration(bGrammar);
+        ScannerConfiguration scannerConfig = ScannerConfigurator.makeConfiguration(bGrammar.getTokens());
+
+        int shortSize = getMaxAmbiguityTreeSize(parserConfig, scannerConfig, 10);
+        int longSize = getMaxAmbiguityTreeSize(parserConfig, scannerConfig, 1000);
+        assertEquals(shortSize, longSize);
+    }
+
+    /**
+     * Parses a grammar consisting of the specified number of nonterminals and returns the size of the largest
+     * ambiguity tree kept by a committed element.
+     */
+    private static int getMaxAmbiguityTreeSize(
+            ParserConfiguration parserConfig,
+            ScannerConfiguration scannerConfig,
+            int count) throws SynException
+    {
+        StringBuilder bld = new StringBuilder();
+        for (int i = 0; i < count; ++i) {
+            bld.append("N" + i + " : a=ID ( B | C ) * ;\n");
+        }
+
+        DefaultTokenStream tokenStream = new DefaultTokenStream(new StringSourceDescriptor("<input>"),
+                scannerConfig, new StringReader(bld.toString()));
+        SizeCommitHandler handler = new SizeCommitHandler();
+        ParserEngine engine = new ParserEngine(tokenStream, parserConfig.getStartState("Grammar"), false, handler);
+        engine.parse();
+        return handler.maxSize;
+    }
+
+    /**
+     * Builds the tree with the tree handler and measures the ambiguity trees of the committed sub-elements.
+     */
+    private static final class SizeCommitHandler implements IParserCommitHandler {
+        int maxSize;
+
+        SizeCommitHandler(){}
+
+        @Override
+        public void commitTerminal(TerminalNode token) {
+            ParserTreeCommitHandler.INSTANCE.commitTerminal(token);
+        }
+
+        @Override
+        public IParserNode commitNonterminal(ParserProduction production, ParserStackElement subElements) {
+            ParserStackElement element = subElements;
+            for (int i = 0, n = production.getLength(); i < n; ++i) {
+                maxSize = Math.max(maxSize, getSize(element.getAmbiguityNode()));
+                element = element.getPrev();
+            }
+            return ParserTreeCommitHandler.INSTANCE.commitNonterminal(production, subElements);
+        }
+
+        @Override
+        public boolean isAmbiguityTreeRetained(ParserProduction production) {
+            return ParserTreeCommitHandler.INSTANCE.isAmbiguityTreeRetained(production);
+        }
+
+        private static int getSize(AmbiguityNode node) {
+            int result = 1;
+            for (int i = 0, n = node.getSubNodeCount(); i < n; ++i) {
+                result += getSize(node.getSubNode(i));
+            }
+            return result;
+        }
+    }
+}